@@ -53,6 +53,7 @@ import org.springframework.roo.project.PathResolver;
 import org.springframework.roo.project.ProjectOperations;
 import org.springframework.roo.project.Property;
 import org.springframework.roo.project.maven.Pom;
+import org.springframework.roo.propfiles.manager.PropertyChanges;
 import org.springframework.roo.support.logging.HandlerUtils;
 import org.springframework.roo.support.osgi.ServiceInstaceManager;
 import org.springframework.roo.support.util.XmlUtils;
@@ -500,18 +501,14 @@ public class JpaOperationsImpl implements JpaOperations {
     }
 
     // Add dev properties
-    getApplicationConfigService().addProperty(moduleName, "spring.jpa.show-sql", "true", "dev",
-        true);
-    getApplicationConfigService().addProperty(moduleName,
-        "spring.jpa.properties.hibernate.format_sql", "true", "dev", true);
-    getApplicationConfigService().addProperty(moduleName,
-        "spring.jpa.properties.hibernate.generate_statistics", "true", "dev", true);
-    getApplicationConfigService().addProperty(moduleName, "logging.level.org.hibernate.stat",
-        "DEBUG", "dev", true);
-    getApplicationConfigService().addProperty(moduleName,
-        "logging.level.com.querydsl.jpa.impl.JPAQuery", "DEBUG", "dev", true);
-    getApplicationConfigService().addProperty(moduleName, "logging.pattern.level",
-        "%5p - QP:%X{querydsl.parameters} -", "dev", true);
+    final PropertyChanges devProperties = new PropertyChanges();
+    devProperties.addIfNotExists("spring.jpa.show-sql", "true");
+    devProperties.addIfNotExists("spring.jpa.properties.hibernate.format_sql", "true");
+    devProperties.addIfNotExists("spring.jpa.properties.hibernate.generate_statistics", "true");
+    devProperties.addIfNotExists("logging.level.org.hibernate.stat", "DEBUG");
+    devProperties.addIfNotExists("logging.level.com.querydsl.jpa.impl.JPAQuery", "DEBUG");
+    devProperties.addIfNotExists("logging.pattern.level", "%5p - QP:%X{querydsl.parameters} -");
+    getApplicationConfigService().applyChanges(moduleName, devProperties, "dev", true);
   }
 
   /**
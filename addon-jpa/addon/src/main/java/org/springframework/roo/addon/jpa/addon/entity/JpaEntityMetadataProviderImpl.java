@@ -73,6 +73,7 @@ import org.springframework.roo.model.RooJavaType;
 import org.springframework.roo.project.LogicalPath;
 import org.springframework.roo.project.ProjectMetadata;
 import org.springframework.roo.project.ProjectOperations;
+import org.springframework.roo.project.maven.PomSection;
 import org.springframework.roo.support.logging.HandlerUtils;
 import org.springframework.roo.support.util.CollectionUtils;
 
@@ -272,10 +273,11 @@ public class JpaEntityMetadataProviderImpl extends AbstractIdentifierServiceAwar
     final String moduleName =
         PhysicalTypeIdentifierNamingUtils.getPath(metadataIdentificationString).getModule();
     if (projectOperations.isProjectAvailable(moduleName)) {
-      // If the project itself changes, we want a chance to refresh this
-      // item
+      // If the project's dependencies change, e.g. the persistence
+      // provider, we want a chance to refresh this item
       getMetadataDependencyRegistry().registerDependency(
-          ProjectMetadata.getProjectIdentifier(moduleName), metadataIdentificationString);
+          ProjectMetadata.getProjectIdentifier(moduleName, PomSection.DEPENDENCIES),
+          metadataIdentificationString);
     }
 
     // Getting entity details
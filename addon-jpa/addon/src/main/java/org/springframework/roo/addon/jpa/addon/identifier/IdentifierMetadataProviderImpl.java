@@ -27,6 +27,7 @@ import org.springframework.roo.model.RooJavaType;
 import org.springframework.roo.project.LogicalPath;
 import org.springframework.roo.project.ProjectMetadata;
 import org.springframework.roo.project.ProjectOperations;
+import org.springframework.roo.project.maven.PomSection;
 import org.springframework.roo.support.logging.HandlerUtils;
 
 /**
@@ -142,10 +143,11 @@ public class IdentifierMetadataProviderImpl extends AbstractIdentifierServiceAwa
     final LogicalPath path =
         PhysicalTypeIdentifierNamingUtils.getPath(metadataIdentificationString);
     if (projectOperations.isProjectAvailable(path.getModule())) {
-      // If the project itself changes, we want a chance to refresh this
-      // item
+      // If the project's dependencies change, e.g. the persistence
+      // provider, we want a chance to refresh this item
       getMetadataDependencyRegistry().registerDependency(
-          ProjectMetadata.getProjectIdentifier(path.getModule()), metadataIdentificationString);
+          ProjectMetadata.getProjectIdentifier(path.getModule(), PomSection.DEPENDENCIES),
+          metadataIdentificationString);
     }
 
     return new IdentifierMetadata(metadataIdentificationString, aspectName,
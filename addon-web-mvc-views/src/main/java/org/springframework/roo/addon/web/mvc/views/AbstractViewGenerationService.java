@@ -1,6 +1,5 @@
 package org.springframework.roo.addon.web.mvc.views;
 
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
 import org.apache.felix.scr.annotations.Component;
@@ -53,7 +52,6 @@ import org.springframework.roo.support.osgi.ServiceInstaceManager;
 import org.springframework.roo.support.util.XmlUtils;
 
 import java.io.File;
-import java.io.IOException;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -2054,12 +2052,9 @@ public abstract class AbstractViewGenerationService<DOC, T extends AbstractViewM
    * @return
    */
   protected DOC loadExistingDoc(String path) {
-    String content = "";
-    try {
-      // Load file and get STRING content
-      content = FileUtils.readFileToString(new File(path));
-
-    } catch (IOException e) {
+    // Load file and get STRING content, from memory if it hasn't changed
+    final String content = getFileManager().readTextFile(path);
+    if (content == null) {
       throw new RuntimeException(String.format("ERROR: Error trying to load existing doc %s", path));
     }
 
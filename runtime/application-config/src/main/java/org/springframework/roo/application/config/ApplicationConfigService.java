@@ -4,6 +4,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.SortedSet;
 
+import org.springframework.roo.propfiles.manager.PropertyChanges;
+
 /**
  * Provides an interface to {@link ApplicationConfigServiceImpl}.
  * 
@@ -61,6 +63,20 @@ public interface ApplicationConfigService {
   void addProperties(String moduleName, String prefix, Map<String, String> properties,
       String profile, boolean force);
 
+  /**
+   * Applies several changes to the application config file of the specified
+   * module, reading and writing the file at most once. Like the other
+   * methods of this service, this writes the properties sorted by key.
+   * 
+   * @param moduleName module where configuration will be located. 
+   * @param changes the properties to add, change or remove (required)
+   * @param profile string with profile where configuration will be located.
+   * @param force boolean that indicates if is necessary to force operation
+   * @since 2.0
+   * @see org.springframework.roo.propfiles.manager.PropFilesManagerService#applyChanges
+   */
+  void applyChanges(String moduleName, PropertyChanges changes, String profile, boolean force);
+
   /**
    * Changes the specified property in the application config file of the specified module.
    * 
@@ -20,6 +20,7 @@ import org.springframework.roo.project.Path;
 import org.springframework.roo.project.PathResolver;
 import org.springframework.roo.project.maven.Pom;
 import org.springframework.roo.propfiles.manager.PropFilesManagerService;
+import org.springframework.roo.propfiles.manager.PropertyChanges;
 import org.springframework.roo.settings.project.ProjectSettingsService;
 
 /**
@@ -87,6 +88,13 @@ public class ApplicationConfigServiceImpl implements ApplicationConfigService {
         getAppliCationConfigFileName(profile), prefix, properties, true, force);
   }
 
+  @Override
+  public void applyChanges(final String moduleName, final PropertyChanges changes,
+      final String profile, final boolean force) {
+    propFilesManager.applyChanges(getApplicationConfigFileLocation(moduleName),
+        getAppliCationConfigFileName(profile), changes, true, force);
+  }
+
   @Override
   public void updateProperty(final String moduleName, final String key, final String value,
       String profile, boolean force) {
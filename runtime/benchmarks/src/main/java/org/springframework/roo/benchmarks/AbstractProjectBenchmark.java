@@ -0,0 +1,56 @@
+package org.springframework.roo.benchmarks;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Convenient superclass for benchmarks that run against a
+ * {@link SyntheticProject}, generated once per trial for each project size.
+ *
+ * @since 2.0
+ */
+@State(Scope.Benchmark)
+public abstract class AbstractProjectBenchmark {
+
+  /**
+   * The number of entities in the synthetic project.
+   */
+  @Param({"50", "500", "5000"})
+  public int entityCount;
+
+  protected SyntheticProject project;
+
+  private int nextIndex;
+
+  /**
+   * Returns the index of the entity to use next, cycling through all of the
+   * project's entities so that every size exercises its whole working set.
+   *
+   * @return a valid index into the project's entities
+   */
+  protected final int nextIndex() {
+    nextIndex = (nextIndex + 1) % entityCount;
+    return nextIndex;
+  }
+
+  /**
+   * Sets up the services under test once the project has been generated.
+   */
+  protected abstract void setUp();
+
+  @Setup(Level.Trial)
+  public final void setUpProject() {
+    project = new SyntheticProject(entityCount);
+    nextIndex = 0;
+    setUp();
+  }
+
+  @TearDown(Level.Trial)
+  public final void tearDownProject() {
+    project.delete();
+  }
+}
@@ -0,0 +1,58 @@
+package org.springframework.roo.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.roo.classpath.itd.ItdSourceFileComposer;
+
+/**
+ * Benchmarks composing the source of a JavaBean ITD with
+ * {@link ItdSourceFileComposer}, which every ITD-producing metadata provider
+ * does whenever its metadata is regenerated, and comparing it with the ITD
+ * already on disk.
+ *
+ * @since 2.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class ItdSourceFileComposerBenchmark extends AbstractProjectBenchmark {
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  // The ITDs as previously written, i.e. unchanged
+  private List<byte[]> existingItds;
+
+  @Override
+  protected void setUp() {
+    // The ITDs are built by the synthetic project
+    existingItds = new ArrayList<byte[]>(entityCount);
+    for (int i = 0; i < entityCount; i++) {
+      existingItds.add(new ItdSourceFileComposer(project.getItds().get(i)).getOutput().getBytes(UTF_8));
+    }
+  }
+
+  @Benchmark
+  public String getOutput() {
+    return new ItdSourceFileComposer(project.getItds().get(nextIndex())).getOutput();
+  }
+
+  @Benchmark
+  public boolean isOutputOfExistingItd() {
+    final int index = nextIndex();
+    return new ItdSourceFileComposer(project.getItds().get(index))
+        .isOutputOf(new ByteArrayInputStream(existingItds.get(index)));
+  }
+}
@@ -0,0 +1,90 @@
+package org.springframework.roo.benchmarks;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.roo.metadata.DefaultMetadataLogger;
+import org.springframework.roo.metadata.MetadataService;
+import org.springframework.roo.metadata.internal.DefaultMetadataDependencyRegistry;
+import org.springframework.roo.project.ProjectMetadata;
+
+/**
+ * Benchmarks the fan-out of
+ * {@link DefaultMetadataDependencyRegistry#notifyDownstream(String)}.
+ * <p>
+ * Each entity's ITD metadata depends on the entity's physical type and on
+ * the project metadata, as add-on metadata typically does. The notified
+ * metadata service discards the notifications, so only the registry's own
+ * overhead is measured.
+ *
+ * @since 2.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class MetadataDependencyRegistryBenchmark extends AbstractProjectBenchmark {
+
+  private static final String PROJECT_METADATA_ID = ProjectMetadata.getProjectIdentifier("");
+
+  private List<String> physicalTypeIds;
+  private DefaultMetadataDependencyRegistry registry;
+
+  @Override
+  protected void setUp() {
+    registry = new DefaultMetadataDependencyRegistry() {
+      {
+        metadataLogger = new DefaultMetadataLogger();
+      }
+    };
+    registry.addNotificationListener(Services.stub(MetadataService.class,
+        Collections.<String, Object> emptyMap()));
+    physicalTypeIds = project.getPhysicalTypeIds();
+    for (int i = 0; i < project.getEntityCount(); i++) {
+      final String itdMetadataId = project.getItds().get(i).getDeclaredByMetadataId();
+      registry.registerDependency(PROJECT_METADATA_ID, itdMetadataId);
+      registry.registerDependency(physicalTypeIds.get(i), itdMetadataId);
+    }
+  }
+
+  /**
+   * Notifies every entity's ITD metadata of a change to the project.
+   */
+  @Benchmark
+  public void notifyDownstreamOfProject() {
+    registry.notifyDownstream(PROJECT_METADATA_ID);
+  }
+
+  /**
+   * Notifies every entity's ITD metadata of a change to its entity, in one
+   * batch, as a scan that finds every source file changed would.
+   */
+  @Benchmark
+  public void notifyDownstreamOfAllTypesInBatch() {
+    registry.startBatch();
+    try {
+      for (final String physicalTypeId : physicalTypeIds) {
+        registry.notifyDownstream(physicalTypeId);
+      }
+    } finally {
+      registry.endBatch();
+    }
+  }
+
+  /**
+   * Notifies one entity's ITD metadata of a change to that entity.
+   */
+  @Benchmark
+  public void notifyDownstreamOfType() {
+    registry.notifyDownstream(physicalTypeIds.get(nextIndex()));
+  }
+}
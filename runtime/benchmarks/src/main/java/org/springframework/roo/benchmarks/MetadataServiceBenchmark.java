@@ -0,0 +1,86 @@
+package org.springframework.roo.benchmarks;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.roo.classpath.PhysicalTypeIdentifier;
+import org.springframework.roo.metadata.DefaultMetadataLogger;
+import org.springframework.roo.metadata.DefaultMetadataService;
+import org.springframework.roo.metadata.MetadataItem;
+import org.springframework.roo.metadata.MetadataProvider;
+
+/**
+ * Benchmarks {@link DefaultMetadataService#get(String)} when the requested
+ * item is, and is not, already in the service's cache. The provider returns
+ * pre-built items, so only the service's own overhead is measured.
+ *
+ * @since 2.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class MetadataServiceBenchmark extends AbstractProjectBenchmark {
+
+  private DefaultMetadataService cachingService;
+  private DefaultMetadataService evictingService;
+  private List<String> metadataIds;
+
+  @Override
+  protected void setUp() {
+    final Map<String, MetadataItem> items = new HashMap<String, MetadataItem>();
+    for (int i = 0; i < project.getEntityCount(); i++) {
+      items.put(project.getPhysicalTypeIds().get(i), project.getPhysicalTypeMetadata(i));
+    }
+    final MetadataProvider provider = new MetadataProvider() {
+      public MetadataItem get(final String metadataIdentificationString) {
+        return items.get(metadataIdentificationString);
+      }
+
+      public String getProvidesType() {
+        return PhysicalTypeIdentifier.getMetadataIdentiferType();
+      }
+    };
+    metadataIds = project.getPhysicalTypeIds();
+
+    cachingService = newMetadataService(provider);
+    for (final String metadataId : metadataIds) {
+      cachingService.get(metadataId);
+    }
+
+    // Emptied before every get; at its minimum size, emptying it is cheap
+    evictingService = newMetadataService(provider);
+    evictingService.setMaxCapacity(0);
+  }
+
+  @Benchmark
+  public MetadataItem getCacheHit() {
+    return cachingService.get(metadataIds.get(nextIndex()));
+  }
+
+  @Benchmark
+  public MetadataItem getCacheMiss() {
+    evictingService.evictAll();
+    return evictingService.get(metadataIds.get(nextIndex()));
+  }
+
+  private DefaultMetadataService newMetadataService(final MetadataProvider provider) {
+    final DefaultMetadataService metadataService = new DefaultMetadataService() {
+      {
+        bindMetadataProvider(provider);
+      }
+    };
+    Services.inject(metadataService, "metadataLogger", new DefaultMetadataLogger());
+    return metadataService;
+  }
+}
@@ -0,0 +1,116 @@
+package org.springframework.roo.benchmarks;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Wires services together without an OSGi framework, as the benchmarks run
+ * on a plain classpath.
+ *
+ * @since 2.0
+ */
+final class Services {
+
+  /**
+   * Computes a stubbed method's return value from its arguments.
+   */
+  interface Answer {
+    Object answer(Object[] args);
+  }
+
+  /**
+   * Sets the given field of the given service, as the component runtime would
+   * when binding a reference.
+   *
+   * @param service the service to inject into (required)
+   * @param fieldName the name of a field declared by the service's class or
+   *            one of its superclasses
+   * @param value the value to inject (can be <code>null</code>)
+   */
+  static void inject(final Object service, final String fieldName, final Object value) {
+    for (Class<?> type = service.getClass(); type != null; type = type.getSuperclass()) {
+      try {
+        final Field field = type.getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(service, value);
+        return;
+      } catch (final NoSuchFieldException e) {
+        // Try the superclass
+      } catch (final IllegalAccessException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+    throw new IllegalArgumentException("No field '" + fieldName + "' in " + service.getClass());
+  }
+
+  /**
+   * Returns a stub of the given service interface, whose methods return the
+   * given answers by method name, or otherwise an empty collection, zero,
+   * <code>false</code>, or <code>null</code> as appropriate. An answer that
+   * is an {@link Answer} is invoked with the method's arguments.
+   *
+   * @param serviceInterface the interface to stub (required)
+   * @param answers the values to return, keyed by method name (required)
+   * @return a non-<code>null</code> stub
+   */
+  static <T> T stub(final Class<T> serviceInterface, final Map<String, ?> answers) {
+    return serviceInterface.cast(Proxy.newProxyInstance(serviceInterface.getClassLoader(),
+        new Class<?>[] {serviceInterface}, new InvocationHandler() {
+          public Object invoke(final Object proxy, final Method method, final Object[] args) {
+            if (answers.containsKey(method.getName())) {
+              final Object answer = answers.get(method.getName());
+              if (answer instanceof Answer) {
+                return ((Answer) answer).answer(args);
+              }
+              return answer;
+            }
+            if ("equals".equals(method.getName())) {
+              return proxy == args[0];
+            }
+            if ("hashCode".equals(method.getName())) {
+              return System.identityHashCode(proxy);
+            }
+            if ("toString".equals(method.getName())) {
+              return serviceInterface.getSimpleName() + " stub";
+            }
+            return getDefaultValue(method.getReturnType());
+          }
+        }));
+  }
+
+  private static Object getDefaultValue(final Class<?> returnType) {
+    if (returnType == boolean.class) {
+      return false;
+    }
+    if (returnType == int.class) {
+      return 0;
+    }
+    if (returnType == long.class) {
+      return 0L;
+    }
+    if (returnType == SortedSet.class) {
+      return new TreeSet<Object>();
+    }
+    if (returnType == Set.class) {
+      return Collections.emptySet();
+    }
+    if (returnType == List.class || returnType == Collection.class) {
+      return Collections.emptyList();
+    }
+    if (returnType == Map.class) {
+      return Collections.emptyMap();
+    }
+    return null;
+  }
+
+  private Services() {}
+}
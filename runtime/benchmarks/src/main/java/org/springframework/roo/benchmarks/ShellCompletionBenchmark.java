@@ -0,0 +1,199 @@
+package org.springframework.roo.benchmarks;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceReference;
+import org.springframework.roo.addon.backup.BackupCommands;
+import org.springframework.roo.addon.cache.CacheCommands;
+import org.springframework.roo.addon.creator.CreatorCommands;
+import org.springframework.roo.addon.dto.addon.DtoCommands;
+import org.springframework.roo.addon.email.addon.MailCommands;
+import org.springframework.roo.addon.field.addon.FieldCommands;
+import org.springframework.roo.addon.javabean.addon.EqualsCommands;
+import org.springframework.roo.addon.jms.JmsCommands;
+import org.springframework.roo.addon.jpa.addon.JpaCommands;
+import org.springframework.roo.addon.jpa.addon.audit.JpaAuditCommands;
+import org.springframework.roo.addon.layers.repository.jpa.addon.RepositoryJpaCommands;
+import org.springframework.roo.addon.layers.repository.jpa.addon.finder.FinderCommands;
+import org.springframework.roo.addon.layers.service.addon.ServiceCommands;
+import org.springframework.roo.addon.oscommands.OsCommands;
+import org.springframework.roo.addon.propfiles.PropFileCommands;
+import org.springframework.roo.addon.pushin.PushInCommands;
+import org.springframework.roo.addon.security.addon.security.SecurityCommands;
+import org.springframework.roo.addon.web.mvc.controller.addon.ControllerCommands;
+import org.springframework.roo.addon.web.mvc.controller.addon.finder.WebFinderCommands;
+import org.springframework.roo.addon.web.mvc.exceptions.addon.ExceptionsCommands;
+import org.springframework.roo.addon.web.mvc.i18n.I18nCommands;
+import org.springframework.roo.addon.web.mvc.views.ViewCommands;
+import org.springframework.roo.addon.webflow.WebFlowCommands;
+import org.springframework.roo.addon.ws.addon.WsCommands;
+import org.springframework.roo.classpath.MetadataCommands;
+import org.springframework.roo.classpath.operations.ClasspathCommands;
+import org.springframework.roo.classpath.operations.HintCommands;
+import org.springframework.roo.converters.BooleanConverter;
+import org.springframework.roo.converters.EnumConverter;
+import org.springframework.roo.converters.IntegerConverter;
+import org.springframework.roo.converters.JavaPackageConverter;
+import org.springframework.roo.converters.JavaSymbolNameConverter;
+import org.springframework.roo.converters.JavaTypeConverter;
+import org.springframework.roo.converters.LocaleConverter;
+import org.springframework.roo.converters.LongConverter;
+import org.springframework.roo.converters.StringConverter;
+import org.springframework.roo.process.manager.internal.FileManagerCommands;
+import org.springframework.roo.project.MavenCommands;
+import org.springframework.roo.project.ProjectCommands;
+import org.springframework.roo.settings.SettingsCommands;
+import org.springframework.roo.shell.CommandMarker;
+import org.springframework.roo.shell.Completion;
+import org.springframework.roo.shell.Converter;
+import org.springframework.roo.shell.RooBundleActivator;
+import org.springframework.roo.shell.SimpleParser;
+
+/**
+ * Benchmarks {@link SimpleParser#completeAdvanced(String, int, List)}, i.e.
+ * what happens each time the user presses TAB, with the commands of the
+ * runtime and of the add-ons bundled with Roo registered.
+ * <p>
+ * The commands' services are stubs reporting that a project is available,
+ * so availability indicators run as they would in a project; the cost of
+ * the add-ons' own operations (e.g. type lookups) isn't measured.
+ *
+ * @since 2.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class ShellCompletionBenchmark {
+
+  private static final List<Class<? extends CommandMarker>> COMMANDS = Arrays.asList(
+      BackupCommands.class, CacheCommands.class, ClasspathCommands.class,
+      ControllerCommands.class, CreatorCommands.class, DtoCommands.class, EqualsCommands.class,
+      ExceptionsCommands.class, FieldCommands.class, FileManagerCommands.class,
+      FinderCommands.class, HintCommands.class, I18nCommands.class, JmsCommands.class,
+      JpaAuditCommands.class, JpaCommands.class, MailCommands.class, MavenCommands.class,
+      MetadataCommands.class, OsCommands.class, ProjectCommands.class, PropFileCommands.class,
+      PushInCommands.class, RepositoryJpaCommands.class, SecurityCommands.class,
+      ServiceCommands.class, SettingsCommands.class, ViewCommands.class, WebFinderCommands.class,
+      WebFlowCommands.class, WsCommands.class);
+
+  private static final List<Class<? extends Converter<?>>> CONVERTERS = Arrays
+      .<Class<? extends Converter<?>>>asList(BooleanConverter.class, EnumConverter.class,
+          IntegerConverter.class, JavaPackageConverter.class, JavaSymbolNameConverter.class,
+          JavaTypeConverter.class, LocaleConverter.class, LongConverter.class,
+          StringConverter.class);
+
+  // What the stubbed services answer, whichever service they stand for
+  private static final Map<String, Object> ANSWERS = new HashMap<String, Object>();
+
+  static {
+    ANSWERS.put("isFocusedProjectAvailable", true);
+    ANSWERS.put("isProjectAvailable", true);
+    ANSWERS.put("getLastTimeBundleChange", 0L);
+  }
+
+  /**
+   * Stubs the service references of the given command or converter: fields
+   * bound by the component runtime, and the bundle context through which
+   * others are looked up lazily.
+   *
+   * @param service the service whose references to stub (required)
+   * @return the given service
+   */
+  private static <T> T stubReferences(final T service) {
+    final Map<ServiceReference<?>, Object> services =
+        new IdentityHashMap<ServiceReference<?>, Object>();
+    final Map<String, Object> contextAnswers = new HashMap<String, Object>();
+    final Services.Answer getServiceReferences = new Services.Answer() {
+      public Object answer(final Object[] args) {
+        final ServiceReference<?> reference =
+            Services.stub(ServiceReference.class, Collections.<String, Object>emptyMap());
+        try {
+          services.put(reference, Services.stub(Class.forName((String) args[0]), ANSWERS));
+        } catch (final ClassNotFoundException e) {
+          return new ServiceReference<?>[0];
+        }
+        return new ServiceReference<?>[] {reference};
+      }
+    };
+    contextAnswers.put("getAllServiceReferences", getServiceReferences);
+    contextAnswers.put("getServiceReferences", getServiceReferences);
+    contextAnswers.put("getService", new Services.Answer() {
+      public Object answer(final Object[] args) {
+        return services.get(args[0]);
+      }
+    });
+    final BundleContext context = Services.stub(BundleContext.class, contextAnswers);
+
+    for (Class<?> type = service.getClass(); type != null; type = type.getSuperclass()) {
+      for (final Field field : type.getDeclaredFields()) {
+        if (!field.getType().isInterface() || Modifier.isStatic(field.getModifiers())) {
+          continue;
+        }
+        try {
+          field.setAccessible(true);
+          if (field.get(service) == null) {
+            field.set(service, field.getType() == BundleContext.class ? context : Services.stub(
+                field.getType(), ANSWERS));
+          }
+        } catch (final IllegalAccessException e) {
+          throw new IllegalStateException(e);
+        }
+      }
+    }
+    return service;
+  }
+
+  /**
+   * What the user has typed before pressing TAB: nothing, part of a command,
+   * a command needing its mandatory options, and an option needing a value.
+   */
+  @Param({"", "we", "jpa setup --", "entity jpa --class ~.Owner --",
+      "field string --fieldName name --"})
+  public String buffer;
+
+  private SimpleParser parser;
+
+  @Setup
+  public void setUp() throws Exception {
+    parser = new SimpleParser();
+    Services.inject(parser, "rooBundleActivator", Services.stub(RooBundleActivator.class, ANSWERS));
+    parser.setLasTimeUpdateComponents(System.currentTimeMillis());
+    for (final Class<? extends CommandMarker> command : COMMANDS) {
+      parser.add(stubReferences(command.newInstance()));
+    }
+    for (final Class<? extends Converter<?>> converter : CONVERTERS) {
+      parser.add(stubReferences(converter.newInstance()));
+    }
+  }
+
+  @Benchmark
+  public List<Completion> complete() {
+    final List<Completion> completions = new ArrayList<Completion>();
+    parser.completeAdvanced(buffer, buffer.length(), completions);
+    return completions;
+  }
+}
@@ -0,0 +1,248 @@
+package org.springframework.roo.benchmarks;
+
+import static java.lang.reflect.Modifier.PRIVATE;
+import static java.lang.reflect.Modifier.PUBLIC;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.springframework.roo.classpath.PhysicalTypeCategory;
+import org.springframework.roo.classpath.PhysicalTypeIdentifier;
+import org.springframework.roo.classpath.details.BeanInfoUtils;
+import org.springframework.roo.classpath.details.ClassOrInterfaceTypeDetails;
+import org.springframework.roo.classpath.details.ClassOrInterfaceTypeDetailsBuilder;
+import org.springframework.roo.classpath.details.DefaultPhysicalTypeMetadata;
+import org.springframework.roo.classpath.details.FieldMetadataBuilder;
+import org.springframework.roo.classpath.details.ItdTypeDetails;
+import org.springframework.roo.classpath.details.ItdTypeDetailsBuilder;
+import org.springframework.roo.classpath.details.MethodMetadataBuilder;
+import org.springframework.roo.classpath.details.annotations.AnnotatedJavaType;
+import org.springframework.roo.classpath.details.annotations.AnnotationMetadataBuilder;
+import org.springframework.roo.classpath.itd.InvocableMemberBodyBuilder;
+import org.springframework.roo.metadata.MetadataIdentificationUtils;
+import org.springframework.roo.model.JavaSymbolName;
+import org.springframework.roo.model.JavaType;
+import org.springframework.roo.model.JdkJavaType;
+import org.springframework.roo.model.RooJavaType;
+import org.springframework.roo.project.LogicalPath;
+import org.springframework.roo.project.Path;
+import org.springframework.roo.project.maven.Pom;
+
+/**
+ * A generated single-module project of JavaBean entities, used as the input
+ * to the benchmarks.
+ * <p>
+ * Every entity is annotated with <code>@RooJavaBean</code> and has the same
+ * handful of fields; every other entity is also annotated with
+ * <code>@RooJpaEntity</code>. Each entity is available as Java source, as the
+ * {@link ClassOrInterfaceTypeDetails} that parsing that source yields, and as
+ * the JavaBean ITD that Roo would generate for it. The sources are written
+ * to a temporary directory, so that services resolving canonical paths see a
+ * real project layout; call {@link #delete()} once finished with it.
+ *
+ * @since 2.0
+ */
+final class SyntheticProject {
+
+  /**
+   * The metadata class that declares the generated ITDs.
+   */
+  static final String ITD_METADATA_CLASS = "org.springframework.roo.benchmarks.JavaBeanMetadata";
+
+  private static final String PACKAGE = "com.example.domain";
+  private static final String[] FIELD_NAMES = {"id", "version", "name", "description",
+      "createdOn", "active"};
+  private static final JavaType[] FIELD_TYPES = {JavaType.LONG_OBJECT, JavaType.INT_OBJECT,
+      JavaType.STRING, JavaType.STRING, JdkJavaType.DATE, JavaType.BOOLEAN_PRIMITIVE};
+
+  private final List<String> canonicalPaths;
+  private final List<ItdTypeDetails> itds;
+  private final List<String> physicalTypeIds;
+  private final Pom pom;
+  private final File root;
+  private final List<String> sources;
+  private final List<ClassOrInterfaceTypeDetails> types;
+
+  /**
+   * Constructor
+   *
+   * @param entityCount the number of entities to generate (at least one)
+   */
+  SyntheticProject(final int entityCount) {
+    try {
+      root = File.createTempFile("roo-benchmark", "").getCanonicalFile();
+      FileUtils.forceDelete(root);
+      FileUtils.forceMkdir(root);
+    } catch (final IOException e) {
+      throw new IllegalStateException("Could not create the synthetic project", e);
+    }
+    pom =
+        new Pom("com.example", "synthetic", "1.0.0", "jar", null, null, null, null, null,
+            "synthetic", null, null, null, null, null, null, null, null, new File(root,
+                "pom.xml").getPath(), "", Arrays.asList(Path.SRC_MAIN_JAVA));
+    final LogicalPath sourcePath = LogicalPath.getInstance(Path.SRC_MAIN_JAVA, "");
+    final File packageDirectory =
+        new File(pom.getPhysicalPath(Path.SRC_MAIN_JAVA).getLocation(), PACKAGE.replace('.',
+            File.separatorChar));
+
+    canonicalPaths = new ArrayList<String>(entityCount);
+    itds = new ArrayList<ItdTypeDetails>(entityCount);
+    physicalTypeIds = new ArrayList<String>(entityCount);
+    sources = new ArrayList<String>(entityCount);
+    types = new ArrayList<ClassOrInterfaceTypeDetails>(entityCount);
+    for (int i = 0; i < entityCount; i++) {
+      final JavaType entity = new JavaType(PACKAGE + ".Entity" + i);
+      final String physicalTypeId = PhysicalTypeIdentifier.createIdentifier(entity, sourcePath);
+      final ClassOrInterfaceTypeDetails type = createType(physicalTypeId, entity, i % 2 == 0);
+      final String source = createSource(entity, i % 2 == 0);
+      final File sourceFile = new File(packageDirectory, entity.getSimpleTypeName() + ".java");
+      try {
+        FileUtils.writeStringToFile(sourceFile, source);
+      } catch (final IOException e) {
+        throw new IllegalStateException("Could not write " + sourceFile, e);
+      }
+      canonicalPaths.add(sourceFile.getPath());
+      itds.add(createItd(type));
+      physicalTypeIds.add(physicalTypeId);
+      sources.add(source);
+      types.add(type);
+    }
+  }
+
+  /**
+   * Deletes the project's files.
+   */
+  void delete() {
+    FileUtils.deleteQuietly(root);
+  }
+
+  /**
+   * Returns the canonical paths of the entities' source files.
+   */
+  List<String> getCanonicalPaths() {
+    return Collections.unmodifiableList(canonicalPaths);
+  }
+
+  /**
+   * Returns the number of entities in this project.
+   */
+  int getEntityCount() {
+    return types.size();
+  }
+
+  /**
+   * Returns the JavaBean ITDs of the entities.
+   */
+  List<ItdTypeDetails> getItds() {
+    return Collections.unmodifiableList(itds);
+  }
+
+  /**
+   * Returns the physical type metadata of the given entity.
+   *
+   * @param index the index of the entity
+   */
+  DefaultPhysicalTypeMetadata getPhysicalTypeMetadata(final int index) {
+    return new DefaultPhysicalTypeMetadata(physicalTypeIds.get(index), canonicalPaths.get(index),
+        types.get(index));
+  }
+
+  /**
+   * Returns the physical type IDs of the entities.
+   */
+  List<String> getPhysicalTypeIds() {
+    return Collections.unmodifiableList(physicalTypeIds);
+  }
+
+  /**
+   * Returns the project's only module.
+   */
+  Pom getPom() {
+    return pom;
+  }
+
+  /**
+   * Returns the Java sources of the entities.
+   */
+  List<String> getSources() {
+    return Collections.unmodifiableList(sources);
+  }
+
+  /**
+   * Returns the type details of the entities.
+   */
+  List<ClassOrInterfaceTypeDetails> getTypes() {
+    return Collections.unmodifiableList(types);
+  }
+
+  private ItdTypeDetails createItd(final ClassOrInterfaceTypeDetails governor) {
+    final JavaType name = governor.getName();
+    final String itdMetadataId =
+        MetadataIdentificationUtils.create(ITD_METADATA_CLASS,
+            PhysicalTypeIdentifier.getPath(governor.getDeclaredByMetadataId()).getName() + "?"
+                + name.getFullyQualifiedTypeName());
+    final ItdTypeDetailsBuilder builder =
+        new ItdTypeDetailsBuilder(itdMetadataId, governor, new JavaType(
+            name.getFullyQualifiedTypeName() + "_Roo_JavaBean"), false);
+    for (int i = 0; i < FIELD_NAMES.length; i++) {
+      final JavaSymbolName fieldName = new JavaSymbolName(FIELD_NAMES[i]);
+      final JavaType fieldType = FIELD_TYPES[i];
+
+      final InvocableMemberBodyBuilder accessorBody = new InvocableMemberBodyBuilder();
+      accessorBody.appendFormalLine("return this." + fieldName + ";");
+      builder.addMethod(new MethodMetadataBuilder(itdMetadataId, PUBLIC, BeanInfoUtils
+          .getAccessorMethodName(fieldName, fieldType), fieldType, accessorBody));
+
+      final InvocableMemberBodyBuilder mutatorBody = new InvocableMemberBodyBuilder();
+      mutatorBody.appendFormalLine("this." + fieldName + " = " + fieldName + ";");
+      builder.addMethod(new MethodMetadataBuilder(itdMetadataId, PUBLIC, BeanInfoUtils
+          .getMutatorMethodName(fieldName), JavaType.VOID_PRIMITIVE, AnnotatedJavaType
+          .convertFromJavaTypes(fieldType), Arrays.asList(fieldName), mutatorBody));
+    }
+    return builder.build();
+  }
+
+  private String createSource(final JavaType entity, final boolean jpaEntity) {
+    final StringBuilder source = new StringBuilder();
+    source.append("package ").append(PACKAGE).append(";\n\n");
+    source.append("import ").append(RooJavaType.ROO_JAVA_BEAN).append(";\n");
+    if (jpaEntity) {
+      source.append("import ").append(RooJavaType.ROO_JPA_ENTITY).append(";\n");
+    }
+    source.append("import ").append(JdkJavaType.DATE).append(";\n\n");
+    source.append("@").append(RooJavaType.ROO_JAVA_BEAN.getSimpleTypeName()).append("\n");
+    if (jpaEntity) {
+      source.append("@").append(RooJavaType.ROO_JPA_ENTITY.getSimpleTypeName()).append("\n");
+    }
+    source.append("public class ").append(entity.getSimpleTypeName()).append(" {\n");
+    for (int i = 0; i < FIELD_NAMES.length; i++) {
+      final JavaType fieldType = FIELD_TYPES[i];
+      source.append("\n    private ")
+          .append(fieldType.isPrimitive() ? fieldType.getNameIncludingTypeParameters() : fieldType
+              .getSimpleTypeName()).append(" ").append(FIELD_NAMES[i]).append(";\n");
+    }
+    source.append("}\n");
+    return source.toString();
+  }
+
+  private ClassOrInterfaceTypeDetails createType(final String physicalTypeId,
+      final JavaType entity, final boolean jpaEntity) {
+    final ClassOrInterfaceTypeDetailsBuilder builder =
+        new ClassOrInterfaceTypeDetailsBuilder(physicalTypeId, PUBLIC, entity,
+            PhysicalTypeCategory.CLASS);
+    builder.addAnnotation(new AnnotationMetadataBuilder(RooJavaType.ROO_JAVA_BEAN));
+    if (jpaEntity) {
+      builder.addAnnotation(new AnnotationMetadataBuilder(RooJavaType.ROO_JPA_ENTITY));
+    }
+    for (int i = 0; i < FIELD_NAMES.length; i++) {
+      builder.addField(new FieldMetadataBuilder(physicalTypeId, PRIVATE, new JavaSymbolName(
+          FIELD_NAMES[i]), FIELD_TYPES[i], null));
+    }
+    return builder.build();
+  }
+}
@@ -0,0 +1,129 @@
+package org.springframework.roo.benchmarks;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.Validate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.roo.classpath.TypeCacheImpl;
+import org.springframework.roo.classpath.TypeLocationService;
+import org.springframework.roo.classpath.TypeLocationServiceImpl;
+import org.springframework.roo.classpath.antlrjavaparser.JavaParserTypeParsingService;
+import org.springframework.roo.classpath.antlrjavaparser.JavaParserTypeResolutionService;
+import org.springframework.roo.classpath.details.DefaultPhysicalTypeMetadata;
+import org.springframework.roo.file.monitor.FileMonitorService;
+import org.springframework.roo.file.monitor.event.FileDetails;
+import org.springframework.roo.metadata.MetadataService;
+import org.springframework.roo.model.JavaType;
+import org.springframework.roo.model.RooJavaType;
+import org.springframework.roo.process.manager.FileManager;
+import org.springframework.roo.project.ProjectOperations;
+
+/**
+ * Benchmarks {@link TypeLocationServiceImpl#findTypesWithAnnotation(JavaType...)}
+ * once the service has discovered all of the project's types and no files
+ * have changed since, i.e. the cost every metadata provider pays each time it
+ * looks up its governors.
+ *
+ * @since 2.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class TypeLocationServiceBenchmark extends AbstractProjectBenchmark {
+
+  private TypeLocationServiceImpl typeLocationService;
+
+  @Override
+  protected void setUp() {
+    final SortedSet<FileDetails> sourceFiles = new TreeSet<FileDetails>();
+    final Map<String, DefaultPhysicalTypeMetadata> physicalTypes =
+        new HashMap<String, DefaultPhysicalTypeMetadata>();
+    for (int i = 0; i < project.getEntityCount(); i++) {
+      final File sourceFile = new File(project.getCanonicalPaths().get(i));
+      sourceFiles.add(new FileDetails(sourceFile, sourceFile.lastModified()));
+      physicalTypes.put(project.getPhysicalTypeIds().get(i), project.getPhysicalTypeMetadata(i));
+    }
+
+    final Map<String, Object> projectOperations = new HashMap<String, Object>();
+    projectOperations.put("getModuleForFileIdentifier", project.getPom());
+    projectOperations.put("getPoms", Collections.singleton(project.getPom()));
+    final Map<String, Object> metadataService = new HashMap<String, Object>();
+    final Services.Answer physicalTypeAnswer = new Services.Answer() {
+      public Object answer(final Object[] args) {
+        return physicalTypes.get(args[0]);
+      }
+    };
+    metadataService.put("evictAndGet", physicalTypeAnswer);
+    metadataService.put("get", physicalTypeAnswer);
+    final Map<String, Object> fileManager = new HashMap<String, Object>();
+    fileManager.put("findMatchingAntPath", sourceFiles);
+
+    // Parses the types ahead when discovering them in parallel
+    final JavaParserTypeParsingService typeParsingService = new JavaParserTypeParsingService();
+    Services.inject(typeParsingService, "metadataService",
+        Services.stub(MetadataService.class, Collections.<String, Object> emptyMap()));
+    Services.inject(typeParsingService, "typeLocationService",
+        Services.stub(TypeLocationService.class, Collections.<String, Object> emptyMap()));
+
+    typeLocationService = new TypeLocationServiceImpl();
+    Services.inject(typeLocationService, "fileManager",
+        Services.stub(FileManager.class, fileManager));
+    Services.inject(typeLocationService, "fileMonitorService",
+        Services.stub(FileMonitorService.class, Collections.<String, Object> emptyMap()));
+    Services.inject(typeLocationService, "metadataService",
+        Services.stub(MetadataService.class, metadataService));
+    Services.inject(typeLocationService, "projectOperations",
+        Services.stub(ProjectOperations.class, projectOperations));
+    Services.inject(typeLocationService, "typeCache", new TypeCacheImpl());
+    Services.inject(typeLocationService, "typeParsingService", typeParsingService);
+    Services.inject(typeLocationService, "typeResolutionService",
+        new JavaParserTypeResolutionService());
+
+    // Discover the project's types
+    final Set<JavaType> entities =
+        typeLocationService.findTypesWithAnnotation(RooJavaType.ROO_JAVA_BEAN);
+    Validate.validState(entities.size() == project.getEntityCount(),
+        "Expected %d types but located %d", project.getEntityCount(), entities.size());
+  }
+
+  /**
+   * Finds the entities with an annotation that half of them have.
+   */
+  @Benchmark
+  public Set<JavaType> findTypesWithAnnotation() {
+    return typeLocationService.findTypesWithAnnotation(RooJavaType.ROO_JPA_ENTITY);
+  }
+
+  /**
+   * Finds the entities with either of two annotations.
+   */
+  @Benchmark
+  public Set<JavaType> findTypesWithEitherAnnotation() {
+    return typeLocationService.findTypesWithAnnotation(RooJavaType.ROO_JAVA_BEAN,
+        RooJavaType.ROO_JPA_ENTITY);
+  }
+
+  /**
+   * Finds the entities with both of two annotations.
+   */
+  @Benchmark
+  public Set<JavaType> findTypesWithAllAnnotations() {
+    return typeLocationService.findTypesWithAllAnnotations(RooJavaType.ROO_JAVA_BEAN,
+        RooJavaType.ROO_JPA_ENTITY);
+  }
+}
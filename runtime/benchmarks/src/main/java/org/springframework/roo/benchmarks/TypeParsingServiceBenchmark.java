@@ -0,0 +1,50 @@
+package org.springframework.roo.benchmarks;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.roo.classpath.TypeLocationService;
+import org.springframework.roo.classpath.antlrjavaparser.JavaParserTypeParsingService;
+import org.springframework.roo.classpath.details.ClassOrInterfaceTypeDetails;
+import org.springframework.roo.metadata.MetadataService;
+
+/**
+ * Benchmarks {@link JavaParserTypeParsingService#getTypeFromString}, which
+ * parses each Java source file that the shell discovers or sees change.
+ *
+ * @since 2.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class TypeParsingServiceBenchmark extends AbstractProjectBenchmark {
+
+  private JavaParserTypeParsingService typeParsingService;
+
+  @Override
+  protected void setUp() {
+    typeParsingService = new JavaParserTypeParsingService();
+    // Only consulted for superclasses, which the entities don't have
+    Services.inject(typeParsingService, "metadataService",
+        Services.stub(MetadataService.class, Collections.<String, Object> emptyMap()));
+    Services.inject(typeParsingService, "typeLocationService",
+        Services.stub(TypeLocationService.class, Collections.<String, Object> emptyMap()));
+  }
+
+  @Benchmark
+  public ClassOrInterfaceTypeDetails getTypeFromString() {
+    final int index = nextIndex();
+    final ClassOrInterfaceTypeDetails type = project.getTypes().get(index);
+    return typeParsingService.getTypeFromString(project.getSources().get(index),
+        type.getDeclaredByMetadataId(), type.getName());
+  }
+}
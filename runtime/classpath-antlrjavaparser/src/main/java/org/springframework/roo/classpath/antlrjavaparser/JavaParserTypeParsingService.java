@@ -10,6 +10,8 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -39,6 +41,7 @@ import org.springframework.roo.metadata.MetadataService;
 import org.springframework.roo.model.JavaPackage;
 import org.springframework.roo.model.JavaSymbolName;
 import org.springframework.roo.model.JavaType;
+import org.springframework.roo.process.manager.FileManager;
 
 import com.github.antlrjavaparser.ASTHelper;
 import com.github.antlrjavaparser.JavaParser;
@@ -62,11 +65,32 @@ import com.github.antlrjavaparser.api.type.ClassOrInterfaceType;
 @Service
 public class JavaParserTypeParsingService implements TypeParsingService {
 
+  @Reference
+  FileManager fileManager;
   @Reference
   MetadataService metadataService;
   @Reference
   TypeLocationService typeLocationService;
 
+  // key: canonical path of a file parsed ahead; removed once requested
+  private final ConcurrentMap<String, ParsedFile> parsedAhead =
+      new ConcurrentHashMap<String, ParsedFile>();
+
+  /**
+   * A compilation unit parsed ahead of its type being requested, along with
+   * the file contents it was parsed from.
+   */
+  private static class ParsedFile {
+
+    private final CompilationUnit compilationUnit;
+    private final String contents;
+
+    ParsedFile(final String contents, final CompilationUnit compilationUnit) {
+      this.compilationUnit = compilationUnit;
+      this.contents = contents;
+    }
+  }
+
   private void addEnumConstant(final List<EnumConstantDeclaration> constants,
       final JavaSymbolName name) {
     // Determine location to insert
@@ -110,15 +134,18 @@ public class JavaParserTypeParsingService implements TypeParsingService {
     Validate.notBlank(fileIdentifier, "Compilation unit path required");
     Validate.notBlank(declaredByMetadataId, "Declaring metadata ID required");
     Validate.notNull(typeName, "Java type to locate required");
-    final File file = new File(fileIdentifier);
     String typeContents = "";
     try {
-      typeContents = FileUtils.readFileToString(file);
+      typeContents = readContents(fileIdentifier);
     } catch (final IOException ignored) {
     }
     if (StringUtils.isBlank(typeContents)) {
       return null;
     }
+    final ParsedFile parsedFile = parsedAhead.remove(fileIdentifier);
+    if (parsedFile != null && parsedFile.contents.equals(typeContents)) {
+      return getTypeFromCompilationUnit(parsedFile.compilationUnit, declaredByMetadataId, typeName);
+    }
     return getTypeFromString(typeContents, declaredByMetadataId, typeName);
   }
 
@@ -134,14 +161,7 @@ public class JavaParserTypeParsingService implements TypeParsingService {
     try {
       final CompilationUnit compilationUnit =
           JavaParser.parse(new ByteArrayInputStream(fileContents.getBytes()));
-      final TypeDeclaration typeDeclaration =
-          JavaParserUtils.locateTypeDeclaration(compilationUnit, typeName);
-      if (typeDeclaration == null) {
-        return null;
-      }
-      return JavaParserClassOrInterfaceTypeDetailsBuilder.getInstance(compilationUnit, null,
-          typeDeclaration, declaredByMetadataId, typeName, metadataService, typeLocationService)
-          .build();
+      return getTypeFromCompilationUnit(compilationUnit, declaredByMetadataId, typeName);
     } catch (final IOException e) {
       throw new IllegalStateException(e);
     } catch (final ParseException e) {
@@ -149,6 +169,68 @@ public class JavaParserTypeParsingService implements TypeParsingService {
     }
   }
 
+  private ClassOrInterfaceTypeDetails getTypeFromCompilationUnit(
+      final CompilationUnit compilationUnit, final String declaredByMetadataId,
+      final JavaType typeName) {
+    final TypeDeclaration typeDeclaration =
+        JavaParserUtils.locateTypeDeclaration(compilationUnit, typeName);
+    if (typeDeclaration == null) {
+      return null;
+    }
+    return JavaParserClassOrInterfaceTypeDetailsBuilder.getInstance(compilationUnit, null,
+        typeDeclaration, declaredByMetadataId, typeName, metadataService, typeLocationService)
+        .build();
+  }
+
+  @Override
+  public JavaPackage parseAhead(final String fileIdentifier) {
+    Validate.notBlank(fileIdentifier, "Compilation unit path required");
+    parsedAhead.remove(fileIdentifier);
+    final String typeContents;
+    try {
+      typeContents = readContents(fileIdentifier);
+    } catch (final IOException e) {
+      return null;
+    }
+    if (StringUtils.isBlank(typeContents)) {
+      return null;
+    }
+    final CompilationUnit compilationUnit;
+    try {
+      compilationUnit = JavaParser.parse(new ByteArrayInputStream(typeContents.getBytes()));
+    } catch (final IOException e) {
+      return null;
+    } catch (final ParseException e) {
+      // Reported when the type is requested
+      return null;
+    }
+    parsedAhead.put(fileIdentifier, new ParsedFile(typeContents, compilationUnit));
+    if (compilationUnit.getPackage() == null) {
+      return null;
+    }
+    return new JavaPackage(compilationUnit.getPackage().getName().toString());
+  }
+
+  /**
+   * Reads the given compilation unit via the {@link FileManager}, so that a
+   * file that is read again without having changed, e.g. once parsed ahead
+   * and once requested, is only read from disk once.
+   *
+   * @param fileIdentifier the compilation unit's canonical path (required)
+   * @return the file's contents (empty if the file does not exist)
+   * @throws IOException if the file can't be read
+   */
+  private String readContents(final String fileIdentifier) throws IOException {
+    if (fileManager == null) {
+      return FileUtils.readFileToString(new File(fileIdentifier));
+    }
+    try {
+      return StringUtils.defaultString(fileManager.readTextFile(fileIdentifier));
+    } catch (final IllegalStateException e) {
+      throw new IOException(e);
+    }
+  }
+
   /**
    * Appends the presented class to the end of the presented body
    * declarations. The body declarations appear within the presented
@@ -466,10 +548,9 @@ public class JavaParserTypeParsingService implements TypeParsingService {
     Validate.notNull(cid, "Type details required");
 
     // Load original compilation unit from file
-    final File file = new File(fileIdentifier);
     String fileContents = "";
     try {
-      fileContents = FileUtils.readFileToString(file);
+      fileContents = readContents(fileIdentifier);
     } catch (final IOException ignored) {
     }
     if (StringUtils.isBlank(fileContents)) {
@@ -33,6 +33,7 @@ public class MetadataCommands implements CommandMarker {
 
   private static final String METADATA_FOR_MODULE_COMMAND = "metadata for module";
   private static final String METADATA_CACHE_COMMAND = "metadata cache";
+  private static final String METADATA_CONCURRENCY_COMMAND = "metadata concurrency";
   private static final String METADATA_FOR_ID_COMMAND = "metadata for id";
   private static final String METADATA_FOR_TYPE_COMMAND = "metadata for type";
   private static final String METADATA_STATUS_COMMAND = "metadata status";
@@ -52,8 +53,8 @@ public class MetadataCommands implements CommandMarker {
   private TypeLocationService typeLocationService;
 
   @CliAvailabilityIndicator({METADATA_FOR_MODULE_COMMAND, METADATA_CACHE_COMMAND,
-      METADATA_FOR_ID_COMMAND, METADATA_FOR_TYPE_COMMAND, METADATA_STATUS_COMMAND,
-      METADATA_TRACE_COMMAND})
+      METADATA_CONCURRENCY_COMMAND, METADATA_FOR_ID_COMMAND, METADATA_FOR_TYPE_COMMAND,
+      METADATA_STATUS_COMMAND, METADATA_TRACE_COMMAND})
   public boolean isModuleMetadataAvailable() {
     return projectOperations.getFocusedModule() != null;
   }
@@ -68,6 +69,18 @@ public class MetadataCommands implements CommandMarker {
     return metadataTimings();
   }
 
+  @CliCommand(value = METADATA_CONCURRENCY_COMMAND,
+      help = "Sets how many metadata items may be produced in parallel.")
+  public String metadataConcurrency(@CliOption(key = {"", "level"}, mandatory = true,
+      help = "The maximum number of metadata items produced in parallel (1=single-threaded, "
+          + "the default). Only use values greater than 1 if every installed add-on supports "
+          + "concurrent metadata generation.") final int level) {
+    Validate.isTrue(level >= 1, "Concurrency level must be 1 or greater");
+    metadataService.setConcurrencyLevel(level);
+    // Show them that the change has taken place
+    return metadataTimings();
+  }
+
   @CliCommand(value = METADATA_FOR_ID_COMMAND,
       help = "Shows detailed information about the metadata item.")
   public String metadataForId(@CliOption(key = {"", "metadataId"}, mandatory = true,
@@ -168,7 +181,9 @@ public class MetadataCommands implements CommandMarker {
     for (final MetadataTimingStatistic stat : metadataLogger.getTimings()) {
       sb.append(stat.toString()).append(LINE_SEPARATOR);
     }
-    sb.append(metadataService.toString());
+    sb.append(metadataService.toString()).append(LINE_SEPARATOR);
+    sb.append(metadataDependencyRegistry.toString()).append(LINE_SEPARATOR);
+    sb.append(memberDetailsScanner.toString());
     return sb.toString();
   }
 
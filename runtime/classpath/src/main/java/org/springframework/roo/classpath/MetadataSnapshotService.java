@@ -0,0 +1,61 @@
+package org.springframework.roo.classpath;
+
+/**
+ * Remembers, across shell restarts, which ITDs were last written from which
+ * inputs, so that metadata providers can skip re-composing and re-comparing
+ * an ITD whose inputs have not changed since it was written.
+ * <p>
+ * A metadata item's inputs are the version of its provider, plus its
+ * governor's source file and the source files and POMs reachable through its
+ * upstream dependencies in the
+ * {@link org.springframework.roo.metadata.MetadataDependencyRegistry} when
+ * the ITD was written. As the input files are remembered, an ITD can be
+ * checked before its metadata is built. The snapshot is loaded lazily on
+ * first use and written when the service is deactivated (i.e. when the shell
+ * shuts down).
+ *
+ * @since 2.0
+ */
+public interface MetadataSnapshotService {
+
+  /**
+   * Indicates whether the given ITD was last written by the given version of
+   * its provider, from input files that have not changed since, and has not
+   * been modified on disk since. An ITD recorded during this session only
+   * counts as unchanged once the file on disk has the recorded contents.
+   *
+   * @param metadataIdentificationString the metadata instance (required)
+   * @param providerVersion identifies the code that produces the metadata,
+   *            so that upgraded providers do not reuse stale ITDs (required)
+   * @param itdFilename the canonical path of the ITD (required)
+   * @return <code>false</code> if the ITD needs to be composed again
+   */
+  boolean isUnchanged(String metadataIdentificationString, String providerVersion,
+      String itdFilename);
+
+  /**
+   * Records that the given ITD contents were composed from the current
+   * inputs of the given metadata. Must be called after the metadata has
+   * registered its upstream dependencies. As ITDs are written when the
+   * process manager commits, the entry only becomes persistent if the file on
+   * disk still has these contents when the snapshot is written.
+   *
+   * @param metadataIdentificationString the metadata instance (required)
+   * @param governorPhysicalTypeIdentifier the physical type that governs the
+   *            metadata (required)
+   * @param providerVersion identifies the code that produced the metadata
+   *            (required)
+   * @param itdFilename the canonical path of the ITD (required)
+   * @param itdContents the composed contents of the ITD (required)
+   */
+  void record(String metadataIdentificationString, String governorPhysicalTypeIdentifier,
+      String providerVersion, String itdFilename, String itdContents);
+
+  /**
+   * Forgets any snapshot entry for the given metadata, e.g. because its ITD
+   * has been deleted.
+   *
+   * @param metadataIdentificationString the metadata instance (required)
+   */
+  void remove(String metadataIdentificationString);
+}
@@ -0,0 +1,325 @@
+package org.springframework.roo.classpath;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+import org.apache.felix.scr.annotations.Component;
+import org.apache.felix.scr.annotations.Reference;
+import org.apache.felix.scr.annotations.Service;
+import org.osgi.service.component.ComponentContext;
+import org.springframework.roo.metadata.MetadataDependencyRegistry;
+import org.springframework.roo.metadata.MetadataIdentificationUtils;
+import org.springframework.roo.project.Path;
+import org.springframework.roo.project.PathResolver;
+import org.springframework.roo.project.ProjectMetadata;
+import org.springframework.roo.project.ProjectOperations;
+import org.springframework.roo.project.maven.Pom;
+import org.springframework.roo.support.logging.HandlerUtils;
+
+/**
+ * Default implementation of {@link MetadataSnapshotService}, which stores the
+ * snapshot as a properties file in the project's <code>.roo</code> directory.
+ * <p>
+ * Each entry maps a metadata ID to the fingerprint of the inputs its ITD was
+ * written from, the ITD's length and modification time when the snapshot was
+ * written, and the input files themselves, so that the fingerprint can be
+ * computed again before the metadata is built. Source file digests are cached
+ * against their length and modification time, so computing a fingerprint
+ * normally only needs to stat the input files.
+ *
+ * @since 2.0
+ */
+@Component
+@Service
+public class MetadataSnapshotServiceImpl implements MetadataSnapshotService {
+
+  /**
+   * The digest of a file, valid for as long as its length and modification
+   * time are unchanged.
+   */
+  private static class FileDigest {
+    private final String digest;
+    private final long lastModified;
+    private final long length;
+
+    FileDigest(final File file, final String digest) {
+      this.digest = digest;
+      lastModified = file.lastModified();
+      length = file.length();
+    }
+
+    boolean isCurrent(final File file) {
+      return file.length() == length && file.lastModified() == lastModified;
+    }
+  }
+
+  /**
+   * An ITD composed during this session, which may not have been committed
+   * to disk yet.
+   */
+  private static class PendingEntry {
+    private final String contentsDigest;
+    private final String fingerprint;
+    private final String inputFiles;
+    private final String itdFilename;
+
+    PendingEntry(final String fingerprint, final String inputFiles, final String itdFilename,
+        final String contentsDigest) {
+      this.contentsDigest = contentsDigest;
+      this.fingerprint = fingerprint;
+      this.inputFiles = inputFiles;
+      this.itdFilename = itdFilename;
+    }
+  }
+
+  private static final Logger LOGGER = HandlerUtils.getLogger(MetadataSnapshotServiceImpl.class);
+  private static final String SEPARATOR = ",";
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final String SNAPSHOT_FILE_NAME = "metadata.snapshot";
+
+  @Reference
+  private MetadataDependencyRegistry metadataDependencyRegistry;
+  @Reference
+  private PathResolver pathResolver;
+  @Reference
+  private ProjectOperations projectOperations;
+  @Reference
+  private TypeLocationService typeLocationService;
+
+  private final Map<String, FileDigest> fileDigests = new HashMap<String, FileDigest>();
+  private final Object mutex = new Object();
+  private final Map<String, PendingEntry> pendingEntries = new HashMap<String, PendingEntry>();
+  private Properties snapshot;
+  private File snapshotFile;
+
+  protected void deactivate(final ComponentContext context) {
+    synchronized (mutex) {
+      if (snapshot == null || snapshotFile == null || !snapshotFile.getParentFile().isDirectory()) {
+        return;
+      }
+      // Only keep ITDs whose composed contents actually reached the disk
+      for (final Map.Entry<String, PendingEntry> pending : pendingEntries.entrySet()) {
+        final PendingEntry entry = pending.getValue();
+        final File itdFile = new File(entry.itdFilename);
+        if (itdFile.isFile() && entry.contentsDigest.equals(getDigest(itdFile))) {
+          snapshot.setProperty(pending.getKey(),
+              toEntry(entry.fingerprint, itdFile, entry.inputFiles));
+        } else {
+          snapshot.remove(pending.getKey());
+        }
+      }
+      pendingEntries.clear();
+      OutputStream outputStream = null;
+      try {
+        outputStream = new FileOutputStream(snapshotFile);
+        snapshot.store(outputStream, "Spring Roo metadata snapshot; safe to delete");
+      } catch (final IOException e) {
+        LOGGER.log(Level.FINE, "Unable to write metadata snapshot " + snapshotFile, e);
+      } finally {
+        IOUtils.closeQuietly(outputStream);
+      }
+      snapshot = null;
+    }
+  }
+
+  public boolean isUnchanged(final String metadataIdentificationString,
+      final String providerVersion, final String itdFilename) {
+    Validate.notBlank(providerVersion, "Provider version required");
+    final Properties snapshot = getSnapshot();
+    final PendingEntry pending;
+    final String entry;
+    synchronized (mutex) {
+      pending = pendingEntries.get(metadataIdentificationString);
+      entry = snapshot.getProperty(metadataIdentificationString);
+    }
+    final File itdFile = new File(itdFilename);
+    if (pending != null) {
+      // Until the ITD is committed, or if it's been edited since, the file
+      // on disk doesn't have the recorded contents
+      return pending.itdFilename.equals(itdFilename)
+          && pending.fingerprint.equals(getFingerprint(providerVersion, pending.inputFiles))
+          && itdFile.isFile() && pending.contentsDigest.equals(getDigest(itdFile));
+    }
+    if (entry == null) {
+      return false;
+    }
+    final String[] fields = entry.split(SEPARATOR, 4);
+    return fields.length == 4
+        && entry.equals(toEntry(getFingerprint(providerVersion, fields[3]), itdFile, fields[3]));
+  }
+
+  public void record(final String metadataIdentificationString,
+      final String governorPhysicalTypeIdentifier, final String providerVersion,
+      final String itdFilename, final String itdContents) {
+    Validate.notBlank(metadataIdentificationString, "Metadata identification string required");
+    Validate.notBlank(governorPhysicalTypeIdentifier, "Governor physical type identifier required");
+    Validate.notBlank(providerVersion, "Provider version required");
+    Validate.notNull(itdContents, "ITD contents required");
+
+    // Sorted so that the fingerprint doesn't depend on registration order
+    final Set<String> inputFiles = new TreeSet<String>();
+    addInputFile(inputFiles, governorPhysicalTypeIdentifier);
+    final Set<String> upstreams = new HashSet<String>();
+    collectUpstreams(upstreams, metadataIdentificationString);
+    for (final String upstream : upstreams) {
+      addInputFile(inputFiles, upstream);
+    }
+    final String joinedInputFiles = StringUtils.join(inputFiles, File.pathSeparator);
+
+    // Digested as the file manager writes it, to compare with the file
+    final MessageDigest messageDigest = newMessageDigest();
+    messageDigest.update(itdContents.getBytes());
+    final PendingEntry entry =
+        new PendingEntry(getFingerprint(providerVersion, joinedInputFiles), joinedInputFiles,
+            itdFilename, toHex(messageDigest.digest()));
+    getSnapshot();
+    synchronized (mutex) {
+      pendingEntries.put(metadataIdentificationString, entry);
+    }
+  }
+
+  public void remove(final String metadataIdentificationString) {
+    final Properties snapshot = getSnapshot();
+    synchronized (mutex) {
+      pendingEntries.remove(metadataIdentificationString);
+      snapshot.remove(metadataIdentificationString);
+    }
+  }
+
+  private void addInputFile(final Set<String> inputFiles, final String metadataId) {
+    if (!MetadataIdentificationUtils.isIdentifyingInstance(metadataId)) {
+      return;
+    }
+    String canonicalPath = null;
+    if (PhysicalTypeIdentifier.isValid(metadataId)) {
+      canonicalPath = typeLocationService.getPhysicalTypeCanonicalPath(metadataId);
+    } else if (ProjectMetadata.isValid(metadataId)) {
+      final Pom pom =
+          projectOperations.getPomFromModuleName(ProjectMetadata.getModuleName(metadataId));
+      canonicalPath = pom == null ? null : pom.getPath();
+    }
+    if (canonicalPath != null) {
+      inputFiles.add(canonicalPath);
+    }
+  }
+
+  private void collectUpstreams(final Set<String> upstreams, final String downstream) {
+    for (final String upstream : metadataDependencyRegistry.getUpstream(downstream)) {
+      if (upstreams.add(upstream)) {
+        collectUpstreams(upstreams, upstream);
+      }
+    }
+  }
+
+  private String getDigest(final File file) {
+    if (!file.isFile()) {
+      return "";
+    }
+    synchronized (fileDigests) {
+      final FileDigest existing = fileDigests.get(file.getPath());
+      if (existing != null && existing.isCurrent(file)) {
+        return existing.digest;
+      }
+    }
+    InputStream inputStream = null;
+    try {
+      inputStream = new FileInputStream(file);
+      final MessageDigest messageDigest = newMessageDigest();
+      final byte[] buffer = new byte[8192];
+      int read;
+      while ((read = inputStream.read(buffer)) != -1) {
+        messageDigest.update(buffer, 0, read);
+      }
+      final FileDigest fileDigest = new FileDigest(file, toHex(messageDigest.digest()));
+      synchronized (fileDigests) {
+        fileDigests.put(file.getPath(), fileDigest);
+      }
+      return fileDigest.digest;
+    } catch (final IOException e) {
+      // Forces the ITD to be composed again
+      return String.valueOf(System.nanoTime());
+    } finally {
+      IOUtils.closeQuietly(inputStream);
+    }
+  }
+
+  /**
+   * Computes a fingerprint of the given provider version and the current
+   * contents of the given input files
+   *
+   * @param inputFiles the canonical paths of the input files, separated by
+   *            {@link File#pathSeparator}
+   */
+  private String getFingerprint(final String providerVersion, final String inputFiles) {
+    final MessageDigest messageDigest = newMessageDigest();
+    messageDigest.update(providerVersion.getBytes(UTF_8));
+    for (final String inputFile : StringUtils.split(inputFiles, File.pathSeparator)) {
+      messageDigest.update(inputFile.getBytes(UTF_8));
+      messageDigest.update(getDigest(new File(inputFile)).getBytes(UTF_8));
+    }
+    return toHex(messageDigest.digest());
+  }
+
+  private Properties getSnapshot() {
+    synchronized (mutex) {
+      if (snapshot == null) {
+        snapshot = new Properties();
+        snapshotFile =
+            new File(pathResolver.getIdentifier("", Path.ROOT_ROO_CONFIG, SNAPSHOT_FILE_NAME));
+        if (snapshotFile.isFile()) {
+          InputStream inputStream = null;
+          try {
+            inputStream = FileUtils.openInputStream(snapshotFile);
+            snapshot.load(inputStream);
+          } catch (final IOException e) {
+            // A corrupt snapshot only means a cold start
+            snapshot.clear();
+          } catch (final IllegalArgumentException e) {
+            // Thrown for a malformed Unicode escape
+            snapshot.clear();
+          } finally {
+            IOUtils.closeQuietly(inputStream);
+          }
+        }
+      }
+      return snapshot;
+    }
+  }
+
+  private MessageDigest newMessageDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-1");
+    } catch (final NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private String toEntry(final String fingerprint, final File itdFile, final String inputFiles) {
+    return fingerprint + SEPARATOR + itdFile.length() + SEPARATOR + itdFile.lastModified()
+        + SEPARATOR + inputFiles;
+  }
+
+  private String toHex(final byte[] bytes) {
+    return String.format("%040x", new BigInteger(1, bytes));
+  }
+}
@@ -24,5 +24,7 @@ public interface TypeCache {
 
   Set<String> getTypeNamesForModuleFilePath(String moduleFilePath);
 
+  boolean isEmpty();
+
   void removeType(String typeIdentifier);
 }
@@ -102,6 +102,10 @@ public class TypeCacheImpl implements TypeCache {
     return simpleTypeNameTypesMap.get(simpleTypeName);
   }
 
+  public boolean isEmpty() {
+    return midToTypeDetailsMap.isEmpty();
+  }
+
   public void removeType(final String typeIdentifier) {
     Validate.notBlank(typeIdentifier, "Physical type identifier required");
     final ClassOrInterfaceTypeDetails cid = midToTypeDetailsMap.get(typeIdentifier);
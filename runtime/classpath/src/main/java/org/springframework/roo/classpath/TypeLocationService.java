@@ -103,6 +103,18 @@ public interface TypeLocationService {
    */
   Set<JavaType> findTypesWithAnnotation(List<JavaType> annotationsToDetect);
 
+  /**
+   * Returns a set of {@link JavaType}s that possess all of the specified
+   * annotations, as opposed to {@link #findTypesWithAnnotation(JavaType...)}
+   * which returns those having any of them.
+   * 
+   * @param annotationsToDetect the annotations (as a vararg) that each type
+   *            must have (at least one required)
+   * @return a set of types that have all the specified annotations.
+   * @since 2.0
+   */
+  Set<JavaType> findTypesWithAllAnnotations(JavaType... annotationsToDetect);
+
   /**
    * Returns a list with all JavaPackages for a given module.
    * 
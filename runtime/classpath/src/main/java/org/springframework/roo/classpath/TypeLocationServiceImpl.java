@@ -2,6 +2,7 @@ package org.springframework.roo.classpath;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.math.NumberUtils;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Service;
 import org.osgi.framework.BundleContext;
@@ -42,6 +43,15 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 /**
@@ -49,6 +59,12 @@ import java.util.logging.Logger;
  * <p>
  * For performance reasons automatically caches the queries. The cache is
  * invalidated on changes to the file system.
+ * <p>
+ * When several types need caching at once (e.g. when the project's types are
+ * first discovered), their source files are parsed in parallel by up to
+ * <code>roo.type.discovery.parallelism</code> threads (by default, one per
+ * processor) before the types are cached one at a time. These threads are
+ * shared by every such batch, and stop once they have been idle for a while.
  * 
  * @author Alan Stewart
  * @author Ben Alex
@@ -73,6 +89,13 @@ public class TypeLocationServiceImpl implements TypeLocationService {
     context = cContext.getBundleContext();
   }
 
+  protected synchronized void deactivate(final ComponentContext cContext) {
+    if (discoveryExecutor != null) {
+      discoveryExecutor.shutdownNow();
+      discoveryExecutor = null;
+    }
+  }
+
   private static final Comparator<String> LENGTH_COMPARATOR = new Comparator<String>() {
     public int compare(final String key1, final String key2) {
       return Integer.valueOf(key1.length()).compareTo(key2.length());
@@ -81,6 +104,33 @@ public class TypeLocationServiceImpl implements TypeLocationService {
 
   private static final String JAVA_FILES_ANT_PATH = "**" + File.separatorChar + "*.java";
 
+  static final String PARALLELISM_PROPERTY = "roo.type.discovery.parallelism";
+
+  private static final long DISCOVERY_THREAD_KEEP_ALIVE_SECONDS = 60;
+
+  private static final ThreadFactory DISCOVERY_THREAD_FACTORY = new ThreadFactory() {
+    private final AtomicInteger threadCount = new AtomicInteger();
+
+    public Thread newThread(final Runnable runnable) {
+      final Thread thread =
+          new Thread(runnable, "Roo type discovery " + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  };
+
+  /**
+   * Returns the number of threads to parse source files with.
+   * 
+   * @param parallelism the configured number of threads (can be blank)
+   * @return at least one; the number of available processors if none or an
+   *         invalid number is configured
+   */
+  static int getDiscoveryParallelism(final String parallelism) {
+    return Math.max(1,
+        NumberUtils.toInt(StringUtils.trim(parallelism), Runtime.getRuntime().availableProcessors()));
+  }
+
   /**
    * Returns all packages leading up to the given package, e.g. if the given
    * package is "com.foo.bar", returns ["com", "com.foo", "com.foo.bar"].
@@ -154,8 +204,12 @@ public class TypeLocationServiceImpl implements TypeLocationService {
   private MetadataService metadataService;
   private ProjectOperations projectOperations;
   private TypeCache typeCache;
+  private TypeParsingService typeParsingService;
   private TypeResolutionService typeResolutionService;
 
+  private final int discoveryParallelism =
+      getDiscoveryParallelism(System.getProperty(PARALLELISM_PROPERTY));
+  private ExecutorService discoveryExecutor;
   private final Map<JavaType, Set<String>> annotationToMidMap =
       new HashMap<JavaType, Set<String>>();
   private final Map<String, Set<String>> changeMap = new HashMap<String, Set<String>>();
@@ -165,16 +219,24 @@ public class TypeLocationServiceImpl implements TypeLocationService {
   private final Map<Object, Set<String>> tagToMidMap = new HashMap<Object, Set<String>>();
   private final Map<String, Set<JavaType>> typeAnnotationMap = new HashMap<String, Set<JavaType>>();
 
-  private void cacheType(final String fileCanonicalPath) {
+  /**
+   * Caches the type in the given file.
+   * 
+   * @param fileCanonicalPath the file's canonical path (required)
+   * @param javaPackage the file's package if already known, otherwise
+   *            <code>null</code>
+   */
+  private void cacheType(final String fileCanonicalPath, final JavaPackage javaPackage) {
     Validate.notBlank(fileCanonicalPath, "File canonical path required");
     if (doesPathIndicateJavaType(fileCanonicalPath)) {
-      final String id = getPhysicalTypeIdentifier(fileCanonicalPath);
+      final String id = getPhysicalTypeIdentifier(fileCanonicalPath, javaPackage);
       if (id != null && PhysicalTypeIdentifier.isValid(id)) {
         // Change to Java, so drop the cache
         final ClassOrInterfaceTypeDetails cid = lookupClassOrInterfaceTypeDetails(id);
         if (cid == null) {
           if (!getFileManager().exists(fileCanonicalPath)) {
             getTypeCache().removeType(id);
+            removeFromAttributeCache(id);
             final JavaType type = getTypeCache().getTypeDetails(id).getName();
             updateChanges(type.getFullyQualifiedTypeName(), true);
           }
@@ -187,6 +249,35 @@ public class TypeLocationServiceImpl implements TypeLocationService {
     }
   }
 
+  /**
+   * Caches the types in the given files. If more than one of them is a Java
+   * source file and more than one thread is allowed, the files are first
+   * parsed in parallel, after which their types are cached on this thread
+   * as usual, as neither the {@link TypeCache} nor this class's indexes are
+   * thread-safe.
+   * 
+   * @param fileCanonicalPaths the files' canonical paths (required)
+   * @return the number of Java source files among them
+   */
+  private int cacheTypes(final Collection<String> fileCanonicalPaths) {
+    final List<String> javaFiles = new ArrayList<String>();
+    for (final String fileCanonicalPath : fileCanonicalPaths) {
+      if (doesPathIndicateJavaType(fileCanonicalPath)) {
+        javaFiles.add(fileCanonicalPath);
+      }
+    }
+    final Map<String, JavaPackage> javaPackages;
+    if (discoveryParallelism > 1 && javaFiles.size() > 1 && getTypeParsingService() != null) {
+      javaPackages = parseAhead(javaFiles);
+    } else {
+      javaPackages = Collections.emptyMap();
+    }
+    for (final String javaFile : javaFiles) {
+      cacheType(javaFile, javaPackages.get(javaFile));
+    }
+    return javaFiles.size();
+  }
+
   private Set<String> discoverTypes() {
     // Retrieve a list of paths that have been discovered or modified since
     // the last invocation by this class
@@ -256,6 +347,33 @@ public class TypeLocationServiceImpl implements TypeLocationService {
     return Collections.unmodifiableSet(types);
   }
 
+  public Set<JavaType> findTypesWithAllAnnotations(final JavaType... annotationsToDetect) {
+    Validate.notEmpty(annotationsToDetect, "Annotations to detect required");
+    updateTypeCache();
+
+    // Probe the other annotations' indexes for each type having the rarest one
+    Set<String> candidateMids = null;
+    for (final JavaType annotationType : annotationsToDetect) {
+      final Set<String> mids = annotationToMidMap.get(annotationType);
+      if (mids == null || mids.isEmpty()) {
+        return Collections.emptySet();
+      }
+      if (candidateMids == null || mids.size() < candidateMids.size()) {
+        candidateMids = mids;
+      }
+    }
+    final Set<JavaType> types = new LinkedHashSet<JavaType>();
+    for (final String candidateMid : candidateMids) {
+      if (hasAllAnnotations(candidateMid, annotationsToDetect)) {
+        final ClassOrInterfaceTypeDetails located = getTypeCache().getTypeDetails(candidateMid);
+        if (located != null) {
+          types.add(located.getName());
+        }
+      }
+    }
+    return Collections.unmodifiableSet(types);
+  }
+
   public List<JavaPackage> getPackagesForModule(Pom module) {
     List<JavaPackage> packages = new ArrayList<JavaPackage>();
     for (JavaType type : getTypesForModule(module)) {
@@ -328,6 +446,11 @@ public class TypeLocationServiceImpl implements TypeLocationService {
   }
 
   public String getPhysicalTypeIdentifier(final String fileCanonicalPath) {
+    return getPhysicalTypeIdentifier(fileCanonicalPath, null);
+  }
+
+  private String getPhysicalTypeIdentifier(final String fileCanonicalPath,
+      final JavaPackage knownPackage) {
     Validate.notBlank(fileCanonicalPath, "File canonical path required");
     if (!doesPathIndicateJavaType(fileCanonicalPath)) {
       return null;
@@ -340,7 +463,9 @@ public class TypeLocationServiceImpl implements TypeLocationService {
     final String simpleTypeName =
         StringUtils.replace(fileCanonicalPath, typeDirectory + File.separator, "", 1).replace(
             ".java", "");
-    final JavaPackage javaPackage = getTypeResolutionService().getPackage(fileCanonicalPath);
+    final JavaPackage javaPackage =
+        knownPackage == null ? getTypeResolutionService().getPackage(fileCanonicalPath)
+            : knownPackage;
     if (javaPackage == null) {
       return null;
     }
@@ -558,17 +683,96 @@ public class TypeLocationServiceImpl implements TypeLocationService {
   }
 
   private void initTypeMap() {
+    final long startTime = System.nanoTime();
+    final List<String> sourceFiles = new ArrayList<String>();
     for (final Pom pom : getProjectOperations().getPoms()) {
       for (final PhysicalPath path : pom.getPhysicalPaths()) {
         if (path.isSource()) {
           final String allJavaFiles =
               FileUtils.ensureTrailingSeparator(path.getLocationPath()) + JAVA_FILES_ANT_PATH;
           for (final FileDetails file : getFileManager().findMatchingAntPath(allJavaFiles)) {
-            cacheType(file.getCanonicalPath());
+            sourceFiles.add(file.getCanonicalPath());
           }
         }
       }
     }
+    final int fileCount = cacheTypes(sourceFiles);
+    final long elapsedMillis =
+        Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+    if (fileCount > 0) {
+      LOGGER.info(String.format("Parsed %d Java source files in %d ms (%d files/s, %d threads)",
+          fileCount, elapsedMillis, fileCount * 1000L / elapsedMillis,
+          Math.min(discoveryParallelism, fileCount)));
+    }
+  }
+
+  /**
+   * Returns the pool of threads that parses source files ahead of their
+   * types being cached, creating it on first use.
+   * 
+   * @return a non-<code>null</code> executor
+   */
+  private synchronized ExecutorService getDiscoveryExecutor() {
+    if (discoveryExecutor == null) {
+      final ThreadPoolExecutor executor =
+          new ThreadPoolExecutor(discoveryParallelism, discoveryParallelism,
+              DISCOVERY_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+              new LinkedBlockingQueue<Runnable>(), DISCOVERY_THREAD_FACTORY);
+      executor.allowCoreThreadTimeOut(true);
+      discoveryExecutor = executor;
+    }
+    return discoveryExecutor;
+  }
+
+  /**
+   * Parses the given files ahead of their types being cached, using the
+   * discovery threads.
+   * 
+   * @param fileCanonicalPaths the files' canonical paths (required)
+   * @return the packages of the files that could be parsed (never
+   *         <code>null</code>)
+   */
+  private Map<String, JavaPackage> parseAhead(final List<String> fileCanonicalPaths) {
+    final TypeParsingService typeParsingService = getTypeParsingService();
+    final Map<String, Future<JavaPackage>> parses =
+        new LinkedHashMap<String, Future<JavaPackage>>();
+    final Map<String, JavaPackage> javaPackages = new HashMap<String, JavaPackage>();
+    final ExecutorService executor = getDiscoveryExecutor();
+    try {
+      for (final String fileCanonicalPath : fileCanonicalPaths) {
+        parses.put(fileCanonicalPath, executor.submit(new Callable<JavaPackage>() {
+          public JavaPackage call() {
+            return typeParsingService.parseAhead(fileCanonicalPath);
+          }
+        }));
+      }
+      for (final Entry<String, Future<JavaPackage>> parse : parses.entrySet()) {
+        try {
+          final JavaPackage javaPackage = parse.getValue().get();
+          if (javaPackage != null) {
+            javaPackages.put(parse.getKey(), javaPackage);
+          }
+        } catch (final ExecutionException e) {
+          // The file will be parsed again when its type is cached
+        }
+      }
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      // Don't leave the shared threads parsing files nobody is waiting for
+      for (final Future<JavaPackage> parse : parses.values()) {
+        parse.cancel(true);
+      }
+    }
+    return javaPackages;
+  }
+
+  private boolean hasAllAnnotations(final String mid, final JavaType... annotationTypes) {
+    for (final JavaType annotationType : annotationTypes) {
+      if (!annotationToMidMap.get(annotationType).contains(mid)) {
+        return false;
+      }
+    }
+    return true;
   }
 
   public boolean isInProject(final JavaType javaType) {
@@ -634,44 +838,60 @@ public class TypeLocationServiceImpl implements TypeLocationService {
     }
   }
 
+  /**
+   * Removes the given type from the annotation and tag indexes.
+   * 
+   * @param mid the type's physical type identifier (required)
+   */
+  private void removeFromAttributeCache(final String mid) {
+    updateIndex(annotationToMidMap, mid, typeAnnotationMap.remove(mid),
+        Collections.<JavaType>emptySet());
+    updateIndex(tagToMidMap, mid, typeCustomDataMap.remove(mid), Collections.<Object>emptySet());
+  }
+
   private void updateAttributeCache(final MemberHoldingTypeDetails cid) {
     Validate.notNull(cid, "Member holding type details required");
-    if (!typeAnnotationMap.containsKey(cid.getDeclaredByMetadataId())) {
-      typeAnnotationMap.put(cid.getDeclaredByMetadataId(), new HashSet<JavaType>());
-    }
-    if (!typeCustomDataMap.containsKey(cid.getDeclaredByMetadataId())) {
-      typeCustomDataMap.put(cid.getDeclaredByMetadataId(), new HashSet<Object>());
-    }
-    final Set<JavaType> previousAnnotations = typeAnnotationMap.get(cid.getDeclaredByMetadataId());
-    for (final JavaType previousAnnotation : previousAnnotations) {
-      final Set<String> midSet = annotationToMidMap.get(previousAnnotation);
-      if (midSet != null) {
-        midSet.remove(cid.getDeclaredByMetadataId());
-      }
-    }
-    previousAnnotations.clear();
+    final String mid = cid.getDeclaredByMetadataId();
+    final Set<JavaType> annotations = new HashSet<JavaType>();
     for (final AnnotationMetadata annotationMetadata : cid.getAnnotations()) {
-      if (!annotationToMidMap.containsKey(annotationMetadata.getAnnotationType())) {
-        annotationToMidMap.put(annotationMetadata.getAnnotationType(), new HashSet<String>());
-      }
-      previousAnnotations.add(annotationMetadata.getAnnotationType());
-      annotationToMidMap.get(annotationMetadata.getAnnotationType()).add(
-          cid.getDeclaredByMetadataId());
+      annotations.add(annotationMetadata.getAnnotationType());
     }
-    final Set<Object> previousCustomDataSet = typeCustomDataMap.get(cid.getDeclaredByMetadataId());
-    for (final Object previousCustomData : previousCustomDataSet) {
-      final Set<String> midSet = tagToMidMap.get(previousCustomData);
-      if (midSet != null) {
-        midSet.remove(cid.getDeclaredByMetadataId());
+    updateIndex(annotationToMidMap, mid, typeAnnotationMap.put(mid, annotations), annotations);
+    final Set<Object> customData = new HashSet<Object>(cid.getCustomData().keySet());
+    updateIndex(tagToMidMap, mid, typeCustomDataMap.put(mid, customData), customData);
+  }
+
+  /**
+   * Updates the given inverted index for a type whose keys (e.g. annotation
+   * types) have changed, touching only the entries of the keys it gained or
+   * lost.
+   * 
+   * @param index maps each key to the IDs of the types having it (required)
+   * @param mid the type's physical type identifier (required)
+   * @param previousKeys the keys the type had (<code>null</code> if none)
+   * @param currentKeys the keys the type has now (required)
+   */
+  static <K> void updateIndex(final Map<K, Set<String>> index, final String mid,
+      final Set<K> previousKeys, final Set<K> currentKeys) {
+    if (previousKeys != null) {
+      for (final K previousKey : previousKeys) {
+        if (!currentKeys.contains(previousKey)) {
+          final Set<String> mids = index.get(previousKey);
+          if (mids != null) {
+            mids.remove(mid);
+          }
+        }
       }
     }
-    previousCustomDataSet.clear();
-    for (final Object customData : cid.getCustomData().keySet()) {
-      if (!tagToMidMap.containsKey(customData)) {
-        tagToMidMap.put(customData, new HashSet<String>());
+    for (final K currentKey : currentKeys) {
+      if (previousKeys == null || !previousKeys.contains(currentKey)) {
+        Set<String> mids = index.get(currentKey);
+        if (mids == null) {
+          mids = new HashSet<String>();
+          index.put(currentKey, mids);
+        }
+        mids.add(mid);
       }
-      previousCustomDataSet.add(customData);
-      tagToMidMap.get(customData).add(cid.getDeclaredByMetadataId());
     }
   }
 
@@ -687,14 +907,12 @@ public class TypeLocationServiceImpl implements TypeLocationService {
   }
 
   private void updateTypeCache() {
-    if (getTypeCache().getAllTypeIdentifiers().isEmpty()) {
+    if (getTypeCache().isEmpty()) {
       initTypeMap();
     }
     discoverTypes();
     // Update the type cache
-    for (final String change : dirtyFiles) {
-      cacheType(change);
-    }
+    cacheTypes(dirtyFiles);
     dirtyFiles.clear();
   }
 
@@ -867,6 +1085,28 @@ public class TypeLocationServiceImpl implements TypeLocationService {
     }
   }
 
+  public TypeParsingService getTypeParsingService() {
+    if (typeParsingService == null) {
+      // Get all Services implement TypeParsingService interface
+      try {
+        ServiceReference<?>[] references =
+            context.getAllServiceReferences(TypeParsingService.class.getName(), null);
+
+        for (ServiceReference<?> ref : references) {
+          return (TypeParsingService) context.getService(ref);
+        }
+
+        return null;
+
+      } catch (InvalidSyntaxException e) {
+        LOGGER.warning("Cannot load TypeParsingService on TypeLocationServiceImpl.");
+        return null;
+      }
+    } else {
+      return typeParsingService;
+    }
+  }
+
   public TypeResolutionService getTypeResolutionService() {
     if (typeResolutionService == null) {
       // Get all Services implement TypeResolutionService interface
@@ -1,6 +1,7 @@
 package org.springframework.roo.classpath;
 
 import org.springframework.roo.classpath.details.ClassOrInterfaceTypeDetails;
+import org.springframework.roo.model.JavaPackage;
 import org.springframework.roo.model.JavaType;
 
 public interface TypeParsingService {
@@ -58,6 +59,23 @@ public interface TypeParsingService {
   ClassOrInterfaceTypeDetails getTypeFromString(String typeContents, String declaredByMetadataId,
       JavaType javaType);
 
+  /**
+   * Parses the type at the passed in type path ahead of it being requested,
+   * so that the next {@link #getTypeAtLocation(String, String, JavaType)} for
+   * that path only has to build its {@link ClassOrInterfaceTypeDetails} (as
+   * long as the file hasn't changed in the meantime). Unlike the other
+   * methods of this service, this method only reads the file, so it may be
+   * invoked from several threads at once, e.g. to parse a project's types in
+   * parallel when they are first discovered.
+   *
+   * @param fileIdentifier the location of the type to be parsed (required)
+   * @return the package declared by the compilation unit, or
+   *         <code>null</code> if it is in the default package or could not
+   *         be parsed
+   * @since 2.0
+   */
+  JavaPackage parseAhead(String fileIdentifier);
+
   /**
    * Returns the compilation unit contents that represents the java file
    * updated with the passed class or interface details. The difference with
@@ -7,12 +7,17 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.logging.Logger;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Service;
 import org.jvnet.inflector.Noun;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.InvalidSyntaxException;
+import org.osgi.framework.ServiceReference;
+import org.osgi.service.component.ComponentContext;
 import org.springframework.roo.classpath.details.ClassOrInterfaceTypeDetails;
 import org.springframework.roo.classpath.details.ConstructorMetadata;
 import org.springframework.roo.classpath.details.FieldMetadata;
@@ -20,7 +25,9 @@ import org.springframework.roo.classpath.details.MemberHoldingTypeDetails;
 import org.springframework.roo.classpath.details.MethodMetadata;
 import org.springframework.roo.classpath.scanner.MemberDetails;
 import org.springframework.roo.classpath.scanner.MemberDetailsBuilder;
+import org.springframework.roo.classpath.scanner.MemberDetailsScanner;
 import org.springframework.roo.model.CustomDataAccessor;
+import org.springframework.roo.support.logging.HandlerUtils;
 
 /**
  * An implementation of {@link CustomDataKeyDecorator}.
@@ -33,10 +40,19 @@ import org.springframework.roo.model.CustomDataAccessor;
 @Service
 public class CustomDataKeyDecoratorImpl implements CustomDataKeyDecorator {
 
+  protected final static Logger LOGGER = HandlerUtils.getLogger(CustomDataKeyDecoratorImpl.class);
+
+  private BundleContext context;
+  private MemberDetailsScanner memberDetailsScanner;
+
   private final Map<String, String> pluralMap = new HashMap<String, String>();
   private final Map<String, Matcher<? extends CustomDataAccessor>> taggerMap =
       new HashMap<String, Matcher<? extends CustomDataAccessor>>();
 
+  protected void activate(final ComponentContext context) {
+    this.context = context.getBundleContext();
+  }
+
   public MemberDetails decorate(final String requestingClass, final MemberDetails memberDetails) {
     final MemberDetailsBuilder memberDetailsBuilder = new MemberDetailsBuilder(memberDetails);
 
@@ -165,11 +181,40 @@ public class CustomDataKeyDecoratorImpl implements CustomDataKeyDecorator {
     return typeTaggers;
   }
 
+  /**
+   * Evicts the cached member details, as they were decorated with the
+   * previous matchers.
+   */
+  private void evictMemberDetails() {
+    final MemberDetailsScanner memberDetailsScanner = getMemberDetailsScanner();
+    if (memberDetailsScanner != null) {
+      memberDetailsScanner.evictAll();
+    }
+  }
+
+  public MemberDetailsScanner getMemberDetailsScanner() {
+    if (memberDetailsScanner == null && context != null) {
+      // Get all Services implement MemberDetailsScanner interface
+      try {
+        ServiceReference<?>[] references =
+            context.getAllServiceReferences(MemberDetailsScanner.class.getName(), null);
+        if (references != null && references.length > 0) {
+          memberDetailsScanner = (MemberDetailsScanner) context.getService(references[0]);
+        }
+
+      } catch (InvalidSyntaxException e) {
+        LOGGER.warning("Cannot load MemberDetailsScanner on CustomDataKeyDecoratorImpl.");
+      }
+    }
+    return memberDetailsScanner;
+  }
+
   public void registerMatcher(final String addingClass,
       final Matcher<? extends CustomDataAccessor> matcher) {
     Validate.notNull(addingClass, "The calling class must be specified");
     Validate.notNull(matcher, "The matcher must be specified");
     taggerMap.put(addingClass + matcher.getCustomDataKey(), matcher);
+    evictMemberDetails();
   }
 
   public void registerMatchers(final Class<?> addingClass,
@@ -197,5 +242,8 @@ public class CustomDataKeyDecoratorImpl implements CustomDataKeyDecorator {
     for (final String taggerKey : toRemove) {
       taggerMap.remove(taggerKey);
     }
+    if (!toRemove.isEmpty()) {
+      evictMemberDetails();
+    }
   }
 }
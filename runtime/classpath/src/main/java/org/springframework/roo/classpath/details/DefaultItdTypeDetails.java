@@ -192,14 +192,18 @@ public class DefaultItdTypeDetails extends AbstractMemberHoldingTypeDetails impl
   @Override
   public int hashCode() {
     if (hashCode == null) {
-      int hash =
-          aspect.hashCode() * governor.getName().hashCode() * governor.getModifier()
-              * governor.getCustomData().hashCode() * PHYSICAL_TYPE_CATEGORY.hashCode()
-              * (privilegedAspect ? 2 : 3);
-      hash *= includeCustomDataHash(declaredConstructors);
-      hash *= includeCustomDataHash(declaredFields);
-      hash *= includeCustomDataHash(declaredMethods);
-      hash *= new ItdSourceFileComposer(this).getOutput().hashCode();
+      // Accumulated rather than multiplied, so that no single factor (such
+      // as the modifier of a package-private governor) can zero the hash
+      int hash = aspect.hashCode();
+      hash = 31 * hash + governor.getName().hashCode();
+      hash = 31 * hash + governor.getModifier();
+      hash = 31 * hash + governor.getCustomData().hashCode();
+      hash = 31 * hash + PHYSICAL_TYPE_CATEGORY.hashCode();
+      hash = 31 * hash + (privilegedAspect ? 2 : 3);
+      hash = 31 * hash + includeCustomDataHash(declaredConstructors);
+      hash = 31 * hash + includeCustomDataHash(declaredFields);
+      hash = 31 * hash + includeCustomDataHash(declaredMethods);
+      hash = 31 * hash + new ItdSourceFileComposer(this).getOutput().hashCode();
       this.hashCode = hash;
     }
     return hashCode;
@@ -217,7 +221,7 @@ public class DefaultItdTypeDetails extends AbstractMemberHoldingTypeDetails impl
   private int includeCustomDataHash(final Collection<? extends CustomDataAccessor> coll) {
     int result = 1;
     for (final CustomDataAccessor accessor : coll) {
-      result *= accessor.getCustomData().hashCode();
+      result = 31 * result + accessor.getCustomData().hashCode();
     }
     return result;
   }
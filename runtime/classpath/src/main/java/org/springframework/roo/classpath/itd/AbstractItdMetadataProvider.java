@@ -1,9 +1,11 @@
 package org.springframework.roo.classpath.itd;
 
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.Validate;
 import org.apache.felix.scr.annotations.Component;
 import org.osgi.service.component.ComponentContext;
 import org.springframework.roo.classpath.ItdDiscoveryService;
+import org.springframework.roo.classpath.MetadataSnapshotService;
 import org.springframework.roo.classpath.PhysicalTypeCategory;
 import org.springframework.roo.classpath.PhysicalTypeIdentifier;
 import org.springframework.roo.classpath.PhysicalTypeIdentifierNamingUtils;
@@ -28,8 +30,15 @@ import org.springframework.roo.project.LogicalPath;
 import org.springframework.roo.project.Path;
 import org.springframework.roo.support.logging.HandlerUtils;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.logging.Logger;
 
 /**
@@ -68,6 +77,90 @@ public abstract class AbstractItdMetadataProvider extends AbstractHashCodeTracki
 
   protected final static Logger LOGGER = HandlerUtils.getLogger(AbstractItdMetadataProvider.class);
 
+  /**
+   * An ITD composed during this session. Like the metadata cache, it's
+   * discarded whenever a notification arrives for its metadata, so while it
+   * exists none of the metadata's upstream dependencies have changed. The
+   * ITD is then current as long as it has the same governor, the provider
+   * hasn't changed and the file still has the composed contents.
+   */
+  private static class ComposedItd {
+
+    private final Integer contentsHashCode;
+    private final long contentsLength;
+    private final PhysicalTypeMetadata governor;
+    private long lastModified = -1; // guarded by this
+    private final ItdTypeDetailsProvidingMetadataItem metadata;
+    private final String providerVersion;
+    private final Set<String> upstreams;
+
+    /**
+     * Constructor for an ITD that has just been composed
+     */
+    ComposedItd(final ItdTypeDetailsProvidingMetadataItem metadata,
+        final PhysicalTypeMetadata governor, final String providerVersion,
+        final Set<String> upstreams, final String contents) {
+      // The file manager writes using the platform encoding
+      contentsHashCode = contents.hashCode();
+      contentsLength = contents.getBytes().length;
+      this.governor = governor;
+      this.metadata = metadata;
+      this.providerVersion = providerVersion;
+      this.upstreams = upstreams;
+    }
+
+    /**
+     * Constructor for an ITD that was written in a previous session, and
+     * found to be current as the given file
+     */
+    ComposedItd(final ItdTypeDetailsProvidingMetadataItem metadata,
+        final PhysicalTypeMetadata governor, final String providerVersion,
+        final Set<String> upstreams, final File itdFile) {
+      contentsHashCode = null;
+      contentsLength = itdFile.length();
+      this.governor = governor;
+      lastModified = itdFile.lastModified();
+      this.metadata = metadata;
+      this.providerVersion = providerVersion;
+      this.upstreams = upstreams;
+    }
+
+    /**
+     * Indicates whether this ITD was composed from the given governor by the
+     * given version of the provider
+     */
+    boolean isComposedFrom(final PhysicalTypeMetadata governor, final String providerVersion) {
+      return this.governor == governor && this.providerVersion.equals(providerVersion);
+    }
+
+    /**
+     * Indicates whether the given file is known to have the composed
+     * contents, i.e. has the same size and modification time as when they
+     * were last compared
+     */
+    synchronized boolean isWrittenTo(final File itdFile) {
+      return lastModified != -1 && itdFile.length() == contentsLength
+          && itdFile.lastModified() == lastModified;
+    }
+
+    /**
+     * Indicates whether the given contents of the ITD are the composed ones,
+     * in which case the file's modification time is remembered so that it
+     * needn't be read again
+     */
+    synchronized boolean isWrittenTo(final File itdFile, final String contents) {
+      if (contentsHashCode == null || contents == null
+          || contents.hashCode() != contentsHashCode.intValue()) {
+        return false;
+      }
+      // The contents may still be waiting for the process manager to commit
+      if (itdFile.length() == contentsLength) {
+        lastModified = itdFile.lastModified();
+      }
+      return true;
+    }
+  }
+
   protected void activate(final ComponentContext cContext) {
     super.activate(cContext);
   }
@@ -94,6 +187,13 @@ public abstract class AbstractItdMetadataProvider extends AbstractHashCodeTracki
    */
   private final List<JavaType> metadataTriggers = new ArrayList<JavaType>();
 
+  /**
+   * The ITDs composed during this session, keyed by metadata ID, with a
+   * <code>null</code> value for metadata that has to be built again; guarded
+   * by itself
+   */
+  private final Map<String, ComposedItd> composedItds = new HashMap<String, ComposedItd>();
+
   /**
    * Registers an additional {@link JavaType} that will trigger metadata
    * registration.
@@ -162,12 +262,17 @@ public abstract class AbstractItdMetadataProvider extends AbstractHashCodeTracki
   private void deleteItd(final String metadataIdentificationString, final String itdFilename,
       final String reason, final boolean now) {
 
+    setComposedItd(metadataIdentificationString, null);
     if (now) {
       getFileManager().delete(itdFilename, reason);
     } else {
       getFileManager().createOrUpdateTextFileIfRequired(itdFilename, "", false);
     }
     getItdDiscoveryService().removeItdTypeDetails(metadataIdentificationString);
+    final MetadataSnapshotService metadataSnapshotService = getMetadataSnapshotService();
+    if (metadataSnapshotService != null) {
+      metadataSnapshotService.remove(metadataIdentificationString);
+    }
     // TODO do we need to notify downstream dependencies that this ITD has
     // gone away?
   }
@@ -245,6 +350,34 @@ public abstract class AbstractItdMetadataProvider extends AbstractHashCodeTracki
     }
 
     if (produceMetadata) {
+      // An ITD composed from the same inputs earlier in this session doesn't
+      // need building or composing again, unless its file has been changed
+      // since
+      final ComposedItd composedItd = getComposedItd(metadataIdentificationString);
+      if (composedItd != null
+          && composedItd.isComposedFrom(governorPhysicalTypeMetadata, getProviderVersion())
+          && isWritten(composedItd, itdFilename)) {
+        for (final String upstream : composedItd.upstreams) {
+          getMetadataDependencyRegistry().registerDependency(upstream,
+              metadataIdentificationString);
+        }
+        getItdDiscoveryService().addItdTypeDetails(
+            composedItd.metadata.getMemberHoldingTypeDetails());
+        // As the same instance, it has already been notified
+        return composedItd.metadata;
+      }
+
+      // Find out from the input files whether the ITD on disk was written
+      // from them in a previous session; once notified of a change, the
+      // metadata is always built again, as the input files aren't all of
+      // its inputs
+      final MetadataSnapshotService metadataSnapshotService = getMetadataSnapshotService();
+      final boolean writtenFromInputs =
+          !isBuiltThisSession(metadataIdentificationString)
+              && metadataSnapshotService != null
+              && metadataSnapshotService.isUnchanged(metadataIdentificationString,
+                  getProviderVersion(), itdFilename);
+
       // This type contains an annotation we were configured to detect, or
       // there is an ITD (which may need deletion), so we need to produce
       // the metadata
@@ -277,6 +410,17 @@ public abstract class AbstractItdMetadataProvider extends AbstractHashCodeTracki
         deleteItdFile = true;
       }
 
+      if (!deleteItdFile && writtenFromInputs) {
+        // The metadata needs building, as it isn't kept across sessions,
+        // but not composing; as it's not known to have changed, downstream
+        // dependencies aren't notified either
+        getItdDiscoveryService().addItdTypeDetails(itdTypeDetails);
+        setComposedItd(metadataIdentificationString, new ComposedItd(metadata,
+            governorPhysicalTypeMetadata, getProviderVersion(),
+            getUpstreams(metadataIdentificationString), new File(itdFilename)));
+        return metadata;
+      }
+
       if (!deleteItdFile) {
         // We have some members in the ITD, so decide if we're to write
         // something to disk
@@ -290,6 +434,13 @@ public abstract class AbstractItdMetadataProvider extends AbstractHashCodeTracki
           getItdDiscoveryService().addItdTypeDetails(itdTypeDetails);
           final String itd = itdSourceFileComposer.getOutput();
           getFileManager().createOrUpdateTextFileIfRequired(itdFilename, itd, false);
+          if (metadataSnapshotService != null) {
+            metadataSnapshotService.record(metadataIdentificationString,
+                governorPhysicalTypeIdentifier, getProviderVersion(), itdFilename, itd);
+          }
+          setComposedItd(metadataIdentificationString, new ComposedItd(metadata,
+              governorPhysicalTypeMetadata, getProviderVersion(),
+              getUpstreams(metadataIdentificationString), itd));
         } else {
           // We don't have content to write
           deleteItdFile = true;
@@ -504,6 +655,12 @@ public abstract class AbstractItdMetadataProvider extends AbstractHashCodeTracki
 
   public final void notify(final String upstreamDependency, String downstreamDependency) {
     if (downstreamDependency == null) {
+      // Any of our metadata might be rebuilt in response
+      synchronized (composedItds) {
+        for (final Map.Entry<String, ComposedItd> entry : composedItds.entrySet()) {
+          entry.setValue(null);
+        }
+      }
       notifyForGenericListener(upstreamDependency);
       return;
     }
@@ -551,6 +708,7 @@ public abstract class AbstractItdMetadataProvider extends AbstractHashCodeTracki
     // and it
     // directly notified downstreams as part of that method (BPA 10 Dec
     // 2010)
+    setComposedItd(downstreamDependency, null);
     getMetadataService().evictAndGet(downstreamDependency);
   }
 
@@ -670,10 +828,95 @@ public abstract class AbstractItdMetadataProvider extends AbstractHashCodeTracki
     return getServiceManager().getServiceInstance(this, FileManager.class);
   }
 
+  private ComposedItd getComposedItd(final String metadataIdentificationString) {
+    synchronized (composedItds) {
+      return composedItds.get(metadataIdentificationString);
+    }
+  }
+
+  /**
+   * Returns the upstream dependencies currently registered for the given
+   * metadata
+   */
+  private Set<String> getUpstreams(final String metadataIdentificationString) {
+    return new HashSet<String>(getMetadataDependencyRegistry().getUpstream(
+        metadataIdentificationString));
+  }
+
+  /**
+   * Identifies the code that composes this provider's ITDs, so that ITDs
+   * written by a different build of the provider are not considered current
+   * by the {@link MetadataSnapshotService}.
+   *
+   * @return a non-null string
+   */
+  protected String getProviderVersion() {
+    if (context == null || context.getBundle() == null) {
+      return getClass().getName();
+    }
+    return getClass().getName() + "@" + context.getBundle().getVersion() + "@"
+        + context.getBundle().getLastModified();
+  }
+
+  /**
+   * Indicates whether the given metadata has been built during this session,
+   * whether or not its ITD is still current
+   */
+  private boolean isBuiltThisSession(final String metadataIdentificationString) {
+    synchronized (composedItds) {
+      return composedItds.containsKey(metadataIdentificationString);
+    }
+  }
+
+  /**
+   * Indicates whether the given ITD file has the composed contents; the file
+   * is only read if it has changed since it was last compared
+   */
+  private boolean isWritten(final ComposedItd composedItd, final String itdFilename) {
+    final File itdFile = new File(itdFilename);
+    return composedItd.isWrittenTo(itdFile)
+        || composedItd.isWrittenTo(itdFile, readItd(itdFilename));
+  }
+
+  /**
+   * Returns the contents of the given ITD as it stands in the current
+   * transaction
+   *
+   * @return <code>null</code> if there's no such file
+   */
+  private String readItd(final String itdFilename) {
+    if (!getFileManager().exists(itdFilename)) {
+      return null;
+    }
+    final InputStream inputStream = getFileManager().getInputStream(itdFilename);
+    try {
+      return IOUtils.toString(inputStream);
+    } catch (final IOException e) {
+      return null;
+    } finally {
+      IOUtils.closeQuietly(inputStream);
+    }
+  }
+
+  /**
+   * Remembers the given ITD; <code>null</code> means it has to be built
+   * again, which also rules out reusing the ITD written in a previous session
+   */
+  private void setComposedItd(final String metadataIdentificationString,
+      final ComposedItd composedItd) {
+    synchronized (composedItds) {
+      composedItds.put(metadataIdentificationString, composedItd);
+    }
+  }
+
   protected ItdDiscoveryService getItdDiscoveryService() {
     return getServiceManager().getServiceInstance(this, ItdDiscoveryService.class);
   }
 
+  protected MetadataSnapshotService getMetadataSnapshotService() {
+    return getServiceManager().getServiceInstance(this, MetadataSnapshotService.class);
+  }
+
   protected MemberDetailsScanner getMemberDetailsScanner() {
     return getServiceManager().getServiceInstance(this, MemberDetailsScanner.class);
   }
@@ -1,6 +1,11 @@
 package org.springframework.roo.classpath.itd;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.lang.reflect.Modifier;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map.Entry;
@@ -33,6 +38,13 @@ import org.springframework.roo.model.JavaType;
 
 /**
  * A simple way of producing an inter-type declaration source file.
+ * <p>
+ * The body of the aspect is written into a character buffer that's reused by
+ * every composer constructed on the same thread; the imports it registers
+ * while doing so are then rendered ahead of the body, which is appended to
+ * them, and the result converted to a string once. The output can be
+ * compared with an existing file a chunk at a time through
+ * {@link #isOutputOf(InputStream)}, which stops at the first difference.
  *
  * @author Ben Alex
  * @author Stefan Schmidt
@@ -51,12 +63,40 @@ public class ItdSourceFileComposer {
       "TODO Auto-generated method documentation";
   private static final String AUTOGENERATED_CONSTRUCTOR_JAVADOC =
       "TODO Auto-generated constructor documentation";
+  private static final int BUFFER_CAPACITY = 16 * 1024;
+  private static final int COMPARISON_CHUNK_SIZE = 4096;
+  // Larger buffers aren't kept, so that one huge ITD doesn't pin its buffer
+  private static final int MAX_POOLED_BUFFER_CAPACITY = 1024 * 1024;
+  private static final ThreadLocal<StringBuilder> POOLED_BUFFER = new ThreadLocal<StringBuilder>();
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  /**
+   * Takes this thread's pooled buffer, or creates one if it's already in use
+   * (e.g. by a composer constructed while another one is composing).
+   */
+  private static StringBuilder acquireBuffer() {
+    final StringBuilder buffer = POOLED_BUFFER.get();
+    if (buffer == null) {
+      return new StringBuilder(BUFFER_CAPACITY);
+    }
+    POOLED_BUFFER.remove();
+    return buffer;
+  }
+
+  private static void releaseBuffer(final StringBuilder buffer) {
+    if (buffer.capacity() <= MAX_POOLED_BUFFER_CAPACITY) {
+      buffer.setLength(0);
+      POOLED_BUFFER.set(buffer);
+    }
+  }
+
   private final JavaType aspect;
   private boolean content;
   private int indentLevel = 0;
   private final JavaType introductionTo;
   private final ItdTypeDetails itdTypeDetails;
-  private StringBuilder pw = new StringBuilder();
+  private String output;
+  private StringBuilder pw;
   private final ImportRegistrationResolver resolver;
 
   /**
@@ -87,25 +127,31 @@ public class ItdSourceFileComposer {
       }
     }
 
-    appendTypeDeclaration();
-    appendDeclarePrecedence();
-    appendExtendsTypes();
-    appendImplementsTypes();
-    appendTypeAnnotations();
-    appendFieldAnnotations();
-    appendMethodAnnotations();
-    appendFields();
-    appendConstructors();
-    appendMethods(itdTypeDetails.getGovernor().getPhysicalTypeCategory()
-        .equals(PhysicalTypeCategory.INTERFACE));
-    appendInnerTypes();
-    appendTerminator();
-
-    // Now prepend the package declaration and any imports
-    // We need to do this ** at the end ** so we can ensure our compilation
-    // unit imports are correct, as they're built as we traverse over the
-    // other members
-    prependCompilationUnitDetails();
+    pw = acquireBuffer();
+    try {
+      appendTypeDeclaration();
+      appendDeclarePrecedence();
+      appendExtendsTypes();
+      appendImplementsTypes();
+      appendTypeAnnotations();
+      appendFieldAnnotations();
+      appendMethodAnnotations();
+      appendFields();
+      appendConstructors();
+      appendMethods(itdTypeDetails.getGovernor().getPhysicalTypeCategory()
+          .equals(PhysicalTypeCategory.INTERFACE));
+      appendInnerTypes();
+      appendTerminator();
+
+      // Now prepend the package declaration and any imports
+      // We need to do this ** at the end ** so we can ensure our compilation
+      // unit imports are correct, as they're built as we traverse over the
+      // other members
+      prependCompilationUnitDetails();
+    } finally {
+      releaseBuffer(pw);
+      pw = null;
+    }
   }
 
   /**
@@ -597,7 +643,7 @@ public class ItdSourceFileComposer {
   }
 
   public String getOutput() {
-    return pw.toString();
+    return output;
   }
 
   /**
@@ -626,6 +672,39 @@ public class ItdSourceFileComposer {
     return content;
   }
 
+  /**
+   * Indicates whether the given stream contains exactly this composer's
+   * output, encoded as UTF-8. The stream is read a chunk at a time, and no
+   * further than its first difference.
+   *
+   * @param inputStream the stream to compare with (required); the caller
+   *            remains responsible for closing it
+   * @return see above
+   */
+  public boolean isOutputOf(final InputStream inputStream) {
+    Validate.notNull(inputStream, "Input stream required");
+    final Reader reader = new InputStreamReader(inputStream, UTF_8);
+    final char[] chunk = new char[COMPARISON_CHUNK_SIZE];
+    int position = 0;
+    try {
+      int read;
+      while ((read = reader.read(chunk)) != -1) {
+        if (position + read > output.length()) {
+          return false;
+        }
+        for (int i = 0; i < read; i++) {
+          if (chunk[i] != output.charAt(position++)) {
+            return false;
+          }
+        }
+      }
+    } catch (final IOException e) {
+      throw new IllegalStateException("Could not compare ITD '" + aspect.getSimpleTypeName()
+          + "' with its existing contents", e);
+    }
+    return position == output.length();
+  }
+
   /**
    * Prints a blank line, ensuring any indent is included before doing so.
    */
@@ -652,7 +731,8 @@ public class ItdSourceFileComposer {
   }
 
   private void prependCompilationUnitDetails() {
-    final StringBuilder topOfFile = new StringBuilder();
+    // Sized to take the body as well
+    final StringBuilder topOfFile = new StringBuilder(pw.length() + 1024);
 
     topOfFile.append("// WARNING: DO NOT EDIT THIS FILE. THIS FILE IS MANAGED BY SPRING ROO.")
         .append(NEW_LINE);
@@ -682,11 +762,7 @@ public class ItdSourceFileComposer {
       topOfFile.append(NEW_LINE);
     }
 
-    // Now append the normal file to the bottom
-    topOfFile.append(pw.toString());
-
-    // Replace the old writer with out new writer
-    pw = topOfFile;
+    output = topOfFile.append(pw).toString();
   }
 
   private void writeImports(final StringBuilder topOfFile, final SortedMap<JavaType, Boolean> types) {
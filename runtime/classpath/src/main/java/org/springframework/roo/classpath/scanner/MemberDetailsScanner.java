@@ -73,4 +73,13 @@ public interface MemberDetailsScanner {
    *         <code>null</code> {@link ClassOrInterfaceTypeDetails} were given
    */
   MemberDetails getMemberDetails(String requestingClass, ClassOrInterfaceTypeDetails cid);
+
+  /**
+   * Evicts any {@link MemberDetails} an implementation has cached, e.g.
+   * because a {@link MemberDetailsDecorator} will now decorate them
+   * differently.
+   * 
+   * @since 2.0
+   */
+  void evictAll();
 }
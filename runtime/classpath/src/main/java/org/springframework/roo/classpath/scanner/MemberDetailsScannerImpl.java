@@ -2,12 +2,18 @@ package org.springframework.roo.classpath.scanner;
 
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
 import java.util.logging.Logger;
 
 import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
@@ -16,12 +22,15 @@ import org.apache.felix.scr.annotations.ReferenceStrategy;
 import org.apache.felix.scr.annotations.References;
 import org.apache.felix.scr.annotations.Service;
 import org.osgi.service.component.ComponentContext;
+import org.springframework.roo.classpath.ItdDiscoveryService;
 import org.springframework.roo.classpath.details.ClassOrInterfaceTypeDetails;
 import org.springframework.roo.classpath.details.MemberHoldingTypeDetails;
 import org.springframework.roo.classpath.itd.ItdMetadataProvider;
 import org.springframework.roo.classpath.itd.ItdTypeDetailsProvidingMetadataItem;
+import org.springframework.roo.metadata.MetadataDependencyRegistry;
 import org.springframework.roo.metadata.MetadataIdentificationUtils;
 import org.springframework.roo.metadata.MetadataItem;
+import org.springframework.roo.metadata.MetadataNotificationListener;
 import org.springframework.roo.metadata.MetadataProvider;
 import org.springframework.roo.metadata.MetadataService;
 import org.osgi.framework.BundleContext;
@@ -42,25 +51,123 @@ import org.springframework.roo.support.logging.HandlerUtils;
  * the metadata infrastructure does not require special type naming approaches
  * to be employed. The ordering behaviour exists solely to simplify debugging
  * for add-on developers and log comparison between invocations.
+ * <p>
+ * The results are cached per governor and requesting class. A cached result
+ * is only returned for the same {@link ClassOrInterfaceTypeDetails}
+ * instances (i.e. the governor and its superclasses haven't been re-parsed
+ * since), and is evicted as soon as the {@link ItdDiscoveryService} reports
+ * that the ITDs of any of those types have changed, or the
+ * {@link MetadataDependencyRegistry} notifies a change to any of those types
+ * or to any of the ITD metadata the result was built from. As the registry
+ * holds back its notifications while a batch is open, a cached result is also
+ * only returned while the {@link MetadataDependencyRegistry#getNotificationCount(String)
+ * notification counts} of what it was built from are the same as when it was
+ * built.
  * 
  * @author Ben Alex
  * @since 1.1
  */
 @Component
 @Service
-public class MemberDetailsScannerImpl implements MemberDetailsScanner {
+public class MemberDetailsScannerImpl implements MemberDetailsScanner,
+    MetadataNotificationListener {
 
   protected final static Logger LOGGER = HandlerUtils.getLogger(MemberDetailsScannerImpl.class);
 
+  /**
+   * The maximum number of results to cache, beyond which the least recently
+   * used ones are evicted.
+   */
+  static final int CACHE_CAPACITY = 10000;
+
+  /**
+   * A cached result, along with what it was built from.
+   */
+  private static class CachedMemberDetails {
+
+    private final List<ClassOrInterfaceTypeDetails> cidHierarchy;
+    // key: physical type or ITD MID; value: its notification count
+    private final Map<String, Long> dependencies;
+    private final MemberDetails memberDetails;
+
+    CachedMemberDetails(final List<ClassOrInterfaceTypeDetails> cidHierarchy,
+        final Map<String, Long> dependencies, final MemberDetails memberDetails) {
+      this.cidHierarchy = cidHierarchy;
+      this.dependencies = dependencies;
+      this.memberDetails = memberDetails;
+    }
+
+    /**
+     * Indicates whether any of the physical types or ITD metadata this
+     * result was built from has published a notification since, including
+     * one still held in a batch.
+     */
+    boolean hasChangedSince(final MetadataDependencyRegistry metadataDependencyRegistry) {
+      for (final Map.Entry<String, Long> dependency : dependencies.entrySet()) {
+        if (metadataDependencyRegistry.getNotificationCount(dependency.getKey()) != dependency
+            .getValue()) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    /**
+     * Indicates whether this result was built for the given hierarchy, i.e.
+     * the very same governor and superclass details.
+     */
+    boolean isFor(final List<ClassOrInterfaceTypeDetails> cidHierarchy) {
+      if (this.cidHierarchy.size() != cidHierarchy.size()) {
+        return false;
+      }
+      for (int i = 0; i < cidHierarchy.size(); i++) {
+        if (this.cidHierarchy.get(i) != cidHierarchy.get(i)) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
   // ------------ OSGi component attributes ----------------
   private BundleContext context;
 
   protected MetadataService metadataService;
+  protected ItdDiscoveryService itdDiscoveryService;
+  protected MetadataDependencyRegistry metadataDependencyRegistry;
 
   protected void activate(final ComponentContext context) {
     this.context = context.getBundleContext();
   }
 
+  // Cache; all guarded by the cache mutex, which is never held while
+  // calling other services
+  private final Object cacheLock = new Object();
+  // key: governor MID and requesting class
+  private final Map<String, CachedMemberDetails> cache =
+      new LinkedHashMap<String, CachedMemberDetails>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, CachedMemberDetails> eldest) {
+          if (size() > CACHE_CAPACITY) {
+            unindex(eldest.getKey(), eldest.getValue());
+            cacheEvictions++;
+            return true;
+          }
+          return false;
+        }
+      };
+  // key: physical type or ITD MID; value: keys of the results built from it
+  private final Map<String, Set<String>> cacheKeysByDependency =
+      new HashMap<String, Set<String>>();
+  // Notified MIDs since the outermost result being built was started
+  private final List<String> notifiedDuringBuild = new ArrayList<String>();
+  private int buildsInProgress;
+  private long cacheEvictions;
+  private long cacheHits;
+  private long cacheMisses;
+
   private final SortedSet<MemberDetailsDecorator> decorators = new TreeSet<MemberDetailsDecorator>(
       new Comparator<MemberDetailsDecorator>() {
         public int compare(final MemberDetailsDecorator o1, final MemberDetailsDecorator o2) {
@@ -117,7 +224,117 @@ public class MemberDetailsScannerImpl implements MemberDetailsScanner {
   }
 
   protected void deactivate(final ComponentContext componentContext) {
-    // Empty
+    if (metadataDependencyRegistry != null) {
+      metadataDependencyRegistry.removeNotificationListener(this);
+      metadataDependencyRegistry = null;
+    }
+    evictAll();
+  }
+
+  private void cache(final String key, final CachedMemberDetails cachedMemberDetails) {
+    synchronized (cacheLock) {
+      for (final String notified : notifiedDuringBuild) {
+        if (cachedMemberDetails.dependencies.containsKey(notified)) {
+          // Already stale
+          return;
+        }
+      }
+      final CachedMemberDetails previous = cache.put(key, cachedMemberDetails);
+      if (previous != null) {
+        unindex(key, previous);
+      }
+      for (final String dependency : cachedMemberDetails.dependencies.keySet()) {
+        Set<String> keys = cacheKeysByDependency.get(dependency);
+        if (keys == null) {
+          keys = new HashSet<String>();
+          cacheKeysByDependency.put(dependency, keys);
+        }
+        keys.add(key);
+      }
+    }
+  }
+
+  /**
+   * Evicts the results built from the given physical type or ITD metadata.
+   * The caller must hold the cache mutex.
+   */
+  private void evict(final String dependency) {
+    final Set<String> keys = cacheKeysByDependency.remove(dependency);
+    if (keys == null) {
+      return;
+    }
+    for (final String key : keys) {
+      final CachedMemberDetails evicted = cache.remove(key);
+      if (evicted != null) {
+        unindex(key, evicted);
+        cacheEvictions++;
+      }
+    }
+  }
+
+  public void evictAll() {
+    synchronized (cacheLock) {
+      cacheEvictions += cache.size();
+      cache.clear();
+      cacheKeysByDependency.clear();
+    }
+  }
+
+  private CachedMemberDetails getCached(final String key,
+      final List<ClassOrInterfaceTypeDetails> cidHierarchy) {
+    final CachedMemberDetails cached;
+    synchronized (cacheLock) {
+      cached = cache.get(key);
+    }
+    // A stale result is replaced once it has been rebuilt
+    final boolean current =
+        cached != null && cached.isFor(cidHierarchy)
+            && !cached.hasChangedSince(metadataDependencyRegistry);
+    synchronized (cacheLock) {
+      if (current) {
+        cacheHits++;
+        return cached;
+      }
+      cacheMisses++;
+      return null;
+    }
+  }
+
+  public void notify(final String upstreamDependency, final String downstreamDependency) {
+    synchronized (cacheLock) {
+      if (buildsInProgress > 0) {
+        notifiedDuringBuild.add(upstreamDependency);
+      }
+      if (MetadataIdentificationUtils.isIdentifyingClass(upstreamDependency)) {
+        // Evict the results built from any instance of that class
+        final String metadataClass =
+            MetadataIdentificationUtils.getMetadataClass(upstreamDependency);
+        final Set<String> dependencies = new HashSet<String>(cacheKeysByDependency.keySet());
+        for (final String dependency : dependencies) {
+          if (metadataClass.equals(MetadataIdentificationUtils.getMetadataClass(dependency))) {
+            evict(dependency);
+          }
+        }
+      } else {
+        evict(upstreamDependency);
+      }
+    }
+  }
+
+  /**
+   * Removes the given result from the dependency index. The caller must hold
+   * the cache mutex.
+   */
+  private void unindex(final String key, final CachedMemberDetails cachedMemberDetails) {
+    for (final String dependency : cachedMemberDetails.dependencies.keySet()) {
+      final Set<String> keys = cacheKeysByDependency.get(dependency);
+      if (keys != null) {
+        keys.remove(key);
+        if (keys.isEmpty()) {
+          cacheKeysByDependency.remove(dependency);
+        }
+      }
+    }
   }
 
   public final MemberDetails getMemberDetails(final String requestingClass,
@@ -135,14 +352,22 @@ public class MemberDetailsScannerImpl implements MemberDetailsScanner {
       bindDecorators();
     }
 
+    if (metadataDependencyRegistry == null) {
+      // Only cache results once we're told when they're stale
+      metadataDependencyRegistry = getMetadataDependencyRegistry();
+      if (metadataDependencyRegistry != null) {
+        metadataDependencyRegistry.addNotificationListener(this);
+      }
+    }
+
+    if (itdDiscoveryService == null) {
+      itdDiscoveryService = getItdDiscoveryService();
+    }
+
     if (cid == null) {
       return null;
     }
     synchronized (lock) {
-      // Create a list of discovered members
-      final List<MemberHoldingTypeDetails> memberHoldingTypeDetails =
-          new ArrayList<MemberHoldingTypeDetails>();
-
       // Build a List representing the class hierarchy, where the first
       // element is the absolute superclass
       final List<ClassOrInterfaceTypeDetails> cidHierarchy =
@@ -152,70 +377,185 @@ public class MemberDetailsScannerImpl implements MemberDetailsScanner {
         cid = cid.getSuperclass();
       }
 
-      // Now we add this governor, plus all of its superclasses
+      final String governorId = cidHierarchy.get(cidHierarchy.size() - 1).getDeclaredByMetadataId();
+      final boolean cacheable =
+          metadataDependencyRegistry != null && itdDiscoveryService != null && governorId != null;
+      if (!cacheable) {
+        return buildMemberDetails(requestingClass, cidHierarchy, new HashMap<String, Long>());
+      }
+
+      // Evict the results built from types whose ITDs have changed
       for (final ClassOrInterfaceTypeDetails currentClass : cidHierarchy) {
-        memberHoldingTypeDetails.add(currentClass);
-
-        // Locate all MetadataProvider instances that provide ITDs and
-        // thus MemberHoldingTypeDetails information
-        for (final MetadataProvider mp : providers) {
-          // Skip non-ITD providers
-          if (!(mp instanceof ItdMetadataProvider)) {
-            continue;
+        if (itdDiscoveryService.haveItdsChanged(MemberDetailsScannerImpl.class.getName(),
+            currentClass.getName())) {
+          synchronized (cacheLock) {
+            evict(currentClass.getDeclaredByMetadataId());
           }
+        }
+      }
 
-          // Skip myself
-          if (mp.getClass().getName().equals(requestingClass)) {
-            continue;
-          }
+      final String key = governorId + " " + requestingClass;
+      final CachedMemberDetails cached = getCached(key, cidHierarchy);
+      if (cached != null) {
+        return cached.memberDetails;
+      }
 
-          // Determine the key the ITD provider uses for this
-          // particular type
-          final String key =
-              ((ItdMetadataProvider) mp).getIdForPhysicalJavaType(currentClass
-                  .getDeclaredByMetadataId());
-          Validate.isTrue(MetadataIdentificationUtils.isIdentifyingInstance(key),
-              "ITD metadata provider '%s' returned an illegal key ('%s')", mp, key);
-
-          // Get the metadata and ensure we have ITD type details
-          // available
-          final MetadataItem metadataItem = metadataService.get(key);
-          if (metadataItem == null || !metadataItem.isValid()) {
-            continue;
-          }
-          Validate.isInstanceOf(ItdTypeDetailsProvidingMetadataItem.class, metadataItem,
-              "ITD metadata provider '%s' failed to return the correct metadata type", mp);
-          final ItdTypeDetailsProvidingMetadataItem itdTypeDetailsMd =
-              (ItdTypeDetailsProvidingMetadataItem) metadataItem;
-          if (itdTypeDetailsMd.getMemberHoldingTypeDetails() == null) {
-            continue;
+      synchronized (cacheLock) {
+        buildsInProgress++;
+      }
+      try {
+        final Map<String, Long> dependencies = new HashMap<String, Long>();
+        final MemberDetails result = buildMemberDetails(requestingClass, cidHierarchy, dependencies);
+        cache(key, new CachedMemberDetails(cidHierarchy, dependencies, result));
+        return result;
+      } finally {
+        synchronized (cacheLock) {
+          if (--buildsInProgress == 0) {
+            notifiedDuringBuild.clear();
           }
-
-          // Capture the member details
-          memberHoldingTypeDetails.add(itdTypeDetailsMd.getMemberHoldingTypeDetails());
         }
       }
+    }
+  }
 
-      // Turn out list of discovered members into a result
-      MemberDetails result = new MemberDetailsImpl(memberHoldingTypeDetails);
+  /**
+   * Records that the result being built depends on the given physical type
+   * or ITD metadata, as it currently stands.
+   */
+  private void addDependency(final Map<String, Long> dependencies, final String mid) {
+    dependencies.put(mid,
+        metadataDependencyRegistry == null ? 0 : metadataDependencyRegistry
+            .getNotificationCount(mid));
+  }
 
-      // Loop until such time as we complete a full loop where no changes
-      // are made to the result
-      boolean additionalLoopRequired = true;
-      while (additionalLoopRequired) {
-        additionalLoopRequired = false;
-        for (final MemberDetailsDecorator decorator : decorators) {
-          final MemberDetails newResult = decorator.decorate(requestingClass, result);
-          Validate.isTrue(newResult != null, "Decorator '%s' returned an illegal result", decorator
-              .getClass().getName());
-          if (newResult != null && !newResult.equals(result)) {
-            additionalLoopRequired = true;
-          }
-          result = newResult;
+  /**
+   * Builds the member details of the given class hierarchy. The caller must
+   * hold the mutex.
+   * 
+   * @param requestingClass the class requesting the member details
+   * @param cidHierarchy the governor and its superclasses, starting with the
+   *            absolute superclass
+   * @param dependencies the map to add the IDs of the physical types and the
+   *            ITD metadata the result is built from to, along with their
+   *            notification counts
+   * @return a non-<code>null</code> result
+   */
+  private MemberDetails buildMemberDetails(final String requestingClass,
+      final List<ClassOrInterfaceTypeDetails> cidHierarchy, final Map<String, Long> dependencies) {
+    // Create a list of discovered members
+    final List<MemberHoldingTypeDetails> memberHoldingTypeDetails =
+        new ArrayList<MemberHoldingTypeDetails>();
+
+    // Now we add this governor, plus all of its superclasses
+    for (final ClassOrInterfaceTypeDetails currentClass : cidHierarchy) {
+      memberHoldingTypeDetails.add(currentClass);
+      if (currentClass.getDeclaredByMetadataId() != null) {
+        addDependency(dependencies, currentClass.getDeclaredByMetadataId());
+      }
+
+      // Locate all MetadataProvider instances that provide ITDs and
+      // thus MemberHoldingTypeDetails information
+      for (final MetadataProvider mp : providers) {
+        // Skip non-ITD providers
+        if (!(mp instanceof ItdMetadataProvider)) {
+          continue;
+        }
+
+        // Skip myself
+        if (mp.getClass().getName().equals(requestingClass)) {
+          continue;
         }
+
+        // Determine the key the ITD provider uses for this
+        // particular type
+        final String key =
+            ((ItdMetadataProvider) mp).getIdForPhysicalJavaType(currentClass
+                .getDeclaredByMetadataId());
+        Validate.isTrue(MetadataIdentificationUtils.isIdentifyingInstance(key),
+            "ITD metadata provider '%s' returned an illegal key ('%s')", mp, key);
+
+        // Get the metadata and ensure we have ITD type details
+        // available; any notification it publishes while being built
+        // precedes the count recorded for it
+        final MetadataItem metadataItem = metadataService.get(key);
+        addDependency(dependencies, key);
+        if (metadataItem == null || !metadataItem.isValid()) {
+          continue;
+        }
+        Validate.isInstanceOf(ItdTypeDetailsProvidingMetadataItem.class, metadataItem,
+            "ITD metadata provider '%s' failed to return the correct metadata type", mp);
+        final ItdTypeDetailsProvidingMetadataItem itdTypeDetailsMd =
+            (ItdTypeDetailsProvidingMetadataItem) metadataItem;
+        if (itdTypeDetailsMd.getMemberHoldingTypeDetails() == null) {
+          continue;
+        }
+
+        // Capture the member details
+        memberHoldingTypeDetails.add(itdTypeDetailsMd.getMemberHoldingTypeDetails());
       }
+    }
 
-      return result;
+    // Turn out list of discovered members into a result
+    MemberDetails result = new MemberDetailsImpl(memberHoldingTypeDetails);
+
+    // Loop until such time as we complete a full loop where no changes
+    // are made to the result
+    boolean additionalLoopRequired = true;
+    while (additionalLoopRequired) {
+      additionalLoopRequired = false;
+      for (final MemberDetailsDecorator decorator : decorators) {
+        final MemberDetails newResult = decorator.decorate(requestingClass, result);
+        Validate.isTrue(newResult != null, "Decorator '%s' returned an illegal result", decorator
+            .getClass().getName());
+        if (newResult != null && !newResult.equals(result)) {
+          additionalLoopRequired = true;
+        }
+        result = newResult;
+      }
+    }
+
+    return result;
+  }
+
+  public ItdDiscoveryService getItdDiscoveryService() {
+    // Get all Services implement ItdDiscoveryService interface
+    try {
+      ServiceReference<?>[] references =
+          this.context.getAllServiceReferences(ItdDiscoveryService.class.getName(), null);
+      if (references == null) {
+        return null;
+      }
+
+      for (ServiceReference<?> ref : references) {
+        return (ItdDiscoveryService) this.context.getService(ref);
+      }
+
+      return null;
+
+    } catch (InvalidSyntaxException e) {
+      LOGGER.warning("Cannot load ItdDiscoveryService on MemberDetailsScannerImpl.");
+      return null;
+    }
+  }
+
+  public MetadataDependencyRegistry getMetadataDependencyRegistry() {
+    // Get all Services implement MetadataDependencyRegistry interface
+    try {
+      ServiceReference<?>[] references =
+          this.context.getAllServiceReferences(MetadataDependencyRegistry.class.getName(), null);
+      if (references == null) {
+        return null;
+      }
+
+      for (ServiceReference<?> ref : references) {
+        return (MetadataDependencyRegistry) this.context.getService(ref);
+      }
+
+      return null;
+
+    } catch (InvalidSyntaxException e) {
+      LOGGER.warning("Cannot load MetadataDependencyRegistry on MemberDetailsScannerImpl.");
+      return null;
     }
   }
 
@@ -236,4 +576,17 @@ public class MemberDetailsScannerImpl implements MemberDetailsScanner {
       return null;
     }
   }
+
+  @Override
+  public final String toString() {
+    final ToStringBuilder builder = new ToStringBuilder(this);
+    synchronized (cacheLock) {
+      builder.append("cacheHits", cacheHits);
+      builder.append("cacheMisses", cacheMisses);
+      builder.append("cacheEvictions", cacheEvictions);
+      builder.append("cacheCurrentSize", cache.size());
+      builder.append("cacheMaximumSize", CACHE_CAPACITY);
+    }
+    return builder.toString().replaceFirst("@[0-9a-f]+", ":");
+  }
 }
@@ -0,0 +1,209 @@
+package org.springframework.roo.classpath;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.Collections;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.roo.metadata.MetadataDependencyRegistry;
+import org.springframework.roo.metadata.MetadataIdentificationUtils;
+import org.springframework.roo.model.JavaType;
+import org.springframework.roo.project.LogicalPath;
+import org.springframework.roo.project.Path;
+import org.springframework.roo.project.PathResolver;
+import org.springframework.roo.project.ProjectOperations;
+
+/**
+ * Unit test of {@link MetadataSnapshotServiceImpl}
+ *
+ * @since 2.0
+ */
+public class MetadataSnapshotServiceImplTest {
+
+  private static final String GOVERNOR_ID = PhysicalTypeIdentifier.createIdentifier(
+      new JavaType("com.example.Person"), LogicalPath.getInstance(Path.SRC_MAIN_JAVA, ""));
+  private static final String ITD_CONTENTS = "privileged aspect Person_Roo_Test {}";
+  private static final String METADATA_ID = MetadataIdentificationUtils.create("com.example.Test",
+      "Person");
+  private static final String UPSTREAM_ID = PhysicalTypeIdentifier.createIdentifier(
+      new JavaType("com.example.Address"), LogicalPath.getInstance(Path.SRC_MAIN_JAVA, ""));
+
+  private File governorFile;
+  private File itdFile;
+  private MetadataDependencyRegistry metadataDependencyRegistry;
+  private PathResolver pathResolver;
+  private File projectDirectory;
+  private File snapshotFile;
+  private TypeLocationService typeLocationService;
+  private File upstreamFile;
+
+  private static void inject(final Object target, final String fieldName, final Object value)
+      throws Exception {
+    final Field field = target.getClass().getDeclaredField(fieldName);
+    field.setAccessible(true);
+    field.set(target, value);
+  }
+
+  private boolean isUnchanged(final MetadataSnapshotService service,
+      final String providerVersion) {
+    return service.isUnchanged(METADATA_ID, providerVersion, itdFile.getPath());
+  }
+
+  private void record(final MetadataSnapshotService service) {
+    service.record(METADATA_ID, GOVERNOR_ID, "1", itdFile.getPath(), ITD_CONTENTS);
+  }
+
+  private MetadataSnapshotServiceImpl newService() throws Exception {
+    final MetadataSnapshotServiceImpl service = new MetadataSnapshotServiceImpl();
+    inject(service, "metadataDependencyRegistry", metadataDependencyRegistry);
+    inject(service, "pathResolver", pathResolver);
+    inject(service, "projectOperations", mock(ProjectOperations.class));
+    inject(service, "typeLocationService", typeLocationService);
+    return service;
+  }
+
+  /**
+   * Writes the given contents, making sure the file's length or modification
+   * time changes even on file systems with coarse timestamps
+   */
+  private void write(final File file, final String contents) throws IOException {
+    final long previousModification = file.lastModified();
+    FileUtils.writeStringToFile(file, contents);
+    file.setLastModified(Math.max(previousModification + 2000, file.lastModified()));
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    projectDirectory = File.createTempFile(getClass().getSimpleName(), "");
+    projectDirectory.delete();
+    projectDirectory.mkdir();
+    governorFile = new File(projectDirectory, "Person.java");
+    write(governorFile, "public class Person {}");
+    upstreamFile = new File(projectDirectory, "Address.java");
+    write(upstreamFile, "public class Address {}");
+    itdFile = new File(projectDirectory, "Person_Roo_Test.aj");
+    snapshotFile = new File(projectDirectory, "metadata.snapshot");
+
+    metadataDependencyRegistry = mock(MetadataDependencyRegistry.class);
+    when(metadataDependencyRegistry.getUpstream(METADATA_ID)).thenReturn(
+        Collections.singleton(UPSTREAM_ID));
+    pathResolver = mock(PathResolver.class);
+    when(pathResolver.getIdentifier("", Path.ROOT_ROO_CONFIG, "metadata.snapshot")).thenReturn(
+        snapshotFile.getPath());
+    typeLocationService = mock(TypeLocationService.class);
+    when(typeLocationService.getPhysicalTypeCanonicalPath(GOVERNOR_ID)).thenReturn(
+        governorFile.getPath());
+    when(typeLocationService.getPhysicalTypeCanonicalPath(UPSTREAM_ID)).thenReturn(
+        upstreamFile.getPath());
+  }
+
+  @After
+  public void tearDown() {
+    FileUtils.deleteQuietly(projectDirectory);
+  }
+
+  @Test
+  public void testChangedInputFileIsNotUnchanged() throws Exception {
+    // Set up
+    final MetadataSnapshotServiceImpl service = newService();
+    record(service);
+    write(itdFile, ITD_CONTENTS);
+    assertTrue(isUnchanged(service, "1"));
+
+    // Invoke
+    write(upstreamFile, "public class Address { String street; }");
+
+    // Check
+    assertFalse(isUnchanged(service, "1"));
+  }
+
+  @Test
+  public void testCorruptSnapshotMeansColdStart() throws Exception {
+    // Set up
+    write(snapshotFile, METADATA_ID.replace(":", "\\:") + "=\\u00zz");
+    final MetadataSnapshotServiceImpl service = newService();
+    write(itdFile, ITD_CONTENTS);
+
+    // Invoke
+    final boolean unchanged = isUnchanged(service, "1");
+
+    // Check
+    assertFalse(unchanged);
+    record(service);
+    service.deactivate(null);
+    assertTrue(isUnchanged(newService(), "1"));
+  }
+
+  @Test
+  public void testMissingSnapshotMeansColdStart() throws Exception {
+    // Set up
+    final MetadataSnapshotServiceImpl service = newService();
+    write(itdFile, ITD_CONTENTS);
+
+    // Invoke
+    final boolean unchanged = isUnchanged(service, "1");
+
+    // Check
+    assertFalse(unchanged);
+    assertFalse(snapshotFile.exists());
+  }
+
+  @Test
+  public void testRecordedItdIsOnlyUnchangedWhileOnDisk() throws Exception {
+    // Set up
+    final MetadataSnapshotServiceImpl service = newService();
+
+    // Invoke
+    record(service);
+
+    // Check
+    assertFalse("Not committed yet", isUnchanged(service, "1"));
+    write(itdFile, ITD_CONTENTS);
+    assertTrue(isUnchanged(service, "1"));
+    assertFalse("Other provider version", isUnchanged(service, "2"));
+    write(itdFile, ITD_CONTENTS + " // edited");
+    assertFalse("Edited", isUnchanged(service, "1"));
+  }
+
+  @Test
+  public void testSnapshotPersistsCommittedItds() throws Exception {
+    // Set up
+    final MetadataSnapshotServiceImpl service = newService();
+    record(service);
+    write(itdFile, ITD_CONTENTS);
+
+    // Invoke
+    service.deactivate(null);
+
+    // Check
+    assertTrue(snapshotFile.isFile());
+    final MetadataSnapshotServiceImpl restarted = newService();
+    assertTrue(isUnchanged(restarted, "1"));
+    assertFalse("Other provider version", isUnchanged(restarted, "2"));
+    write(governorFile, "public class Person { String name; }");
+    assertFalse("Changed governor", isUnchanged(restarted, "1"));
+  }
+
+  @Test
+  public void testSnapshotSkipsUncommittedItds() throws Exception {
+    // Set up
+    final MetadataSnapshotServiceImpl service = newService();
+    record(service);
+    write(itdFile, "// written by someone else");
+
+    // Invoke
+    service.deactivate(null);
+
+    // Check
+    assertFalse(isUnchanged(newService(), "1"));
+  }
+}
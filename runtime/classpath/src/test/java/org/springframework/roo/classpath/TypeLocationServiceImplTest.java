@@ -1,13 +1,44 @@
 package org.springframework.roo.classpath;
 
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.same;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.lang.reflect.Field;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import junit.framework.TestCase;
 
+import org.apache.commons.io.FileUtils;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.springframework.roo.file.monitor.FileMonitorService;
+import org.springframework.roo.metadata.MetadataService;
+import org.springframework.roo.model.JavaPackage;
+import org.springframework.roo.model.JavaType;
+import org.springframework.roo.process.manager.FileManager;
+import org.springframework.roo.project.Path;
+import org.springframework.roo.project.ProjectOperations;
+import org.springframework.roo.project.maven.Pom;
+
 /**
  * Unit test of {@link TypeLocationServiceImpl}.
  * 
@@ -16,6 +47,131 @@ import junit.framework.TestCase;
  */
 public class TypeLocationServiceImplTest extends TestCase {
 
+  private static final JavaPackage PACKAGE = new JavaPackage("com.example");
+
+  private final Queue<Collection<String>> dirtyFileBatches = new LinkedList<Collection<String>>();
+  private final Set<Thread> parsingThreads = Collections.synchronizedSet(new HashSet<Thread>());
+  private Pom pom;
+  private File projectDirectory;
+  private TypeLocationServiceImpl service;
+  private TypeCache typeCache;
+  private TypeParsingService typeParsingService;
+  private TypeResolutionService typeResolutionService;
+
+  private static void inject(final Object target, final String fieldName, final Object value)
+      throws Exception {
+    final Field field = target.getClass().getDeclaredField(fieldName);
+    field.setAccessible(true);
+    field.set(target, value);
+  }
+
+  private String getSourceFile(final String simpleTypeName) {
+    return FileUtils.getFile(projectDirectory, "src", "main", "java", "com", "example",
+        simpleTypeName + ".java").getPath();
+  }
+
+  /**
+   * Makes the given files the next batch of changes to be discovered, and
+   * caches their types
+   */
+  private void discover(final String... fileCanonicalPaths) {
+    dirtyFileBatches.add(Arrays.asList(fileCanonicalPaths));
+    service.processTypesWithAnnotation(Collections.<JavaType>emptyList(),
+        mock(LocatedTypeCallback.class));
+  }
+
+  @Override
+  protected void setUp() throws Exception {
+    projectDirectory = File.createTempFile(getClass().getSimpleName(), "").getCanonicalFile();
+    projectDirectory.delete();
+    projectDirectory.mkdir();
+    pom =
+        new Pom("com.example", "my-app", "1.0", "jar", null, null, null, null, null, null, null,
+            null, null, null, null, null, null, null, new File(projectDirectory, "pom.xml")
+                .getPath(), "", Arrays.asList(Path.SRC_MAIN_JAVA));
+
+    final FileManager fileManager = mock(FileManager.class);
+    when(fileManager.exists(anyString())).thenReturn(true);
+    final FileMonitorService fileMonitorService = mock(FileMonitorService.class);
+    doAnswer(new Answer<Collection<String>>() {
+      public Collection<String> answer(final InvocationOnMock invocation) {
+        return dirtyFileBatches.poll();
+      }
+    }).when(fileMonitorService).getDirtyFiles(anyString());
+    final ProjectOperations projectOperations = mock(ProjectOperations.class);
+    when(projectOperations.getModuleForFileIdentifier(anyString())).thenReturn(pom);
+    typeCache = mock(TypeCache.class);
+    typeParsingService = mock(TypeParsingService.class);
+    typeResolutionService = mock(TypeResolutionService.class);
+
+    System.setProperty(TypeLocationServiceImpl.PARALLELISM_PROPERTY, "2");
+    service = new TypeLocationServiceImpl();
+    inject(service, "fileManager", fileManager);
+    inject(service, "fileMonitorService", fileMonitorService);
+    inject(service, "metadataService", mock(MetadataService.class));
+    inject(service, "projectOperations", projectOperations);
+    inject(service, "typeCache", typeCache);
+    inject(service, "typeParsingService", typeParsingService);
+    inject(service, "typeResolutionService", typeResolutionService);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    service.deactivate(null);
+    System.clearProperty(TypeLocationServiceImpl.PARALLELISM_PROPERTY);
+    FileUtils.deleteQuietly(projectDirectory);
+  }
+
+  public void testCacheTypesParsesFilesInParallel() {
+    // Set up
+    final CountDownLatch bothParsing = new CountDownLatch(2);
+    doAnswer(new Answer<JavaPackage>() {
+      public JavaPackage answer(final InvocationOnMock invocation) throws InterruptedException {
+        parsingThreads.add(Thread.currentThread());
+        bothParsing.countDown();
+        // Only report the package if the other file is being parsed at once
+        return bothParsing.await(10, TimeUnit.SECONDS) ? PACKAGE : null;
+      }
+    }).when(typeParsingService).parseAhead(anyString());
+
+    // Invoke
+    discover(getSourceFile("Person"), getSourceFile("Vet"));
+
+    // Check
+    assertEquals(2, parsingThreads.size());
+    assertFalse(parsingThreads.contains(Thread.currentThread()));
+    verify(typeResolutionService, never()).getPackage(anyString());
+    verify(typeCache, times(2)).cacheTypeAgainstModule(same(pom), any(JavaType.class));
+  }
+
+  public void testCacheTypesReusesDiscoveryThreads() {
+    // Set up
+    doAnswer(new Answer<JavaPackage>() {
+      public JavaPackage answer(final InvocationOnMock invocation) {
+        parsingThreads.add(Thread.currentThread());
+        return PACKAGE;
+      }
+    }).when(typeParsingService).parseAhead(anyString());
+    discover(getSourceFile("Person"), getSourceFile("Vet"));
+
+    // Invoke
+    discover(getSourceFile("Owner"), getSourceFile("Pet"), getSourceFile("Visit"));
+
+    // Check
+    assertTrue(parsingThreads.size() <= 2);
+    verify(typeParsingService, times(5)).parseAhead(anyString());
+    verify(typeResolutionService, never()).getPackage(anyString());
+  }
+
+  public void testCacheTypesParsesSingleFileOnCallingThread() {
+    // Invoke
+    discover(getSourceFile("Person"));
+
+    // Check
+    verify(typeParsingService, never()).parseAhead(anyString());
+    verify(typeResolutionService).getPackage(getSourceFile("Person"));
+  }
+
   public void testGetAllPackages() {
     // Set up
     final String leafPackage = "com.foo.bar";
@@ -59,4 +215,64 @@ public class TypeLocationServiceImplTest extends TestCase {
     // Check
     assertEquals("com.foo", lowestCommonPackage);
   }
+
+  public void testGetDiscoveryParallelismWhenConfigured() {
+    assertEquals(3, TypeLocationServiceImpl.getDiscoveryParallelism(" 3 "));
+  }
+
+  public void testGetDiscoveryParallelismIsAtLeastOne() {
+    assertEquals(1, TypeLocationServiceImpl.getDiscoveryParallelism("0"));
+  }
+
+  public void testGetDiscoveryParallelismWhenNotConfigured() {
+    final int processors = Runtime.getRuntime().availableProcessors();
+    assertEquals(processors, TypeLocationServiceImpl.getDiscoveryParallelism(null));
+    assertEquals(processors, TypeLocationServiceImpl.getDiscoveryParallelism("many"));
+  }
+
+  public void testUpdateIndexForNewType() {
+    // Set up
+    final Map<String, Set<String>> index = new HashMap<String, Set<String>>();
+
+    // Invoke
+    TypeLocationServiceImpl.updateIndex(index, "mid", null,
+        new HashSet<String>(Arrays.asList("A", "B")));
+
+    // Check
+    assertEquals(Collections.singleton("mid"), index.get("A"));
+    assertEquals(Collections.singleton("mid"), index.get("B"));
+  }
+
+  public void testUpdateIndexOnlyTouchesChangedKeys() {
+    // Set up
+    final Map<String, Set<String>> index = new HashMap<String, Set<String>>();
+    TypeLocationServiceImpl.updateIndex(index, "mid1", null,
+        new HashSet<String>(Arrays.asList("A", "B")));
+    TypeLocationServiceImpl.updateIndex(index, "mid2", null, Collections.singleton("A"));
+    final Set<String> midsWithA = index.get("A");
+
+    // Invoke
+    TypeLocationServiceImpl.updateIndex(index, "mid1",
+        new HashSet<String>(Arrays.asList("A", "B")),
+        new HashSet<String>(Arrays.asList("A", "C")));
+
+    // Check
+    assertSame(midsWithA, index.get("A"));
+    assertEquals(new HashSet<String>(Arrays.asList("mid1", "mid2")), index.get("A"));
+    assertTrue(index.get("B").isEmpty());
+    assertEquals(Collections.singleton("mid1"), index.get("C"));
+  }
+
+  public void testUpdateIndexForRemovedType() {
+    // Set up
+    final Map<String, Set<String>> index = new HashMap<String, Set<String>>();
+    TypeLocationServiceImpl.updateIndex(index, "mid", null, Collections.singleton("A"));
+
+    // Invoke
+    TypeLocationServiceImpl.updateIndex(index, "mid", Collections.singleton("A"),
+        Collections.<String>emptySet());
+
+    // Check
+    assertTrue(index.get("A").isEmpty());
+  }
 }
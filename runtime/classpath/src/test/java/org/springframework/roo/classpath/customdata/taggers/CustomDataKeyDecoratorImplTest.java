@@ -0,0 +1,61 @@
+package org.springframework.roo.classpath.customdata.taggers;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.lang.reflect.Field;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.roo.classpath.scanner.MemberDetailsScanner;
+import org.springframework.roo.model.CustomDataAccessor;
+
+/**
+ * Unit test of {@link CustomDataKeyDecoratorImpl}
+ *
+ * @since 2.0
+ */
+public class CustomDataKeyDecoratorImplTest {
+
+  private static final String ADDING_CLASS = "com.example.Adder";
+
+  private CustomDataKeyDecoratorImpl decorator;
+  private MemberDetailsScanner memberDetailsScanner;
+
+  @SuppressWarnings("unchecked")
+  private Matcher<CustomDataAccessor> getMatcher() {
+    return mock(Matcher.class);
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    memberDetailsScanner = mock(MemberDetailsScanner.class);
+    decorator = new CustomDataKeyDecoratorImpl();
+    final Field field = CustomDataKeyDecoratorImpl.class.getDeclaredField("memberDetailsScanner");
+    field.setAccessible(true);
+    field.set(decorator, memberDetailsScanner);
+  }
+
+  @Test
+  public void testRegisteringMatchersEvictsMemberDetails() {
+    // Invoke
+    decorator.registerMatcher(ADDING_CLASS, getMatcher());
+
+    // Check
+    verify(memberDetailsScanner).evictAll();
+  }
+
+  @Test
+  public void testUnregisteringMatchersEvictsMemberDetails() {
+    // Set up
+    decorator.registerMatcher(ADDING_CLASS, getMatcher());
+
+    // Invoke
+    decorator.unregisterMatchers("com.example.Other");
+    decorator.unregisterMatchers(ADDING_CLASS);
+
+    // Check
+    verify(memberDetailsScanner, times(2)).evictAll();
+  }
+}
@@ -1,6 +1,12 @@
 package org.springframework.roo.classpath.details;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.Charset;
 
 import org.springframework.roo.classpath.itd.ItdSourceFileComposer;
 
@@ -27,5 +33,12 @@ public abstract class ItdTypeDetailsTestCase {
 
     // Check
     assertEquals(expectedOutput, actualOutput);
+    assertTrue(composer.isOutputOf(toStream(expectedOutput)));
+    assertFalse(composer.isOutputOf(toStream(expectedOutput + "\n")));
+    assertFalse(composer.isOutputOf(toStream(expectedOutput.substring(1))));
+  }
+
+  private InputStream toStream(final String contents) {
+    return new ByteArrayInputStream(contents.getBytes(Charset.forName("UTF-8")));
   }
 }
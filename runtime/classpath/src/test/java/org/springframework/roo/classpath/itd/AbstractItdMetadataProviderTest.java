@@ -0,0 +1,329 @@
+package org.springframework.roo.classpath.itd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.springframework.roo.classpath.ItdDiscoveryService;
+import org.springframework.roo.classpath.MetadataSnapshotService;
+import org.springframework.roo.classpath.PhysicalTypeCategory;
+import org.springframework.roo.classpath.PhysicalTypeIdentifier;
+import org.springframework.roo.classpath.PhysicalTypeMetadata;
+import org.springframework.roo.classpath.details.ClassOrInterfaceTypeDetails;
+import org.springframework.roo.classpath.details.FieldMetadataBuilder;
+import org.springframework.roo.classpath.details.ItdTypeDetails;
+import org.springframework.roo.classpath.details.ItdTypeDetailsBuilder;
+import org.springframework.roo.classpath.details.annotations.AnnotationMetadata;
+import org.springframework.roo.metadata.MetadataDependencyRegistry;
+import org.springframework.roo.metadata.MetadataIdentificationUtils;
+import org.springframework.roo.metadata.MetadataItem;
+import org.springframework.roo.metadata.MetadataService;
+import org.springframework.roo.model.CustomDataBuilder;
+import org.springframework.roo.model.JavaSymbolName;
+import org.springframework.roo.model.JavaType;
+import org.springframework.roo.process.manager.FileManager;
+import org.springframework.roo.project.LogicalPath;
+import org.springframework.roo.project.Path;
+
+/**
+ * Unit test of {@link AbstractItdMetadataProvider}
+ *
+ * @since 2.0
+ */
+public class AbstractItdMetadataProviderTest {
+
+  private static final JavaType ASPECT = new JavaType("com.example.Person_Roo_Test");
+  private static final JavaType GOVERNOR = new JavaType("com.example.Person");
+  private static final String GOVERNOR_ID = PhysicalTypeIdentifier.createIdentifier(GOVERNOR,
+      LogicalPath.getInstance(Path.SRC_MAIN_JAVA, ""));
+  private static final String ITD_FILENAME = "/project/src/main/java/com/example/Person_Roo_Test.aj";
+  private static final JavaType TRIGGER = new JavaType("com.example.RooTest");
+  private static final String UPSTREAM_ID = MetadataIdentificationUtils.create(
+      "com.example.Upstream", "com.example.Person");
+
+  /**
+   * A provider whose ITDs introduce a field named after an upstream input
+   */
+  private class TestItdMetadataProvider extends AbstractItdMetadataProvider {
+
+    private String fieldName = "name";
+
+    TestItdMetadataProvider() {
+      addMetadataTrigger(TRIGGER);
+    }
+
+    @Override
+    protected String createLocalIdentifier(final JavaType javaType, final LogicalPath path) {
+      return MetadataIdentificationUtils.create(getClass().getName(),
+          javaType.getFullyQualifiedTypeName());
+    }
+
+    @Override
+    protected FileManager getFileManager() {
+      return fileManager;
+    }
+
+    @Override
+    protected String getGovernorPhysicalTypeIdentifier(final String metadataIdentificationString) {
+      return GOVERNOR_ID;
+    }
+
+    public String getItdUniquenessFilenameSuffix() {
+      return "Test";
+    }
+
+    @Override
+    protected ItdDiscoveryService getItdDiscoveryService() {
+      return itdDiscoveryService;
+    }
+
+    @Override
+    protected ItdTypeDetailsProvidingMetadataItem getMetadata(
+        final String metadataIdentificationString, final JavaType aspectName,
+        final PhysicalTypeMetadata governorPhysicalTypeMetadata, final String itdFilename) {
+      builds++;
+      final ItdTypeDetailsBuilder builder =
+          new ItdTypeDetailsBuilder(metadataIdentificationString, governor, aspectName, false);
+      builder.addField(new FieldMetadataBuilder(metadataIdentificationString, Modifier.PRIVATE,
+          new JavaSymbolName(fieldName), JavaType.STRING, null));
+      return new TestMetadata(metadataIdentificationString, builder.build());
+    }
+
+    @Override
+    public MetadataDependencyRegistry getMetadataDependencyRegistry() {
+      return metadataDependencyRegistry;
+    }
+
+    @Override
+    public MetadataService getMetadataService() {
+      return metadataService;
+    }
+
+    @Override
+    protected MetadataSnapshotService getMetadataSnapshotService() {
+      return metadataSnapshotService;
+    }
+
+    @Override
+    protected String getProviderVersion() {
+      return "1";
+    }
+
+    public String getProvidesType() {
+      return MetadataIdentificationUtils.create(getClass().getName());
+    }
+  }
+
+  private class TestMetadata implements ItdTypeDetailsProvidingMetadataItem {
+
+    private final String id;
+    private final ItdTypeDetails itdTypeDetails;
+
+    TestMetadata(final String id, final ItdTypeDetails itdTypeDetails) {
+      this.id = id;
+      this.itdTypeDetails = itdTypeDetails;
+    }
+
+    public String getId() {
+      return id;
+    }
+
+    public ItdTypeDetails getMemberHoldingTypeDetails() {
+      return itdTypeDetails;
+    }
+
+    @Override
+    public int hashCode() {
+      hashCodes++;
+      return itdTypeDetails.hashCode();
+    }
+
+    public boolean isValid() {
+      return true;
+    }
+  }
+
+  private int builds;
+  private final Map<String, String> files = new HashMap<String, String>();
+  private int hashCodes;
+  private FileManager fileManager;
+  private ClassOrInterfaceTypeDetails governor;
+  private PhysicalTypeMetadata governorMetadata;
+  private ItdDiscoveryService itdDiscoveryService;
+  private MetadataDependencyRegistry metadataDependencyRegistry;
+  private String metadataId;
+  private MetadataService metadataService;
+  private MetadataSnapshotService metadataSnapshotService;
+  private TestItdMetadataProvider provider;
+  private int writes;
+
+  private PhysicalTypeMetadata newGovernorMetadata() {
+    final PhysicalTypeMetadata governorMetadata = mock(PhysicalTypeMetadata.class);
+    when(governorMetadata.isValid()).thenReturn(true);
+    when(governorMetadata.getMemberHoldingTypeDetails()).thenReturn(governor);
+    when(governorMetadata.getItdCanonicalPath(provider)).thenReturn(ITD_FILENAME);
+    when(governorMetadata.getItdJavaType(provider)).thenReturn(ASPECT);
+    return governorMetadata;
+  }
+
+  @Before
+  public void setUp() {
+    governor = mock(ClassOrInterfaceTypeDetails.class);
+    when(governor.getAnnotation(TRIGGER)).thenReturn(mock(AnnotationMetadata.class));
+    when(governor.getCustomData()).thenReturn(new CustomDataBuilder().build());
+    when(governor.getModifier()).thenReturn(Modifier.PUBLIC);
+    when(governor.getName()).thenReturn(GOVERNOR);
+    when(governor.getPhysicalTypeCategory()).thenReturn(PhysicalTypeCategory.CLASS);
+    when(governor.getType()).thenReturn(GOVERNOR);
+
+    provider = new TestItdMetadataProvider();
+    metadataId = provider.createLocalIdentifier(GOVERNOR, null);
+
+    governorMetadata = newGovernorMetadata();
+    metadataService = mock(MetadataService.class);
+    when(metadataService.get(GOVERNOR_ID)).thenReturn(governorMetadata);
+
+    // An in-memory file system that counts writes
+    fileManager = mock(FileManager.class);
+    doAnswer(new Answer<Boolean>() {
+      public Boolean answer(final InvocationOnMock invocation) {
+        return files.containsKey(invocation.getArguments()[0]);
+      }
+    }).when(fileManager).exists(anyString());
+    doAnswer(new Answer<InputStream>() {
+      public InputStream answer(final InvocationOnMock invocation) {
+        return new ByteArrayInputStream(files.get(invocation.getArguments()[0]).getBytes());
+      }
+    }).when(fileManager).getInputStream(anyString());
+    doAnswer(new Answer<Void>() {
+      public Void answer(final InvocationOnMock invocation) {
+        files.put((String) invocation.getArguments()[0], (String) invocation.getArguments()[1]);
+        writes++;
+        return null;
+      }
+    }).when(fileManager).createOrUpdateTextFileIfRequired(anyString(), anyString(), anyBoolean());
+
+    itdDiscoveryService = mock(ItdDiscoveryService.class);
+    metadataDependencyRegistry = mock(MetadataDependencyRegistry.class);
+    when(metadataDependencyRegistry.getUpstream(metadataId)).thenReturn(
+        Collections.singleton(UPSTREAM_ID));
+    metadataSnapshotService = mock(MetadataSnapshotService.class);
+  }
+
+  @Test
+  public void testChangedGovernorRecomposesItd() {
+    // Set up
+    provider.get(metadataId);
+    final PhysicalTypeMetadata changedGovernorMetadata = newGovernorMetadata();
+    when(metadataService.get(GOVERNOR_ID)).thenReturn(changedGovernorMetadata);
+
+    // Invoke
+    provider.get(metadataId);
+
+    // Check
+    assertEquals(2, builds);
+    assertEquals(2, writes);
+  }
+
+  @Test
+  public void testEditedItdIsRecomposed() {
+    // Set up
+    provider.get(metadataId);
+    final String composed = files.get(ITD_FILENAME);
+    files.put(ITD_FILENAME, composed.replace("name", "edited"));
+
+    // Invoke
+    provider.get(metadataId);
+
+    // Check
+    assertEquals(2, writes);
+    assertEquals(composed, files.get(ITD_FILENAME));
+  }
+
+  @Test
+  public void testNotifiedItdIsRecomposed() {
+    // Set up
+    provider.get(metadataId);
+    provider.fieldName = "surname";
+    provider.notify(UPSTREAM_ID, metadataId);
+
+    // Invoke
+    provider.get(metadataId);
+
+    // Check
+    assertEquals(2, writes);
+    assertTrue(files.get(ITD_FILENAME).contains("surname"));
+  }
+
+  @Test
+  public void testUnchangedInputsSkipBuildingAndComposition() {
+    // Set up
+    final MetadataItem metadata = provider.get(metadataId);
+    assertNotNull(metadata);
+    assertEquals(1, writes);
+
+    // Invoke
+    final MetadataItem again = provider.get(metadataId);
+
+    // Check
+    assertSame(metadata, again);
+    assertEquals(1, builds);
+    assertEquals(1, hashCodes);
+    assertEquals(1, writes);
+    // The upstream dependencies are registered again
+    verify(metadataDependencyRegistry).registerDependency(UPSTREAM_ID, metadataId);
+    verify(metadataSnapshotService).record(metadataId, GOVERNOR_ID, "1", ITD_FILENAME,
+        files.get(ITD_FILENAME));
+  }
+
+  @Test
+  public void testUnchangedSinceLastSessionIsBuiltAgainOnceNotified() {
+    // Set up
+    files.put(ITD_FILENAME, "// written in a previous session");
+    when(metadataSnapshotService.isUnchanged(metadataId, "1", ITD_FILENAME)).thenReturn(true);
+    provider.get(metadataId);
+    provider.notify(UPSTREAM_ID, metadataId);
+
+    // Invoke
+    provider.get(metadataId);
+
+    // Check
+    assertEquals(2, builds);
+    assertEquals(1, writes);
+    assertTrue(files.get(ITD_FILENAME).contains("name"));
+  }
+
+  @Test
+  public void testUnchangedSinceLastSessionSkipsComposition() {
+    // Set up
+    files.put(ITD_FILENAME, "// written in a previous session");
+    when(metadataSnapshotService.isUnchanged(metadataId, "1", ITD_FILENAME)).thenReturn(true);
+
+    // Invoke
+    final MetadataItem metadata = provider.get(metadataId);
+
+    // Check
+    assertNotNull(metadata);
+    assertEquals(1, builds);
+    assertEquals(0, hashCodes);
+    assertEquals(0, writes);
+  }
+}
@@ -0,0 +1,268 @@
+package org.springframework.roo.classpath.scanner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.lang.reflect.Field;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.springframework.roo.classpath.ItdDiscoveryService;
+import org.springframework.roo.classpath.PhysicalTypeIdentifier;
+import org.springframework.roo.classpath.details.ClassOrInterfaceTypeDetails;
+import org.springframework.roo.classpath.itd.ItdMetadataProvider;
+import org.springframework.roo.metadata.MetadataDependencyRegistry;
+import org.springframework.roo.metadata.MetadataIdentificationUtils;
+import org.springframework.roo.metadata.MetadataItem;
+import org.springframework.roo.metadata.MetadataService;
+import org.springframework.roo.model.JavaType;
+import org.springframework.roo.project.LogicalPath;
+import org.springframework.roo.project.Path;
+
+/**
+ * Unit test of the caching done by {@link MemberDetailsScannerImpl}
+ *
+ * @since 2.0
+ */
+public class MemberDetailsScannerImplTest {
+
+  private static final String ITD_PROVIDER = "com.example.TestMetadata";
+  private static final String REQUESTING_CLASS = "com.example.Requester";
+
+  private static String getGovernorId(final String simpleTypeName) {
+    return PhysicalTypeIdentifier.createIdentifier(new JavaType("com.example." + simpleTypeName),
+        LogicalPath.getInstance(Path.SRC_MAIN_JAVA, ""));
+  }
+
+  private static String getItdId(final String governorId) {
+    return MetadataIdentificationUtils.create(ITD_PROVIDER,
+        PhysicalTypeIdentifier.getJavaType(governorId).getFullyQualifiedTypeName());
+  }
+
+  @SuppressWarnings("unchecked")
+  private static void add(final Object target, final String fieldName, final Object element)
+      throws Exception {
+    final Field field = target.getClass().getDeclaredField(fieldName);
+    field.setAccessible(true);
+    ((Collection<Object>) field.get(target)).add(element);
+  }
+
+  private int builds;
+  private ItdDiscoveryService itdDiscoveryService;
+  private final Map<String, Long> notificationCounts = new HashMap<String, Long>();
+  private MemberDetailsScannerImpl scanner;
+
+  private ClassOrInterfaceTypeDetails getCid(final String simpleTypeName,
+      final ClassOrInterfaceTypeDetails superclass) {
+    final ClassOrInterfaceTypeDetails cid = mock(ClassOrInterfaceTypeDetails.class);
+    when(cid.getDeclaredByMetadataId()).thenReturn(getGovernorId(simpleTypeName));
+    when(cid.getName()).thenReturn(new JavaType("com.example." + simpleTypeName));
+    when(cid.getSuperclass()).thenReturn(superclass);
+    return cid;
+  }
+
+  private MemberDetails getMemberDetails(final ClassOrInterfaceTypeDetails cid) {
+    return scanner.getMemberDetails(REQUESTING_CLASS, cid);
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    // Each build asks the metadata service for the ITD of each type in the
+    // hierarchy
+    final MetadataService metadataService = mock(MetadataService.class);
+    doAnswer(new Answer<MetadataItem>() {
+      public MetadataItem answer(final InvocationOnMock invocation) {
+        builds++;
+        return null;
+      }
+    }).when(metadataService).get(anyString());
+    final MetadataDependencyRegistry metadataDependencyRegistry =
+        mock(MetadataDependencyRegistry.class);
+    doAnswer(new Answer<Long>() {
+      public Long answer(final InvocationOnMock invocation) {
+        final Long count = notificationCounts.get(invocation.getArguments()[0]);
+        return count == null ? 0 : count;
+      }
+    }).when(metadataDependencyRegistry).getNotificationCount(anyString());
+    itdDiscoveryService = mock(ItdDiscoveryService.class);
+
+    final ItdMetadataProvider provider = mock(ItdMetadataProvider.class);
+    when(provider.getProvidesType()).thenReturn(MetadataIdentificationUtils.create(ITD_PROVIDER));
+    doAnswer(new Answer<String>() {
+      public String answer(final InvocationOnMock invocation) {
+        return getItdId((String) invocation.getArguments()[0]);
+      }
+    }).when(provider).getIdForPhysicalJavaType(anyString());
+    final MemberDetailsDecorator decorator = mock(MemberDetailsDecorator.class);
+    doAnswer(new Answer<MemberDetails>() {
+      public MemberDetails answer(final InvocationOnMock invocation) {
+        return (MemberDetails) invocation.getArguments()[1];
+      }
+    }).when(decorator).decorate(anyString(), any(MemberDetails.class));
+
+    scanner = new MemberDetailsScannerImpl();
+    scanner.itdDiscoveryService = itdDiscoveryService;
+    scanner.metadataDependencyRegistry = metadataDependencyRegistry;
+    scanner.metadataService = metadataService;
+    add(scanner, "decorators", decorator);
+    add(scanner, "providers", provider);
+  }
+
+  @Test
+  public void testUnchangedHierarchyIsCached() {
+    // Set up
+    final ClassOrInterfaceTypeDetails cid = getCid("Person", getCid("Entity", null));
+    final MemberDetails memberDetails = getMemberDetails(cid);
+
+    // Invoke
+    final MemberDetails cached = getMemberDetails(cid);
+
+    // Check
+    assertSame(memberDetails, cached);
+    assertEquals(2, builds);
+    assertTrue(scanner.toString(), scanner.toString().contains("cacheHits=1,"));
+  }
+
+  @Test
+  public void testReparsedSuperclassIsRebuilt() {
+    // Set up
+    final ClassOrInterfaceTypeDetails superclass = getCid("Entity", null);
+    final ClassOrInterfaceTypeDetails cid = getCid("Person", superclass);
+    getMemberDetails(cid);
+    final ClassOrInterfaceTypeDetails reparsed = getCid("Entity", null);
+    when(cid.getSuperclass()).thenReturn(reparsed);
+
+    // Invoke
+    getMemberDetails(cid);
+
+    // Check
+    assertEquals(4, builds);
+  }
+
+  @Test
+  public void testNotifiedSuperclassIsRebuilt() {
+    // Set up
+    final ClassOrInterfaceTypeDetails cid = getCid("Person", getCid("Entity", null));
+    getMemberDetails(cid);
+
+    // Invoke
+    scanner.notify(getGovernorId("Entity"), null);
+    getMemberDetails(cid);
+
+    // Check
+    assertEquals(4, builds);
+  }
+
+  @Test
+  public void testNotifiedItdIsRebuilt() {
+    // Set up
+    final ClassOrInterfaceTypeDetails cid = getCid("Person", null);
+    getMemberDetails(cid);
+
+    // Invoke
+    scanner.notify(getItdId(getGovernorId("Person")), null);
+    getMemberDetails(cid);
+
+    // Check
+    assertEquals(2, builds);
+  }
+
+  @Test
+  public void testNotifiedItdClassIsRebuilt() {
+    // Set up
+    final ClassOrInterfaceTypeDetails cid = getCid("Person", null);
+    getMemberDetails(cid);
+
+    // Invoke
+    scanner.notify(MetadataIdentificationUtils.create(ITD_PROVIDER), null);
+    getMemberDetails(cid);
+
+    // Check
+    assertEquals(2, builds);
+  }
+
+  @Test
+  public void testChangedItdsAreRebuilt() {
+    // Set up
+    final ClassOrInterfaceTypeDetails cid = getCid("Person", null);
+    getMemberDetails(cid);
+    when(
+        itdDiscoveryService.haveItdsChanged(MemberDetailsScannerImpl.class.getName(),
+            new JavaType("com.example.Person"))).thenReturn(true);
+
+    // Invoke
+    getMemberDetails(cid);
+
+    // Check
+    assertEquals(2, builds);
+  }
+
+  @Test
+  public void testNotificationHeldInBatchMakesResultStale() {
+    // Set up
+    final ClassOrInterfaceTypeDetails cid = getCid("Person", null);
+    final MemberDetails memberDetails = getMemberDetails(cid);
+
+    // Invoke
+    // The registry counts the notification but doesn't deliver it until the
+    // batch ends
+    notificationCounts.put(getItdId(getGovernorId("Person")), 1L);
+    final MemberDetails rebuilt = getMemberDetails(cid);
+
+    // Check
+    assertNotSame(memberDetails, rebuilt);
+    assertEquals(2, builds);
+    assertSame(rebuilt, getMemberDetails(cid));
+    assertEquals(2, builds);
+  }
+
+  @Test
+  public void testLeastRecentlyUsedResultIsEvicted() {
+    // Set up
+    final ClassOrInterfaceTypeDetails first = getCid("Type0", null);
+    final ClassOrInterfaceTypeDetails second = getCid("Type1", null);
+    getMemberDetails(first);
+    getMemberDetails(second);
+    for (int i = 2; i < MemberDetailsScannerImpl.CACHE_CAPACITY; i++) {
+      getMemberDetails(getCid("Type" + i, null));
+    }
+    getMemberDetails(first);
+    assertEquals(MemberDetailsScannerImpl.CACHE_CAPACITY, builds);
+
+    // Invoke
+    getMemberDetails(getCid("Type" + MemberDetailsScannerImpl.CACHE_CAPACITY, null));
+
+    // Check
+    assertTrue(scanner.toString(), scanner.toString().contains("cacheEvictions=1,"));
+    getMemberDetails(first);
+    assertEquals(MemberDetailsScannerImpl.CACHE_CAPACITY + 1, builds);
+    getMemberDetails(second);
+    assertEquals(MemberDetailsScannerImpl.CACHE_CAPACITY + 2, builds);
+  }
+
+  @Test
+  public void testEvictAll() {
+    // Set up
+    final ClassOrInterfaceTypeDetails cid = getCid("Person", null);
+    getMemberDetails(cid);
+
+    // Invoke
+    scanner.evictAll();
+    getMemberDetails(cid);
+
+    // Check
+    assertEquals(2, builds);
+  }
+}
@@ -0,0 +1,327 @@
+package org.springframework.roo.felix.help;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+import org.springframework.roo.shell.CliCommand;
+import org.springframework.roo.shell.CliOption;
+import org.springframework.roo.shell.CommandMarker;
+import org.springframework.roo.shell.NaturalOrderComparator;
+import org.springframework.roo.shell.SimpleParser;
+
+/**
+ * An index of the {@link CliCommand}s offered by a set of
+ * {@link CommandMarker}s, built once per set of commands so that help
+ * requests don't reflect over every command.
+ * <p>
+ * Besides locating commands by the start of their names, as the shell does,
+ * it keeps an inverted index of the words in command names, option keys and
+ * help texts, so that commands can be found by what they do. Words found in
+ * command names weigh more than those in option keys, which weigh more than
+ * those in help texts; exact matches weigh more than prefixes, which weigh
+ * more than words one typo away.
+ * <p>
+ * Not thread-safe; {@link HelpServiceImpl} guards it with its own mutex.
+ *
+ * @since 2.0
+ */
+class HelpIndex {
+
+  /**
+   * A {@link CliCommand} method, along with what was resolved about it when
+   * it was indexed and what was rendered about it since.
+   */
+  static class IndexedCommand {
+    private final CliCommand cliCommand;
+    private final List<CliOption> cliOptions;
+    private final CommandMarker command;
+    private String help;
+    private final Method method;
+    private List<String> summary;
+
+    IndexedCommand(final CommandMarker command, final Method method, final CliCommand cliCommand) {
+      this.cliCommand = cliCommand;
+      this.command = command;
+      this.method = method;
+      final List<CliOption> cliOptions = new ArrayList<CliOption>();
+      for (final Annotation[] annotations : method.getParameterAnnotations()) {
+        for (final Annotation annotation : annotations) {
+          if (annotation instanceof CliOption) {
+            cliOptions.add((CliOption) annotation);
+          }
+        }
+      }
+      this.cliOptions = Collections.unmodifiableList(cliOptions);
+    }
+
+    CliCommand getCliCommand() {
+      return cliCommand;
+    }
+
+    /**
+     * @return the {@link CliOption}s of the method's parameters, in
+     *         declaration order
+     */
+    List<CliOption> getCliOptions() {
+      return cliOptions;
+    }
+
+    CommandMarker getCommand() {
+      return command;
+    }
+
+    /**
+     * @return the rendered help of this command, or <code>null</code> if it
+     *         hasn't been rendered yet
+     */
+    String getHelp() {
+      return help;
+    }
+
+    Method getMethod() {
+      return method;
+    }
+
+    /**
+     * @return the command's primary name, e.g. "project setup"
+     */
+    String getName() {
+      return cliCommand.value()[0];
+    }
+
+    /**
+     * @return the lines describing this command in a command index, or
+     *         <code>null</code> if they haven't been rendered yet
+     */
+    List<String> getSummary() {
+      return summary;
+    }
+
+    void setHelp(final String help) {
+      this.help = help;
+    }
+
+    void setSummary(final List<String> summary) {
+      this.summary = summary;
+    }
+  }
+
+  private static final Comparator<Object> COMPARATOR = new NaturalOrderComparator<Object>();
+
+  // Weights of where a word was found
+  private static final int COMMAND_WEIGHT = 3;
+  private static final int OPTION_WEIGHT = 2;
+  private static final int HELP_WEIGHT = 1;
+
+  // Weights of how a searched word matched an indexed one
+  private static final int EXACT_MATCH = 4;
+  private static final int PREFIX_MATCH = 2;
+  private static final int FUZZY_MATCH = 1;
+
+  // Shorter words are too likely to be one typo away from unrelated ones
+  private static final int MIN_FUZZY_LENGTH = 4;
+
+  private static final Pattern CAMEL_CASE_BOUNDARY = Pattern
+      .compile("(?<=\\p{Lower})(?=\\p{Upper})");
+  private static final Pattern WORD_SEPARATOR = Pattern.compile("[^\\p{Alnum}]+");
+
+  /**
+   * Splits the given text into the lower case words it's indexed or searched
+   * by. Camel case words are indexed both whole and by their parts, so that
+   * "--topLevelPackage" is found by "toplevelpackage" as well as "package".
+   *
+   * @param text the text to split (can be blank)
+   * @return a non-<code>null</code> set
+   */
+  static Set<String> getWords(final String text) {
+    final Set<String> words = new LinkedHashSet<String>();
+    if (StringUtils.isBlank(text)) {
+      return words;
+    }
+    for (final String word : WORD_SEPARATOR.split(text)) {
+      addWord(word, words);
+      for (final String part : CAMEL_CASE_BOUNDARY.split(word)) {
+        addWord(part, words);
+      }
+    }
+    return words;
+  }
+
+  private static void addWord(final String word, final Set<String> words) {
+    if (word.length() > 1) {
+      words.add(word.toLowerCase(Locale.ENGLISH));
+    }
+  }
+
+  private static void addScore(final Map<IndexedCommand, Integer> scores,
+      final Map<IndexedCommand, Integer> weights, final int match) {
+    for (final Entry<IndexedCommand, Integer> weight : weights.entrySet()) {
+      final Integer score = scores.get(weight.getKey());
+      final int newScore = weight.getValue() * match;
+      if (score == null || score < newScore) {
+        scores.put(weight.getKey(), newScore);
+      }
+    }
+  }
+
+  private final List<IndexedCommand> commands = new ArrayList<IndexedCommand>();
+
+  // Word => the commands it was found in => the weight of where it was found
+  private final TreeMap<String, Map<IndexedCommand, Integer>> postings =
+      new TreeMap<String, Map<IndexedCommand, Integer>>();
+
+  /**
+   * Constructor
+   *
+   * @param markers the commands to index (required)
+   */
+  HelpIndex(final Collection<? extends CommandMarker> markers) {
+    Validate.notNull(markers, "Commands required");
+    for (final CommandMarker marker : markers) {
+      for (final Method method : marker.getClass().getMethods()) {
+        final CliCommand cliCommand = method.getAnnotation(CliCommand.class);
+        if (cliCommand != null) {
+          final IndexedCommand command = new IndexedCommand(marker, method, cliCommand);
+          commands.add(command);
+          for (final String value : cliCommand.value()) {
+            addPostings(command, value, COMMAND_WEIGHT);
+          }
+          addPostings(command, cliCommand.help(), HELP_WEIGHT);
+          for (final CliOption cliOption : command.getCliOptions()) {
+            for (final String key : cliOption.key()) {
+              addPostings(command, key, OPTION_WEIGHT);
+            }
+            addPostings(command, cliOption.help(), HELP_WEIGHT);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * @return every indexed command
+   */
+  List<IndexedCommand> getCommands() {
+    return Collections.unmodifiableList(commands);
+  }
+
+  /**
+   * Returns the commands one of whose names starts with the given words, as
+   * {@link SimpleParser} would match them; a blank pattern matches every
+   * command.
+   *
+   * @param pattern the start of a command name (required)
+   * @return a non-<code>null</code> collection
+   */
+  Collection<IndexedCommand> locate(final String pattern) {
+    Validate.notNull(pattern, "Pattern required");
+    final Collection<IndexedCommand> result = new LinkedHashSet<IndexedCommand>();
+    for (final IndexedCommand command : commands) {
+      for (final String value : command.getCliCommand().value()) {
+        if (SimpleParser.isMatch(pattern, value, false) != null) {
+          result.add(command);
+          break;
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the commands whose names, option keys or help texts contain
+   * every word of the given text, or words close to them, the most relevant
+   * first.
+   *
+   * @param text the words to search for (can be blank)
+   * @return a non-<code>null</code> list
+   */
+  List<IndexedCommand> search(final String text) {
+    Map<IndexedCommand, Integer> totals = null;
+    for (final String word : getWords(text)) {
+      final Map<IndexedCommand, Integer> scores = getScores(word);
+      if (totals == null) {
+        totals = scores;
+        continue;
+      }
+      for (final Iterator<Entry<IndexedCommand, Integer>> iterator =
+          totals.entrySet().iterator(); iterator.hasNext();) {
+        final Entry<IndexedCommand, Integer> total = iterator.next();
+        final Integer score = scores.get(total.getKey());
+        if (score == null) {
+          iterator.remove();
+        } else {
+          total.setValue(total.getValue() + score);
+        }
+      }
+    }
+    if (totals == null) {
+      return Collections.emptyList();
+    }
+
+    final Map<IndexedCommand, Integer> relevance = totals;
+    final List<IndexedCommand> result = new ArrayList<IndexedCommand>(relevance.keySet());
+    Collections.sort(result, new Comparator<IndexedCommand>() {
+      public int compare(final IndexedCommand command1, final IndexedCommand command2) {
+        final int byRelevance = relevance.get(command2).compareTo(relevance.get(command1));
+        if (byRelevance != 0) {
+          return byRelevance;
+        }
+        return COMPARATOR.compare(command1.getName(), command2.getName());
+      }
+    });
+    return result;
+  }
+
+  private void addPostings(final IndexedCommand command, final String text, final int weight) {
+    for (final String word : getWords(text)) {
+      Map<IndexedCommand, Integer> weights = postings.get(word);
+      if (weights == null) {
+        weights = new HashMap<IndexedCommand, Integer>();
+        postings.put(word, weights);
+      }
+      final Integer existing = weights.get(command);
+      if (existing == null || existing < weight) {
+        weights.put(command, weight);
+      }
+    }
+  }
+
+  /**
+   * Scores each command containing the given word or a word close to it,
+   * keeping the best way it was found.
+   */
+  private Map<IndexedCommand, Integer> getScores(final String word) {
+    final Map<IndexedCommand, Integer> scores = new HashMap<IndexedCommand, Integer>();
+    for (final Entry<String, Map<IndexedCommand, Integer>> posting : postings.subMap(word,
+        word + Character.MAX_VALUE).entrySet()) {
+      addScore(scores, posting.getValue(),
+          posting.getKey().equals(word) ? EXACT_MATCH : PREFIX_MATCH);
+    }
+    if (word.length() >= MIN_FUZZY_LENGTH) {
+      for (final Entry<String, Map<IndexedCommand, Integer>> posting : postings.entrySet()) {
+        final String indexed = posting.getKey();
+        if (Math.abs(indexed.length() - word.length()) <= 1 && !indexed.startsWith(word)
+            && StringUtils.getLevenshteinDistance(indexed, word, 1) != -1) {
+          addScore(scores, posting.getValue(), FUZZY_MATCH);
+        }
+      }
+    }
+    return scores;
+  }
+}
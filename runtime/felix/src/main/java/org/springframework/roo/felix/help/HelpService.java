@@ -16,7 +16,8 @@ public interface HelpService {
   void helpReferenceGuide();
 
   /**
-   * Shows Spring Roo help
+   * Shows Spring Roo help: the commands whose names start with the given
+   * buffer or, if there are none, those mentioning its words
    */
   void obtainHelp(String buffer);
 
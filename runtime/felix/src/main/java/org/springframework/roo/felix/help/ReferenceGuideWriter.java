@@ -0,0 +1,251 @@
+package org.springframework.roo.felix.help;
+
+import static org.apache.commons.io.IOUtils.LINE_SEPARATOR;
+
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.apache.commons.lang3.Validate;
+import org.springframework.roo.felix.help.HelpIndex.IndexedCommand;
+import org.springframework.roo.shell.AbstractShell;
+import org.springframework.roo.shell.CliOption;
+import org.springframework.roo.shell.CommandMarker;
+import org.springframework.roo.shell.NaturalOrderComparator;
+import org.springframework.roo.support.util.XmlUtils;
+
+/**
+ * Writes the command index appendix of the reference guide, in DocBook
+ * format. The appendix is streamed one section at a time, so that only the
+ * commands of the section being written are held in memory, rather than a
+ * DOM of the whole appendix.
+ *
+ * @since 2.0
+ */
+class ReferenceGuideWriter {
+
+  /**
+   * The DocBook description of a command: its mandatory syntax and the help
+   * of each of its options.
+   */
+  private static class CommandEntry {
+    private final IndexedCommand command;
+    private final List<String> optionKeys = new ArrayList<String>();
+    private final List<String> optionHelps = new ArrayList<String>();
+    private final String syntax;
+
+    CommandEntry(final IndexedCommand command) {
+      this.command = command;
+      final StringBuilder cmdSyntax = new StringBuilder();
+      cmdSyntax.append(command.getName());
+
+      for (final CliOption option : command.getCliOptions()) {
+        // Figure out which key we want to use (use first non-empty
+        // string, or make it "(default)" if needed)
+        String key = option.key()[0];
+        if ("".equals(key)) {
+          for (final String otherKey : option.key()) {
+            if (!"".equals(otherKey)) {
+              key = otherKey;
+              break;
+            }
+          }
+          if ("".equals(key)) {
+            key = "[default]";
+          }
+        }
+
+        final StringBuilder help = new StringBuilder();
+        if ("".equals(option.help())) {
+          help.append("No help available");
+        } else {
+          help.append(option.help());
+        }
+        if (option.specifiedDefaultValue().equals(option.unspecifiedDefaultValue())) {
+          if (option.specifiedDefaultValue().equals(null)) {
+            help.append("; no default value");
+          } else {
+            help.append("; default: '").append(option.specifiedDefaultValue()).append("'");
+          }
+        } else {
+          if (!"".equals(option.specifiedDefaultValue())
+              && !HelpServiceImpl.NULL.equals(option.specifiedDefaultValue())) {
+            help.append("; default if option present: '")
+                .append(option.specifiedDefaultValue()).append("'");
+          }
+          if (!"".equals(option.unspecifiedDefaultValue())
+              && !HelpServiceImpl.NULL.equals(option.unspecifiedDefaultValue())) {
+            help.append("; default if option not present: '")
+                .append(option.unspecifiedDefaultValue()).append("'");
+          }
+        }
+        help.append(option.mandatory() ? " " : "");
+
+        key = "--" + key;
+        optionKeys.add(key);
+        optionHelps.add(help.toString());
+
+        // Include it in the mandatory syntax
+        if (option.mandatory()) {
+          cmdSyntax.append(" ").append(key);
+        }
+      }
+      syntax = cmdSyntax.toString();
+    }
+  }
+
+  private static final Comparator<Object> COMPARATOR = new NaturalOrderComparator<Object>();
+  private static final String DOCBOOK_NAMESPACE = "http://docbook.org/ns/docbook";
+  private static final Pattern SECTION_NAME_WORD = Pattern.compile("[A-Z][^A-Z]*");
+
+  /**
+   * Returns the name of the appendix section listing the given class'
+   * commands, i.e. its simple name split into words.
+   */
+  private static String getSectionName(final Class<?> commandClass) {
+    final Matcher matcher = SECTION_NAME_WORD.matcher(commandClass.getSimpleName());
+    final StringBuilder string = new StringBuilder();
+    while (matcher.find()) {
+      string.append(matcher.group()).append(" ");
+    }
+    return string.toString().trim();
+  }
+
+  private final XMLStreamWriter writer;
+
+  /**
+   * Constructor
+   *
+   * @param outputStream the stream to write the appendix to, in UTF-8; the
+   *            caller remains responsible for closing it (required)
+   */
+  ReferenceGuideWriter(final OutputStream outputStream) {
+    Validate.notNull(outputStream, "Output stream required");
+    writer = XmlUtils.createIndentingXmlStreamWriter(outputStream);
+  }
+
+  /**
+   * Writes the appendix documenting the given commands, one section per
+   * {@link CommandMarker} class.
+   *
+   * @param commands the commands to document (required)
+   */
+  void write(final List<IndexedCommand> commands) {
+    Validate.notNull(commands, "Commands required");
+
+    // Compute the sections we'll be outputting, and get them into a nice
+    // order
+    final SortedMap<String, CommandMarker> sections =
+        new TreeMap<String, CommandMarker>(COMPARATOR);
+    final Map<CommandMarker, List<IndexedCommand>> commandsByMarker =
+        new HashMap<CommandMarker, List<IndexedCommand>>();
+    for (final IndexedCommand command : commands) {
+      List<IndexedCommand> markerCommands = commandsByMarker.get(command.getCommand());
+      if (markerCommands == null) {
+        final String sectionName = getSectionName(command.getCommand().getClass());
+        if (sections.containsKey(sectionName)) {
+          throw new IllegalStateException("Section name '" + sectionName + "' not unique");
+        }
+        sections.put(sectionName, command.getCommand());
+        markerCommands = new ArrayList<IndexedCommand>();
+        commandsByMarker.put(command.getCommand(), markerCommands);
+      }
+      markerCommands.add(command);
+    }
+
+    try {
+      writer.writeStartDocument("UTF-8", "1.0");
+      writer.writeStartElement("appendix");
+      writer.writeDefaultNamespace(DOCBOOK_NAMESPACE);
+      writer.writeAttribute("version", "5.0");
+      writeId("command-index");
+      writeTextElement("title", "Command Index");
+      writeTextElement("para", "This appendix was automatically built from Roo "
+          + AbstractShell.versionInfo() + ".");
+      writeTextElement(
+          "para",
+          "Commands are listed in alphabetic order, and are shown in monospaced font with any mandatory options you must specify when using the command. Most commands accept a large number of options, and all of the possible options for each command are presented in this appendix.");
+
+      for (final Entry<String, CommandMarker> section : sections.entrySet()) {
+        writeSection(section.getKey(), section.getValue(),
+            commandsByMarker.get(section.getValue()));
+      }
+
+      writer.writeEndElement();
+      writer.writeCharacters(LINE_SEPARATOR);
+      writer.writeEndDocument();
+      writer.flush();
+    } catch (final XMLStreamException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private void writeCommand(final CommandEntry entry) throws XMLStreamException {
+    final String name = entry.command.getName();
+    final String safeName = name.replace("\\", "BCK").replace("/", "FWD").replace("*", "ASX");
+    writer.writeStartElement("section");
+    writeId("command-index-" + safeName.toLowerCase().replace(' ', '-'));
+    writeTextElement("title", name);
+    writeTextElement("para", entry.command.getCliCommand().help());
+    writer.writeStartElement("programlisting");
+    writer.writeCData(entry.syntax);
+    writer.writeEndElement();
+
+    if (entry.optionKeys.isEmpty()) {
+      writeTextElement("para", "This command does not accept any options.");
+    } else {
+      writer.writeStartElement("variablelist");
+      for (int i = 0; i < entry.optionKeys.size(); i++) {
+        writer.writeStartElement("varlistentry");
+        writeTextElement("term", entry.optionKeys.get(i));
+        writer.writeStartElement("listitem");
+        writeTextElement("para", entry.optionHelps.get(i));
+        writer.writeEndElement();
+        writer.writeEndElement();
+      }
+      writer.writeEndElement();
+    }
+    writer.writeEndElement();
+  }
+
+  private void writeId(final String id) throws XMLStreamException {
+    writer.writeAttribute(XMLConstants.XML_NS_PREFIX, XMLConstants.XML_NS_URI, "id", id);
+  }
+
+  private void writeSection(final String section, final CommandMarker target,
+      final List<IndexedCommand> commands) throws XMLStreamException {
+    final SortedMap<String, CommandEntry> individualCommands =
+        new TreeMap<String, CommandEntry>(COMPARATOR);
+    for (final IndexedCommand command : commands) {
+      final CommandEntry entry = new CommandEntry(command);
+      individualCommands.put(entry.syntax, entry);
+    }
+
+    writer.writeStartElement("section");
+    writeId("command-index-" + section.toLowerCase().replace(' ', '-'));
+    writeTextElement("title", section);
+    writeTextElement("para", section + " are contained in " + target.getClass().getName() + ".");
+    for (final CommandEntry entry : individualCommands.values()) {
+      writeCommand(entry);
+    }
+    writer.writeEndElement();
+  }
+
+  private void writeTextElement(final String name, final String text) throws XMLStreamException {
+    writer.writeStartElement(name);
+    writer.writeCharacters(text);
+    writer.writeEndElement();
+  }
+}
@@ -0,0 +1,125 @@
+package org.springframework.roo.felix.help;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.roo.felix.help.HelpIndex.IndexedCommand;
+import org.springframework.roo.shell.CliCommand;
+import org.springframework.roo.shell.CliOption;
+import org.springframework.roo.shell.CommandMarker;
+
+/**
+ * Unit test of {@link HelpIndex}
+ *
+ * @since 2.0
+ */
+public class HelpIndexTest {
+
+  public static class FieldCommands implements CommandMarker {
+
+    @CliCommand(value = "field string", help = "Adds a string field")
+    public void string(
+        @CliOption(key = "fieldName", mandatory = true, help = "The name of the field") final String fieldName) {}
+
+    @CliCommand(value = "fields list", help = "Lists the fields of a type")
+    public void list() {}
+
+    @CliCommand(value = "yield report", help = "Reports the yield")
+    public void report() {}
+  }
+
+  public static class ProjectCommands implements CommandMarker {
+
+    @CliCommand(value = "project scan", help = "Changes the file system scanning speed")
+    public void scan(@CliOption(key = "ms", help = "Milliseconds between scans") final long ms) {}
+
+    @CliCommand(value = {"project setup", "project create"}, help = "Creates a new project")
+    public void setup(
+        @CliOption(key = "topLevelPackage", mandatory = true,
+            help = "The uppermost package name") final String topLevelPackage) {}
+  }
+
+  private static List<String> getNames(final Collection<IndexedCommand> commands) {
+    final List<String> names = new ArrayList<String>();
+    for (final IndexedCommand command : commands) {
+      names.add(command.getName());
+    }
+    return names;
+  }
+
+  private HelpIndex index;
+
+  @Before
+  public void setUp() {
+    index = new HelpIndex(Arrays.asList(new ProjectCommands(), new FieldCommands()));
+  }
+
+  @Test
+  public void testGetWordsSplitsCamelCase() {
+    assertEquals(Arrays.asList("toplevelpackage", "top", "level", "package"),
+        new ArrayList<String>(HelpIndex.getWords("--topLevelPackage")));
+  }
+
+  @Test
+  public void testLocateMatchesStartOfAnyName() {
+    // In no particular order
+    assertEquals(new HashSet<String>(Arrays.asList("project scan", "project setup")),
+        new HashSet<String>(getNames(index.locate("proj"))));
+    assertEquals(Arrays.asList("project setup"), getNames(index.locate("project cr")));
+    assertEquals(5, index.locate("").size());
+  }
+
+  @Test
+  public void testSearchFindsWordOneTypoAway() {
+    assertEquals(Arrays.asList("project scan", "project setup"), getNames(index.search("projct")));
+    assertEquals(Arrays.asList("project scan", "project setup"),
+        getNames(index.search("projectt")));
+  }
+
+  @Test
+  public void testSearchForBlankTextFindsNothing() {
+    assertTrue(index.search(" ").isEmpty());
+  }
+
+  @Test
+  public void testSearchForUnknownWordFindsNothing() {
+    assertTrue(index.search("entity").isEmpty());
+  }
+
+  @Test
+  public void testSearchIgnoresTyposInShortWords() {
+    // "ms" is the option key of "project scan"
+    assertEquals(Arrays.asList("project scan"), getNames(index.search("ms")));
+    assertTrue(index.search("mz").isEmpty());
+  }
+
+  @Test
+  public void testSearchIntersectsWords() {
+    assertEquals(Arrays.asList("project scan"), getNames(index.search("project scanning")));
+    // The report's "yield" is a typo of "field" away
+    assertEquals(Arrays.asList("yield report"), getNames(index.search("field report")));
+    assertTrue(index.search("project field").isEmpty());
+  }
+
+  @Test
+  public void testSearchRanksByWhereWordWasFound() {
+    // In an option key of "field string", and in an option's help of
+    // "project setup"
+    assertEquals(Arrays.asList("field string", "project setup"), getNames(index.search("name")));
+  }
+
+  @Test
+  public void testSearchRanksExactThenPrefixThenTypoMatches() {
+    // Exact in "field string", prefix of "fields", one typo from "yield"
+    assertEquals(Arrays.asList("field string", "fields list", "yield report"),
+        getNames(index.search("Field")));
+  }
+}
@@ -0,0 +1,138 @@
+package org.springframework.roo.felix.help;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+import org.springframework.roo.shell.CliCommand;
+import org.springframework.roo.shell.CliOption;
+import org.springframework.roo.shell.CommandMarker;
+import org.springframework.roo.support.util.DomUtils;
+import org.springframework.roo.support.util.XmlUtils;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * Unit test of {@link ReferenceGuideWriter}
+ *
+ * @since 2.0
+ */
+public class ReferenceGuideWriterTest {
+
+  public static class ProjectCommands implements CommandMarker {
+
+    @CliCommand(value = "project scan", help = "Scans the project for changes")
+    public void scan() {}
+
+    @CliCommand(value = {"project setup", "project create"}, help = "Creates a new project")
+    public void setup(
+        @CliOption(key = {"", "topLevelPackage"}, mandatory = true,
+            help = "The uppermost package name") final String topLevelPackage,
+        @CliOption(key = "java", specifiedDefaultValue = "8", unspecifiedDefaultValue = "7") final String java,
+        @CliOption(key = "multimodule", specifiedDefaultValue = "true",
+            unspecifiedDefaultValue = "true", help = "Whether to create modules") final boolean multimodule,
+        @CliOption(key = "parent", help = "The parent project") final String parent,
+        @CliOption(key = "packaging", mandatory = true, unspecifiedDefaultValue = "jar",
+            help = "The packaging") final String packaging) {}
+  }
+
+  public static class WebMvcCommands implements CommandMarker {
+
+    @CliCommand(value = "web mvc view/jsp", help = "Adds a view")
+    public void view(@CliOption(key = "", mandatory = true, help = "The name of the view") final String name) {}
+  }
+
+  public static class MoreProjectCommands implements CommandMarker {
+
+    @CliCommand(value = "project scan speed", help = "Changes the scanning speed")
+    public void speed() {}
+  }
+
+  /**
+   * Holds commands whose class has the same simple name as another's
+   */
+  public static class Duplicate {
+
+    public static class ProjectCommands implements CommandMarker {
+
+      @CliCommand(value = "project version", help = "Shows the project version")
+      public void version() {}
+    }
+  }
+
+  private static final String VERSION_PARAGRAPH = "This appendix was automatically built from Roo";
+
+  /**
+   * Parses the given appendix, dropping the whitespace between its elements
+   * and the version of Roo it was built from, which depends on how the shell
+   * is packaged
+   */
+  private static Document parse(final InputStream appendix) {
+    final Document document = XmlUtils.readXml(appendix);
+    DomUtils.removeTextNodes(document);
+    for (final Element para : XmlUtils.findElements("/appendix/para",
+        document.getDocumentElement())) {
+      if (para.getTextContent().startsWith(VERSION_PARAGRAPH)) {
+        para.setTextContent(VERSION_PARAGRAPH);
+      }
+    }
+    return document;
+  }
+
+  private static byte[] write(final CommandMarker... markers) {
+    final ByteArrayOutputStream appendix = new ByteArrayOutputStream();
+    new ReferenceGuideWriter(appendix).write(new HelpIndex(Arrays.asList(markers)).getCommands());
+    return appendix.toByteArray();
+  }
+
+  @Test
+  public void testAppendixMatchesTheOneBuiltAsDom() throws Exception {
+    // Set up
+    final InputStream expected = getClass().getResourceAsStream("appendix-command-index.xml");
+    assertNotNull(expected);
+
+    // Invoke
+    final byte[] appendix = write(new WebMvcCommands(), new ProjectCommands());
+
+    // Check
+    try {
+      assertEquals(XmlUtils.nodeToString(parse(expected)),
+          XmlUtils.nodeToString(parse(new ByteArrayInputStream(appendix))));
+    } finally {
+      IOUtils.closeQuietly(expected);
+    }
+  }
+
+  @Test
+  public void testCommandsAreListedInTheirClassSection() {
+    // Invoke
+    final Document appendix =
+        parse(new ByteArrayInputStream(write(new ProjectCommands(), new MoreProjectCommands())));
+
+    // Check
+    final Element section =
+        XmlUtils.findFirstElement("/appendix/section[title='More Project Commands']",
+            appendix.getDocumentElement());
+    assertNotNull(section);
+    assertEquals(1, XmlUtils.findElements("section", section).size());
+    assertEquals("project scan speed", XmlUtils.findRequiredElement("section/title", section)
+        .getTextContent());
+  }
+
+  @Test
+  public void testSectionNamesMustBeUnique() {
+    try {
+      write(new ProjectCommands(), new MoreProjectCommands(), new Duplicate.ProjectCommands());
+      fail("Expected an IllegalStateException");
+    } catch (final IllegalStateException expected) {
+      assertEquals("Section name 'Project Commands' not unique", expected.getMessage());
+    }
+  }
+}
@@ -43,6 +43,21 @@ public interface FileMonitorService {
    */
   public SortedSet<FileDetails> findMatchingAntPath(String antPath);
 
+  /**
+   * Examines the monitored locations for changes without publishing any
+   * events, so that the next {@link #scanAll()} only has to publish what was
+   * found. Callers can therefore detect changes without holding any lock
+   * that event listeners need, and decide whether and when to scan.
+   * <p>
+   * Changes detected but not yet published are not reported again by the
+   * next invocation of this method.
+   * 
+   * @return the number of changes found since this method or
+   *         {@link #scanAll()} was last invoked (can be 0 or above)
+   * @since 2.0
+   */
+  int detectChanges();
+
   /**
    * Provides a list of canonical paths which represent changes to the file
    * system since the requesting class last requested the change set. The
@@ -1,5 +1,7 @@
 package org.springframework.roo.file.monitor;
 
+import java.util.Collection;
+
 import org.springframework.roo.file.monitor.event.FileEventListener;
 
 /**
@@ -42,6 +44,21 @@ public interface NotifiableFileMonitorService extends FileMonitorService {
    */
   void notifyChanged(String fileCanonicalPath);
 
+  /**
+   * Records several changes at once, as if {@link #notifyCreated(String)},
+   * {@link #notifyChanged(String)} and {@link #notifyDeleted(String)} had
+   * been called for each of the given canonical paths, e.g. when committing
+   * a batch of file writes.
+   * 
+   * @param createdPaths the created files' canonical paths (required)
+   * @param changedPaths the changed files' canonical paths (required)
+   * @param deletedPaths the canonical paths of the files about to be deleted
+   *            (required)
+   * @since 2.0
+   */
+  void notifyChanges(Collection<String> createdPaths, Collection<String> changedPaths,
+      Collection<String> deletedPaths);
+
   void notifyCreated(String fileCanonicalPath);
 
   /**
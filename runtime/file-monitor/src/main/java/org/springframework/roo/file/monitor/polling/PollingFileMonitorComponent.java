@@ -6,13 +6,19 @@ import org.apache.felix.scr.annotations.ReferenceCardinality;
 import org.apache.felix.scr.annotations.ReferencePolicy;
 import org.apache.felix.scr.annotations.ReferenceStrategy;
 import org.apache.felix.scr.annotations.Service;
+import org.osgi.service.component.ComponentContext;
 import org.springframework.roo.file.monitor.event.FileEventListener;
 import org.springframework.roo.file.monitor.polling.PollingFileMonitorService;
+import org.springframework.roo.file.monitor.watch.WatchServiceFileMonitorComponent;
 
 /**
  * Extends {@link PollingFileMonitorService} by making it available as an OSGi
  * component that automatically monitors the environment's
  * {@link FileEventListener} components.
+ * <p>
+ * Starting the shell with the {@value #FILE_MONITOR_PROPERTY} system property
+ * set to {@value #WATCH_SERVICE} replaces this component with the
+ * {@link WatchServiceFileMonitorComponent}.
  * 
  * @author Ben Alex
  * @since 1.1
@@ -24,6 +30,25 @@ import org.springframework.roo.file.monitor.polling.PollingFileMonitorService;
     cardinality = ReferenceCardinality.OPTIONAL_MULTIPLE)
 public class PollingFileMonitorComponent extends PollingFileMonitorService {
 
+  /**
+   * The system property that selects the file monitor implementation.
+   */
+  public static final String FILE_MONITOR_PROPERTY = "roo.file.monitor";
+
+  /**
+   * The value of {@link #FILE_MONITOR_PROPERTY} that selects the
+   * {@link WatchServiceFileMonitorComponent}.
+   */
+  public static final String WATCH_SERVICE = "watch";
+
+  protected void activate(final ComponentContext context) {
+    if (WATCH_SERVICE.equals(System.getProperty(FILE_MONITOR_PROPERTY))) {
+      // Components referring to this service will be rebound to the new one
+      context.enableComponent(WatchServiceFileMonitorComponent.class.getName());
+      context.disableComponent(PollingFileMonitorComponent.class.getName());
+    }
+  }
+
   protected void bindFileEventListener(final FileEventListener listener) {
     add(listener);
   }
@@ -59,6 +59,12 @@ import org.w3c.dom.Element;
  * present in the {@link FileEvent} times equal to the last time a deleted file
  * was modified. The time does NOT represent the deletion time nor the time the
  * deletion was first detected.
+ * <p>
+ * The contents found by {@link #detectChanges()} are kept until the next
+ * {@link #scanAll()}, which then compares them with the previous scan's
+ * instead of examining the monitored locations itself. Files notified in the
+ * meantime are brought up to date in the kept contents as they are
+ * published.
  * 
  * @author Ben Alex
  * @author Juan Carlos García
@@ -70,6 +76,9 @@ public class PollingFileMonitorService implements NotifiableFileMonitorService {
 
   private final Set<String> allFiles = new HashSet<String>();
   private final Map<String, Set<String>> changeMap = new HashMap<String, Set<String>>();
+  // key: request, value: its contents as found by detectChanges() since the last scanAll()
+  private final Map<MonitoringRequest, Map<File, Long>> detectedExecution =
+      new HashMap<MonitoringRequest, Map<File, Long>>();
   private final Set<FileEventListener> fileEventListeners = new HashSet<FileEventListener>();
   private final Object lock = new Object();
   private final Set<String> notifyChanged = new HashSet<String>();
@@ -148,14 +157,12 @@ public class PollingFileMonitorService implements NotifiableFileMonitorService {
    * will be added only if "includeSubtree" is true.</li>
    * </ul>
    */
-  private void computeEntries(final Map<File, Long> map, final File currentFile,
+  protected void computeEntries(final Map<File, Long> map, final File currentFile,
       final boolean includeSubtree) {
     Validate.notNull(map, "Map required");
     Validate.notNull(currentFile, "Current file is required");
 
-    if (!currentFile.exists() || currentFile.getName().length() > 1
-        && currentFile.getName().startsWith(".") || currentFile.getName().equals("log.roo")
-        || currentFile.isDirectory() && isExcludedDirectory(currentFile.getPath())) {
+    if (isIgnored(currentFile)) {
       return;
     }
 
@@ -179,6 +186,74 @@ public class PollingFileMonitorService implements NotifiableFileMonitorService {
     }
   }
 
+  /**
+   * Builds the current contents of the given monitored location, in the same
+   * form as {@link #computeEntries(Map, File, boolean)}. This implementation
+   * walks the whole location; subclasses that are told which files changed
+   * can override this method to only examine those files.
+   * <p>
+   * This method is invoked while the caller holds the synchronisation lock.
+   * 
+   * @param request the monitoring request being scanned (required)
+   * @param priorFiles the contents found by the previous scan of this
+   *            request, or <code>null</code> if this is its first scan; must
+   *            not be modified
+   * @return a new map of the location's current contents (never null)
+   */
+  protected Map<File, Long> computeEntries(final MonitoringRequest request,
+      final Map<File, Long> priorFiles) {
+    final Map<File, Long> currentExecution = new HashMap<File, Long>();
+    computeEntries(currentExecution, request.getFile(), isWatchSubtree(request));
+    return currentExecution;
+  }
+
+  /**
+   * Counts the differences between two sets of contents of a monitored
+   * location.
+   * 
+   * @param previousFiles the earlier contents, or <code>null</code> if there
+   *            are none
+   * @param currentFiles the later contents (required)
+   * @return the number of created, updated and deleted files
+   */
+  private int countChanges(final Map<File, Long> previousFiles,
+      final Map<File, Long> currentFiles) {
+    if (previousFiles == null) {
+      return currentFiles.size();
+    }
+    int changes = 0;
+    for (final Entry<File, Long> entry : currentFiles.entrySet()) {
+      if (!entry.getValue().equals(previousFiles.get(entry.getKey()))) {
+        changes++;
+      }
+    }
+    for (final File previousFile : previousFiles.keySet()) {
+      if (!currentFiles.containsKey(previousFile)) {
+        changes++;
+      }
+    }
+    return changes;
+  }
+
+  public int detectChanges() {
+    synchronized (lock) {
+      int changes = 0;
+      for (final MonitoringRequest request : requests) {
+        if (!request.getFile().exists()) {
+          continue;
+        }
+        Map<File, Long> previousFiles = detectedExecution.get(request);
+        if (previousFiles == null) {
+          previousFiles = priorExecution.get(request);
+        }
+        final Map<File, Long> currentFiles = computeEntries(request, previousFiles);
+        changes += countChanges(previousFiles, currentFiles);
+        detectedExecution.put(request, currentFiles);
+      }
+      return changes;
+    }
+  }
+
   public SortedSet<FileDetails> findMatchingAntPath(final String antPath) {
     Validate.notBlank(antPath, "Ant path required");
     final SortedSet<FileDetails> result = new TreeSet<FileDetails>();
@@ -320,13 +395,27 @@ public class PollingFileMonitorService implements NotifiableFileMonitorService {
     }
   }
 
-  private boolean isExcludedDirectory(final String path) {
+  protected boolean isExcludedDirectory(final String path) {
     final boolean hasSrc = path.contains(File.separator + "src");
     return !hasSrc
         && (path.contains(File.separator + "target") || path.contains(File.separator + "bin"))
         || hasSrc && path.contains(File.separator + "maven");
   }
 
+  /**
+   * Indicates whether the given file is left out of the monitored contents,
+   * along with everything below it. This is the case for files that don't
+   * exist, hidden files, the shell's log file and excluded directories.
+   * 
+   * @param file the file to check (required)
+   * @return true if the file is not monitored
+   */
+  protected boolean isIgnored(final File file) {
+    return !file.exists() || file.getName().length() > 1 && file.getName().startsWith(".")
+        || file.getName().equals("log.roo") || file.isDirectory()
+        && isExcludedDirectory(file.getPath());
+  }
+
   /**
    * Decides whether we want to store this notification. This only happens if
    * a monitoring request has indicated it is interested in this request. See
@@ -346,6 +435,18 @@ public class PollingFileMonitorService implements NotifiableFileMonitorService {
     return false;
   }
 
+  /**
+   * Indicates whether the given request monitors the sub-directories of its
+   * location.
+   * 
+   * @param request the request to check (required)
+   * @return <code>false</code> if the request is not for a directory
+   */
+  protected boolean isWatchSubtree(final MonitoringRequest request) {
+    return request instanceof DirectoryMonitoringRequest
+        && ((DirectoryMonitoringRequest) request).isWatchSubtree();
+  }
+
   private boolean isWithin(final MonitoringRequest request, final String filePath) {
     String requestCanonicalPath;
     try {
@@ -386,6 +487,21 @@ public class PollingFileMonitorService implements NotifiableFileMonitorService {
     }
   }
 
+  public void notifyChanges(final Collection<String> createdPaths,
+      final Collection<String> changedPaths, final Collection<String> deletedPaths) {
+    synchronized (lock) {
+      for (final String createdPath : createdPaths) {
+        notifyCreated(createdPath);
+      }
+      for (final String changedPath : changedPaths) {
+        notifyChanged(changedPath);
+      }
+      for (final String deletedPath : deletedPaths) {
+        notifyDeleted(deletedPath);
+      }
+    }
+  }
+
   public void notifyCreated(final String fileCanonicalPath) {
     synchronized (lock) {
       updateChanges(fileCanonicalPath, false);
@@ -448,6 +564,19 @@ public class PollingFileMonitorService implements NotifiableFileMonitorService {
 
       publish(eventsToPublish);
       eventsPublished += eventsToPublish.size();
+
+      // Keep any contents detected since the last scan up to date as well
+      final Map<File, Long> detectedFiles = detectedExecution.get(request);
+      if (detectedFiles != null) {
+        for (final FileEvent event : eventsToPublish) {
+          final File file = event.getFileDetails().getFile();
+          if (event.getOperation() == FileOperation.DELETED) {
+            detectedFiles.remove(file);
+          } else {
+            detectedFiles.put(file, priorFiles.get(file));
+          }
+        }
+      }
     }
     return eventsPublished;
   }
@@ -511,6 +640,7 @@ public class PollingFileMonitorService implements NotifiableFileMonitorService {
       }
 
       priorExecution.remove(request);
+      detectedExecution.remove(request);
 
       return requests.remove(request);
     }
@@ -525,18 +655,15 @@ public class PollingFileMonitorService implements NotifiableFileMonitorService {
       int changes = 0;
 
       for (final MonitoringRequest request : requests) {
-        boolean includeSubtree = false;
-        if (request instanceof DirectoryMonitoringRequest) {
-          includeSubtree = ((DirectoryMonitoringRequest) request).isWatchSubtree();
-        }
-
         if (!request.getFile().exists()) {
           continue;
         }
 
-        // Build contents of the monitored location
-        final Map<File, Long> currentExecution = new HashMap<File, Long>();
-        computeEntries(currentExecution, request.getFile(), includeSubtree);
+        // Build contents of the monitored location, unless already detected
+        Map<File, Long> currentExecution = detectedExecution.remove(request);
+        if (currentExecution == null) {
+          currentExecution = computeEntries(request, priorExecution.get(request));
+        }
 
         final List<FileEvent> eventsToPublish = new ArrayList<FileEvent>();
 
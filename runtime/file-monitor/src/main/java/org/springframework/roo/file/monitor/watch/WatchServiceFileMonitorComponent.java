@@ -0,0 +1,43 @@
+package org.springframework.roo.file.monitor.watch;
+
+import org.apache.felix.scr.annotations.Component;
+import org.apache.felix.scr.annotations.Reference;
+import org.apache.felix.scr.annotations.ReferenceCardinality;
+import org.apache.felix.scr.annotations.ReferencePolicy;
+import org.apache.felix.scr.annotations.ReferenceStrategy;
+import org.apache.felix.scr.annotations.Service;
+import org.osgi.service.component.ComponentContext;
+import org.springframework.roo.file.monitor.event.FileEventListener;
+import org.springframework.roo.file.monitor.polling.PollingFileMonitorComponent;
+
+/**
+ * Extends {@link WatchServiceFileMonitorService} by making it available as an
+ * OSGi component that automatically monitors the environment's
+ * {@link FileEventListener} components.
+ * <p>
+ * This component is disabled by default; it replaces the
+ * {@link PollingFileMonitorComponent} when the
+ * {@value PollingFileMonitorComponent#FILE_MONITOR_PROPERTY} system property
+ * is set to {@value PollingFileMonitorComponent#WATCH_SERVICE}.
+ * 
+ * @since 2.0
+ */
+@Component(enabled = false)
+@Service
+@Reference(name = "fileEventListener", strategy = ReferenceStrategy.EVENT,
+    policy = ReferencePolicy.DYNAMIC, referenceInterface = FileEventListener.class,
+    cardinality = ReferenceCardinality.OPTIONAL_MULTIPLE)
+public class WatchServiceFileMonitorComponent extends WatchServiceFileMonitorService {
+
+  protected void deactivate(final ComponentContext context) {
+    close();
+  }
+
+  protected void bindFileEventListener(final FileEventListener listener) {
+    add(listener);
+  }
+
+  protected void unbindFileEventListener(final FileEventListener listener) {
+    remove(listener);
+  }
+}
@@ -0,0 +1,268 @@
+package org.springframework.roo.file.monitor.watch;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.logging.Level;
+
+import org.springframework.roo.file.monitor.DirectoryMonitoringRequest;
+import org.springframework.roo.file.monitor.MonitoringRequest;
+import org.springframework.roo.file.monitor.polling.PollingFileMonitorService;
+
+/**
+ * A {@link PollingFileMonitorService} that is told by a {@link WatchService}
+ * which files have changed, so that a scan only examines those files instead
+ * of walking every monitored directory.
+ * <p>
+ * Each directory that a polling scan would walk is registered with the watch
+ * service as it is first walked. The events raised since the previous scan
+ * are collected when {@link #scanAll()} is invoked; repeated events for the
+ * same file are coalesced into a single check of that file. Should the watch
+ * service overflow for a directory, only that directory is walked again.
+ * Which files are monitored, and the events published for them, are the same
+ * as for {@link PollingFileMonitorService}.
+ * <p>
+ * If the platform provides no watch service, or a directory can't be
+ * registered with it (e.g. because the operating system's limit on watched
+ * directories has been reached), this class falls back to walking the
+ * monitored directories like its superclass.
+ *
+ * @since 2.0
+ */
+public class WatchServiceFileMonitorService extends PollingFileMonitorService {
+
+  /**
+   * The changes reported for one monitoring request since it was last
+   * scanned.
+   */
+  private static class PendingChanges {
+    private final Set<Path> changedPaths = new LinkedHashSet<Path>();
+    private final Set<Path> overflowedDirectories = new LinkedHashSet<Path>();
+
+    void clear() {
+      changedPaths.clear();
+      overflowedDirectories.clear();
+    }
+  }
+
+  private final Map<MonitoringRequest, PendingChanges> pendingChanges =
+      new HashMap<MonitoringRequest, PendingChanges>();
+  private final Map<Path, WatchKey> watchKeys = new HashMap<Path, WatchKey>();
+  private WatchService watchService;
+  private boolean watchServiceUnavailable;
+
+  /**
+   * Stops watching all directories; subsequent scans will walk the monitored
+   * directories again.
+   */
+  public synchronized void close() {
+    if (watchService != null) {
+      try {
+        watchService.close();
+      } catch (final IOException ignored) {
+      }
+    }
+    watchService = null;
+    watchKeys.clear();
+    pendingChanges.clear();
+  }
+
+  @Override
+  protected synchronized Map<File, Long> computeEntries(final MonitoringRequest request,
+      final Map<File, Long> priorFiles) {
+    if (!(request instanceof DirectoryMonitoringRequest) || getWatchService() == null) {
+      return super.computeEntries(request, priorFiles);
+    }
+    PendingChanges changes = pendingChanges.get(request);
+    if (priorFiles == null || changes == null) {
+      // Walk the directory, registering its sub-directories as we go
+      changes = new PendingChanges();
+      pendingChanges.put(request, changes);
+      return super.computeEntries(request, priorFiles);
+    }
+
+    collectEvents();
+    final boolean includeSubtree = isWatchSubtree(request);
+    final Map<File, Long> currentFiles = new HashMap<File, Long>(priorFiles);
+    for (final Path directory : changes.overflowedDirectories) {
+      unwatch(directory);
+      removeEntries(currentFiles, directory);
+      computeEntries(currentFiles, directory.toFile(), includeSubtree);
+    }
+    for (final Path path : changes.changedPaths) {
+      refresh(currentFiles, path, includeSubtree);
+    }
+    changes.clear();
+
+    if (watchService == null) {
+      // A registration failed, so we may have missed some changes
+      pendingChanges.clear();
+      return super.computeEntries(request, null);
+    }
+    return currentFiles;
+  }
+
+  @Override
+  protected void computeEntries(final Map<File, Long> map, final File currentFile,
+      final boolean includeSubtree) {
+    if (watchService != null && currentFile.isDirectory() && !isIgnored(currentFile)) {
+      // Registered before listing the directory, so no change can be missed
+      watch(currentFile.toPath());
+    }
+    super.computeEntries(map, currentFile, includeSubtree);
+  }
+
+  @Override
+  public boolean remove(final MonitoringRequest request) {
+    final boolean removed = super.remove(request);
+    synchronized (this) {
+      pendingChanges.remove(request);
+      for (final Iterator<Entry<Path, WatchKey>> iter = watchKeys.entrySet().iterator(); iter
+          .hasNext();) {
+        final Entry<Path, WatchKey> entry = iter.next();
+        if (!isCovered(entry.getKey())) {
+          entry.getValue().cancel();
+          iter.remove();
+        }
+      }
+    }
+    return removed;
+  }
+
+  private void addChange(final Path directory, final Path path, final boolean overflow) {
+    for (final Entry<MonitoringRequest, PendingChanges> entry : pendingChanges.entrySet()) {
+      if (covers(entry.getKey(), directory)) {
+        if (overflow) {
+          entry.getValue().overflowedDirectories.add(directory);
+        } else {
+          // The directory's own timestamp changes along with its entries
+          entry.getValue().changedPaths.add(directory);
+          entry.getValue().changedPaths.add(path);
+        }
+      }
+    }
+  }
+
+  private void collectEvents() {
+    WatchKey key;
+    while ((key = watchService.poll()) != null) {
+      final Path directory = (Path) key.watchable();
+      for (final WatchEvent<?> event : key.pollEvents()) {
+        if (event.kind() == OVERFLOW) {
+          addChange(directory, directory, true);
+        } else {
+          addChange(directory, directory.resolve((Path) event.context()), false);
+        }
+      }
+      // An invalid key is discarded when its directory's deletion is seen
+      key.reset();
+    }
+  }
+
+  private boolean covers(final MonitoringRequest request, final Path directory) {
+    final Path root = request.getFile().toPath();
+    if (isWatchSubtree(request)) {
+      return directory.startsWith(root);
+    }
+    return directory.equals(root);
+  }
+
+  private WatchService getWatchService() {
+    if (watchService == null && !watchServiceUnavailable) {
+      try {
+        watchService = FileSystems.getDefault().newWatchService();
+      } catch (final IOException e) {
+        stopWatching(e);
+      } catch (final UnsupportedOperationException e) {
+        stopWatching(e);
+      }
+    }
+    return watchService;
+  }
+
+  private boolean isCovered(final Path directory) {
+    for (final MonitoringRequest request : pendingChanges.keySet()) {
+      if (covers(request, directory)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Brings the entry for the given path up to date with the disk.
+   */
+  private void refresh(final Map<File, Long> currentFiles, final Path path,
+      final boolean includeSubtree) {
+    final File file = path.toFile();
+    if (!file.exists()) {
+      currentFiles.remove(file);
+      if (watchKeys.containsKey(path)) {
+        // A watched directory was deleted or renamed
+        unwatch(path);
+        removeEntries(currentFiles, path);
+      }
+      return;
+    }
+    if (file.isDirectory() && currentFiles.containsKey(file)) {
+      // Changes to its contents are reported separately
+      currentFiles.put(file, file.lastModified());
+    } else if (file.isFile() || includeSubtree) {
+      computeEntries(currentFiles, file, includeSubtree);
+    }
+  }
+
+  private void removeEntries(final Map<File, Long> currentFiles, final Path directory) {
+    for (final Iterator<File> iter = currentFiles.keySet().iterator(); iter.hasNext();) {
+      if (iter.next().toPath().startsWith(directory)) {
+        iter.remove();
+      }
+    }
+  }
+
+  private void stopWatching(final Exception cause) {
+    LOGGER.log(Level.WARNING, "Unable to watch for file changes ('" + cause.getMessage()
+        + "'); falling back to polling", cause);
+    watchServiceUnavailable = true;
+    close();
+  }
+
+  private void unwatch(final Path directory) {
+    for (final Iterator<Entry<Path, WatchKey>> iter = watchKeys.entrySet().iterator(); iter
+        .hasNext();) {
+      final Entry<Path, WatchKey> entry = iter.next();
+      if (entry.getKey().startsWith(directory)) {
+        entry.getValue().cancel();
+        iter.remove();
+      }
+    }
+  }
+
+  private void watch(final Path directory) {
+    final WatchKey existing = watchKeys.get(directory);
+    if (existing != null && existing.isValid()) {
+      return;
+    }
+    try {
+      watchKeys.put(directory,
+          directory.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY));
+    } catch (final IOException e) {
+      stopWatching(e);
+    }
+  }
+}
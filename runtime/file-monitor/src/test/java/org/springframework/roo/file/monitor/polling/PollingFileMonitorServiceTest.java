@@ -0,0 +1,98 @@
+package org.springframework.roo.file.monitor.polling;
+
+import static org.junit.Assert.assertEquals;
+import static org.springframework.roo.file.monitor.event.FileOperation.CREATED;
+import static org.springframework.roo.file.monitor.event.FileOperation.DELETED;
+import static org.springframework.roo.file.monitor.event.FileOperation.UPDATED;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.roo.file.monitor.DirectoryMonitoringRequest;
+import org.springframework.roo.file.monitor.event.FileEvent;
+import org.springframework.roo.file.monitor.event.FileEventListener;
+
+/**
+ * Unit test of {@link PollingFileMonitorService}
+ *
+ * @since 2.0
+ */
+public class PollingFileMonitorServiceTest {
+
+  private File directory;
+  private final List<FileEvent> events = new ArrayList<FileEvent>();
+  private PollingFileMonitorService service;
+
+  private void delete(final File file) {
+    final File[] children = file.listFiles();
+    if (children != null) {
+      for (final File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+
+  private File newFile(final File parent, final String name) throws IOException {
+    final File file = new File(parent, name);
+    Files.write(file.toPath(), name.getBytes());
+    return file;
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    directory = Files.createTempDirectory("roo-polling").toFile().getCanonicalFile();
+    service = new PollingFileMonitorService();
+    service.add(new FileEventListener() {
+      public void onFileEvent(final FileEvent fileEvent) {
+        events.add(fileEvent);
+      }
+    });
+    service.add(new DirectoryMonitoringRequest(directory, true, CREATED, UPDATED, DELETED));
+  }
+
+  @After
+  public void tearDown() {
+    delete(directory);
+  }
+
+  @Test
+  public void testDetectChangesReportsEachChangeOnce() throws Exception {
+    // Set up
+    final File file = newFile(directory, "Existing.java");
+    assertEquals(2, service.detectChanges()); // The directory and its file
+
+    // Invoke
+    file.setLastModified(file.lastModified() + 10000);
+    final int changes = service.detectChanges();
+
+    // Check
+    assertEquals(1, changes);
+    assertEquals(0, service.detectChanges());
+    assertEquals(0, events.size());
+  }
+
+  @Test
+  public void testNotifiedChangesAreNotDetectedAgain() throws Exception {
+    // Set up
+    final long directoryLastModified = directory.lastModified();
+    service.detectChanges();
+    final File file = newFile(directory, "Notified.java");
+    directory.setLastModified(directoryLastModified);
+    service.notifyCreated(file.getCanonicalPath());
+
+    // Invoke
+    service.scanNotified();
+
+    // Check
+    assertEquals(1, events.size());
+    assertEquals(CREATED, events.get(0).getOperation());
+    assertEquals(0, service.detectChanges());
+  }
+}
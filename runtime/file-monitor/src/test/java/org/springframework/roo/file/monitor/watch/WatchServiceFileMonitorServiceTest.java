@@ -0,0 +1,146 @@
+package org.springframework.roo.file.monitor.watch;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.roo.file.monitor.event.FileOperation.CREATED;
+import static org.springframework.roo.file.monitor.event.FileOperation.DELETED;
+import static org.springframework.roo.file.monitor.event.FileOperation.UPDATED;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.roo.file.monitor.DirectoryMonitoringRequest;
+import org.springframework.roo.file.monitor.MonitoringRequest;
+
+/**
+ * Unit test of {@link WatchServiceFileMonitorService}
+ * 
+ * @since 2.0
+ */
+public class WatchServiceFileMonitorServiceTest {
+
+  private static final long TIMEOUT_MILLIS = 20000;
+
+  private File directory;
+  private WatchServiceFileMonitorService service;
+
+  /**
+   * Scans the given request until the given file's presence in the result
+   * matches the expectation, as the watch service reports events
+   * asynchronously.
+   */
+  private Map<File, Long> awaitEntries(final MonitoringRequest request,
+      final Map<File, Long> priorFiles, final File file, final boolean expectedPresent)
+      throws InterruptedException {
+    final long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+    Map<File, Long> currentFiles = priorFiles;
+    while (System.currentTimeMillis() < deadline) {
+      currentFiles = service.computeEntries(request, currentFiles);
+      if (currentFiles.containsKey(file) == expectedPresent) {
+        break;
+      }
+      Thread.sleep(50);
+    }
+    return currentFiles;
+  }
+
+  private void delete(final File file) {
+    final File[] children = file.listFiles();
+    if (children != null) {
+      for (final File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+
+  private File newFile(final File parent, final String name) throws IOException {
+    final File file = new File(parent, name);
+    Files.write(file.toPath(), name.getBytes());
+    return file;
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    directory = Files.createTempDirectory("roo-watch").toFile();
+    service = new WatchServiceFileMonitorService();
+  }
+
+  @After
+  public void tearDown() {
+    service.close();
+    delete(directory);
+  }
+
+  @Test
+  public void testDetectsChangesWithinSubTree() throws Exception {
+    // Set up
+    final File existingDirectory = new File(directory, "existing");
+    existingDirectory.mkdir();
+    final File existingFile = newFile(existingDirectory, "Existing.java");
+    final MonitoringRequest request =
+        new DirectoryMonitoringRequest(directory, true, CREATED, UPDATED, DELETED);
+    Map<File, Long> currentFiles = service.computeEntries(request, null);
+    assertTrue(currentFiles.containsKey(existingFile));
+
+    // Invoke
+    final File newDirectory = new File(directory, "created");
+    newDirectory.mkdir();
+    final File newFile = newFile(newDirectory, "Created.java");
+    currentFiles = awaitEntries(request, currentFiles, newFile, true);
+    existingFile.delete();
+    currentFiles = awaitEntries(request, currentFiles, existingFile, false);
+
+    // Check
+    assertTrue(currentFiles.containsKey(newDirectory));
+    assertTrue(currentFiles.containsKey(newFile));
+    assertFalse(currentFiles.containsKey(existingFile));
+  }
+
+  @Test
+  public void testIgnoresExcludedDirectoriesAndHiddenFiles() throws Exception {
+    // Set up
+    final MonitoringRequest request =
+        new DirectoryMonitoringRequest(directory, true, CREATED, UPDATED, DELETED);
+    Map<File, Long> currentFiles = service.computeEntries(request, null);
+
+    // Invoke
+    final File targetDirectory = new File(directory, "target");
+    targetDirectory.mkdir();
+    final File targetFile = newFile(targetDirectory, "Compiled.class");
+    final File hiddenFile = newFile(directory, ".hidden");
+    final File sourceFile = newFile(directory, "Source.java");
+    currentFiles = awaitEntries(request, currentFiles, sourceFile, true);
+
+    // Check
+    assertTrue(currentFiles.containsKey(sourceFile));
+    assertFalse(currentFiles.containsKey(targetDirectory));
+    assertFalse(currentFiles.containsKey(targetFile));
+    assertFalse(currentFiles.containsKey(hiddenFile));
+  }
+
+  @Test
+  public void testOnlyWatchesFilesOfDirectoryWhenNotWatchingSubTree() throws Exception {
+    // Set up
+    final MonitoringRequest request =
+        new DirectoryMonitoringRequest(directory, false, CREATED, UPDATED, DELETED);
+    Map<File, Long> currentFiles = service.computeEntries(request, null);
+
+    // Invoke
+    final File subDirectory = new File(directory, "sub");
+    subDirectory.mkdir();
+    final File nestedFile = newFile(subDirectory, "Nested.java");
+    final File topLevelFile = newFile(directory, "TopLevel.java");
+    currentFiles = awaitEntries(request, currentFiles, topLevelFile, true);
+
+    // Check
+    assertTrue(currentFiles.containsKey(topLevelFile));
+    assertFalse(currentFiles.containsKey(subDirectory));
+    assertFalse(currentFiles.containsKey(nestedFile));
+  }
+}
@@ -1,17 +1,27 @@
 package org.springframework.roo.file.undo;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.Stack;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import org.apache.commons.lang3.Validate;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Service;
 import org.osgi.service.component.ComponentContext;
 import org.springframework.roo.file.undo.UndoEvent.UndoOperation;
+import org.springframework.roo.support.logging.HandlerUtils;
 
 /**
  * Default implementation of the {@link UndoManager} interface.
+ * <p>
+ * Starting the shell with the {@value #JOURNAL_PROPERTY} system property set
+ * to <code>true</code> makes the operations keep the contents they need for
+ * undoing in an {@link UndoJournal}, which is truncated once they have been
+ * reset or undone, rather than in a temporary file each.
  * 
  * @author Ben Alex
  * @since 1.0
@@ -20,11 +30,29 @@ import org.springframework.roo.file.undo.UndoEvent.UndoOperation;
 @Service
 public class DefaultUndoManager implements UndoManager {
 
+  /**
+   * The system property that enables the {@link UndoJournal}.
+   */
+  public static final String JOURNAL_PROPERTY = "roo.undo.journal";
+
+  private static final Logger LOGGER = HandlerUtils.getLogger(DefaultUndoManager.class);
+
+  private UndoJournal journal;
   private final Set<UndoListener> listeners = new HashSet<UndoListener>();
   private final Stack<UndoableOperation> stack = new Stack<UndoableOperation>();
   private boolean undoEnabled = true;
 
-  protected void activate(final ComponentContext context) {}
+  protected void activate(final ComponentContext context) {
+    if (Boolean.getBoolean(JOURNAL_PROPERTY)) {
+      try {
+        final File journalFile = File.createTempFile("roo-undo", ".journal");
+        journalFile.deleteOnExit();
+        journal = new UndoJournal(journalFile);
+      } catch (final IOException e) {
+        LOGGER.log(Level.WARNING, "Unable to create the undo journal; using temporary files", e);
+      }
+    }
+  }
 
   public void add(final UndoableOperation undoableOperation) {
     Validate.notNull(undoableOperation, "Undoable operation required");
@@ -35,10 +63,21 @@ public class DefaultUndoManager implements UndoManager {
     listeners.add(undoListener);
   }
 
+  protected void deactivate(final ComponentContext context) {
+    if (journal != null) {
+      journal.close();
+      journal = null;
+    }
+  }
+
   public void flush() {
     notifyListeners(UndoOperation.FLUSH);
   }
 
+  public UndoJournal getJournal() {
+    return journal;
+  }
+
   private void notifyListeners(final UndoOperation operation) {
     for (final UndoListener listener : listeners) {
       listener.onUndoEvent(new UndoEvent(operation));
@@ -59,6 +98,7 @@ public class DefaultUndoManager implements UndoManager {
             + "' threw an exception, in violation of the interface contract");
       }
     }
+    truncateJournal();
     notifyListeners(UndoOperation.RESET);
   }
 
@@ -89,7 +129,22 @@ public class DefaultUndoManager implements UndoManager {
             + "' threw an exception, in violation of the interface contract");
       }
     }
+    truncateJournal();
     notifyListeners(UndoOperation.UNDO);
     return undoMode;
   }
+
+  /**
+   * Discards the journal's entries, which no remaining operation refers to.
+   */
+  private void truncateJournal() {
+    if (journal == null) {
+      return;
+    }
+    try {
+      journal.truncate();
+    } catch (final IOException e) {
+      LOGGER.log(Level.WARNING, "Unable to truncate the undo journal", e);
+    }
+  }
 }
@@ -22,6 +22,8 @@ public class DeleteFile implements UndoableOperation {
   private final File actual;
   private final File backup;
   private final FilenameResolver filenameResolver;
+  private final UndoJournal journal;
+  private final long journalEntry;
 
   /**
    * Constructor that doesn't allow a reason to be given
@@ -56,9 +58,16 @@ public class DeleteFile implements UndoableOperation {
     Validate.isTrue(actual.exists(), "File '%s' must exist", actual);
     Validate.isTrue(actual.isFile(), "Path '%s' must be a file (not a directory)", actual);
 
+    journal = undoManager.getJournal();
     try {
-      backup = File.createTempFile("DeleteFile", "tmp");
-      FileUtils.copyFile(actual, backup);
+      if (journal == null) {
+        backup = File.createTempFile("DeleteFile", "tmp");
+        FileUtils.copyFile(actual, backup);
+        journalEntry = -1;
+      } else {
+        backup = null;
+        journalEntry = journal.append(actual);
+      }
     } catch (final IOException ioe) {
       throw new IllegalStateException("Unable to make a backup of file '" + actual + "'", ioe);
     }
@@ -74,6 +83,10 @@ public class DeleteFile implements UndoableOperation {
   }
 
   public void reset() {
+    if (backup == null) {
+      // The undo manager truncates the journal
+      return;
+    }
     // Fix for ROO-1555
     try {
       if (backup.delete()) {
@@ -90,7 +103,11 @@ public class DeleteFile implements UndoableOperation {
 
   public boolean undo() {
     try {
-      FileUtils.copyFile(backup, actual);
+      if (backup == null) {
+        journal.restore(journalEntry, actual);
+      } else {
+        FileUtils.copyFile(backup, actual);
+      }
       LOGGER.fine("Undo delete " + filenameResolver.getMeaningfulName(actual));
       return true;
     } catch (final IOException ioe) {
@@ -0,0 +1,195 @@
+package org.springframework.roo.file.undo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.Validate;
+
+/**
+ * An append-only file of compressed file contents, in which
+ * {@link UndoableOperation}s can keep what they need to undo their changes
+ * instead of copying each affected file to a temporary file of its own.
+ * <p>
+ * Each entry is identified by its offset in the journal. Entries remain
+ * readable until the journal is {@link #truncate() truncated}, which the
+ * {@link UndoManager} does once its operations have been reset or undone.
+ * The journal is read with positional reads rather than memory-mapped, as a
+ * mapped region can't be released before the file is truncated on every
+ * platform.
+ *
+ * @since 2.0
+ */
+public class UndoJournal {
+
+  /** The length of an entry's header: its original and compressed lengths */
+  private static final int HEADER_LENGTH = 8;
+
+  private final FileChannel channel;
+  private final File journalFile;
+  private final RandomAccessFile randomAccessFile;
+
+  /**
+   * Constructor
+   *
+   * @param journalFile the file to keep the journal in; any existing
+   *            contents are discarded (required)
+   * @throws IOException if the file can't be opened
+   */
+  public UndoJournal(final File journalFile) throws IOException {
+    Validate.notNull(journalFile, "Journal file required");
+    this.journalFile = journalFile;
+    randomAccessFile = new RandomAccessFile(journalFile, "rw");
+    channel = randomAccessFile.getChannel();
+    channel.truncate(0);
+  }
+
+  /**
+   * Appends the given contents to this journal.
+   *
+   * @param contents the contents to keep (required)
+   * @return the entry's identifier, for passing to {@link #read(long)}
+   * @throws IOException if the journal can't be written
+   */
+  public long append(final byte[] contents) throws IOException {
+    Validate.notNull(contents, "Contents required");
+    final ByteArrayOutputStream compressed = new ByteArrayOutputStream(contents.length / 4 + 64);
+    final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    try {
+      final DeflaterOutputStream deflaterOutputStream =
+          new DeflaterOutputStream(compressed, deflater);
+      deflaterOutputStream.write(contents);
+      deflaterOutputStream.finish();
+    } finally {
+      deflater.end();
+    }
+
+    final ByteBuffer entry = ByteBuffer.allocate(HEADER_LENGTH + compressed.size());
+    entry.putInt(contents.length);
+    entry.putInt(compressed.size());
+    entry.put(compressed.toByteArray());
+    entry.flip();
+    synchronized (this) {
+      final long position = channel.size();
+      long writePosition = position;
+      while (entry.hasRemaining()) {
+        writePosition += channel.write(entry, writePosition);
+      }
+      return position;
+    }
+  }
+
+  /**
+   * Appends the current contents of the given file to this journal.
+   *
+   * @param file the file to keep the contents of (required)
+   * @return the entry's identifier, for passing to {@link #read(long)}
+   * @throws IOException if the file can't be read or the journal written
+   */
+  public long append(final File file) throws IOException {
+    return append(FileUtils.readFileToByteArray(file));
+  }
+
+  /**
+   * Closes this journal and deletes its file.
+   */
+  public synchronized void close() {
+    try {
+      randomAccessFile.close();
+    } catch (final IOException ignored) {
+    }
+    FileUtils.deleteQuietly(journalFile);
+  }
+
+  /**
+   * Reads the given entry of this journal.
+   *
+   * @param entry as returned by {@link #append(byte[])}
+   * @return the contents that were appended
+   * @throws IOException if the entry can't be read, e.g. because the journal
+   *             has been truncated since
+   */
+  public byte[] read(final long entry) throws IOException {
+    final int length;
+    final ByteBuffer compressed;
+    synchronized (this) {
+      final ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+      readFully(header, entry);
+      header.flip();
+      length = header.getInt();
+      compressed = ByteBuffer.allocate(header.getInt());
+      readFully(compressed, entry + HEADER_LENGTH);
+    }
+
+    final byte[] contents = new byte[length];
+    final Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(compressed.array());
+      int inflated = 0;
+      while (inflated < length) {
+        final int count = inflater.inflate(contents, inflated, length - inflated);
+        if (count == 0 && (inflater.finished() || inflater.needsInput())) {
+          throw new IOException("Undo journal entry " + entry + " is incomplete");
+        }
+        inflated += count;
+      }
+    } catch (final DataFormatException e) {
+      throw new IOException("Undo journal entry " + entry + " is corrupt", e);
+    } finally {
+      inflater.end();
+    }
+    return contents;
+  }
+
+  /**
+   * The caller must hold this journal's lock.
+   */
+  private void readFully(final ByteBuffer buffer, final long position) throws IOException {
+    long readPosition = position;
+    while (buffer.hasRemaining()) {
+      final int read = channel.read(buffer, readPosition);
+      if (read < 0) {
+        throw new IOException("Undo journal entry " + position + " is beyond the journal's end");
+      }
+      readPosition += read;
+    }
+  }
+
+  /**
+   * Writes the given entry of this journal back to the given file.
+   *
+   * @param entry as returned by {@link #append(byte[])}
+   * @param file the file to restore (required)
+   * @throws IOException if the entry can't be read or the file written
+   */
+  public void restore(final long entry, final File file) throws IOException {
+    FileUtils.writeByteArrayToFile(file, read(entry));
+  }
+
+  /**
+   * Returns the current length of this journal.
+   *
+   * @return the length in bytes
+   * @throws IOException if the length can't be determined
+   */
+  public synchronized long size() throws IOException {
+    return channel.size();
+  }
+
+  /**
+   * Discards every entry of this journal.
+   *
+   * @throws IOException if the journal can't be truncated
+   */
+  public synchronized void truncate() throws IOException {
+    channel.truncate(0);
+  }
+}
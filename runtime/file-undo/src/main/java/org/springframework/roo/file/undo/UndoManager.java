@@ -36,6 +36,15 @@ public interface UndoManager {
    */
   void flush();
 
+  /**
+   * Returns the journal in which {@link UndoableOperation}s should keep the
+   * contents they need to undo their changes.
+   * 
+   * @return <code>null</code> if they should keep them in temporary files
+   * @since 2.0
+   */
+  UndoJournal getJournal();
+
   /**
    * @param undoListener removes a previously-registered undo listener
    *            (required)
@@ -21,6 +21,8 @@ public class UpdateFile implements UndoableOperation {
   private final File actual;
   private final File backup;
   private final FilenameResolver filenameResolver;
+  private final UndoJournal journal;
+  private final long journalEntry;
 
   /**
    * Constructor
@@ -38,9 +40,16 @@ public class UpdateFile implements UndoableOperation {
     Validate.isTrue(actual.isFile(), "Path '%s' must be a file (not a directory)", actual);
     Validate.notNull(filenameResolver, "Filename resolver required");
     this.filenameResolver = filenameResolver;
+    journal = undoManager.getJournal();
     try {
-      backup = File.createTempFile("UpdateFile", "tmp");
-      FileUtils.copyFile(actual, backup);
+      if (journal == null) {
+        backup = File.createTempFile("UpdateFile", "tmp");
+        FileUtils.copyFile(actual, backup);
+        journalEntry = -1;
+      } else {
+        backup = null;
+        journalEntry = journal.append(actual);
+      }
     } catch (final IOException ioe) {
       throw new IllegalStateException("Unable to make a backup of file '" + actual + "'", ioe);
     }
@@ -49,6 +58,10 @@ public class UpdateFile implements UndoableOperation {
   }
 
   public void reset() {
+    if (backup == null) {
+      // The undo manager truncates the journal
+      return;
+    }
     // Fix for ROO-1555
     try {
       if (backup.delete()) {
@@ -65,7 +78,11 @@ public class UpdateFile implements UndoableOperation {
 
   public boolean undo() {
     try {
-      FileUtils.copyFile(backup, actual);
+      if (backup == null) {
+        journal.restore(journalEntry, actual);
+      } else {
+        FileUtils.copyFile(backup, actual);
+      }
       LOGGER.fine("Undo manage " + filenameResolver.getMeaningfulName(actual));
       return true;
     } catch (final IOException ioe) {
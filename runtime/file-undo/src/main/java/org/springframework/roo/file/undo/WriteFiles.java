@@ -0,0 +1,120 @@
+package org.springframework.roo.file.undo;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.logging.Logger;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.Validate;
+import org.springframework.roo.support.logging.HandlerUtils;
+
+/**
+ * {@link UndoableOperation} to create or update several files at once, e.g.
+ * when committing a batch of deferred writes.
+ * <p>
+ * Unlike {@link CreateFile} and {@link UpdateFile}, this operation records
+ * files that the caller has already written. The previous contents of the
+ * updated files are kept in the {@link UndoManager}'s {@link UndoJournal} if
+ * it has one, and otherwise in memory rather than copied to temporary files,
+ * as the caller has normally just read them to find out whether the files
+ * have changed at all.
+ *
+ * @since 2.0
+ */
+public class WriteFiles implements UndoableOperation {
+
+  /**
+   * A written file and what it contained beforehand.
+   */
+  private static class PreviousContents {
+    private final byte[] contents;
+    private final File file;
+    private final long journalEntry;
+
+    PreviousContents(final File file, final byte[] contents, final long journalEntry) {
+      this.contents = contents;
+      this.file = file;
+      this.journalEntry = journalEntry;
+    }
+
+    boolean isCreated() {
+      return contents == null && journalEntry < 0;
+    }
+  }
+
+  private static final Logger LOGGER = HandlerUtils.getLogger(WriteFiles.class);
+
+  private final FilenameResolver filenameResolver;
+  private final UndoJournal journal;
+  private final List<PreviousContents> previousContents = new ArrayList<PreviousContents>();
+
+  /**
+   * Constructor
+   *
+   * @param undoManager cannot be <code>null</code>
+   * @param filenameResolver cannot be <code>null</code>
+   * @param previousContents the files that have been written, in the order
+   *            they were written, mapped to their contents beforehand, or to
+   *            <code>null</code> if they have been created (required)
+   */
+  public WriteFiles(final UndoManager undoManager, final FilenameResolver filenameResolver,
+      final Map<File, byte[]> previousContents) {
+    Validate.notNull(undoManager, "Undo manager required");
+    Validate.notNull(filenameResolver, "Filename resolver required");
+    Validate.notNull(previousContents, "Previous contents required");
+    this.filenameResolver = filenameResolver;
+    journal = undoManager.getJournal();
+    for (final Entry<File, byte[]> entry : previousContents.entrySet()) {
+      if (entry.getValue() == null || journal == null) {
+        this.previousContents.add(new PreviousContents(entry.getKey(), entry.getValue(), -1));
+      } else {
+        try {
+          this.previousContents.add(new PreviousContents(entry.getKey(), null, journal
+              .append(entry.getValue())));
+        } catch (final IOException ioe) {
+          // Keep them in memory instead
+          this.previousContents.add(new PreviousContents(entry.getKey(), entry.getValue(), -1));
+        }
+      }
+    }
+    undoManager.add(this);
+  }
+
+  public void reset() {
+    previousContents.clear();
+  }
+
+  public boolean undo() {
+    boolean success = true;
+    for (int i = previousContents.size() - 1; i >= 0; i--) {
+      final PreviousContents previous = previousContents.get(i);
+      final File actual = previous.file;
+      if (previous.isCreated()) {
+        if (actual.delete()) {
+          LOGGER.fine("Undo create " + filenameResolver.getMeaningfulName(actual));
+        } else {
+          LOGGER.fine("Undo failed " + filenameResolver.getMeaningfulName(actual));
+          success = false;
+        }
+      } else {
+        try {
+          if (previous.contents == null) {
+            journal.restore(previous.journalEntry, actual);
+          } else {
+            FileUtils.writeByteArrayToFile(actual, previous.contents);
+          }
+          LOGGER.fine("Undo manage " + filenameResolver.getMeaningfulName(actual));
+        } catch (final IOException ioe) {
+          LOGGER.fine("Undo failed " + filenameResolver.getMeaningfulName(actual));
+          success = false;
+        }
+      }
+    }
+    previousContents.clear();
+    return success;
+  }
+}
@@ -0,0 +1,152 @@
+package org.springframework.roo.file.undo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit test of {@link DefaultUndoManager} and the file operations it undoes,
+ * with their backups kept in the {@link UndoJournal}
+ *
+ * @since 2.0
+ */
+public class DefaultUndoManagerTest {
+
+  private FilenameResolver filenameResolver;
+  private File projectDirectory;
+  private DefaultUndoManager undoManager;
+
+  private File write(final String filename, final String contents) throws IOException {
+    final File file = new File(projectDirectory, filename);
+    FileUtils.writeStringToFile(file, contents);
+    return file;
+  }
+
+  @Before
+  public void setUp() throws IOException {
+    projectDirectory = File.createTempFile(getClass().getSimpleName(), "");
+    projectDirectory.delete();
+    projectDirectory.mkdir();
+    filenameResolver = mock(FilenameResolver.class);
+    System.setProperty(DefaultUndoManager.JOURNAL_PROPERTY, "true");
+    undoManager = new DefaultUndoManager();
+    undoManager.activate(null);
+  }
+
+  @After
+  public void tearDown() {
+    undoManager.deactivate(null);
+    System.clearProperty(DefaultUndoManager.JOURNAL_PROPERTY);
+    FileUtils.deleteQuietly(projectDirectory);
+  }
+
+  @Test
+  public void testJournalIsOnlyUsedWhenEnabled() {
+    // Set up
+    System.clearProperty(DefaultUndoManager.JOURNAL_PROPERTY);
+    final DefaultUndoManager withoutJournal = new DefaultUndoManager();
+
+    // Invoke
+    withoutJournal.activate(null);
+
+    // Check
+    assertNull(withoutJournal.getJournal());
+    assertNotNull(undoManager.getJournal());
+  }
+
+  @Test
+  public void testUndoRestoresUpdatedFile() throws IOException {
+    // Set up
+    final File file = write("Person.java", "class Person {}");
+    new UpdateFile(undoManager, filenameResolver, file);
+    FileUtils.writeStringToFile(file, "class Person { String name; }");
+
+    // Invoke
+    final boolean undone = undoManager.undo();
+
+    // Check
+    assertTrue(undone);
+    assertEquals("class Person {}", FileUtils.readFileToString(file));
+    assertEquals(0, undoManager.getJournal().size());
+  }
+
+  @Test
+  public void testUndoRestoresDeletedFile() throws IOException {
+    // Set up
+    final File file = write("Person.java", "class Person {}");
+    new DeleteFile(undoManager, filenameResolver, file, "test");
+    assertFalse(file.exists());
+
+    // Invoke
+    final boolean undone = undoManager.undo();
+
+    // Check
+    assertTrue(undone);
+    assertEquals("class Person {}", FileUtils.readFileToString(file));
+  }
+
+  @Test
+  public void testUndoRestoresWrittenFiles() throws IOException {
+    // Set up
+    final File updated = write("Person.java", "class Person { String name; }");
+    final File created = write("Vet.java", "class Vet {}");
+    final Map<File, byte[]> previousContents = new LinkedHashMap<File, byte[]>();
+    previousContents.put(updated, "class Person {}".getBytes());
+    previousContents.put(created, null);
+    new WriteFiles(undoManager, filenameResolver, previousContents);
+    assertTrue(undoManager.getJournal().size() > 0);
+
+    // Invoke
+    final boolean undone = undoManager.undo();
+
+    // Check
+    assertTrue(undone);
+    assertEquals("class Person {}", FileUtils.readFileToString(updated));
+    assertFalse(created.exists());
+  }
+
+  @Test
+  public void testUndoFailsOnceJournalIsLost() throws IOException {
+    // Set up
+    final File file = write("Person.java", "class Person {}");
+    new UpdateFile(undoManager, filenameResolver, file);
+    FileUtils.writeStringToFile(file, "class Person { String name; }");
+    undoManager.getJournal().truncate();
+
+    // Invoke
+    final boolean undone = undoManager.undo();
+
+    // Check
+    assertFalse(undone);
+    assertEquals("class Person { String name; }", FileUtils.readFileToString(file));
+  }
+
+  @Test
+  public void testResetTruncatesJournal() throws IOException {
+    // Set up
+    final File file = write("Person.java", "class Person {}");
+    new UpdateFile(undoManager, filenameResolver, file);
+    FileUtils.writeStringToFile(file, "class Person { String name; }");
+
+    // Invoke
+    undoManager.reset();
+
+    // Check
+    assertEquals(0, undoManager.getJournal().size());
+    assertTrue(undoManager.undo());
+    assertEquals("class Person { String name; }", FileUtils.readFileToString(file));
+  }
+}
@@ -0,0 +1,161 @@
+package org.springframework.roo.file.undo;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit test of {@link UndoJournal}
+ *
+ * @since 2.0
+ */
+public class UndoJournalTest {
+
+  private static final byte[] CONTENTS = "public class Person {\n  private String name;\n}\n"
+      .getBytes();
+
+  private UndoJournal journal;
+  private File journalFile;
+
+  private void assertUnreadable(final long entry, final String reason) {
+    try {
+      journal.read(entry);
+      fail("Expected an IOException");
+    } catch (final IOException expected) {
+      assertTrue(expected.getMessage(), expected.getMessage().contains(reason));
+    }
+  }
+
+  /**
+   * Overwrites the journal at the given position
+   */
+  private void overwrite(final long position, final byte... bytes) throws IOException {
+    final RandomAccessFile file = new RandomAccessFile(journalFile, "rw");
+    try {
+      file.seek(position);
+      file.write(bytes);
+    } finally {
+      file.close();
+    }
+  }
+
+  @Before
+  public void setUp() throws IOException {
+    journalFile = File.createTempFile(getClass().getSimpleName(), ".journal");
+    journal = new UndoJournal(journalFile);
+  }
+
+  @After
+  public void tearDown() {
+    journal.close();
+  }
+
+  @Test
+  public void testAppendedEntriesAreReadBack() throws IOException {
+    // Set up
+    final byte[] empty = new byte[0];
+
+    // Invoke
+    final long first = journal.append(CONTENTS);
+    final long second = journal.append(empty);
+
+    // Check
+    assertEquals(0, first);
+    assertTrue(second > first);
+    assertArrayEquals(CONTENTS, journal.read(first));
+    assertArrayEquals(empty, journal.read(second));
+  }
+
+  @Test
+  public void testAppendedFileIsRestored() throws IOException {
+    // Set up
+    final File file = File.createTempFile(getClass().getSimpleName(), ".java");
+    try {
+      FileUtils.writeByteArrayToFile(file, CONTENTS);
+      final long entry = journal.append(file);
+      FileUtils.writeStringToFile(file, "edited");
+
+      // Invoke
+      journal.restore(entry, file);
+
+      // Check
+      assertArrayEquals(CONTENTS, FileUtils.readFileToByteArray(file));
+    } finally {
+      FileUtils.deleteQuietly(file);
+    }
+  }
+
+  @Test
+  public void testConstructorDiscardsExistingContents() throws IOException {
+    // Set up
+    journal.append(CONTENTS);
+    journal.close();
+    FileUtils.writeByteArrayToFile(journalFile, CONTENTS);
+
+    // Invoke
+    journal = new UndoJournal(journalFile);
+
+    // Check
+    assertEquals(0, journal.size());
+  }
+
+  @Test
+  public void testTruncatedEntryIsUnreadable() throws IOException {
+    // Set up
+    final long entry = journal.append(CONTENTS);
+
+    // Invoke
+    journal.truncate();
+
+    // Check
+    assertEquals(0, journal.size());
+    assertUnreadable(entry, "beyond the journal's end");
+    assertEquals(0, journal.append(CONTENTS));
+  }
+
+  @Test
+  public void testCorruptEntryIsUnreadable() throws IOException {
+    // Set up
+    final long entry = journal.append(CONTENTS);
+
+    // Invoke
+    // Not a zlib header
+    overwrite(entry + 8, (byte) 0xFF, (byte) 0xFF);
+
+    // Check
+    assertUnreadable(entry, "is corrupt");
+  }
+
+  @Test
+  public void testIncompleteEntryIsUnreadable() throws IOException {
+    // Set up
+    final long entry = journal.append(CONTENTS);
+
+    // Invoke
+    // Claim the contents were longer than what was compressed
+    overwrite(entry, (byte) 0, (byte) 0, (byte) 1, (byte) 0);
+
+    // Check
+    assertUnreadable(entry, "is incomplete");
+  }
+
+  @Test
+  public void testCloseDeletesJournal() {
+    // Invoke
+    journal.close();
+
+    // Check
+    assertFalse(journalFile.exists());
+  }
+}
@@ -1,14 +1,27 @@
 package org.springframework.roo.metadata;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.lang3.ObjectUtils;
 import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.math.NumberUtils;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Reference;
@@ -23,9 +36,16 @@ import org.springframework.roo.metadata.internal.MetadataDependencyRegistryTrack
 /**
  * Default implementation of {@link MetadataService}.
  * <p>
- * This implementation is not thread safe. It should only be accessed by a
- * single thread at a time. This is enforced by the process manager semantics,
- * so we avoid the cost of re-synchronization here.
+ * By default metadata is produced while holding a single lock, so providers
+ * are only ever invoked by one thread at a time. This is enforced by the
+ * process manager semantics. When a concurrency level greater than one is
+ * configured (via {@link #setConcurrencyLevel(int)} or the
+ * <code>roo.metadata.concurrency</code> system property), requests no longer
+ * share that lock: each metadata ID being produced is tracked by an
+ * {@link InFlightRequest}, so threads asking for an ID that another thread is
+ * producing wait for it instead of invoking the provider twice, and both
+ * {@link #getAll(Collection)} and {@link #notifyConcurrently(Map)} produce
+ * independent IDs on a fork-join pool.
  *
  * @author Ben Alex
  * @author Enrique Ruiz at DISID Corporation S.L.
@@ -38,28 +58,95 @@ import org.springframework.roo.metadata.internal.MetadataDependencyRegistryTrack
     cardinality = ReferenceCardinality.OPTIONAL_MULTIPLE)
 public class DefaultMetadataService extends AbstractMetadataCache implements MetadataService {
 
+  /**
+   * A metadata ID being produced by a thread while running concurrently.
+   * Other threads requesting the same ID wait for its completion rather than
+   * invoking the provider again.
+   */
+  private static class InFlightRequest {
+    private final CountDownLatch done = new CountDownLatch(1);
+    private final Thread owner = Thread.currentThread();
+    private volatile MetadataItem result;
+
+    boolean isDone() {
+      return done.getCount() == 0;
+    }
+  }
+
+  /**
+   * Work submitted to the fork-join pool. It keeps whatever it threw, as the
+   * pool rethrows a copy of an exception thrown on one of its threads.
+   */
+  private abstract static class PooledTask<T> extends RecursiveTask<T> {
+    private static final long serialVersionUID = 1L;
+
+    private volatile Throwable thrown;
+
+    abstract T call();
+
+    @Override
+    protected final T compute() {
+      try {
+        return call();
+      } catch (final RuntimeException e) {
+        thrown = e;
+        throw e;
+      } catch (final Error e) {
+        thrown = e;
+        throw e;
+      }
+    }
+  }
+
+  static final String CONCURRENCY_PROPERTY = "roo.metadata.concurrency";
+
   @Reference
   private MetadataLogger metadataLogger;
 
   // Request control
   // List to assist output "stacks"which show the order of requests
   private final List<String> activeRequests = new ArrayList<String>();
-  private int cacheEvictions = 0;
-  private int cacheHits = 0;
-  private int cacheMisses = 0;
-  private int cachePuts = 0;
+  private final AtomicInteger cacheEvictions = new AtomicInteger();
+  private final AtomicInteger cacheHits = new AtomicInteger();
+  private final AtomicInteger cacheMisses = new AtomicInteger();
+  private final AtomicInteger cachePuts = new AtomicInteger();
   // List to help us verify correct operation through logs (predictable
   // ordering)
   private final List<String> keysToRetry = new ArrayList<String>();
   // Mutex
   private final Object lock = new Object();
-  private final Map<String, MetadataProvider> providerMap = new HashMap<String, MetadataProvider>();
+  private final Map<String, MetadataProvider> providerMap =
+      new ConcurrentHashMap<String, MetadataProvider>();
   private final Set<MetadataProvider> providers = new HashSet<MetadataProvider>();
-  private int recursiveGets = 0;
-  private int validGets = 0;
+  private final AtomicInteger recursiveGets = new AtomicInteger();
+  private final AtomicInteger validGets = new AtomicInteger();
+
+  // Concurrent request control
+  private volatile int concurrencyLevel = 1;
+  private volatile ForkJoinPool pool;
+  private final ConcurrentMap<String, InFlightRequest> inFlightRequests =
+      new ConcurrentHashMap<String, InFlightRequest>();
+  // key: thread waiting for another thread's request; guarded by itself
+  private final Map<Thread, InFlightRequest> waitingThreads =
+      new HashMap<Thread, InFlightRequest>();
+  // Blocked recursive requests, retried once a thread has no active requests
+  private final Set<String> pendingRetries = new LinkedHashSet<String>();
+  private final ThreadLocal<int[]> requestDepth = new ThreadLocal<int[]>() {
+    @Override
+    protected int[] initialValue() {
+      return new int[1];
+    }
+  };
 
   protected MetadataDependencyRegistryTracker registryTracker = null;
 
+  public DefaultMetadataService() {
+    final String concurrency = System.getProperty(CONCURRENCY_PROPERTY);
+    if (concurrency != null) {
+      setConcurrencyLevel(NumberUtils.toInt(concurrency, 1));
+    }
+  }
+
   /**
    * This service is being activated so setup it:
    * <ul>
@@ -81,6 +168,7 @@ public class DefaultMetadataService extends AbstractMetadataCache implements Met
     MetadataDependencyRegistry registry = this.registryTracker.getService();
     registry.removeNotificationListener(this);
     this.registryTracker.close();
+    setConcurrencyLevel(1);
   }
 
   protected void bindMetadataProvider(final MetadataProvider mp) {
@@ -99,20 +187,30 @@ public class DefaultMetadataService extends AbstractMetadataCache implements Met
 
   @Override
   public void evict(final String metadataIdentificationString) {
+    if (isConcurrent()) {
+      // The cache and registry guard themselves; holding the lock here
+      // could deadlock against threads waiting for in-flight requests
+      evictWithDownstreams(metadataIdentificationString);
+      return;
+    }
     synchronized (lock) {
-      // Clear my own cache (which also verifies the argument is valid at
-      // the same time)
-      super.evict(metadataIdentificationString);
-
-      // Finally, evict downstream dependencies (ie metadata that
-      // previously depended on this now-evicted metadata)
-      MetadataDependencyRegistry registry = this.registryTracker.getService();
-      for (final String downstream : registry.getDownstream(metadataIdentificationString)) {
-        // We only need to evict if it is an instance, as only an
-        // instance will ever go into the cache
-        if (MetadataIdentificationUtils.isIdentifyingInstance(downstream)) {
-          evict(downstream);
-        }
+      evictWithDownstreams(metadataIdentificationString);
+    }
+  }
+
+  private void evictWithDownstreams(final String metadataIdentificationString) {
+    // Clear my own cache (which also verifies the argument is valid at
+    // the same time)
+    super.evict(metadataIdentificationString);
+
+    // Finally, evict downstream dependencies (ie metadata that
+    // previously depended on this now-evicted metadata)
+    MetadataDependencyRegistry registry = this.registryTracker.getService();
+    for (final String downstream : registry.getDownstream(metadataIdentificationString)) {
+      // We only need to evict if it is an instance, as only an
+      // instance will ever go into the cache
+      if (MetadataIdentificationUtils.isIdentifyingInstance(downstream)) {
+        evict(downstream);
       }
     }
   }
@@ -147,6 +245,98 @@ public class DefaultMetadataService extends AbstractMetadataCache implements Met
     return getInternal(metadataIdentificationString, evictCache, true);
   }
 
+  public Map<String, MetadataItem> getAll(final Collection<String> metadataIdentificationStrings) {
+    Validate.notNull(metadataIdentificationStrings, "Metadata identification strings required");
+    return getAll(metadataIdentificationStrings, false);
+  }
+
+  private Map<String, MetadataItem> getAll(final Collection<String> metadataIdentificationStrings,
+      final boolean evictCache) {
+    final Map<String, MetadataItem> results = new LinkedHashMap<String, MetadataItem>();
+    final ForkJoinPool pool = this.pool;
+
+    // Nested calls from a worker are produced by that worker, as blocking it
+    // on tasks queued behind it would only starve the pool
+    if (pool == null || metadataIdentificationStrings.size() < 2
+        || ForkJoinTask.inForkJoinPool()) {
+      for (final String metadataIdentificationString : metadataIdentificationStrings) {
+        results.put(metadataIdentificationString,
+            getInternal(metadataIdentificationString, evictCache, true));
+      }
+      return results;
+    }
+
+    final Map<String, PooledTask<MetadataItem>> tasks =
+        new LinkedHashMap<String, PooledTask<MetadataItem>>();
+    for (final String metadataIdentificationString : metadataIdentificationStrings) {
+      if (tasks.containsKey(metadataIdentificationString)) {
+        continue;
+      }
+      final PooledTask<MetadataItem> task = new PooledTask<MetadataItem>() {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        MetadataItem call() {
+          return getInternal(metadataIdentificationString, evictCache, true);
+        }
+      };
+      pool.execute(task);
+      tasks.put(metadataIdentificationString, task);
+    }
+    for (final Entry<String, PooledTask<MetadataItem>> task : tasks.entrySet()) {
+      results.put(task.getKey(), join(task.getValue()));
+    }
+    return results;
+  }
+
+  public int getConcurrencyLevel() {
+    return concurrencyLevel;
+  }
+
+  public void setConcurrencyLevel(final int concurrencyLevel) {
+    synchronized (lock) {
+      final int level = Math.max(1, concurrencyLevel);
+      if (level == this.concurrencyLevel) {
+        return;
+      }
+      if (pool != null) {
+        pool.shutdown();
+        pool = null;
+      }
+      if (level > 1) {
+        pool = new ForkJoinPool(level);
+      }
+      this.concurrencyLevel = level;
+    }
+  }
+
+  private boolean isConcurrent() {
+    return concurrencyLevel > 1;
+  }
+
+  /**
+   * Waits for the given task, rethrowing whatever it threw unchanged so that
+   * callers see the same exceptions as when the work is done on their own
+   * thread
+   */
+  private <T> T join(final PooledTask<T> task) {
+    try {
+      return task.get();
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    } catch (final ExecutionException e) {
+      final Throwable thrown = task.thrown == null ? e.getCause() : task.thrown;
+      if (thrown instanceof RuntimeException) {
+        throw (RuntimeException) thrown;
+      }
+      if (thrown instanceof Error) {
+        throw (Error) thrown;
+      }
+      throw new IllegalStateException(thrown);
+    }
+  }
+
   private MetadataItem getInternal(final String metadataIdentificationString,
       final boolean evictCache, final boolean cacheRetrievalAllowed) {
     Validate.isTrue(
@@ -154,8 +344,12 @@ public class DefaultMetadataService extends AbstractMetadataCache implements Met
         "Metadata identification string '%s' does not identify a metadata instance",
         metadataIdentificationString);
 
+    if (isConcurrent()) {
+      return getConcurrently(metadataIdentificationString, evictCache, cacheRetrievalAllowed);
+    }
+
     synchronized (lock) {
-      validGets++;
+      validGets.incrementAndGet();
 
       try {
         metadataLogger.startEvent();
@@ -166,7 +360,7 @@ public class DefaultMetadataService extends AbstractMetadataCache implements Met
           if (metadataLogger.getTraceLevel() > 0) {
             metadataLogger.log("Evicting " + metadataIdentificationString);
           }
-          cacheEvictions++;
+          cacheEvictions.incrementAndGet();
         }
 
         // We can use the cache even for a recursive get (unless of
@@ -175,7 +369,7 @@ public class DefaultMetadataService extends AbstractMetadataCache implements Met
           // Try the cache first
           final MetadataItem result = getFromCache(metadataIdentificationString);
           if (result != null) {
-            cacheHits++;
+            cacheHits.incrementAndGet();
             if (metadataLogger.getTraceLevel() > 0) {
               metadataLogger.log("Cache hit " + metadataIdentificationString);
             }
@@ -186,12 +380,12 @@ public class DefaultMetadataService extends AbstractMetadataCache implements Met
         if (metadataLogger.getTraceLevel() > 0) {
           metadataLogger.log("Cache miss " + metadataIdentificationString);
         }
-        cacheMisses++;
+        cacheMisses.incrementAndGet();
 
         // Determine if this MID was already requested earlier. We need
         // to stop these infinite requests from occurring.
         if (activeRequests.contains(metadataIdentificationString)) {
-          recursiveGets++;
+          recursiveGets.incrementAndGet();
           if (!keysToRetry.contains(metadataIdentificationString)) {
             if (metadataLogger.getTraceLevel() > 0) {
               metadataLogger.log("Blocked recursive request for " + metadataIdentificationString);
@@ -201,50 +395,10 @@ public class DefaultMetadataService extends AbstractMetadataCache implements Met
           return null;
         }
 
-        // Get the destination
-        final String mdClassId =
-            MetadataIdentificationUtils.getMetadataClassId(metadataIdentificationString);
-        final MetadataProvider p = providerMap.get(mdClassId);
-        Validate
-            .notNull(
-                p,
-                "No metadata provider is currently registered to provide metadata for identifier '%s' (class '%s')",
-                metadataIdentificationString, mdClassId);
-
         // Infinite loop management
         activeRequests.add(metadataIdentificationString);
 
-        // Obtain the item
-        if (metadataLogger.getTraceLevel() > 0) {
-          metadataLogger.log("Get " + metadataIdentificationString + " from "
-              + p.getClass().getName());
-        }
-        MetadataItem result = null;
-        try {
-          metadataLogger.startTimer(p.getClass().getName());
-          result = p.get(metadataIdentificationString);
-        } finally {
-          metadataLogger.stopTimer();
-        }
-
-        // If the item isn't available, evict it from the cache (unless
-        // we did so at the start of the method already)
-        if (result == null && !evictCache) {
-          if (metadataLogger.getTraceLevel() > 0) {
-            metadataLogger.log("Evicting unavailable item " + metadataIdentificationString);
-          }
-          evict(metadataIdentificationString);
-          cacheEvictions++;
-        }
-
-        // Put into the cache, provided it isn't null
-        if (result != null) {
-          if (metadataLogger.getTraceLevel() > 0) {
-            metadataLogger.log("Caching " + metadataIdentificationString);
-          }
-          super.put(result);
-          cachePuts++;
-        }
+        final MetadataItem result = produce(metadataIdentificationString, evictCache);
 
         activeRequests.remove(metadataIdentificationString);
 
@@ -266,28 +420,7 @@ public class DefaultMetadataService extends AbstractMetadataCache implements Met
             final List<String> thisRetry = new ArrayList<String>();
             thisRetry.addAll(keysToRetry);
             keysToRetry.clear();
-            if (metadataLogger.getTraceLevel() > 0 && thisRetry.size() > 0) {
-              metadataLogger.log(thisRetry.size() + " keys to retry: " + thisRetry);
-            }
-            for (final String retryMid : thisRetry) {
-              // Important: we should not evict any prior version
-              // from the cache (an interim version is
-              // acceptable).
-              // We discard the result of the get; this is purely
-              // to facilitate updating metadata stored in memory
-              // and on-disk
-              if (metadataLogger.getTraceLevel() > 0) {
-                metadataLogger.log("Retrying " + retryMid);
-              }
-              if (ObjectUtils.equals(retryMid, metadataIdentificationString)) {
-                // Avoid infinite recursion loop
-                continue;
-              }
-              getInternal(retryMid, false, false);
-            }
-            if (metadataLogger.getTraceLevel() > 0 && thisRetry.size() > 0) {
-              metadataLogger.log("Retry group completed " + metadataIdentificationString);
-            }
+            retry(thisRetry, metadataIdentificationString);
           }
         } finally {
           metadataLogger.stopEvent();
@@ -296,6 +429,203 @@ public class DefaultMetadataService extends AbstractMetadataCache implements Met
     }
   }
 
+  /**
+   * Concurrent counterpart of the synchronized part of
+   * {@link #getInternal(String, boolean, boolean)}. Recursion is detected
+   * through the {@link InFlightRequest}s: a request is recursive if the ID is
+   * being produced by the current thread, or by a thread that is (perhaps
+   * indirectly) waiting for the current thread.
+   */
+  private MetadataItem getConcurrently(final String metadataIdentificationString,
+      final boolean evictCache, final boolean cacheRetrievalAllowed) {
+    validGets.incrementAndGet();
+    final int[] depth = requestDepth.get();
+    depth[0]++;
+
+    try {
+      metadataLogger.startEvent();
+
+      if (evictCache) {
+        evict(metadataIdentificationString);
+        if (metadataLogger.getTraceLevel() > 0) {
+          metadataLogger.log("Evicting " + metadataIdentificationString);
+        }
+        cacheEvictions.incrementAndGet();
+      }
+
+      if (cacheRetrievalAllowed) {
+        final MetadataItem result = getFromCache(metadataIdentificationString);
+        if (result != null) {
+          cacheHits.incrementAndGet();
+          if (metadataLogger.getTraceLevel() > 0) {
+            metadataLogger.log("Cache hit " + metadataIdentificationString);
+          }
+          return result;
+        }
+      }
+
+      if (metadataLogger.getTraceLevel() > 0) {
+        metadataLogger.log("Cache miss " + metadataIdentificationString);
+      }
+      cacheMisses.incrementAndGet();
+
+      final InFlightRequest request = new InFlightRequest();
+      final InFlightRequest existing =
+          inFlightRequests.putIfAbsent(metadataIdentificationString, request);
+      if (existing != null) {
+        return await(metadataIdentificationString, existing);
+      }
+
+      try {
+        request.result = produce(metadataIdentificationString, evictCache);
+        if (metadataLogger.getTraceLevel() > 0) {
+          metadataLogger.log("Returning " + metadataIdentificationString);
+        }
+        return request.result;
+      } catch (final Exception e) {
+        throw new IllegalStateException(e);
+      } finally {
+        inFlightRequests.remove(metadataIdentificationString, request);
+        request.done.countDown();
+      }
+    } finally {
+      try {
+        depth[0]--;
+        if (depth[0] == 0) {
+          final List<String> thisRetry;
+          synchronized (pendingRetries) {
+            thisRetry = new ArrayList<String>(pendingRetries);
+            pendingRetries.clear();
+          }
+          retry(thisRetry, metadataIdentificationString);
+        }
+      } finally {
+        metadataLogger.stopEvent();
+      }
+    }
+  }
+
+  /**
+   * Waits for another thread to finish producing the given metadata, unless
+   * doing so would deadlock, in which case the request is treated like a
+   * blocked recursive request.
+   */
+  private MetadataItem await(final String metadataIdentificationString,
+      final InFlightRequest request) {
+    final Thread currentThread = Thread.currentThread();
+    synchronized (waitingThreads) {
+      // Follow the chain of owners each waiting on the next request
+      InFlightRequest next = request;
+      for (int i = 0; next != null && !next.isDone() && i <= waitingThreads.size(); i++) {
+        if (next.owner == currentThread) {
+          recursiveGets.incrementAndGet();
+          synchronized (pendingRetries) {
+            if (pendingRetries.add(metadataIdentificationString)
+                && metadataLogger.getTraceLevel() > 0) {
+              metadataLogger.log("Blocked recursive request for " + metadataIdentificationString);
+            }
+          }
+          return null;
+        }
+        next = waitingThreads.get(next.owner);
+      }
+      waitingThreads.put(currentThread, request);
+    }
+
+    try {
+      if (metadataLogger.getTraceLevel() > 0) {
+        metadataLogger.log("Awaiting " + metadataIdentificationString);
+      }
+      request.done.await();
+      return request.result;
+    } catch (final InterruptedException e) {
+      // The other thread may still be producing the metadata, so there is
+      // no result to give back
+      currentThread.interrupt();
+      throw new IllegalStateException("Interrupted while awaiting " + metadataIdentificationString,
+          e);
+    } finally {
+      synchronized (waitingThreads) {
+        waitingThreads.remove(currentThread);
+      }
+    }
+  }
+
+  /**
+   * Obtains the given metadata from its provider and updates the cache
+   * accordingly.
+   */
+  private MetadataItem produce(final String metadataIdentificationString,
+      final boolean evictCache) {
+    // Get the destination
+    final String mdClassId =
+        MetadataIdentificationUtils.getMetadataClassId(metadataIdentificationString);
+    final MetadataProvider p = providerMap.get(mdClassId);
+    Validate
+        .notNull(
+            p,
+            "No metadata provider is currently registered to provide metadata for identifier '%s' (class '%s')",
+            metadataIdentificationString, mdClassId);
+
+    // Obtain the item
+    if (metadataLogger.getTraceLevel() > 0) {
+      metadataLogger.log("Get " + metadataIdentificationString + " from "
+          + p.getClass().getName());
+    }
+    MetadataItem result = null;
+    try {
+      metadataLogger.startTimer(p.getClass().getName());
+      result = p.get(metadataIdentificationString);
+    } finally {
+      metadataLogger.stopTimer();
+    }
+
+    // If the item isn't available, evict it from the cache (unless
+    // we did so at the start of the method already)
+    if (result == null && !evictCache) {
+      if (metadataLogger.getTraceLevel() > 0) {
+        metadataLogger.log("Evicting unavailable item " + metadataIdentificationString);
+      }
+      evict(metadataIdentificationString);
+      cacheEvictions.incrementAndGet();
+    }
+
+    // Put into the cache, provided it isn't null
+    if (result != null) {
+      if (metadataLogger.getTraceLevel() > 0) {
+        metadataLogger.log("Caching " + metadataIdentificationString);
+      }
+      super.put(result);
+      cachePuts.incrementAndGet();
+    }
+    return result;
+  }
+
+  private void retry(final List<String> thisRetry, final String metadataIdentificationString) {
+    if (metadataLogger.getTraceLevel() > 0 && thisRetry.size() > 0) {
+      metadataLogger.log(thisRetry.size() + " keys to retry: " + thisRetry);
+    }
+    for (final String retryMid : thisRetry) {
+      // Important: we should not evict any prior version
+      // from the cache (an interim version is
+      // acceptable).
+      // We discard the result of the get; this is purely
+      // to facilitate updating metadata stored in memory
+      // and on-disk
+      if (metadataLogger.getTraceLevel() > 0) {
+        metadataLogger.log("Retrying " + retryMid);
+      }
+      if (ObjectUtils.equals(retryMid, metadataIdentificationString)) {
+        // Avoid infinite recursion loop
+        continue;
+      }
+      getInternal(retryMid, false, false);
+    }
+    if (metadataLogger.getTraceLevel() > 0 && thisRetry.size() > 0) {
+      metadataLogger.log("Retry group completed " + metadataIdentificationString);
+    }
+  }
+
   public void notify(final String upstreamDependency, final String downstreamDependency) {
     Validate.isTrue(MetadataIdentificationUtils.isValid(upstreamDependency),
         "Upstream dependency is an invalid metadata identification string ('%s')",
@@ -304,44 +634,112 @@ public class DefaultMetadataService extends AbstractMetadataCache implements Met
         "Downstream dependency is an invalid metadata identification string ('%s')",
         downstreamDependency);
 
-    MetadataDependencyRegistry registry = this.registryTracker.getService();
-
+    if (isConcurrent()) {
+      notifyProvider(upstreamDependency, downstreamDependency);
+      return;
+    }
     synchronized (lock) {
-      // Get the destination
-      final String mdClassId = MetadataIdentificationUtils.getMetadataClassId(downstreamDependency);
-      final MetadataProvider p = providerMap.get(mdClassId);
+      notifyProvider(upstreamDependency, downstreamDependency);
+    }
+  }
 
-      if (p == null) {
-        // No known provider that can consume this notification, so just
-        // return as per the interface contract
-        return;
-      }
+  public boolean notifyConcurrently(final Map<String, String> upstreamsByDownstream) {
+    Validate.notNull(upstreamsByDownstream, "Notifications required");
+    final ForkJoinPool pool = this.pool;
+    if (pool == null || upstreamsByDownstream.size() < 2 || ForkJoinTask.inForkJoinPool()) {
+      return false;
+    }
 
+    // Providers that handle their own notifications are notified on the
+    // pool; the others are evicted and rebuilt together, as per notify()
+    final List<PooledTask<Void>> tasks = new ArrayList<PooledTask<Void>>();
+    final List<String> rebuilt = new ArrayList<String>();
+    for (final Entry<String, String> notification : upstreamsByDownstream.entrySet()) {
+      final String downstreamDependency = notification.getKey();
+      final String upstreamDependency = notification.getValue();
+      Validate.isTrue(MetadataIdentificationUtils.isValid(upstreamDependency),
+          "Upstream dependency is an invalid metadata identification string ('%s')",
+          upstreamDependency);
+      Validate.isTrue(MetadataIdentificationUtils.isValid(downstreamDependency),
+          "Downstream dependency is an invalid metadata identification string ('%s')",
+          downstreamDependency);
+
+      final MetadataProvider p =
+          providerMap.get(MetadataIdentificationUtils.getMetadataClassId(downstreamDependency));
       if (p instanceof MetadataNotificationListener) {
-        // The provider can directly handle this notification, so we
-        // just need to delegate directly to it.
-        // We rely on the provider to evict items from the cache if
-        // applicable.
-        ((MetadataNotificationListener) p).notify(upstreamDependency, downstreamDependency);
-      } else {
-        // As per interface contract, we just ensure we evict the item
-        // and recreate it
-        // However, we only do this if the destination is an instance -
-        // if it's a class, "get" is not a meaningful operation.
-        if (MetadataIdentificationUtils.isIdentifyingInstance(downstreamDependency)) {
-          get(downstreamDependency, true);
-        }
-        // As per interface contract, we now notify any listeners this
-        // downstream instance has probably now changed
+        final PooledTask<Void> task = new PooledTask<Void>() {
+          private static final long serialVersionUID = 1L;
+
+          @Override
+          Void call() {
+            ((MetadataNotificationListener) p).notify(upstreamDependency, downstreamDependency);
+            return null;
+          }
+        };
+        pool.execute(task);
+        tasks.add(task);
+      } else if (p != null) {
+        rebuilt.add(downstreamDependency);
+      }
+    }
+
+    final List<String> instances = new ArrayList<String>();
+    for (final String downstreamDependency : rebuilt) {
+      if (MetadataIdentificationUtils.isIdentifyingInstance(downstreamDependency)) {
+        instances.add(downstreamDependency);
+      }
+    }
+    getAll(instances, true);
+    for (final PooledTask<Void> task : tasks) {
+      join(task);
+    }
+
+    if (!rebuilt.isEmpty()) {
+      final MetadataDependencyRegistry registry = this.registryTracker.getService();
+      for (final String downstreamDependency : rebuilt) {
         registry.notifyDownstream(downstreamDependency);
       }
     }
+    return true;
+  }
+
+  private void notifyProvider(final String upstreamDependency, final String downstreamDependency) {
+    MetadataDependencyRegistry registry = this.registryTracker.getService();
+
+    // Get the destination
+    final String mdClassId = MetadataIdentificationUtils.getMetadataClassId(downstreamDependency);
+    final MetadataProvider p = providerMap.get(mdClassId);
+
+    if (p == null) {
+      // No known provider that can consume this notification, so just
+      // return as per the interface contract
+      return;
+    }
+
+    if (p instanceof MetadataNotificationListener) {
+      // The provider can directly handle this notification, so we
+      // just need to delegate directly to it.
+      // We rely on the provider to evict items from the cache if
+      // applicable.
+      ((MetadataNotificationListener) p).notify(upstreamDependency, downstreamDependency);
+    } else {
+      // As per interface contract, we just ensure we evict the item
+      // and recreate it
+      // However, we only do this if the destination is an instance -
+      // if it's a class, "get" is not a meaningful operation.
+      if (MetadataIdentificationUtils.isIdentifyingInstance(downstreamDependency)) {
+        get(downstreamDependency, true);
+      }
+      // As per interface contract, we now notify any listeners this
+      // downstream instance has probably now changed
+      registry.notifyDownstream(downstreamDependency);
+    }
   }
 
   @Override
   public void put(final MetadataItem metadataItem) {
     super.put(metadataItem);
-    cachePuts++;
+    cachePuts.incrementAndGet();
   }
 
   @Override
@@ -355,6 +753,7 @@ public class DefaultMetadataService extends AbstractMetadataCache implements Met
     builder.append("cacheEvictions", cacheEvictions);
     builder.append("cacheCurrentSize", getCacheSize());
     builder.append("cacheMaximumSize", getMaxCapacity());
+    builder.append("concurrencyLevel", concurrencyLevel);
     return builder.toString().replaceFirst("@[0-9a-f]+", ":");
   }
 
@@ -53,6 +53,18 @@ public interface MetadataDependencyRegistry {
    */
   void addNotificationListener(MetadataNotificationListener listener);
 
+  /**
+   * Ends the batch started by the matching call to {@link #startBatch()}. If
+   * this was the outermost batch, the notifications collected since it
+   * started are delivered to the {@link MetadataService}, each affected
+   * downstream dependency being notified once, after all of its affected
+   * upstream dependencies. Notifications published while they are being
+   * delivered join the same delivery.
+   * 
+   * @since 2.0
+   */
+  void endBatch();
+
   /**
    * Removes all upstream dependencies that were previously registered for the
    * specified downstream dependency. This is useful if rebuilding the
@@ -100,6 +112,20 @@ public interface MetadataDependencyRegistry {
    */
   Set<String> getDownstream(String upstreamDependency);
 
+  /**
+   * Returns how many times the indicated metadata item has published a
+   * notification via {@link #notifyDownstream(String)}, including any
+   * notifications still held in a batch. As metadata only notifies its
+   * downstream dependencies when it has changed, a downstream item can
+   * compare these counts for its upstream dependencies to find out whether
+   * any of them has changed since it was last produced.
+   * 
+   * @param metadataIdentificationString the metadata item (required)
+   * @return zero if the item has never published a notification
+   * @since 2.0
+   */
+  long getNotificationCount(String metadataIdentificationString);
+
   /**
    * Obtains a list of the immediate upstream dependencies of the indicated
    * metadata item.
@@ -169,6 +195,17 @@ public interface MetadataDependencyRegistry {
    */
   void registerDependency(String upstreamDependency, String downstreamDependency);
 
+  /**
+   * Starts collecting the notifications published via
+   * {@link #notifyDownstream(String)} instead of delivering them immediately,
+   * so that a downstream dependency reached from several changed items is
+   * only notified once. Batches may be nested; every call must be matched by
+   * a call to {@link #endBatch()}.
+   * 
+   * @since 2.0
+   */
+  void startBatch();
+
   /**
    * De-register an additional instance to receive
    * {@link MetadataNotificationListener} events. If the listener was never
@@ -0,0 +1,212 @@
+package org.springframework.roo.metadata;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * An interned metadata identification string.
+ * <p>
+ * There is only ever one {@link MetadataId} for a given identification
+ * string, so instances can be compared by reference, and each has a small
+ * integer index that registries can use in place of the string itself. The
+ * class part of the ID is parsed once, and shared by all the instance IDs of
+ * that class.
+ * <p>
+ * Interned IDs are never discarded, so this type is intended for long-lived
+ * identifiers such as those held by the {@link MetadataDependencyRegistry},
+ * not for every string passed through {@link MetadataIdentificationUtils}.
+ *
+ * @since 2.0
+ */
+public final class MetadataId {
+
+  private static final Map<String, MetadataId> INTERN_TABLE =
+      new ConcurrentHashMap<String, MetadataId>();
+  private static final Object INTERN_LOCK = new Object();
+  private static volatile MetadataId[] interned = new MetadataId[1024];
+  private static int internedCount;
+
+  /**
+   * Returns the interned ID with the given index.
+   *
+   * @param index as returned by {@link #getIndex()}
+   * @return a non-<code>null</code> ID
+   * @throws IllegalArgumentException if no ID has that index
+   */
+  public static MetadataId forIndex(final int index) {
+    final MetadataId[] ids = interned;
+    Validate.isTrue(index >= 0 && index < ids.length && ids[index] != null,
+        "No metadata ID has the index %d", index);
+    return ids[index];
+  }
+
+  /**
+   * Returns the interned ID for the given identification string, if it has
+   * already been interned.
+   *
+   * @param metadataIdentificationString the ID to look up (can be
+   *            <code>null</code>)
+   * @return <code>null</code> if that ID has not been interned
+   */
+  public static MetadataId lookup(final String metadataIdentificationString) {
+    if (metadataIdentificationString == null) {
+      return null;
+    }
+    return INTERN_TABLE.get(metadataIdentificationString);
+  }
+
+  /**
+   * Returns the interned ID for the given identification string, interning
+   * it if necessary.
+   *
+   * @param metadataIdentificationString the ID to intern (must be
+   *            {@link MetadataIdentificationUtils#isValid(String) valid})
+   * @return a non-<code>null</code> ID
+   */
+  public static MetadataId valueOf(final String metadataIdentificationString) {
+    final MetadataId existing = lookup(metadataIdentificationString);
+    if (existing != null) {
+      return existing;
+    }
+    Validate.isTrue(MetadataIdentificationUtils.isValid(metadataIdentificationString),
+        "Invalid metadata identification string ('%s')", metadataIdentificationString);
+    synchronized (INTERN_LOCK) {
+      MetadataId metadataId = INTERN_TABLE.get(metadataIdentificationString);
+      if (metadataId == null) {
+        // Intern the class ID first, so that it can be shared
+        MetadataId classId = null;
+        if (!MetadataIdentificationUtils.isIdentifyingClass(metadataIdentificationString)) {
+          final String classIdString =
+              MetadataIdentificationUtils.getMetadataClassId(metadataIdentificationString);
+          classId = classIdString == null ? null : valueOf(classIdString);
+        }
+        metadataId = new MetadataId(metadataIdentificationString, internedCount, classId);
+        MetadataId[] ids = interned;
+        if (internedCount == ids.length) {
+          ids = Arrays.copyOf(ids, ids.length * 2);
+        }
+        ids[internedCount++] = metadataId;
+        interned = ids;
+        INTERN_TABLE.put(metadataIdentificationString, metadataId);
+      }
+      return metadataId;
+    }
+  }
+
+  private final MetadataId classId;
+  private final int hashCode;
+  private final String id;
+  private final int index;
+  private final int instanceOffset;
+  private final String metadataClass;
+
+  /**
+   * Constructor
+   *
+   * @param id the identification string
+   * @param index the index of this ID
+   * @param classId the class ID, or <code>null</code> if this ID identifies a
+   *            class or is malformed
+   */
+  private MetadataId(final String id, final int index, final MetadataId classId) {
+    this.id = id;
+    this.index = index;
+    hashCode = id.hashCode();
+    if (MetadataIdentificationUtils.isIdentifyingClass(id)) {
+      this.classId = this;
+      metadataClass = MetadataIdentificationUtils.getMetadataClass(id);
+    } else {
+      this.classId = classId;
+      metadataClass = null;
+    }
+    instanceOffset =
+        MetadataIdentificationUtils.isIdentifyingInstance(id) ? id
+            .indexOf(MetadataIdentificationUtils.INSTANCE_DELIMITER) + 1 : -1;
+  }
+
+  @Override
+  public boolean equals(final Object obj) {
+    // Instances are canonical
+    return this == obj;
+  }
+
+  /**
+   * Returns the index of this ID, which is unique among interned IDs and
+   * allocated in sequence from zero.
+   *
+   * @return zero or more
+   */
+  public int getIndex() {
+    return index;
+  }
+
+  /**
+   * Returns the ID of this metadata's class.
+   *
+   * @return this ID if it identifies a class; <code>null</code> if it is
+   *         malformed
+   */
+  public MetadataId getMetadataClassId() {
+    return classId;
+  }
+
+  /**
+   * Returns the name of this metadata's class, as per
+   * {@link MetadataIdentificationUtils#getMetadataClass(String)}.
+   *
+   * @return <code>null</code> if this ID is malformed
+   */
+  public String getMetadataClass() {
+    if (classId == null) {
+      return null;
+    }
+    return classId.metadataClass;
+  }
+
+  /**
+   * Returns the instance key of this ID, as per
+   * {@link MetadataIdentificationUtils#getMetadataInstance(String)}.
+   *
+   * @return <code>null</code> if this ID does not identify an instance
+   */
+  public String getMetadataInstance() {
+    if (instanceOffset < 0) {
+      return null;
+    }
+    return id.substring(instanceOffset);
+  }
+
+  @Override
+  public int hashCode() {
+    return hashCode;
+  }
+
+  /**
+   * Indicates whether this ID identifies a class of {@link MetadataItem}.
+   *
+   * @see MetadataIdentificationUtils#isIdentifyingClass(String)
+   */
+  public boolean isIdentifyingClass() {
+    return classId == this;
+  }
+
+  /**
+   * Indicates whether this ID identifies a specific {@link MetadataItem}.
+   *
+   * @see MetadataIdentificationUtils#isIdentifyingInstance(String)
+   */
+  public boolean isIdentifyingInstance() {
+    return instanceOffset >= 0;
+  }
+
+  /**
+   * Returns the canonical identification string.
+   */
+  @Override
+  public String toString() {
+    return id;
+  }
+}
@@ -108,6 +108,10 @@ public final class MetadataIdentificationUtils {
    *         in some way
    */
   public static String getMetadataClass(final String metadataId) {
+    final MetadataId interned = MetadataId.lookup(metadataId);
+    if (interned != null && interned.getMetadataClassId() != null) {
+      return interned.getMetadataClass();
+    }
     if (!isValid(metadataId) || metadataId.equals(MID_PREFIX + INSTANCE_DELIMITER)) {
       return null;
     }
@@ -132,6 +136,11 @@ public final class MetadataIdentificationUtils {
    * @since 1.2.0
    */
   public static String getMetadataClassId(final String metadataId) {
+    final MetadataId interned = MetadataId.lookup(metadataId);
+    if (interned != null) {
+      final MetadataId classId = interned.getMetadataClassId();
+      return classId == null ? null : classId.toString();
+    }
     return create(getMetadataClass(metadataId));
   }
 
@@ -1,5 +1,8 @@
 package org.springframework.roo.metadata;
 
+import java.util.Collection;
+import java.util.Map;
+
 /**
  * Indicates a service which is aware of all {@link MetadataProvider}s in the
  * system and can provide access to their respective capabilities.
@@ -32,6 +35,11 @@ package org.springframework.roo.metadata;
  * boolean parameter. It must also call
  * {@link MetadataDependencyRegistry#notifyDownstream(String)} in case any other
  * metadata was monitoring the metadata.
+ * <p>
+ * By default metadata is produced by a single thread at a time. Callers may
+ * opt into producing independent metadata instances in parallel via
+ * {@link #setConcurrencyLevel(int)}, in which case every registered
+ * {@link MetadataProvider} must tolerate concurrent invocation.
  *
  * @author Ben Alex
  * @since 1.0
@@ -95,4 +103,53 @@ public interface MetadataService extends MetadataNotificationListener, MetadataC
    */
   @Deprecated
   MetadataItem get(String metadataIdentificationString, boolean evictCache);
+
+  /**
+   * Returns the {@link MetadataItem}s with the given IDs, from the cache if
+   * possible. When a concurrency level greater than one is in effect, IDs
+   * are produced in parallel; otherwise they are produced one after another
+   * in iteration order.
+   *
+   * @param metadataIdentificationStrings the IDs of the {@link MetadataItem}s
+   *            to acquire; each must identify a metadata instance (required)
+   * @return a map keyed by the given IDs, in iteration order, whose values
+   *         may be <code>null</code> if the metadata is not currently
+   *         available (never null)
+   * @since 2.0
+   */
+  Map<String, MetadataItem> getAll(Collection<String> metadataIdentificationStrings);
+
+  /**
+   * Passes the given notifications through to the relevant
+   * {@link MetadataProvider}s in parallel, with the same effect as calling
+   * {@link #notify(String, String)} for each of them. The caller must ensure
+   * that none of the downstream dependencies depends on another.
+   *
+   * @param upstreamsByDownstream the upstream dependency that notified each
+   *            downstream dependency (required)
+   * @return <code>false</code> if nothing was notified because metadata is
+   *         not being produced in parallel, in which case the caller is to
+   *         call {@link #notify(String, String)} for each notification
+   * @since 2.0
+   */
+  boolean notifyConcurrently(Map<String, String> upstreamsByDownstream);
+
+  /**
+   * Returns the maximum number of metadata instances that may be produced in
+   * parallel.
+   *
+   * @return 1 if metadata is produced by a single thread at a time
+   * @since 2.0
+   */
+  int getConcurrencyLevel();
+
+  /**
+   * Modifies the maximum number of metadata instances that may be produced in
+   * parallel. A value of 1 (the default) restores the single-threaded
+   * behaviour that all existing {@link MetadataProvider}s can rely on.
+   *
+   * @param concurrencyLevel the new level (values below 1 are treated as 1)
+   * @since 2.0
+   */
+  void setConcurrencyLevel(int concurrencyLevel);
 }
@@ -11,6 +11,10 @@ import org.springframework.roo.metadata.MetadataItem;
 /**
  * Basic {@link MetadataCache} that stores elements on a least recently used
  * (LRU) basis.
+ * <p>
+ * Every access to the underlying LRU map is guarded by a private monitor, so
+ * subclasses may read and write the cache from several threads without
+ * changing its eviction order.
  * 
  * @author Ben Alex
  * @since 1.0
@@ -19,6 +23,8 @@ public abstract class AbstractMetadataCache implements MetadataCache {
 
   private static final float hashTableLoadFactor = 0.75f;
 
+  // Access-ordered maps reorganise themselves even on get(..)
+  private final Object cacheMonitor = new Object();
   private LinkedHashMap<String, MetadataItem> map;
   private int maxCapacity = 100000;
 
@@ -30,7 +36,9 @@ public abstract class AbstractMetadataCache implements MetadataCache {
     Validate.isTrue(
         MetadataIdentificationUtils.isIdentifyingInstance(metadataIdentificationString),
         "Only metadata instances can be cached (not '%s')", metadataIdentificationString);
-    map.remove(metadataIdentificationString);
+    synchronized (cacheMonitor) {
+      map.remove(metadataIdentificationString);
+    }
   }
 
   public void evictAll() {
@@ -38,14 +46,18 @@ public abstract class AbstractMetadataCache implements MetadataCache {
   }
 
   protected int getCacheSize() {
-    return map.size();
+    synchronized (cacheMonitor) {
+      return map.size();
+    }
   }
 
   protected MetadataItem getFromCache(final String metadataIdentificationString) {
     Validate.isTrue(
         MetadataIdentificationUtils.isIdentifyingInstance(metadataIdentificationString),
         "Only metadata instances can be cached (not '%s')", metadataIdentificationString);
-    return map.get(metadataIdentificationString);
+    synchronized (cacheMonitor) {
+      return map.get(metadataIdentificationString);
+    }
   }
 
   public int getMaxCapacity() {
@@ -54,19 +66,23 @@ public abstract class AbstractMetadataCache implements MetadataCache {
 
   private void init() {
     final int hashTableCapacity = (int) Math.ceil(maxCapacity / hashTableLoadFactor) + 1;
-    map = new LinkedHashMap<String, MetadataItem>(hashTableCapacity, hashTableLoadFactor, true) {
-      private static final long serialVersionUID = 1;
+    synchronized (cacheMonitor) {
+      map = new LinkedHashMap<String, MetadataItem>(hashTableCapacity, hashTableLoadFactor, true) {
+        private static final long serialVersionUID = 1;
 
-      @Override
-      protected boolean removeEldestEntry(final Map.Entry<String, MetadataItem> eldest) {
-        return size() > maxCapacity;
-      }
-    };
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, MetadataItem> eldest) {
+          return size() > maxCapacity;
+        }
+      };
+    }
   }
 
   public void put(final MetadataItem metadataItem) {
     Validate.notNull(metadataItem, "A metadata item is required");
-    map.put(metadataItem.getId(), metadataItem);
+    synchronized (cacheMonitor) {
+      map.put(metadataItem.getId(), metadataItem);
+    }
   }
 
   public void setMaxCapacity(int maxCapacity) {
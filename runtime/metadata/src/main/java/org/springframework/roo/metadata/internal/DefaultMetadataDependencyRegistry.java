@@ -1,18 +1,30 @@
 package org.springframework.roo.metadata.internal;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferencePolicy;
 import org.apache.felix.scr.annotations.Service;
 import org.springframework.roo.metadata.MetadataDependencyRegistry;
+import org.springframework.roo.metadata.MetadataId;
 import org.springframework.roo.metadata.MetadataIdentificationUtils;
 import org.springframework.roo.metadata.MetadataLogger;
 import org.springframework.roo.metadata.MetadataNotificationListener;
@@ -21,9 +33,27 @@ import org.springframework.roo.metadata.MetadataService;
 /**
  * Default implementation of {@link MetadataDependencyRegistry}.
  * <p>
- * This implementation is not thread safe. It should only be accessed by a
- * single thread at a time. This is enforced by the process manager semantics,
- * so we avoid the cost of re-synchronization here.
+ * Dependencies are held as sets of {@link MetadataId} indexes rather than
+ * identification strings, so each edge of the dependency graph costs a few
+ * bytes; the string-based API converts to and from interned IDs.
+ * <p>
+ * Notification dispatch is driven by the process manager thread, but
+ * dependencies may be (de)registered by metadata providers running in parallel
+ * when {@link MetadataService} concurrency is enabled, so the dependency maps
+ * are guarded by a private mutex held only for the duration of each lookup or
+ * update.
+ * <p>
+ * While a batch is open, the items passed to {@link #notifyDownstream(String)}
+ * are only collected. When the batch ends, the downstream notifications they
+ * lead to are ranked in dependency order across the whole reachable graph and
+ * delivered from a priority queue, so a downstream item reached along several
+ * paths is notified once, after all of its affected upstream items. Items
+ * notified during delivery add their own downstream notifications to the same
+ * queue. Consecutive notifications that cannot lead to one another are
+ * delivered together via {@link MetadataService#notifyConcurrently(Map)}, so
+ * they are regenerated in parallel when the {@link MetadataService} allows it.
+ * Batching can be disabled by setting the
+ * {@value #BATCH_PROPERTY} system property to <code>false</code>.
  * 
  * @author Ben Alex
  * @since 1.0
@@ -32,14 +62,84 @@ import org.springframework.roo.metadata.MetadataService;
 @Service
 public class DefaultMetadataDependencyRegistry implements MetadataDependencyRegistry {
 
-  /** key: downstream dependency; value: list<upstream dependencies> */
-  private final Map<String, Set<String>> downstreamKeyed = new HashMap<String, Set<String>>();
+  /**
+   * A notification of a downstream dependency. All notifications of a given
+   * metadata instance are equivalent, whereas a class-level downstream
+   * dependency resolves the instance to update from the upstream dependency,
+   * so its notifications are only equivalent for the same upstream.
+   */
+  private static class Notification {
+    private final String downstream;
+    private final String upstream;
+    private final boolean viaClass;
+
+    Notification(final String upstream, final String downstream, final boolean viaClass) {
+      this.downstream = downstream;
+      this.upstream = upstream;
+      this.viaClass = viaClass;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+      if (!(obj instanceof Notification)) {
+        return false;
+      }
+      final Notification other = (Notification) obj;
+      return downstream.equals(other.downstream)
+          && (isForInstance() || upstream.equals(other.upstream));
+    }
+
+    @Override
+    public int hashCode() {
+      return isForInstance() ? downstream.hashCode() : 31 * downstream.hashCode()
+          + upstream.hashCode();
+    }
+
+    boolean isForInstance() {
+      return MetadataIdentificationUtils.isIdentifyingInstance(downstream);
+    }
+  }
+
+  static final String BATCH_PROPERTY = "roo.metadata.batch";
+
+  /** index: downstream dependency; value: set<upstream dependencies> */
+  private IndexSet[] downstreamKeyed = new IndexSet[0];
 
-  /** key: upstream dependency; value: list<downstream dependencies> */
-  private final Map<String, Set<String>> upstreamKeyed = new HashMap<String, Set<String>>();
+  /** index: upstream dependency; value: set<downstream dependencies> */
+  private IndexSet[] upstreamKeyed = new IndexSet[0];
+
+  /** index: metadata item; value: number of notifications it has published */
+  private long[] notificationCounts = new long[0];
 
   private final Set<MetadataNotificationListener> listeners =
-      new HashSet<MetadataNotificationListener>();
+      new CopyOnWriteArraySet<MetadataNotificationListener>();
+
+  private final Object mutex = new Object();
+
+  // Batch control, guarded by batchMutex
+  private final Object batchMutex = new Object();
+  private final boolean batchingEnabled = !"false".equals(System.getProperty(BATCH_PROPERTY));
+  private int batchDepth;
+  private final Set<String> batchedUpstreams = new LinkedHashSet<String>();
+  private boolean delivering;
+  private int nextRank;
+  private final Map<Notification, Integer> ranks = new HashMap<Notification, Integer>();
+  private final PriorityQueue<Notification> queue = new PriorityQueue<Notification>(64,
+      new Comparator<Notification>() {
+        public int compare(final Notification o1, final Notification o2) {
+          return ranks.get(o1).compareTo(ranks.get(o2));
+        }
+      });
+  private final Set<Notification> queued = new HashSet<Notification>();
+  // key: notification ranked when the batch ended; value: the length of the
+  // longest chain of instance notifications that leads to it
+  private final Map<Notification, Integer> levels = new HashMap<Notification, Integer>();
+
+  // Batch statistics
+  private final AtomicLong batches = new AtomicLong();
+  private final AtomicLong deduplicated = new AtomicLong();
+  private final AtomicLong regenerated = new AtomicLong();
+  private final AtomicLong scheduled = new AtomicLong();
 
   @Reference(policy = ReferencePolicy.DYNAMIC)
   protected volatile MetadataLogger metadataLogger;
@@ -57,16 +157,19 @@ public class DefaultMetadataDependencyRegistry implements MetadataDependencyRegi
     listeners.add(listener);
   }
 
-  private void buildSetOfAllUpstreamDependencies(final Set<String> results,
-      final String downstreamDependency) {
-    final Set<String> upstreams = downstreamKeyed.get(downstreamDependency);
+  private void buildSetOfAllUpstreamDependencies(final BitSet results,
+      final int downstreamDependency) {
+    final IndexSet upstreams = get(downstreamKeyed, downstreamDependency);
     if (upstreams == null) {
       return;
     }
 
-    for (final String upstream : upstreams) {
-      results.add(upstream);
-      buildSetOfAllUpstreamDependencies(results, upstream);
+    for (int i = 0; i < upstreams.size(); i++) {
+      final int upstream = upstreams.get(i);
+      if (!results.get(upstream)) {
+        results.set(upstream);
+        buildSetOfAllUpstreamDependencies(results, upstream);
+      }
     }
   }
 
@@ -75,17 +178,18 @@ public class DefaultMetadataDependencyRegistry implements MetadataDependencyRegi
         "Downstream dependency is an invalid metadata identification string ('%s')",
         downstreamDependency);
 
-    // Acquire the keys to delete
-    final Set<String> upstream = downstreamKeyed.get(downstreamDependency);
-    if (upstream == null) {
+    final MetadataId downstream = MetadataId.lookup(downstreamDependency);
+    if (downstream == null) {
       return;
     }
-
-    final Set<String> upstreamToDelete = new HashSet<String>(upstream);
-
-    // Delete them normally
-    for (final String deleteUpstream : upstreamToDelete) {
-      deregisterDependency(deleteUpstream, downstreamDependency);
+    synchronized (mutex) {
+      final IndexSet upstreams = get(downstreamKeyed, downstream.getIndex());
+      if (upstreams == null) {
+        return;
+      }
+      for (final int upstream : upstreams.toArray()) {
+        deregisterDependency(upstream, downstream.getIndex());
+      }
     }
   }
 
@@ -98,30 +202,177 @@ public class DefaultMetadataDependencyRegistry implements MetadataDependencyRegi
         "Downstream dependency is an invalid metadata identification string ('%s')",
         downstreamDependency);
 
-    // Maintain the upstream-keyed map, if it even exists
-    final Set<String> downstream = upstreamKeyed.get(upstreamDependency);
+    final MetadataId upstream = MetadataId.lookup(upstreamDependency);
+    final MetadataId downstream = MetadataId.lookup(downstreamDependency);
+    if (upstream == null || downstream == null) {
+      return;
+    }
+    synchronized (mutex) {
+      deregisterDependency(upstream.getIndex(), downstream.getIndex());
+    }
+  }
+
+  /**
+   * The caller must hold the mutex.
+   */
+  private void deregisterDependency(final int upstreamDependency, final int downstreamDependency) {
+    // Maintain the upstream-keyed sets, if they even exist
+    final IndexSet downstream = get(upstreamKeyed, upstreamDependency);
     if (downstream != null) {
       downstream.remove(downstreamDependency);
     }
 
-    // Maintain the downstream-keyed map, if it even exists
-    final Set<String> upstream = downstreamKeyed.get(downstreamDependency);
+    // Maintain the downstream-keyed sets, if they even exist
+    final IndexSet upstream = get(downstreamKeyed, downstreamDependency);
     if (upstream != null) {
       upstream.remove(upstreamDependency);
     }
   }
 
+  public void endBatch() {
+    final List<String> upstreams;
+    synchronized (batchMutex) {
+      if (!batchingEnabled) {
+        return;
+      }
+      Validate.isTrue(batchDepth > 0, "No batch has been started");
+      batchDepth--;
+      if (batchDepth > 0 || delivering) {
+        return;
+      }
+      delivering = true;
+      upstreams = new ArrayList<String>(batchedUpstreams);
+      batchedUpstreams.clear();
+    }
+
+    try {
+      if (!upstreams.isEmpty()) {
+        deliverBatch(upstreams);
+      }
+    } finally {
+      synchronized (batchMutex) {
+        delivering = false;
+        nextRank = 0;
+        ranks.clear();
+        levels.clear();
+        queue.clear();
+        queued.clear();
+      }
+    }
+  }
+
+  private void deliver(final Notification notification) {
+    if (metadataLogger.getTraceLevel() > 0) {
+      metadataLogger.log(notification.upstream + " -> " + notification.downstream
+          + (notification.viaClass ? " [via class]" : ""));
+    }
+    try {
+      final String responsibleClass =
+          MetadataIdentificationUtils.getMetadataClass(notification.downstream);
+      metadataLogger.startTimer(responsibleClass);
+      metadataService.notify(notification.upstream, notification.downstream);
+    } finally {
+      metadataLogger.stopTimer();
+    }
+  }
+
+  private void deliverBatch(final List<String> upstreams) {
+    batches.incrementAndGet();
+    if (metadataService != null) {
+      // Rank everything reachable from the batch in one pass, so that the
+      // order holds across all of the changed items
+      final List<Notification> notifications = new ArrayList<Notification>();
+      for (final String upstream : upstreams) {
+        notifications.addAll(getNotifications(upstream));
+      }
+      synchronized (batchMutex) {
+        rank(notifications);
+        level();
+      }
+    }
+    for (final String upstream : upstreams) {
+      schedule(upstream);
+    }
+
+    List<Notification> wave;
+    while (!(wave = pollWave()).isEmpty()) {
+      try {
+        metadataLogger.startEvent();
+        deliver(wave);
+        regenerated.addAndGet(wave.size());
+      } finally {
+        metadataLogger.stopEvent();
+      }
+    }
+  }
+
+  /**
+   * Delivers the given notifications, which are independent of each other,
+   * in parallel if the {@link MetadataService} supports it
+   */
+  private void deliver(final List<Notification> wave) {
+    if (wave.size() > 1) {
+      final Map<String, String> upstreamsByDownstream = new LinkedHashMap<String, String>();
+      for (final Notification notification : wave) {
+        if (metadataLogger.getTraceLevel() > 0) {
+          metadataLogger.log(notification.upstream + " -> " + notification.downstream
+              + " [concurrent]");
+        }
+        upstreamsByDownstream.put(notification.downstream, notification.upstream);
+      }
+      if (metadataService.notifyConcurrently(upstreamsByDownstream)) {
+        return;
+      }
+    }
+    for (final Notification notification : wave) {
+      deliver(notification);
+    }
+  }
+
+  private IndexSet[] ensureCapacity(final IndexSet[] adjacency, final int index) {
+    if (index < adjacency.length) {
+      return adjacency;
+    }
+    return Arrays.copyOf(adjacency, Math.max(index + 1, adjacency.length * 3 / 2));
+  }
+
   public Set<String> getDownstream(final String upstreamDependency) {
     Validate.isTrue(MetadataIdentificationUtils.isValid(upstreamDependency),
         "Upstream dependency is an invalid metadata identification string ('%s')",
         upstreamDependency);
 
-    final Set<String> downstream = upstreamKeyed.get(upstreamDependency);
-    if (downstream == null) {
-      return new HashSet<String>();
+    synchronized (mutex) {
+      final MetadataId upstream = MetadataId.lookup(upstreamDependency);
+      final IndexSet downstream = upstream == null ? null : get(upstreamKeyed, upstream.getIndex());
+      if (downstream == null) {
+        return new HashSet<String>();
+      }
+
+      return Collections.unmodifiableSet(toIdentificationStrings(downstream));
     }
+  }
 
-    return Collections.unmodifiableSet(new CopyOnWriteArraySet<String>(downstream));
+  /**
+   * Returns the set of dependencies at the given index of the given
+   * adjacency array. The caller must hold the mutex.
+   * 
+   * @return <code>null</code> if there are none
+   */
+  private IndexSet get(final IndexSet[] adjacency, final int index) {
+    return index < adjacency.length ? adjacency[index] : null;
+  }
+
+  public long getNotificationCount(final String metadataIdentificationString) {
+    Validate.isTrue(MetadataIdentificationUtils.isValid(metadataIdentificationString),
+        "Metadata identification string is invalid ('%s')", metadataIdentificationString);
+
+    synchronized (mutex) {
+      final MetadataId metadataId = MetadataId.lookup(metadataIdentificationString);
+      if (metadataId == null || metadataId.getIndex() >= notificationCounts.length) {
+        return 0;
+      }
+      return notificationCounts[metadataId.getIndex()];
+    }
   }
 
   public Set<String> getUpstream(final String downstreamDependency) {
@@ -129,12 +380,16 @@ public class DefaultMetadataDependencyRegistry implements MetadataDependencyRegi
         "Downstream dependency is an invalid metadata identification string ('%s')",
         downstreamDependency);
 
-    final Set<String> upstream = downstreamKeyed.get(downstreamDependency);
-    if (upstream == null) {
-      return new HashSet<String>();
-    }
+    synchronized (mutex) {
+      final MetadataId downstream = MetadataId.lookup(downstreamDependency);
+      final IndexSet upstream =
+          downstream == null ? null : get(downstreamKeyed, downstream.getIndex());
+      if (upstream == null) {
+        return new HashSet<String>();
+      }
 
-    return Collections.unmodifiableSet(upstream);
+      return Collections.unmodifiableSet(toIdentificationStrings(upstream));
+    }
   }
 
   public boolean isValidDependency(final String upstreamDependency,
@@ -149,133 +404,230 @@ public class DefaultMetadataDependencyRegistry implements MetadataDependencyRegi
         "Upstream dependency cannot be the same as the downstream dependency ('%s')",
         downstreamDependency);
 
-    // The simplest possible outcome is the relationship already exists, so
-    // quickly return in that case
-    Set<String> downstream = upstreamKeyed.get(upstreamDependency);
-    if (downstream != null && downstream.contains(downstreamDependency)) {
+    final MetadataId upstream = MetadataId.lookup(upstreamDependency);
+    final MetadataId downstream = MetadataId.lookup(downstreamDependency);
+    if (upstream == null || downstream == null) {
+      // At least one of them has never been registered
       return true;
     }
-    // Don't need the variable anymore, as we don't care about the other
-    // downstream dependencies
-    downstream = null;
 
-    // Need to walk the upstream dependency's parent dependency graph,
-    // verifying no presence of the proposed downstream dependency
+    synchronized (mutex) {
+      // The simplest possible outcome is the relationship already exists,
+      // so quickly return in that case
+      final IndexSet downstreams = get(upstreamKeyed, upstream.getIndex());
+      if (downstreams != null && downstreams.contains(downstream.getIndex())) {
+        return true;
+      }
+
+      // Need to walk the upstream dependency's parent dependency graph,
+      // verifying no presence of the proposed downstream dependency
+
+      // Need to build a set representing every eventual upstream
+      // dependency of the indicated upstream dependency
+      final BitSet allUpstreams = new BitSet();
+      buildSetOfAllUpstreamDependencies(allUpstreams, upstream.getIndex());
+
+      // The dependency is valid if none of the upstreams depend on the
+      // proposed downstream
+      return !allUpstreams.get(downstream.getIndex());
+    }
+  }
 
-    // Need to build a set representing every eventual upstream dependency
-    // of the indicated upstream dependency
-    final Set<String> allUpstreams = new HashSet<String>();
-    buildSetOfAllUpstreamDependencies(allUpstreams, upstreamDependency);
+  /**
+   * Returns the notifications that the given upstream dependency sends to its
+   * immediate downstream dependencies, namely those registered against it
+   * followed by those registered against its metadata class.
+   */
+  private List<Notification> getNotifications(final String upstreamDependency) {
+    final List<Notification> notifications = new ArrayList<Notification>();
+    final Set<String> downstreams = getDownstream(upstreamDependency);
+    for (final String downstream : downstreams) {
+      // No need to ensure upstreamDependency is different from
+      // downstream, as that's taken care of in the isValidDependency()
+      // method
+      notifications.add(new Notification(upstreamDependency, downstream, false));
+    }
 
-    // The dependency is valid if none of the upstreams depend on the
-    // proposed downstream
-    return !allUpstreams.contains(downstreamDependency);
+    // We only add class-specific dependencies if the upstream is not class
+    // specific, as otherwise we'd have added them above
+    if (!MetadataIdentificationUtils.isIdentifyingClass(upstreamDependency)) {
+      final String asClass = MetadataIdentificationUtils.getMetadataClassId(upstreamDependency);
+      for (final String downstream : getDownstream(asClass)) {
+        // We don't notify a downstream if it had a direct
+        // instance-specific dependency and was already notified above.
+        // We also don't notify if upstream is the same as downstream, as
+        // it doesn't make sense to notify yourself of an event (such a
+        // condition is only possible if an instance registered to
+        // receive class-specific notifications and that instance caused
+        // an event to fire)
+        if (!downstreams.contains(downstream) && !upstreamDependency.equals(downstream)) {
+          notifications.add(new Notification(upstreamDependency, downstream, true));
+        }
+      }
+    }
+    return notifications;
   }
 
   public void notifyDownstream(final String upstreamDependency) {
+    synchronized (mutex) {
+      final int upstream = MetadataId.valueOf(upstreamDependency).getIndex();
+      if (upstream >= notificationCounts.length) {
+        notificationCounts =
+            Arrays.copyOf(notificationCounts,
+                Math.max(upstream + 1, notificationCounts.length * 3 / 2));
+      }
+      notificationCounts[upstream]++;
+    }
+
+    final boolean joinDelivery;
+    synchronized (batchMutex) {
+      if (!delivering && batchDepth > 0) {
+        batchedUpstreams.add(upstreamDependency);
+        return;
+      }
+      joinDelivery = delivering;
+    }
+    if (joinDelivery) {
+      schedule(upstreamDependency);
+      return;
+    }
+
     try {
       metadataLogger.startEvent();
 
       if (metadataService != null) {
-        // First dispatch the fine-grained, instance-specific
-        // dependencies.
-        Set<String> notifiedDownstreams = new HashSet<String>();
-        Set<String> downstreams = getDownstream(upstreamDependency);
-        for (final String downstream : downstreams) {
-          if (metadataLogger.getTraceLevel() > 0) {
-            metadataLogger.log(upstreamDependency + " -> " + downstream);
-          }
-          // No need to ensure upstreamDependency is different from
-          // downstream, as that's taken care of in the
-          // isValidDependency() method
-          try {
-            final String responsibleClass =
-                MetadataIdentificationUtils.getMetadataClass(downstream);
-            metadataLogger.startTimer(responsibleClass);
-            metadataService.notify(upstreamDependency, downstream);
-          } finally {
-            metadataLogger.stopTimer();
-          }
-          notifiedDownstreams.add(downstream);
+        // First dispatch the fine-grained, instance-specific dependencies,
+        // then the coarse-grained, class-specific dependencies
+        for (final Notification notification : getNotifications(upstreamDependency)) {
+          deliver(notification);
         }
+      }
 
-        // Next dispatch the coarse-grained, class-specific
-        // dependencies.
-        // We only do it if the upstream is not class specific, as
-        // otherwise we'd have handled class-specific dispatch in
-        // previous loop
-        if (!MetadataIdentificationUtils.isIdentifyingClass(upstreamDependency)) {
-          final String asClass = MetadataIdentificationUtils.getMetadataClassId(upstreamDependency);
-          downstreams = getDownstream(asClass);
-          for (final String downstream : downstreams) {
-            // We don't notify a downstream if it had a direct
-            // instance-specific dependency and was already notified
-            // in previous loop
-            // We also don't notify if upstream is the same as
-            // downstream, as it doesn't make sense to notify
-            // yourself of an event
-            // (such a condition is only possible if an instance
-            // registered to receive class-specific notifications
-            // and that instance
-            // caused an event to fire)
-            if (!notifiedDownstreams.contains(downstream) && !upstreamDependency.equals(downstream)) {
-              if (metadataLogger.getTraceLevel() > 0) {
-                metadataLogger.log(upstreamDependency + " -> " + downstream + " [via class]");
-              }
-              try {
-                final String responsibleClass =
-                    MetadataIdentificationUtils.getMetadataClass(downstream);
-                metadataLogger.startTimer(responsibleClass);
-                metadataService.notify(upstreamDependency, downstream);
-              } finally {
-                metadataLogger.stopTimer();
-              }
-            }
-          }
-        }
+      notifyListeners(upstreamDependency);
+    } finally {
+      metadataLogger.stopEvent();
+    }
+  }
 
-        notifiedDownstreams = null;
+  /**
+   * Dispatches a notification to the general-purpose additional listeners.
+   */
+  private void notifyListeners(final String upstreamDependency) {
+    for (final MetadataNotificationListener listener : listeners) {
+      if (metadataLogger.getTraceLevel() > 1) {
+        metadataLogger.log(upstreamDependency + " -> " + upstreamDependency + " ["
+            + listener.getClass().getSimpleName() + "]");
       }
+      try {
+        final String responsibleClass = listener.getClass().getName();
+        metadataLogger.startTimer(responsibleClass);
+        listener.notify(upstreamDependency, null);
+      } finally {
+        metadataLogger.stopTimer();
+      }
+    }
+  }
 
-      // Finally dispatch the general-purpose additional listeners
-      for (final MetadataNotificationListener listener : listeners) {
-        if (metadataLogger.getTraceLevel() > 1) {
-          metadataLogger.log(upstreamDependency + " -> " + upstreamDependency + " ["
-              + listener.getClass().getSimpleName() + "]");
-        }
-        try {
-          final String responsibleClass = listener.getClass().getName();
-          metadataLogger.startTimer(responsibleClass);
-          listener.notify(upstreamDependency, null);
-        } finally {
-          metadataLogger.stopTimer();
-        }
+  /**
+   * Removes the next notifications to deliver from the queue. Consecutive
+   * instance notifications at the same level cannot lead to one another, so
+   * they are removed together; any other notification is removed on its own.
+   *
+   * @return an empty list if the queue is empty
+   */
+  private List<Notification> pollWave() {
+    synchronized (batchMutex) {
+      final List<Notification> wave = new ArrayList<Notification>();
+      final Notification first = queue.poll();
+      if (first == null) {
+        return wave;
       }
-    } finally {
-      metadataLogger.stopEvent();
+      queued.remove(first);
+      wave.add(first);
+      final Integer level = first.isForInstance() ? levels.get(first) : null;
+      while (level != null && !queue.isEmpty() && queue.peek().isForInstance()
+          && level.equals(levels.get(queue.peek()))) {
+        final Notification next = queue.poll();
+        queued.remove(next);
+        wave.add(next);
+      }
+      return wave;
     }
   }
 
-  public void registerDependency(final String upstreamDependency, final String downstreamDependency) {
-    Validate.isTrue(isValidDependency(upstreamDependency, downstreamDependency),
-        "Invalid dependency between upstream '%s' and downstream '%s'", upstreamDependency,
-        downstreamDependency);
+  /**
+   * Works out the level of each instance notification ranked so far, being
+   * the length of the longest chain of instance notifications leading to it.
+   * Notifications first ranked during delivery, such as those that follow a
+   * class-level notification, are left without a level.
+   * <p>
+   * The caller must hold the batch mutex.
+   */
+  private void level() {
+    final List<Notification> ranked = new ArrayList<Notification>(ranks.keySet());
+    Collections.sort(ranked, queue.comparator());
+    for (final Notification notification : ranked) {
+      if (!notification.isForInstance()) {
+        continue;
+      }
+      Integer level = levels.get(notification);
+      if (level == null) {
+        level = 0;
+        levels.put(notification, level);
+      }
+      for (final Notification next : getNotifications(notification.downstream)) {
+        final Integer rank = ranks.get(next);
+        final Integer nextLevel = levels.get(next);
+        if (rank != null && rank > ranks.get(notification)
+            && (nextLevel == null || nextLevel <= level)) {
+          levels.put(next, level + 1);
+        }
+      }
+    }
+  }
 
-    // Maintain the upstream-keyed map
-    Set<String> downstream = upstreamKeyed.get(upstreamDependency);
-    if (downstream == null) {
-      downstream = new HashSet<String>();
-      upstreamKeyed.put(upstreamDependency, downstream);
+  /**
+   * Ranks the given notifications, and any notifications they may lead to,
+   * that have not been ranked yet in the current batch. Ranks follow a
+   * reverse post-order of the dependency graph, so every notification ranks
+   * after the notifications that may lead to it (unless they form a cycle).
+   * <p>
+   * The caller must hold the batch mutex.
+   */
+  private void rank(final Collection<Notification> notifications) {
+    final List<Notification> postOrder = new ArrayList<Notification>();
+    final Set<Notification> visited = new HashSet<Notification>();
+    for (final Notification notification : notifications) {
+      visit(notification, visited, postOrder);
+    }
+    for (int i = postOrder.size() - 1; i >= 0; i--) {
+      ranks.put(postOrder.get(i), nextRank++);
     }
-    downstream.add(downstreamDependency);
+  }
 
-    // Maintain the downstream-keyed map
-    Set<String> upstream = downstreamKeyed.get(downstreamDependency);
-    if (upstream == null) {
-      upstream = new HashSet<String>();
-      downstreamKeyed.put(downstreamDependency, upstream);
+  public void registerDependency(final String upstreamDependency, final String downstreamDependency) {
+    synchronized (mutex) {
+      Validate.isTrue(isValidDependency(upstreamDependency, downstreamDependency),
+          "Invalid dependency between upstream '%s' and downstream '%s'", upstreamDependency,
+          downstreamDependency);
+
+      final int upstream = MetadataId.valueOf(upstreamDependency).getIndex();
+      final int downstream = MetadataId.valueOf(downstreamDependency).getIndex();
+
+      // Maintain the upstream-keyed sets
+      upstreamKeyed = ensureCapacity(upstreamKeyed, upstream);
+      if (upstreamKeyed[upstream] == null) {
+        upstreamKeyed[upstream] = new IndexSet();
+      }
+      upstreamKeyed[upstream].add(downstream);
+
+      // Maintain the downstream-keyed sets
+      downstreamKeyed = ensureCapacity(downstreamKeyed, downstream);
+      if (downstreamKeyed[downstream] == null) {
+        downstreamKeyed[downstream] = new IndexSet();
+      }
+      downstreamKeyed[downstream].add(upstream);
     }
-    upstream.add(upstreamDependency);
   }
 
   public void removeNotificationListener(final MetadataNotificationListener listener) {
@@ -288,4 +640,76 @@ public class DefaultMetadataDependencyRegistry implements MetadataDependencyRegi
 
     listeners.remove(listener);
   }
+  /**
+   * Queues the notifications sent by the given upstream dependency to its
+   * downstream dependencies, skipping those already queued, and then
+   * notifies the general-purpose listeners.
+   */
+  private void schedule(final String upstreamDependency) {
+    try {
+      metadataLogger.startEvent();
+      if (metadataService != null) {
+        final List<Notification> notifications = getNotifications(upstreamDependency);
+        synchronized (batchMutex) {
+          rank(notifications);
+          for (final Notification notification : notifications) {
+            scheduled.incrementAndGet();
+            if (queued.add(notification)) {
+              queue.add(notification);
+            } else {
+              deduplicated.incrementAndGet();
+            }
+          }
+        }
+      }
+      notifyListeners(upstreamDependency);
+    } finally {
+      metadataLogger.stopEvent();
+    }
+  }
+
+  public void startBatch() {
+    synchronized (batchMutex) {
+      if (batchingEnabled) {
+        batchDepth++;
+      }
+    }
+  }
+
+  /**
+   * Converts the given indexes to identification strings. The caller must
+   * hold the mutex.
+   */
+  private Set<String> toIdentificationStrings(final IndexSet indexes) {
+    final Set<String> metadataIds = new HashSet<String>();
+    for (int i = 0; i < indexes.size(); i++) {
+      metadataIds.add(MetadataId.forIndex(indexes.get(i)).toString());
+    }
+    return metadataIds;
+  }
+
+  @Override
+  public final String toString() {
+    final ToStringBuilder builder = new ToStringBuilder(this);
+    builder.append("batches", batches);
+    builder.append("notificationsScheduled", scheduled);
+    builder.append("notificationsDeduplicated", deduplicated);
+    builder.append("notificationsRegenerated", regenerated);
+    return builder.toString().replaceFirst("@[0-9a-f]+", ":");
+  }
+
+  private void visit(final Notification notification, final Set<Notification> visited,
+      final List<Notification> postOrder) {
+    if (ranks.containsKey(notification) || !visited.add(notification)) {
+      return;
+    }
+    // What a class-level notification leads to is only known once its
+    // provider has resolved the instance to update
+    if (notification.isForInstance()) {
+      for (final Notification next : getNotifications(notification.downstream)) {
+        visit(next, visited, postOrder);
+      }
+    }
+    postOrder.add(notification);
+  }
 }
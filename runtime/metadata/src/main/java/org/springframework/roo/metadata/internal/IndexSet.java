@@ -0,0 +1,78 @@
+package org.springframework.roo.metadata.internal;
+
+import java.util.Arrays;
+
+import org.springframework.roo.metadata.MetadataId;
+
+/**
+ * A set of {@link MetadataId} indexes, held as a sorted array so that large
+ * dependency graphs take little memory. Not thread-safe.
+ * 
+ * @since 2.0
+ */
+class IndexSet {
+
+  private static final int[] EMPTY = new int[0];
+
+  private int[] elements = EMPTY;
+  private int size;
+
+  /**
+   * @param index the index to add
+   * @return <code>true</code> if the set did not already contain it
+   */
+  boolean add(final int index) {
+    int position = Arrays.binarySearch(elements, 0, size, index);
+    if (position >= 0) {
+      return false;
+    }
+    position = -position - 1;
+    if (size == elements.length) {
+      elements = Arrays.copyOf(elements, Math.max(4, size * 2));
+    }
+    System.arraycopy(elements, position, elements, position + 1, size - position);
+    elements[position] = index;
+    size++;
+    return true;
+  }
+
+  boolean contains(final int index) {
+    return Arrays.binarySearch(elements, 0, size, index) >= 0;
+  }
+
+  /**
+   * @param position from zero to {@link #size()} (exclusive)
+   * @return the index at that position
+   */
+  int get(final int position) {
+    return elements[position];
+  }
+
+  /**
+   * @param index the index to remove
+   * @return <code>true</code> if the set contained it
+   */
+  boolean remove(final int index) {
+    final int position = Arrays.binarySearch(elements, 0, size, index);
+    if (position < 0) {
+      return false;
+    }
+    System.arraycopy(elements, position + 1, elements, position, size - position - 1);
+    size--;
+    if (size == 0) {
+      elements = EMPTY;
+    }
+    return true;
+  }
+
+  int size() {
+    return size;
+  }
+
+  /**
+   * @return a copy of the elements, in ascending order
+   */
+  int[] toArray() {
+    return Arrays.copyOf(elements, size);
+  }
+}
@@ -1,18 +1,243 @@
 package org.springframework.roo.metadata;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
 
 public class DefaultMetadataServiceTest {
 
+  private static final String METADATA_CLASS = "com.Test";
+  private static final String PROVIDES_TYPE = MetadataIdentificationUtils.create(METADATA_CLASS);
+
   private static final String TO_STRING_FOR_NEW_INSTANCE =
       "org.springframework.roo.metadata.DefaultMetadataService:" + "[validGets=0,"
           + "recursiveGets=0," + "cachePuts=0," + "cacheHits=0," + "cacheMisses=0,"
-          + "cacheEvictions=0," + "cacheCurrentSize=0," + "cacheMaximumSize=100000]";
+          + "cacheEvictions=0," + "cacheCurrentSize=0," + "cacheMaximumSize=100000,"
+          + "concurrencyLevel=1]";
+
+  private DefaultMetadataService newMetadataService() throws Exception {
+    final DefaultMetadataService metadataService = new DefaultMetadataService();
+    final Field metadataLogger = DefaultMetadataService.class.getDeclaredField("metadataLogger");
+    metadataLogger.setAccessible(true);
+    metadataLogger.set(metadataService, new DefaultMetadataLogger());
+    return metadataService;
+  }
 
   @Test
   public void testToStringOfNewInstance() {
     assertEquals(TO_STRING_FOR_NEW_INSTANCE, new DefaultMetadataService().toString());
   }
+
+  @Test
+  public void testGetAllProducesEachIdOnceWhenConcurrent() throws Exception {
+    // Set up
+    final DefaultMetadataService metadataService = newMetadataService();
+    final AtomicInteger invocations = new AtomicInteger();
+    metadataService.bindMetadataProvider(new MetadataProvider() {
+      public MetadataItem get(final String metadataIdentificationString) {
+        invocations.incrementAndGet();
+        return new AbstractMetadataItem(metadataIdentificationString) {};
+      }
+
+      public String getProvidesType() {
+        return PROVIDES_TYPE;
+      }
+    });
+    final List<String> metadataIds = new ArrayList<String>();
+    for (int i = 0; i < 50; i++) {
+      metadataIds.add(MetadataIdentificationUtils.create(METADATA_CLASS, "instance" + i));
+    }
+    metadataIds.add(metadataIds.get(0));
+    metadataService.setConcurrencyLevel(4);
+
+    // Invoke
+    final Map<String, MetadataItem> items = metadataService.getAll(metadataIds);
+
+    // Check
+    assertEquals(50, items.size());
+    for (final String metadataId : metadataIds) {
+      assertEquals(metadataId, items.get(metadataId).getId());
+    }
+    assertEquals(50, invocations.get());
+    assertEquals(items.get(metadataIds.get(1)), metadataService.get(metadataIds.get(1)));
+    assertEquals(50, invocations.get());
+    metadataService.setConcurrencyLevel(1);
+  }
+
+  @Test
+  public void testGetAllThrowsWhatGetThrowsWhenConcurrent() throws Exception {
+    // Set up
+    final DefaultMetadataService metadataService = newMetadataService();
+    final IllegalArgumentException failure = new IllegalArgumentException();
+    final AssertionError error = new AssertionError();
+    metadataService.bindMetadataProvider(new MetadataProvider() {
+      public MetadataItem get(final String metadataIdentificationString) {
+        if (metadataIdentificationString.endsWith("error")) {
+          throw error;
+        }
+        throw failure;
+      }
+
+      public String getProvidesType() {
+        return PROVIDES_TYPE;
+      }
+    });
+    final String failingId = MetadataIdentificationUtils.create(METADATA_CLASS, "failure");
+    final String erroneousId = MetadataIdentificationUtils.create(METADATA_CLASS, "error");
+    final String otherId = MetadataIdentificationUtils.create(METADATA_CLASS, "other");
+    metadataService.setConcurrencyLevel(2);
+
+    // Invoke
+    Throwable thrownByFailure = null;
+    try {
+      metadataService.getAll(Arrays.asList(failingId, otherId));
+    } catch (final IllegalStateException e) {
+      thrownByFailure = e;
+    }
+    Throwable thrownByError = null;
+    try {
+      metadataService.getAll(Arrays.asList(erroneousId, otherId));
+    } catch (final AssertionError e) {
+      thrownByError = e;
+    }
+
+    // Check
+    assertNotNull(thrownByFailure);
+    assertSame(failure, thrownByFailure.getCause());
+    assertSame(error, thrownByError);
+    metadataService.setConcurrencyLevel(1);
+    try {
+      metadataService.get(failingId);
+      fail("Expected an IllegalStateException");
+    } catch (final IllegalStateException e) {
+      assertSame(failure, e.getCause());
+    }
+  }
+
+  /**
+   * A provider whose notifications each wait until the given number of
+   * notifications are in progress at once
+   */
+  private static class ConcurrentListenerProvider implements MetadataProvider,
+      MetadataNotificationListener {
+
+    private final CountDownLatch inProgress;
+    private final List<String> notified = Collections.synchronizedList(new ArrayList<String>());
+    private final AtomicInteger overlapping = new AtomicInteger();
+
+    ConcurrentListenerProvider(final int expectedInProgress) {
+      inProgress = new CountDownLatch(expectedInProgress);
+    }
+
+    public MetadataItem get(final String metadataIdentificationString) {
+      return new AbstractMetadataItem(metadataIdentificationString) {};
+    }
+
+    public String getProvidesType() {
+      return PROVIDES_TYPE;
+    }
+
+    public void notify(final String upstreamDependency, final String downstreamDependency) {
+      notified.add(downstreamDependency);
+      inProgress.countDown();
+      try {
+        if (inProgress.await(5, TimeUnit.SECONDS)) {
+          overlapping.incrementAndGet();
+        }
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private Map<String, String> newNotifications(final int count) {
+    final Map<String, String> upstreamsByDownstream = new LinkedHashMap<String, String>();
+    for (int i = 0; i < count; i++) {
+      upstreamsByDownstream.put(MetadataIdentificationUtils.create(METADATA_CLASS, "instance"
+          + i), MetadataIdentificationUtils.create("com.Upstream", "instance" + i));
+    }
+    return upstreamsByDownstream;
+  }
+
+  @Test
+  public void testNotifyConcurrentlyDeclinesWhenNotConcurrent() throws Exception {
+    // Set up
+    final DefaultMetadataService metadataService = newMetadataService();
+    final ConcurrentListenerProvider provider = new ConcurrentListenerProvider(1);
+    metadataService.bindMetadataProvider(provider);
+
+    // Invoke
+    final boolean notified = metadataService.notifyConcurrently(newNotifications(3));
+
+    // Check
+    assertFalse(notified);
+    assertTrue(provider.notified.isEmpty());
+  }
+
+  @Test
+  public void testNotifyConcurrentlyNotifiesListenersInParallel() throws Exception {
+    // Set up
+    final DefaultMetadataService metadataService = newMetadataService();
+    final ConcurrentListenerProvider provider = new ConcurrentListenerProvider(3);
+    metadataService.bindMetadataProvider(provider);
+    metadataService.setConcurrencyLevel(3);
+    final Map<String, String> upstreamsByDownstream = newNotifications(3);
+
+    // Invoke
+    final boolean notified = metadataService.notifyConcurrently(upstreamsByDownstream);
+
+    // Check
+    assertTrue(notified);
+    assertEquals(3, provider.notified.size());
+    assertTrue(provider.notified.containsAll(upstreamsByDownstream.keySet()));
+    assertEquals(3, provider.overlapping.get());
+    metadataService.setConcurrencyLevel(1);
+  }
+
+  @Test
+  public void testRecursiveRequestIsBlockedWhenConcurrent() throws Exception {
+    // Set up
+    final DefaultMetadataService metadataService = newMetadataService();
+    final String metadataId = MetadataIdentificationUtils.create(METADATA_CLASS, "recursive");
+    final List<MetadataItem> recursiveResults = new ArrayList<MetadataItem>();
+    metadataService.bindMetadataProvider(new MetadataProvider() {
+      public MetadataItem get(final String metadataIdentificationString) {
+        if (recursiveResults.isEmpty()) {
+          recursiveResults.add(metadataService.get(metadataIdentificationString));
+        }
+        return new AbstractMetadataItem(metadataIdentificationString) {};
+      }
+
+      public String getProvidesType() {
+        return PROVIDES_TYPE;
+      }
+    });
+    metadataService.setConcurrencyLevel(2);
+
+    // Invoke
+    final MetadataItem item = metadataService.get(metadataId);
+
+    // Check
+    assertEquals(metadataId, item.getId());
+    assertEquals(1, recursiveResults.size());
+    assertNull(recursiveResults.get(0));
+    metadataService.setConcurrencyLevel(1);
+  }
 }
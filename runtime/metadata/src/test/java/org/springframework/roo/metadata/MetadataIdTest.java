@@ -0,0 +1,64 @@
+package org.springframework.roo.metadata;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.roo.metadata.MetadataIdentificationUtils.INSTANCE_DELIMITER;
+import static org.springframework.roo.metadata.MetadataIdentificationUtils.MID_PREFIX;
+
+import org.junit.Test;
+
+/**
+ * Unit test of {@link MetadataId}
+ *
+ * @since 2.0
+ */
+public class MetadataIdTest {
+
+  private static final String METADATA_CLASS = MetadataIdTest.class.getName();
+  private static final String CLASS_MID = MID_PREFIX + METADATA_CLASS;
+  private static final String INSTANCE_MID = CLASS_MID + INSTANCE_DELIMITER + "com.foo.Bar";
+
+  @Test
+  public void testInstanceIdSharesInternedClassId() {
+    // Set up
+    final MetadataId instanceId = MetadataId.valueOf(INSTANCE_MID);
+
+    // Invoke
+    final MetadataId classId = instanceId.getMetadataClassId();
+
+    // Check
+    assertSame(MetadataId.lookup(CLASS_MID), classId);
+    assertTrue(classId.isIdentifyingClass());
+    assertFalse(instanceId.isIdentifyingClass());
+    assertTrue(instanceId.isIdentifyingInstance());
+    assertEquals(METADATA_CLASS, instanceId.getMetadataClass());
+    assertEquals("com.foo.Bar", instanceId.getMetadataInstance());
+    assertEquals(MetadataIdentificationUtils.getMetadataClassId(INSTANCE_MID), classId.toString());
+  }
+
+  @Test
+  public void testLookupOfUninternedIdReturnsNull() {
+    assertNull(MetadataId.lookup(CLASS_MID + INSTANCE_DELIMITER + "never.Interned"));
+  }
+
+  @Test
+  public void testValueOfReturnsSameInstanceForEqualStrings() {
+    // Set up
+    final MetadataId metadataId = MetadataId.valueOf(INSTANCE_MID);
+
+    // Invoke
+    final MetadataId other = MetadataId.valueOf(new String(INSTANCE_MID));
+
+    // Check
+    assertSame(metadataId, other);
+    assertSame(metadataId, MetadataId.forIndex(metadataId.getIndex()));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testValueOfInvalidIdIsRejected() {
+    MetadataId.valueOf("foo");
+  }
+}
@@ -1,9 +1,26 @@
 package org.springframework.roo.metadata.internal;
 
+import static org.mockito.Matchers.anyMap;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 import junit.framework.Assert;
 
 import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.springframework.roo.metadata.DefaultMetadataLogger;
 import org.springframework.roo.metadata.MetadataIdentificationUtils;
+import org.springframework.roo.metadata.MetadataService;
 
 public class DefaultMetadataDependencyRegistryTest {
 
@@ -18,6 +35,121 @@ public class DefaultMetadataDependencyRegistryTest {
   private static final String MVC_CONTROLLER = MetadataIdentificationUtils.create("com.Test",
       "mvc ctrl");
 
+  @Test
+  public void testBatchNotifiesEachDownstreamOnceInDependencyOrder() {
+    // Set up
+    final DefaultMetadataDependencyRegistry reg = new DefaultMetadataDependencyRegistry();
+    reg.metadataLogger = new DefaultMetadataLogger();
+    reg.registerDependency(DISK_FILE, JAVA_TYPE_OBJECT);
+    reg.registerDependency(DISK_FILE, JAVA_TYPE_PERSON);
+    reg.registerDependency(JAVA_TYPE_OBJECT, MVC_CONTROLLER);
+    reg.registerDependency(JAVA_TYPE_PERSON, MVC_CONTROLLER);
+    reg.registerDependency(MVC_CONTROLLER, JSP_PAGE_1);
+    final List<String> notified = new ArrayList<String>();
+    final MetadataService metadataService = mock(MetadataService.class);
+    doAnswer(new Answer<Void>() {
+      public Void answer(final InvocationOnMock invocation) {
+        final String downstream = (String) invocation.getArguments()[1];
+        notified.add(downstream);
+        // Regenerating an item notifies its own downstream dependencies
+        reg.notifyDownstream(downstream);
+        return null;
+      }
+    }).when(metadataService).notify(anyString(), anyString());
+    reg.addNotificationListener(metadataService);
+
+    // Invoke
+    reg.startBatch();
+    reg.notifyDownstream(DISK_FILE);
+    reg.notifyDownstream(DISK_FILE);
+    Assert.assertTrue(notified.isEmpty());
+    reg.endBatch();
+
+    // Check
+    Assert.assertEquals(4, notified.size());
+    Assert.assertTrue(notified.subList(0, 2).contains(JAVA_TYPE_OBJECT));
+    Assert.assertTrue(notified.subList(0, 2).contains(JAVA_TYPE_PERSON));
+    Assert.assertEquals(MVC_CONTROLLER, notified.get(2));
+    Assert.assertEquals(JSP_PAGE_1, notified.get(3));
+    Assert.assertTrue(reg.toString().endsWith(
+        "[batches=1,notificationsScheduled=5,notificationsDeduplicated=1,"
+            + "notificationsRegenerated=4]"));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testBatchNotifiesIndependentDownstreamsTogether() {
+    // Set up
+    final DefaultMetadataDependencyRegistry reg = new DefaultMetadataDependencyRegistry();
+    reg.metadataLogger = new DefaultMetadataLogger();
+    reg.registerDependency(DISK_FILE, JAVA_TYPE_OBJECT);
+    reg.registerDependency(DISK_FILE, JAVA_TYPE_PERSON);
+    reg.registerDependency(JAVA_TYPE_OBJECT, MVC_CONTROLLER);
+    reg.registerDependency(JAVA_TYPE_PERSON, MVC_CONTROLLER);
+    reg.registerDependency(MVC_CONTROLLER, JSP_PAGE_1);
+    reg.registerDependency(MVC_CONTROLLER, JSP_PAGE_2);
+    final List<Set<String>> waves = new ArrayList<Set<String>>();
+    final MetadataService metadataService = mock(MetadataService.class);
+    doAnswer(new Answer<Boolean>() {
+      public Boolean answer(final InvocationOnMock invocation) {
+        final Map<String, String> upstreamsByDownstream =
+            (Map<String, String>) invocation.getArguments()[0];
+        waves.add(new HashSet<String>(upstreamsByDownstream.keySet()));
+        for (final String downstream : upstreamsByDownstream.keySet()) {
+          reg.notifyDownstream(downstream);
+        }
+        return true;
+      }
+    }).when(metadataService).notifyConcurrently(anyMap());
+    doAnswer(new Answer<Void>() {
+      public Void answer(final InvocationOnMock invocation) {
+        final String downstream = (String) invocation.getArguments()[1];
+        final Set<String> wave = new HashSet<String>();
+        wave.add(downstream);
+        waves.add(wave);
+        reg.notifyDownstream(downstream);
+        return null;
+      }
+    }).when(metadataService).notify(anyString(), anyString());
+    reg.addNotificationListener(metadataService);
+
+    // Invoke
+    reg.startBatch();
+    reg.notifyDownstream(DISK_FILE);
+    reg.endBatch();
+
+    // Check
+    Assert.assertEquals(3, waves.size());
+    Assert.assertEquals(new HashSet<String>(Arrays.asList(JAVA_TYPE_OBJECT, JAVA_TYPE_PERSON)),
+        waves.get(0));
+    Assert.assertEquals(Collections.singleton(MVC_CONTROLLER), waves.get(1));
+    Assert.assertEquals(new HashSet<String>(Arrays.asList(JSP_PAGE_1, JSP_PAGE_2)),
+        waves.get(2));
+    Assert.assertTrue(reg.toString().endsWith(
+        "[batches=1,notificationsScheduled=6,notificationsDeduplicated=1,"
+            + "notificationsRegenerated=5]"));
+  }
+
+  @Test
+  public void testNotificationCountIncludesBatchedNotifications() {
+    // Set up
+    final DefaultMetadataDependencyRegistry reg = new DefaultMetadataDependencyRegistry();
+    reg.metadataLogger = new DefaultMetadataLogger();
+    reg.registerDependency(DISK_FILE, JAVA_TYPE_OBJECT);
+    Assert.assertEquals(0, reg.getNotificationCount(DISK_FILE));
+
+    // Invoke
+    reg.notifyDownstream(DISK_FILE);
+    reg.startBatch();
+    reg.notifyDownstream(DISK_FILE);
+
+    // Check
+    Assert.assertEquals(2, reg.getNotificationCount(DISK_FILE));
+    Assert.assertEquals(0, reg.getNotificationCount(JAVA_TYPE_OBJECT));
+    reg.endBatch();
+    Assert.assertEquals(2, reg.getNotificationCount(DISK_FILE));
+  }
+
   @Test
   public void testRegistration() {
     final DefaultMetadataDependencyRegistry reg = new DefaultMetadataDependencyRegistry();
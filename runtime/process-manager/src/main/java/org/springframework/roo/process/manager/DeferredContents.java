@@ -0,0 +1,33 @@
+package org.springframework.roo.process.manager;
+
+/**
+ * The contents of a text file whose write has been deferred via
+ * {@link FileManager#createOrUpdateTextFileOnCommit(String, DeferredContents, String)}
+ * , rendered only when they're needed. This lets a file that's changed many
+ * times within a transaction, e.g. a POM held in memory as a DOM, be
+ * serialised once rather than after every change.
+ *
+ * @since 2.0
+ */
+public interface DeferredContents {
+
+  /**
+   * Renders the current contents of the file. This is called whenever the
+   * file is read before the transaction ends, and once when it's committed,
+   * so implementations should keep the result until they change.
+   *
+   * @return the contents (required, but can be zero bytes if the file should
+   *         be deleted)
+   */
+  String getContents();
+
+  /**
+   * Called once these contents are no longer the file's pending write, i.e.
+   * once the transaction has been committed or discarded, or once other
+   * contents have been written to the file instead. They won't be rendered
+   * again.
+   *
+   * @param committed whether the file now has these contents on disk
+   */
+  void release(boolean committed);
+}
@@ -129,6 +129,25 @@ public interface FileManager {
   void createOrUpdateTextFileIfRequired(String fileIdentifier, String newContents,
       String descriptionOfChange, boolean writeImmediately);
 
+  /**
+   * Defers creating or updating a text file until {@link #commit()}, like
+   * {@link #createOrUpdateTextFileIfRequired(String, String, String, boolean)}
+   * does, except that the contents are only rendered when the file is read
+   * via {@link #getInputStream(String)} in the meantime, or when it's
+   * committed. Calling this again with the same contents just records the
+   * additional description of change; calling it with other contents, or
+   * deferring a write of other text to the file, replaces them.
+   * 
+   * @param fileIdentifier the file to create or update as appropriate
+   *            (required)
+   * @param contents the replacement contents (required)
+   * @param descriptionOfChange the additional information about a change (can
+   *            be null)
+   * @since 2.0
+   */
+  void createOrUpdateTextFileOnCommit(String fileIdentifier, DeferredContents contents,
+      String descriptionOfChange);
+
   /**
    * Attempts to delete a file or directory on the disk. The path should be in
    * canonical file name format.
@@ -206,6 +225,21 @@ public interface FileManager {
    */
   FileDetails readFile(String fileIdentifier);
 
+  /**
+   * Reads the current contents of the indicated file as text, using the
+   * platform's default encoding. Unlike {@link #getInputStream(String)}, any
+   * deferred write to the file is ignored. The contents are served from
+   * memory if the file hasn't changed since it was last read or written via
+   * this {@link FileManager}.
+   *
+   * @param fileIdentifier the file to read (required, in canonical path
+   *            format)
+   * @return the file's contents (or null if the file does not exist)
+   * @throws IllegalStateException if the file can't be read
+   * @since 2.0
+   */
+  String readTextFile(String fileIdentifier);
+
   /**
    * Delegates to {@link FileMonitorService#scanAll()} or
    * {@link NotifiableFileMonitorService#scanNotified()} if available.
@@ -214,6 +248,15 @@ public interface FileManager {
    */
   int scan();
 
+  /**
+   * Sets the maximum total size of the file contents this
+   * {@link FileManager} keeps in memory.
+   *
+   * @param capacity in bytes; 0 disables the caching of file contents
+   * @since 2.0
+   */
+  void setContentCacheCapacity(long capacity);
+
   /**
    * Provides an updatable representation of a file on the disk.
    * <p>
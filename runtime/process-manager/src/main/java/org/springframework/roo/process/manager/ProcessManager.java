@@ -48,7 +48,9 @@ import org.springframework.roo.process.manager.event.ProcessManagerStatusProvide
  * <li>A {@link FileMonitorService#scanAll()} will be called after a command is
  * executed, and will continue to be called until such time as it does not
  * return any further changes. Such calls will occur within the scope of the
- * same "transaction" as used for the command.</li>
+ * same "transaction" as used for the command. Commands executed within a
+ * {@link #beginBatch(int) batch} share one "transaction" per commit
+ * instead.</li>
  * </ul>
  * <p>
  * {@link ProcessManager} implementations also guarantee to update
@@ -60,6 +62,31 @@ import org.springframework.roo.process.manager.event.ProcessManagerStatusProvide
  */
 public interface ProcessManager extends ProcessManagerStatusProvider {
 
+  /**
+   * Starts a batch of commands, which is useful when executing long scripts.
+   * Until the matching {@link #endBatch()}, commands {@link #execute(CommandCallback)
+   * executed} by the thread that started the batch don't commit their file
+   * changes nor scan the resulting metadata changes; instead this happens
+   * every <code>commitInterval</code> commands and when the batch ends.
+   * <p>
+   * A command that fails undoes every change made since the last commit.
+   * Batches may be nested, in which case the outermost batch applies.
+   * 
+   * @param commitInterval how many commands to execute between commits; 0
+   *            means only commit when the batch ends
+   * @since 2.0
+   */
+  void beginBatch(int commitInterval);
+
+  /**
+   * Ends the batch started by the matching {@link #beginBatch(int)},
+   * committing any changes made by its commands if this was the outermost
+   * batch.
+   * 
+   * @since 2.0
+   */
+  void endBatch();
+
   /**
    * Execute a user command within a "transaction". This method blocks until
    * {@link ProcessManagerStatus#AVAILABLE}.
@@ -76,8 +103,22 @@ public interface ProcessManager extends ProcessManagerStatusProvider {
 
   long getLastScanDuration();
 
+  /**
+   * @return how many milliseconds a scan may be postponed while file changes
+   *         keep being detected
+   * @since 2.0
+   */
+  long getMaxScanLatency();
+
   long getMinimumDelayBetweenScan();
 
+  /**
+   * @return how many milliseconds must pass without further file changes
+   *         being detected before the detected changes are scanned
+   * @since 2.0
+   */
+  long getScanQuietPeriod();
+
   /**
    * @return true if the system is in development mode, which generally means
    *         more detailed diagnostics are requested from add-ons (defaults to
@@ -87,8 +128,20 @@ public interface ProcessManager extends ProcessManagerStatusProvider {
 
   void setDevelopmentMode(boolean developmentMode);
 
+  /**
+   * @param maxScanLatency see {@link #getMaxScanLatency()}
+   * @since 2.0
+   */
+  void setMaxScanLatency(long maxScanLatency);
+
   void setMinimumDelayBetweenScan(long minimumDelayBetweenScan);
 
+  /**
+   * @param scanQuietPeriod see {@link #getScanQuietPeriod()}
+   * @since 2.0
+   */
+  void setScanQuietPeriod(long scanQuietPeriod);
+
   /**
    * Allows the process manager to terminate gracefully. In particular this
    * means any background threads it has started are terminated. It is safe to
@@ -31,12 +31,28 @@ public class ProcessManagerHostedExecutionStrategy implements ExecutionStrategy
   private final Class<?> mutex = ProcessManagerHostedExecutionStrategy.class;
   private ProcessManager processManager;
 
+  public void beginBatch(final int commitInterval) {
+    synchronized (mutex) {
+      Validate.isTrue(isReadyForCommands(),
+          "ProcessManagerHostedExecutionStrategy not yet ready for commands");
+      processManager.beginBatch(commitInterval);
+    }
+  }
+
   protected void bindProcessManager(final ProcessManager processManager) {
     synchronized (mutex) {
       this.processManager = processManager;
     }
   }
 
+  public void endBatch() {
+    synchronized (mutex) {
+      if (processManager != null) {
+        processManager.endBatch();
+      }
+    }
+  }
+
   public Object execute(final ParseResult parseResult) throws RuntimeException {
     Validate.notNull(parseResult, "Parse result required");
     synchronized (mutex) {
@@ -45,8 +61,7 @@ public class ProcessManagerHostedExecutionStrategy implements ExecutionStrategy
       return processManager.execute(new CommandCallback<Object>() {
         public Object callback() {
           try {
-            return parseResult.getMethod().invoke(parseResult.getInstance(),
-                parseResult.getArguments());
+            return parseResult.invoke();
           } catch (Exception e) {
             throw new RuntimeException(ObjectUtils.defaultIfNull(ExceptionUtils.getRootCause(e), e));
           }
@@ -4,19 +4,40 @@ import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.SortedSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.math.NumberUtils;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Service;
 import org.osgi.framework.BundleContext;
@@ -25,6 +46,8 @@ import org.osgi.framework.ServiceReference;
 import org.osgi.service.component.ComponentContext;
 import org.springframework.roo.file.monitor.NotifiableFileMonitorService;
 import org.springframework.roo.file.monitor.event.FileDetails;
+import org.springframework.roo.file.monitor.event.FileEvent;
+import org.springframework.roo.file.monitor.event.FileEventListener;
 import org.springframework.roo.file.undo.CreateDirectory;
 import org.springframework.roo.file.undo.CreateFile;
 import org.springframework.roo.file.undo.DeleteDirectory;
@@ -34,6 +57,8 @@ import org.springframework.roo.file.undo.UndoEvent;
 import org.springframework.roo.file.undo.UndoListener;
 import org.springframework.roo.file.undo.UndoManager;
 import org.springframework.roo.file.undo.UpdateFile;
+import org.springframework.roo.file.undo.WriteFiles;
+import org.springframework.roo.process.manager.DeferredContents;
 import org.springframework.roo.process.manager.FileManager;
 import org.springframework.roo.process.manager.MutableFile;
 import org.springframework.roo.process.manager.ProcessManager;
@@ -41,21 +66,193 @@ import org.springframework.roo.support.logging.HandlerUtils;
 
 /**
  * Default implementation of {@link FileManager}.
+ * <p>
+ * Deferred writes are committed as one batch: the files are compared with
+ * their new contents and written in parallel, after which the changes are
+ * logged in their original order, recorded as a single {@link UndoManager}
+ * operation and published to the {@link NotifiableFileMonitorService} at
+ * once. The number of threads defaults to the number of available processors
+ * and may be set via the {@value #PARALLELISM_PROPERTY} system property; they
+ * are shared by every commit, and stop once they have been idle for a while.
+ * If the {@value #SYNC_PROPERTY} system property is <code>true</code>, each
+ * file is also forced to the storage device before the changes are published.
+ * {@link DeferredContents} are rendered once, on commit, unless the file is
+ * read before then.
+ * <p>
+ * The contents of the files read and written via this manager are kept in a
+ * {@link FileContentCache} for as long as the files keep their size, last
+ * modification time and file key, and are evicted once the file monitor
+ * reports any other change. Its capacity in bytes defaults to
+ * {@value #DEFAULT_CONTENT_CACHE_CAPACITY} and may be set via the
+ * {@value #CONTENT_CACHE_PROPERTY} system property.
  * 
  * @author Ben Alex
  * @since 1.0
  */
 @Component
 @Service
-public class DefaultFileManager implements FileManager, UndoListener {
+public class DefaultFileManager implements FileManager, FileEventListener, UndoListener {
 
   protected final static Logger LOGGER = HandlerUtils.getLogger(DefaultFileManager.class);
 
+  static final String CONTENT_CACHE_PROPERTY = "roo.file.cache.size";
+  static final long DEFAULT_CONTENT_CACHE_CAPACITY = 32 * 1024 * 1024;
+  static final String PARALLELISM_PROPERTY = "roo.file.commit.parallelism";
+  static final String SYNC_PROPERTY = "roo.file.commit.sync";
+
+  private static final long COMMIT_THREAD_KEEP_ALIVE_SECONDS = 60;
+
+  private static final ThreadFactory COMMIT_THREAD_FACTORY = new ThreadFactory() {
+    private final AtomicInteger threadCount = new AtomicInteger();
+
+    public Thread newThread(final Runnable runnable) {
+      final Thread thread =
+          new Thread(runnable, "Roo file commit " + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  };
+
+  /**
+   * A deferred write that has been committed to disk.
+   */
+  private static class CommittedWrite {
+    private final String canonicalPath;
+    private final byte[] contents;
+    private final File file;
+    private final String fileIdentifier;
+    private final byte[] previousContents;
+
+    CommittedWrite(final String fileIdentifier, final File file, final byte[] previousContents,
+        final byte[] contents) throws IOException {
+      canonicalPath = file.getCanonicalPath();
+      this.contents = contents;
+      this.file = file;
+      this.fileIdentifier = fileIdentifier;
+      this.previousContents = previousContents;
+    }
+
+    boolean isCreated() {
+      return previousContents == null;
+    }
+  }
+
+  /**
+   * Returns the number of threads to commit deferred writes with.
+   * 
+   * @param parallelism the configured number of threads; may be blank
+   * @return at least one
+   */
+  static int getCommitParallelism(final String parallelism) {
+    return Math.max(1, NumberUtils.toInt(StringUtils.trim(parallelism), Runtime.getRuntime()
+        .availableProcessors()));
+  }
+
+  /**
+   * Returns the maximum total size of the file contents to keep in memory.
+   * 
+   * @param capacity the configured capacity in bytes; may be blank
+   * @return zero or more
+   */
+  static long getContentCacheCapacity(final String capacity) {
+    return Math.max(0,
+        NumberUtils.toLong(StringUtils.trim(capacity), DEFAULT_CONTENT_CACHE_CAPACITY));
+  }
+
+  private static BasicFileAttributes readAttributes(final File file) throws IOException {
+    return Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+  }
+
+  private static byte[] readBytes(final File file) throws IOException {
+    final FileInputStream inputStream = new FileInputStream(file);
+    try {
+      final FileChannel channel = inputStream.getChannel();
+      final ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+      while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+        // Keep reading until the buffer is full or the file has been read
+      }
+      return Arrays.copyOf(buffer.array(), buffer.position());
+    } finally {
+      IOUtils.closeQuietly(inputStream);
+    }
+  }
+
+  /**
+   * Writes the given contents to the given file unless it already has them.
+   * If the write fails, the file is restored to its previous state.
+   * 
+   * @param fileIdentifier the file to write (required)
+   * @param newContents the contents to write (required)
+   * @return <code>null</code> if the file was unchanged
+   * @throws IOException if the file couldn't be read or written
+   */
+  private CommittedWrite write(final String fileIdentifier, final String newContents)
+      throws IOException {
+    final File file = new File(fileIdentifier);
+    byte[] previousContents = null;
+    if (file.exists()) {
+      previousContents = readCachedBytes(file);
+      if (newContents.equals(new String(previousContents))) {
+        return null;
+      }
+    }
+    final byte[] contents = newContents.getBytes();
+    try {
+      writeBytes(file, contents, commitSync);
+    } catch (final IOException e) {
+      if (previousContents == null) {
+        FileUtils.deleteQuietly(file);
+      } else {
+        writeBytes(file, previousContents, commitSync);
+      }
+      throw e;
+    }
+    final CommittedWrite committedWrite =
+        new CommittedWrite(fileIdentifier, file, previousContents, contents);
+    contentCache.put(committedWrite.canonicalPath, readAttributes(file), contents);
+    return committedWrite;
+  }
+
+  /**
+   * Writes the given contents to the given file
+   * 
+   * @param file the file to write (required)
+   * @param contents the contents to write (required)
+   * @param sync whether to force the contents to the storage device before
+   *            returning
+   * @throws IOException if the file couldn't be written
+   */
+  private static void writeBytes(final File file, final byte[] contents, final boolean sync)
+      throws IOException {
+    final FileOutputStream outputStream = new FileOutputStream(file);
+    try {
+      final FileChannel channel = outputStream.getChannel();
+      final ByteBuffer buffer = ByteBuffer.wrap(contents);
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      if (sync) {
+        channel.force(false);
+      }
+    } finally {
+      IOUtils.closeQuietly(outputStream);
+    }
+  }
+
   /** key: file identifier, value: new description of change */
   private final Map<String, String> deferredDescriptionOfChanges =
       new LinkedHashMap<String, String>();
   /** key: file identifier, value: new textual content */
   private final Map<String, String> deferredFileWrites = new LinkedHashMap<String, String>();
+  /** key: file identifier, value: new content, rendered on demand */
+  private final Map<String, DeferredContents> deferredContents =
+      new LinkedHashMap<String, DeferredContents>();
+  private final int commitParallelism = getCommitParallelism(System
+      .getProperty(PARALLELISM_PROPERTY));
+  private final boolean commitSync = Boolean.getBoolean(SYNC_PROPERTY);
+  private ExecutorService commitExecutor;
+  private final FileContentCache contentCache = new FileContentCache(
+      getContentCacheCapacity(System.getProperty(CONTENT_CACHE_PROPERTY)));
 
   // ------------ OSGi component attributes ----------------
   private BundleContext context;
@@ -76,21 +273,38 @@ public class DefaultFileManager implements FileManager, UndoListener {
   public void clear() {
     deferredFileWrites.clear();
     deferredDescriptionOfChanges.clear();
+    releaseDeferredContents(false);
   }
 
   public void commit() {
+    boolean committed = false;
+    try {
+      for (final Entry<String, DeferredContents> entry : deferredContents.entrySet()) {
+        deferredFileWrites.put(entry.getKey(), entry.getValue().getContents());
+      }
+      commitFileWrites();
+      committed = true;
+    } finally {
+      releaseDeferredContents(committed);
+    }
+  }
+
+  private void commitFileWrites() {
     final Map<String, String> toRemove = new LinkedHashMap<String, String>(deferredFileWrites);
     try {
+      final Map<String, String> writes = new LinkedHashMap<String, String>();
       for (final Entry<String, String> entry : toRemove.entrySet()) {
         final String fileIdentifier = entry.getKey();
         final String newContents = entry.getValue();
         if (StringUtils.isNotBlank(newContents)) {
-          createOrUpdateTextFileIfRequired(fileIdentifier, newContents,
-              StringUtils.stripToEmpty(deferredDescriptionOfChanges.get(fileIdentifier)));
+          writes.put(fileIdentifier, newContents);
         } else if (exists(fileIdentifier)) {
           delete(fileIdentifier, "empty");
         }
       }
+      if (!writes.isEmpty()) {
+        commit(writes);
+      }
     } finally {
       for (final String remove : toRemove.keySet()) {
         deferredFileWrites.remove(remove);
@@ -99,6 +313,142 @@ public class DefaultFileManager implements FileManager, UndoListener {
     }
   }
 
+  /**
+   * Writes the given files as one batch.
+   * 
+   * @param writes the new contents, keyed by file identifier (required)
+   */
+  private void commit(final Map<String, String> writes) {
+    if (fileMonitorService == null) {
+      fileMonitorService = getFileMonitorService();
+    }
+    if (processManager == null) {
+      processManager = getProcessManager();
+    }
+    if (filenameResolver == null) {
+      filenameResolver = getFileNameResolver();
+    }
+    if (undoManager == null) {
+      undoManager = getUndoManager();
+    }
+    Validate.notNull(fileMonitorService, "FileMonitorService required");
+    Validate.notNull(processManager, "ProcessManager required");
+    Validate.notNull(filenameResolver, "FilenameResolver required");
+    Validate.notNull(undoManager, "UndoManager required");
+
+    // Create any missing directories up front, so they can be undone
+    for (final String fileIdentifier : writes.keySet()) {
+      final File parentDirectory = new File(fileIdentifier).getParentFile();
+      if (parentDirectory != null && !parentDirectory.exists()) {
+        createDirectory(parentDirectory.getPath());
+      }
+    }
+
+    // Diff and write the files, in parallel if there are several
+    final List<CommittedWrite> committedWrites = new ArrayList<CommittedWrite>();
+    final List<Future<CommittedWrite>> futures = new ArrayList<Future<CommittedWrite>>();
+    final ExecutorService executor =
+        commitParallelism > 1 && writes.size() > 1 ? getCommitExecutor() : null;
+    String failedFileIdentifier = null;
+    Throwable failure = null;
+    for (final String fileIdentifier : writes.keySet()) {
+      final Callable<CommittedWrite> write = new Callable<CommittedWrite>() {
+        public CommittedWrite call() throws IOException {
+          return write(fileIdentifier, writes.get(fileIdentifier));
+        }
+      };
+      if (executor == null) {
+        try {
+          committedWrites.add(write.call());
+        } catch (final Exception e) {
+          failedFileIdentifier = fileIdentifier;
+          failure = e;
+          break;
+        }
+      } else {
+        futures.add(executor.submit(write));
+      }
+    }
+    // Wait for every write, even after a failure, as they all need undoing
+    int index = 0;
+    for (final String fileIdentifier : writes.keySet()) {
+      if (index == futures.size()) {
+        break;
+      }
+      try {
+        committedWrites.add(futures.get(index++).get());
+      } catch (final ExecutionException e) {
+        if (failure == null) {
+          failedFileIdentifier = fileIdentifier;
+          failure = e.getCause();
+        }
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+        if (failure == null) {
+          failedFileIdentifier = fileIdentifier;
+          failure = e;
+        }
+      }
+    }
+
+    // Log the changes in their original order and record them for undo
+    final Map<File, byte[]> previousContents = new LinkedHashMap<File, byte[]>();
+    final List<String> createdPaths = new ArrayList<String>();
+    final List<String> changedPaths = new ArrayList<String>();
+    final boolean includeHashCode = processManager.isDevelopmentMode();
+    for (final CommittedWrite committedWrite : committedWrites) {
+      if (committedWrite == null) {
+        continue;
+      }
+      final ManagedMessageRenderer renderer =
+          new ManagedMessageRenderer(filenameResolver, committedWrite.file,
+              committedWrite.isCreated());
+      renderer.setIncludeHashCode(includeHashCode);
+      if (includeHashCode) {
+        renderer.setHashCode(DigestUtils.shaHex(committedWrite.contents));
+      }
+      final String descriptionOfChange =
+          StringUtils.stripToEmpty(deferredDescriptionOfChanges.get(committedWrite.fileIdentifier));
+      if (StringUtils.isNotBlank(descriptionOfChange)) {
+        renderer.setDescriptionOfChange(descriptionOfChange);
+      }
+      renderer.logManagedMessage();
+      previousContents.put(committedWrite.file, committedWrite.previousContents);
+      if (committedWrite.isCreated()) {
+        createdPaths.add(committedWrite.canonicalPath);
+      } else {
+        changedPaths.add(committedWrite.canonicalPath);
+      }
+    }
+    if (!previousContents.isEmpty()) {
+      new WriteFiles(undoManager, filenameResolver, previousContents);
+      fileMonitorService.notifyChanges(createdPaths, changedPaths,
+          Collections.<String> emptyList());
+    }
+
+    if (failure != null) {
+      throw new IllegalStateException("Could not output '" + failedFileIdentifier + "'", failure);
+    }
+  }
+
+  /**
+   * Returns the pool of threads that writes the files being committed,
+   * creating it on first use.
+   * 
+   * @return a non-<code>null</code> executor
+   */
+  private synchronized ExecutorService getCommitExecutor() {
+    if (commitExecutor == null) {
+      final ThreadPoolExecutor executor =
+          new ThreadPoolExecutor(commitParallelism, commitParallelism,
+              COMMIT_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+              new LinkedBlockingQueue<Runnable>(), COMMIT_THREAD_FACTORY);
+      executor.allowCoreThreadTimeOut(true);
+      commitExecutor = executor;
+    }
+    return commitExecutor;
+  }
+
   public FileDetails createDirectory(final String fileIdentifier) {
     if (fileMonitorService == null) {
       fileMonitorService = getFileMonitorService();
@@ -171,7 +521,7 @@ public class DefaultFileManager implements FileManager, UndoListener {
       final File file = new File(fileIdentifier);
       String existing = null;
       try {
-        existing = FileUtils.readFileToString(file);
+        existing = new String(readCachedBytes(file));
       } catch (final IOException ignored) {
       }
 
@@ -197,6 +547,11 @@ public class DefaultFileManager implements FileManager, UndoListener {
       } finally {
         IOUtils.closeQuietly(outputStream);
       }
+      try {
+        final File file = new File(fileIdentifier);
+        contentCache.put(file.getCanonicalPath(), readAttributes(file), newContents.getBytes());
+      } catch (final IOException ignored) {
+      }
     }
   }
 
@@ -205,20 +560,46 @@ public class DefaultFileManager implements FileManager, UndoListener {
     if (writeImmediately) {
       createOrUpdateTextFileIfRequired(fileIdentifier, newContents, descriptionOfChange);
     } else {
+      final DeferredContents replaced = deferredContents.remove(fileIdentifier);
+      if (replaced != null) {
+        replaced.release(false);
+      }
       deferredFileWrites.put(fileIdentifier, newContents);
+      addDeferredDescriptionOfChange(fileIdentifier, descriptionOfChange);
+    }
+  }
 
-      String deferredDescriptionOfChange =
-          StringUtils.defaultIfEmpty(deferredDescriptionOfChanges.get(fileIdentifier), "");
-      if (StringUtils.isNotBlank(deferredDescriptionOfChange)
-          && !deferredDescriptionOfChange.trim().endsWith(";")) {
-        deferredDescriptionOfChange += "; ";
-      }
-      deferredDescriptionOfChanges.put(fileIdentifier,
-          deferredDescriptionOfChange + StringUtils.stripToEmpty(descriptionOfChange));
+  public void createOrUpdateTextFileOnCommit(final String fileIdentifier,
+      final DeferredContents contents, final String descriptionOfChange) {
+    Validate.notBlank(fileIdentifier, "File identifier required");
+    Validate.notNull(contents, "Contents required");
+    deferredFileWrites.remove(fileIdentifier);
+    final DeferredContents replaced = deferredContents.put(fileIdentifier, contents);
+    if (replaced != null && replaced != contents) {
+      replaced.release(false);
+    }
+    addDeferredDescriptionOfChange(fileIdentifier, descriptionOfChange);
+  }
+
+  private void addDeferredDescriptionOfChange(final String fileIdentifier,
+      final String descriptionOfChange) {
+    String deferredDescriptionOfChange =
+        StringUtils.defaultIfEmpty(deferredDescriptionOfChanges.get(fileIdentifier), "");
+    if (StringUtils.isNotBlank(deferredDescriptionOfChange)
+        && !deferredDescriptionOfChange.trim().endsWith(";")) {
+      deferredDescriptionOfChange += "; ";
     }
+    deferredDescriptionOfChanges.put(fileIdentifier,
+        deferredDescriptionOfChange + StringUtils.stripToEmpty(descriptionOfChange));
   }
 
   protected void deactivate(final ComponentContext context) {
+    synchronized (this) {
+      if (commitExecutor != null) {
+        commitExecutor.shutdown();
+        commitExecutor = null;
+      }
+    }
     if (undoManager == null) {
       undoManager = getUndoManager();
     }
@@ -250,6 +631,7 @@ public class DefaultFileManager implements FileManager, UndoListener {
     final File actual = new File(fileIdentifier);
     Validate.isTrue(actual.exists(), "File '%s' does not exist", fileIdentifier);
     try {
+      contentCache.remove(actual.getCanonicalPath());
       fileMonitorService.notifyDeleted(actual.getCanonicalPath());
     } catch (final IOException ignored) {
     }
@@ -274,6 +656,10 @@ public class DefaultFileManager implements FileManager, UndoListener {
   }
 
   public InputStream getInputStream(final String fileIdentifier) {
+    if (deferredContents.containsKey(fileIdentifier)) {
+      return new ByteArrayInputStream(deferredContents.get(fileIdentifier).getContents()
+          .getBytes());
+    }
     if (deferredFileWrites.containsKey(fileIdentifier)) {
       return new BufferedInputStream(new ByteArrayInputStream(deferredFileWrites
           .get(fileIdentifier).getBytes()));
@@ -283,15 +669,37 @@ public class DefaultFileManager implements FileManager, UndoListener {
     Validate.isTrue(file.exists(), "File '%s' does not exist", fileIdentifier);
     Validate.isTrue(file.isFile(), "Path '%s' is not a file", fileIdentifier);
     try {
-      return new BufferedInputStream(new FileInputStream(new File(fileIdentifier)));
+      if (file.length() > contentCache.getCapacity()) {
+        return new BufferedInputStream(new FileInputStream(file));
+      }
+      return new ByteArrayInputStream(readCachedBytes(file));
     } catch (final IOException ioe) {
       throw new IllegalStateException("Could not obtain input stream to file '" + fileIdentifier
           + "'", ioe);
     }
   }
 
+  public void onFileEvent(final FileEvent fileEvent) {
+    final File file = fileEvent.getFileDetails().getFile();
+    BasicFileAttributes attributes = null;
+    try {
+      attributes = file.exists() ? readAttributes(file) : null;
+    } catch (final IOException ignored) {
+    }
+    contentCache.invalidate(fileEvent.getFileDetails().getCanonicalPath(), attributes);
+    if (fileEvent.getPreviousName() != null) {
+      try {
+        contentCache.remove(fileEvent.getPreviousName().getCanonicalPath());
+      } catch (final IOException ignored) {
+      }
+    }
+  }
+
   public void onUndoEvent(final UndoEvent event) {
     if (event.isUndoing()) {
+      // Restored files may keep their size and, at a coarse enough
+      // granularity, their last modification time
+      contentCache.clear();
       clear();
     } else {
       // It's a flush or a reset event
@@ -308,6 +716,56 @@ public class DefaultFileManager implements FileManager, UndoListener {
     return new FileDetails(f, f.lastModified());
   }
 
+  /**
+   * Returns the contents of the given file, from the {@link #contentCache}
+   * if it still has the attributes they were cached with.
+   * 
+   * @param file the file to read (required)
+   * @return the contents, which the caller must not modify
+   * @throws IOException if the file can't be read
+   */
+  private byte[] readCachedBytes(final File file) throws IOException {
+    final String canonicalPath = file.getCanonicalPath();
+    final BasicFileAttributes attributes = readAttributes(file);
+    byte[] contents = contentCache.get(canonicalPath, attributes);
+    if (contents == null) {
+      contents = readBytes(file);
+      if (contents.length == attributes.size()) {
+        // Otherwise the file changed while being read
+        contentCache.put(canonicalPath, attributes, contents);
+      }
+    }
+    return contents;
+  }
+
+  public String readTextFile(final String fileIdentifier) {
+    Validate.notBlank(fileIdentifier, "File identifier required");
+    final File file = new File(fileIdentifier);
+    if (!file.exists()) {
+      return null;
+    }
+    try {
+      return new String(readCachedBytes(file));
+    } catch (final IOException ioe) {
+      throw new IllegalStateException("Could not read file '" + fileIdentifier + "'", ioe);
+    }
+  }
+
+  /**
+   * Lets go of the contents whose writes were deferred; any rendered since
+   * have been moved to {@link #deferredFileWrites}.
+   * 
+   * @param committed whether they were committed
+   */
+  private void releaseDeferredContents(final boolean committed) {
+    final List<DeferredContents> toRelease =
+        new ArrayList<DeferredContents>(deferredContents.values());
+    deferredContents.clear();
+    for (final DeferredContents contents : toRelease) {
+      contents.release(committed);
+    }
+  }
+
   public int scan() {
     if (fileMonitorService == null) {
       fileMonitorService = getFileMonitorService();
@@ -316,6 +774,19 @@ public class DefaultFileManager implements FileManager, UndoListener {
     return fileMonitorService.scanNotified();
   }
 
+  public void setContentCacheCapacity(final long capacity) {
+    contentCache.setCapacity(capacity);
+  }
+
+  @Override
+  public String toString() {
+    final ToStringBuilder builder = new ToStringBuilder(this);
+    builder.append("deferredFileWrites", deferredFileWrites.size());
+    builder.append("deferredContents", deferredContents.size());
+    builder.append("contentCache", contentCache);
+    return builder.toString().replaceFirst("@[0-9a-f]+", ":");
+  }
+
   public MutableFile updateFile(final String fileIdentifier) {
     if (fileMonitorService == null) {
       fileMonitorService = getFileMonitorService();
@@ -6,7 +6,9 @@ import java.util.logging.Logger;
 import org.apache.commons.lang3.ObjectUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.apache.commons.lang3.math.NumberUtils;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Service;
 import org.osgi.framework.BundleContext;
@@ -20,6 +22,7 @@ import org.springframework.roo.file.monitor.FileMonitorService;
 import org.springframework.roo.file.monitor.MonitoringRequest;
 import org.springframework.roo.file.monitor.NotifiableFileMonitorService;
 import org.springframework.roo.file.undo.UndoManager;
+import org.springframework.roo.metadata.MetadataDependencyRegistry;
 import org.springframework.roo.process.manager.ActiveProcessManager;
 import org.springframework.roo.process.manager.CommandCallback;
 import org.springframework.roo.process.manager.ProcessManager;
@@ -30,6 +33,15 @@ import org.springframework.roo.support.osgi.OSGiUtils;
 
 /**
  * Default implementation of {@link ProcessManager} interface.
+ * <p>
+ * The background thread detects file system changes without holding the lock
+ * that commands execute under, and only takes it to publish the detected
+ * changes and update the metadata. Unless a fixed minimum delay between scans
+ * has been set, changes are debounced by a {@link ScanScheduler}, whose quiet
+ * period and maximum latency default to {@value #DEFAULT_SCAN_QUIET_PERIOD}
+ * and {@value #DEFAULT_MAX_SCAN_LATENCY} ms and may be set via the
+ * {@value #SCAN_QUIET_PERIOD_PROPERTY} and {@value #MAX_SCAN_LATENCY_PROPERTY}
+ * system properties.
  * 
  * @author Ben Alex
  * @author Juan Carlos García
@@ -42,18 +54,87 @@ public class DefaultProcessManager extends AbstractProcessManagerStatusPublisher
 
   private static final Logger LOGGER = HandlerUtils.getLogger(DefaultProcessManager.class);
 
+  static final long DEFAULT_MAX_SCAN_LATENCY = 5000;
+  static final long DEFAULT_SCAN_QUIET_PERIOD = 500;
+  static final String MAX_SCAN_LATENCY_PROPERTY = "roo.scan.maxLatency";
+  static final String SCAN_QUIET_PERIOD_PROPERTY = "roo.scan.quietPeriod";
+
+  /**
+   * Returns the number of milliseconds configured via the given system
+   * property.
+   * 
+   * @param property the name of the property (required)
+   * @param defaultValue the value to use if the property is blank or invalid
+   * @return zero or more
+   */
+  static long getMilliseconds(final String property, final long defaultValue) {
+    return Math.max(0,
+        NumberUtils.toLong(StringUtils.trim(System.getProperty(property)), defaultValue));
+  }
+
   // ------------ OSGi component attributes ----------------
+  private int batchCommitInterval;
+  // Written with the process manager status lock held, but also read
+  // without it by the background scanning thread
+  private volatile int batchDepth;
+  private int batchPendingCommands;
+  private Thread batchThread;
   private BundleContext context;
 
   private boolean developmentMode = false;
   private FileMonitorService fileMonitorService;
-  private long lastScanDuration = 0;
   private long lastScanTime = 0; // What time the last scan was completed
+  private MetadataDependencyRegistry metadataDependencyRegistry;
   private long minimumDelayBetweenScan = -1; // How many ms must pass at
+  private final ScanScheduler scanScheduler = new ScanScheduler(getMilliseconds(
+      SCAN_QUIET_PERIOD_PROPERTY, DEFAULT_SCAN_QUIET_PERIOD), getMilliseconds(
+      MAX_SCAN_LATENCY_PROPERTY, DEFAULT_MAX_SCAN_LATENCY));
   private StartLevel startLevel;
   private UndoManager undoManager;
   private String workingDir;
 
+  public void beginBatch(final int commitInterval) {
+    Validate.isTrue(commitInterval >= 0, "Commit interval must be 0 or more");
+    synchronized (processManagerStatus) {
+      if (batchDepth == 0) {
+        batchThread = Thread.currentThread();
+        batchCommitInterval = commitInterval;
+        batchPendingCommands = 0;
+      } else {
+        Validate.isTrue(batchThread == Thread.currentThread(),
+            "Unable to begin a batch as another thread has one in progress");
+      }
+      batchDepth++;
+    }
+  }
+
+  public void endBatch() {
+    synchronized (processManagerStatus) {
+      Validate.isTrue(batchDepth > 0 && batchThread == Thread.currentThread(),
+          "No batch has been begun by this thread");
+      batchDepth--;
+      if (batchDepth > 0) {
+        return;
+      }
+      batchThread = null;
+      if (batchPendingCommands == 0) {
+        return;
+      }
+      batchPendingCommands = 0;
+      try {
+        // Commit the batched commands' changes
+        doTransactionally(new CommandCallback<Object>() {
+          public Object callback() {
+            return null;
+          }
+        });
+      } catch (final RuntimeException e) {
+        logException(e);
+        throw e;
+      }
+    }
+  }
+
   public <T> T execute(final CommandCallback<T> callback) {
     Validate.notNull(callback, "Callback required");
     synchronized (processManagerStatus) {
@@ -79,7 +160,11 @@ public class DefaultProcessManager extends AbstractProcessManagerStatusPublisher
    *         = never ran; >0 = last execution time)
    */
   public long getLastScanDuration() {
-    return lastScanDuration;
+    return scanScheduler.getLastScanDuration();
+  }
+
+  public long getMaxScanLatency() {
+    return scanScheduler.getMaxLatency();
   }
 
   /**
@@ -90,6 +175,10 @@ public class DefaultProcessManager extends AbstractProcessManagerStatusPublisher
     return minimumDelayBetweenScan;
   }
 
+  public long getScanQuietPeriod() {
+    return scanScheduler.getQuietPeriod();
+  }
+
   public boolean isDevelopmentMode() {
     return developmentMode;
   }
@@ -109,6 +198,10 @@ public class DefaultProcessManager extends AbstractProcessManagerStatusPublisher
     undoManager.setUndoEnabled(!developmentMode);
   }
 
+  public void setMaxScanLatency(final long maxScanLatency) {
+    scanScheduler.setMaxLatency(maxScanLatency);
+  }
+
   /**
    * @param minimumDelayBetweenScan how many milliseconds must pass between
    *            each scan
@@ -117,6 +210,10 @@ public class DefaultProcessManager extends AbstractProcessManagerStatusPublisher
     this.minimumDelayBetweenScan = minimumDelayBetweenScan;
   }
 
+  public void setScanQuietPeriod(final long scanQuietPeriod) {
+    scanScheduler.setQuietPeriod(scanQuietPeriod);
+  }
+
   public void terminate() {
     synchronized (processManagerStatus) {
       // To get this far this thread has a lock on process manager status,
@@ -132,40 +229,42 @@ public class DefaultProcessManager extends AbstractProcessManagerStatusPublisher
 
   public void timerBasedScan() {
     try {
+      if (batchDepth > 0) {
+        // A scan would commit the batch's changes so far; the changes it
+        // would pick up are still there once the batch ends
+        return;
+      }
+
       if (minimumDelayBetweenScan == 0) {
         // Manual scanning only, we never allow the timer to kick of a
         // scan
         return;
       }
 
-      long effectiveMinimumDelayBetweenScan = minimumDelayBetweenScan;
-      if (effectiveMinimumDelayBetweenScan < 0) {
-        // A negative minimum delay between scan means auto-scaling is
-        // used
-        if (lastScanDuration < 500) {
-          // We've never done a scan, or they are very fast
-          effectiveMinimumDelayBetweenScan = 0;
-        } else {
-          // Use the last duration (we might make this sliding scale
-          // in the future)
-          effectiveMinimumDelayBetweenScan = lastScanDuration;
-        }
-      }
-      final long started = System.currentTimeMillis();
-      if (started < lastScanTime + effectiveMinimumDelayBetweenScan) {
+      if (minimumDelayBetweenScan > 0
+          && System.currentTimeMillis() < lastScanTime + minimumDelayBetweenScan) {
         // Too soon to re-scan
         return;
       }
-      backgroundScan();
-      // Record the completion time so we can ensure we don't re-scan too
-      // soon
-      lastScanTime = System.currentTimeMillis();
-
-      // Compute how many milliseconds it took to run
-      lastScanDuration = lastScanTime - started;
-      if (lastScanDuration == 0) {
-        // Ensure it correctly reflects that it has ever run
-        lastScanDuration = 1;
+
+      // Detect changes without holding the process manager status lock, so
+      // that commands don't have to wait while the disk is examined
+      final long detectionStarted = System.currentTimeMillis();
+      final boolean changed = detectChanges();
+      final long detectionFinished = System.currentTimeMillis();
+      scanScheduler.detected(detectionFinished, detectionFinished - detectionStarted, changed);
+      if (minimumDelayBetweenScan < 0 && !scanScheduler.isScanDue(detectionFinished)) {
+        // A negative minimum delay between scan means changes are
+        // debounced, and this burst of changes may not be over yet
+        return;
+      }
+
+      final long started = System.currentTimeMillis();
+      if (backgroundScan()) {
+        // Record the completion time so we can ensure we don't re-scan
+        // too soon
+        lastScanTime = System.currentTimeMillis();
+        scanScheduler.scanned(lastScanTime - started);
       }
     } catch (final Throwable t) {
       LOGGER.log(Level.SEVERE, t.getMessage(), t);
@@ -200,7 +299,8 @@ public class DefaultProcessManager extends AbstractProcessManagerStatusPublisher
       }
     });
 
-    // Now start a thread that will undertake a background scan every second
+    // Now start a thread that will detect changes every second, or more
+    // often while a burst of changes is being debounced
     final Thread t = new Thread(new Runnable() {
       public void run() {
         // Unsynchronized lookup of terminated status to avoid anything
@@ -212,7 +312,7 @@ public class DefaultProcessManager extends AbstractProcessManagerStatusPublisher
             timerBasedScan();
           }
           try {
-            Thread.sleep(1000);
+            Thread.sleep(scanScheduler.getDetectionInterval());
           } catch (final InterruptedException ignoreAndContinue) {
           }
         }
@@ -240,6 +340,10 @@ public class DefaultProcessManager extends AbstractProcessManagerStatusPublisher
         throw new IllegalStateException("Process manager status " + getProcessManagerStatus()
             + " but background thread acquired synchronization lock");
       }
+      if (batchDepth > 0) {
+        // Begun since the caller checked; don't commit part of it
+        return false;
+      }
 
       setProcessManagerStatus(ProcessManagerStatus.BUSY_SCANNING);
 
@@ -282,6 +386,21 @@ public class DefaultProcessManager extends AbstractProcessManagerStatusPublisher
     }
   }
 
+  /**
+   * Detects file system changes ahead of a scan.
+   * 
+   * @return whether there are any changes to scan
+   */
+  private boolean detectChanges() {
+    if (fileMonitorService == null) {
+      fileMonitorService = getFileMonitorService();
+    }
+
+    Validate.notNull(fileMonitorService, "FileMonitorService is required");
+
+    return fileMonitorService.detectChanges() > 0 || fileMonitorService.isDirty();
+  }
+
   private <T> T doTransactionally(final CommandCallback<T> callback) {
 
     if (fileMonitorService == null) {
@@ -302,22 +421,23 @@ public class DefaultProcessManager extends AbstractProcessManagerStatusPublisher
 
       // Run the requested operation
       if (callback == null) {
-        fileMonitorService.scanAll();
+        scan(false);
       } else {
         result = callback.callback();
       }
 
+      if (isCommitDeferred(callback)) {
+        // The batch will commit this command's changes later on
+        return result;
+      }
+
       // Flush the undo manager so that any changes it has been holding
       // are written to disk and the file monitor service
       undoManager.flush();
 
       // Guarantee scans repeat until there are no more changes detected
       while (fileMonitorService.isDirty()) {
-        if (fileMonitorService instanceof NotifiableFileMonitorService) {
-          ((NotifiableFileMonitorService) fileMonitorService).scanNotified();
-        } else {
-          fileMonitorService.scanAll();
-        }
+        scan(fileMonitorService instanceof NotifiableFileMonitorService);
         // In case something else happened as a result of event
         // notifications above
         undoManager.flush();
@@ -329,6 +449,8 @@ public class DefaultProcessManager extends AbstractProcessManagerStatusPublisher
       undoManager.reset();
 
     } catch (final RuntimeException e) {
+      // The undo below discards any batched changes too
+      batchPendingCommands = 0;
       // Something went wrong, so attempt to undo
       try {
         setProcessManagerStatus(ProcessManagerStatus.UNDOING);
@@ -345,6 +467,53 @@ public class DefaultProcessManager extends AbstractProcessManagerStatusPublisher
     return result;
   }
 
+  /**
+   * Indicates whether the given command's changes should be left for the
+   * current batch to commit, counting it as one of the batch's commands.
+   * 
+   * @param callback the command that has just been executed
+   * @return <code>false</code> if they should be committed now
+   */
+  private boolean isCommitDeferred(final CommandCallback<?> callback) {
+    if (callback == null || batchDepth == 0 || batchThread != Thread.currentThread()) {
+      return false;
+    }
+    batchPendingCommands++;
+    if (batchCommitInterval > 0 && batchPendingCommands >= batchCommitInterval) {
+      // This command completes the batch's interval
+      batchPendingCommands = 0;
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Scans the file monitor, delivering the resulting metadata notifications
+   * as a single batch so that each affected item is only regenerated once.
+   * 
+   * @param notifiedOnly whether to only scan the files notified to the
+   *            {@link NotifiableFileMonitorService}
+   */
+  private void scan(final boolean notifiedOnly) {
+    if (metadataDependencyRegistry == null) {
+      metadataDependencyRegistry = getMetadataDependencyRegistry();
+    }
+    if (metadataDependencyRegistry != null) {
+      metadataDependencyRegistry.startBatch();
+    }
+    try {
+      if (notifiedOnly) {
+        ((NotifiableFileMonitorService) fileMonitorService).scanNotified();
+      } else {
+        fileMonitorService.scanAll();
+      }
+    } finally {
+      if (metadataDependencyRegistry != null) {
+        metadataDependencyRegistry.endBatch();
+      }
+    }
+  }
+
   private void logException(final Throwable t) {
     final Throwable root = ObjectUtils.defaultIfNull(ExceptionUtils.getRootCause(t), t);
     if (developmentMode) {
@@ -363,6 +532,14 @@ public class DefaultProcessManager extends AbstractProcessManagerStatusPublisher
     }
   }
 
+  @Override
+  public String toString() {
+    final ToStringBuilder builder = new ToStringBuilder(this);
+    builder.append("minimumDelayBetweenScan", minimumDelayBetweenScan);
+    builder.append("scanScheduler", scanScheduler);
+    return builder.toString().replaceFirst("@[0-9a-f]+", ":");
+  }
+
   public FileMonitorService getFileMonitorService() {
     // Get all Services implement FileMonitorService interface
     try {
@@ -381,6 +558,28 @@ public class DefaultProcessManager extends AbstractProcessManagerStatusPublisher
     }
   }
 
+  public MetadataDependencyRegistry getMetadataDependencyRegistry() {
+    // Get all Services implement MetadataDependencyRegistry interface
+    try {
+      ServiceReference<?>[] references =
+          this.context.getAllServiceReferences(MetadataDependencyRegistry.class.getName(), null);
+
+      if (references == null) {
+        return null;
+      }
+
+      for (ServiceReference<?> ref : references) {
+        return (MetadataDependencyRegistry) this.context.getService(ref);
+      }
+
+      return null;
+
+    } catch (InvalidSyntaxException e) {
+      LOGGER.warning("Cannot load MetadataDependencyRegistry on DefaultProcessManager.");
+      return null;
+    }
+  }
+
   public StartLevel getStartLevel() {
     // Get all Services implement StartLevel interface
     try {
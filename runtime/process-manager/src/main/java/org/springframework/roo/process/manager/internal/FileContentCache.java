@@ -0,0 +1,192 @@
+package org.springframework.roo.process.manager.internal;
+
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+/**
+ * A bounded cache of file contents, keyed by canonical path.
+ * <p>
+ * An entry is only returned while the file's size, last modification time
+ * and, where the platform provides one, file key (e.g. its inode) are those
+ * the entry was stored with, so a file changed behind the cache's back is
+ * simply read again. The least recently used entries are evicted once the
+ * total size of the cached contents exceeds the capacity.
+ *
+ * @since 2.0
+ */
+class FileContentCache {
+
+  /**
+   * Cached contents along with the attributes of the file they were read
+   * from or written to.
+   */
+  private static class CachedContents {
+    private final byte[] contents;
+    private final Object fileKey;
+    private final long lastModified;
+    private final long size;
+
+    CachedContents(final BasicFileAttributes attributes, final byte[] contents) {
+      this.contents = contents;
+      fileKey = attributes.fileKey();
+      lastModified = attributes.lastModifiedTime().toMillis();
+      size = attributes.size();
+    }
+
+    boolean isFor(final BasicFileAttributes attributes) {
+      if (size != attributes.size() || lastModified != attributes.lastModifiedTime().toMillis()) {
+        return false;
+      }
+      return fileKey == null ? attributes.fileKey() == null : fileKey.equals(attributes.fileKey());
+    }
+  }
+
+  // Access order, so that iteration starts with the least recently used entry
+  private final LinkedHashMap<String, CachedContents> entries =
+      new LinkedHashMap<String, CachedContents>(256, 0.75f, true);
+
+  private long bytesSaved;
+  private long capacity;
+  private long currentSize;
+  private long evictions;
+  private long hits;
+  private long misses;
+
+  /**
+   * Constructor
+   *
+   * @param capacity the maximum total size of the cached contents, in bytes;
+   *            0 disables the cache
+   */
+  FileContentCache(final long capacity) {
+    setCapacity(capacity);
+  }
+
+  /**
+   * Removes every entry from this cache.
+   */
+  synchronized void clear() {
+    entries.clear();
+    currentSize = 0;
+  }
+
+  /**
+   * Returns the cached contents of the given file, provided it still has the
+   * given attributes.
+   *
+   * @param canonicalPath the file's canonical path (required)
+   * @param attributes the file's current attributes (required)
+   * @return <code>null</code> if the contents aren't cached or are stale; the
+   *         caller must not modify the returned array
+   */
+  synchronized byte[] get(final String canonicalPath, final BasicFileAttributes attributes) {
+    final CachedContents cached = entries.get(canonicalPath);
+    if (cached == null || !cached.isFor(attributes)) {
+      if (cached != null) {
+        remove(canonicalPath);
+      }
+      misses++;
+      return null;
+    }
+    hits++;
+    bytesSaved += cached.contents.length;
+    return cached.contents;
+  }
+
+  /**
+   * Returns the maximum total size of the cached contents.
+   *
+   * @return in bytes
+   */
+  synchronized long getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * Removes the given file's contents from this cache unless the file still
+   * has the given attributes.
+   *
+   * @param canonicalPath the file's canonical path
+   * @param attributes the file's current attributes, or <code>null</code> if
+   *            it no longer exists
+   */
+  synchronized void invalidate(final String canonicalPath, final BasicFileAttributes attributes) {
+    final CachedContents cached = entries.get(canonicalPath);
+    if (cached != null && (attributes == null || !cached.isFor(attributes))) {
+      remove(canonicalPath);
+    }
+  }
+
+  /**
+   * Stores the contents the given file has been read or written with,
+   * unless they are larger than this cache's capacity.
+   *
+   * @param canonicalPath the file's canonical path (required)
+   * @param attributes the file's attributes once read or written (required)
+   * @param contents the file's contents, which the caller must no longer
+   *            modify (required)
+   */
+  synchronized void put(final String canonicalPath, final BasicFileAttributes attributes,
+      final byte[] contents) {
+    remove(canonicalPath);
+    if (contents.length > capacity) {
+      return;
+    }
+    entries.put(canonicalPath, new CachedContents(attributes, contents));
+    currentSize += contents.length;
+    evictToCapacity();
+  }
+
+  /**
+   * Removes the given file's contents from this cache, if present.
+   *
+   * @param canonicalPath the file's canonical path
+   */
+  synchronized void remove(final String canonicalPath) {
+    final CachedContents removed = entries.remove(canonicalPath);
+    if (removed != null) {
+      currentSize -= removed.contents.length;
+    }
+  }
+
+  /**
+   * Sets the maximum total size of the cached contents, evicting entries as
+   * required.
+   *
+   * @param capacity in bytes; 0 disables the cache
+   */
+  synchronized void setCapacity(final long capacity) {
+    Validate.isTrue(capacity >= 0, "Capacity must be zero or greater");
+    this.capacity = capacity;
+    evictToCapacity();
+  }
+
+  private void evictToCapacity() {
+    final Iterator<Map.Entry<String, CachedContents>> iterator = entries.entrySet().iterator();
+    while (currentSize > capacity && iterator.hasNext()) {
+      currentSize -= iterator.next().getValue().contents.length;
+      iterator.remove();
+      evictions++;
+    }
+  }
+
+  @Override
+  public synchronized String toString() {
+    final long requests = hits + misses;
+    final ToStringBuilder builder = new ToStringBuilder(this);
+    builder.append("hits", hits);
+    builder.append("misses", misses);
+    builder.append("hitRatio", requests == 0 ? "0%" : Math.round(hits * 100.0 / requests) + "%");
+    builder.append("bytesSaved", bytesSaved);
+    builder.append("evictions", evictions);
+    builder.append("currentEntries", entries.size());
+    builder.append("currentSize", currentSize);
+    builder.append("capacity", capacity);
+    return builder.toString().replaceFirst("@[0-9a-f]+", ":");
+  }
+}
@@ -0,0 +1,43 @@
+package org.springframework.roo.process.manager.internal;
+
+import org.apache.commons.lang3.Validate;
+import org.apache.felix.scr.annotations.Component;
+import org.apache.felix.scr.annotations.Reference;
+import org.apache.felix.scr.annotations.Service;
+import org.springframework.roo.process.manager.FileManager;
+import org.springframework.roo.shell.CliCommand;
+import org.springframework.roo.shell.CliOption;
+import org.springframework.roo.shell.CommandMarker;
+
+/**
+ * Commands for tuning the {@link FileManager}'s in-memory cache of file
+ * contents.
+ *
+ * @since 2.0
+ */
+@Component
+@Service
+public class FileManagerCommands implements CommandMarker {
+
+  private static final String FILE_CACHE_CAPACITY_COMMAND = "file cache capacity";
+  private static final String FILE_CACHE_STATUS_COMMAND = "file cache status";
+
+  @Reference
+  private FileManager fileManager;
+
+  @CliCommand(value = FILE_CACHE_CAPACITY_COMMAND,
+      help = "Sets the maximum total size of the file contents kept in memory.")
+  public String fileCacheCapacity(@CliOption(key = {"bytes"}, mandatory = true,
+      help = "The maximum total size in bytes; 0 disables the cache") final long capacity) {
+    Validate.isTrue(capacity >= 0, "Capacity must be zero or greater");
+    fileManager.setContentCacheCapacity(capacity);
+    // Show them that the change has taken place
+    return fileManager.toString();
+  }
+
+  @CliCommand(value = FILE_CACHE_STATUS_COMMAND,
+      help = "Shows the hit ratio, bytes saved and size of the in-memory file content cache.")
+  public String fileCacheStatus() {
+    return fileManager.toString();
+  }
+}
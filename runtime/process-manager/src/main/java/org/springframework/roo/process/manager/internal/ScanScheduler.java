@@ -0,0 +1,172 @@
+package org.springframework.roo.process.manager.internal;
+
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+/**
+ * Decides when {@link DefaultProcessManager}'s background thread should scan,
+ * and keeps timing statistics about those scans.
+ * <p>
+ * Changes are debounced: rather than scanning as soon as a change is
+ * detected, a scan is due once no further change has been detected for the
+ * quiet period, so that a burst of changes (e.g. an IDE saving many files)
+ * is coalesced into a single scan. The quiet period is stretched to the
+ * duration of the previous scan, so slow scans don't run back-to-back, but
+ * a scan is never delayed by more than the maximum latency after the first
+ * change of a burst was detected.
+ *
+ * @since 2.0
+ */
+class ScanScheduler {
+
+  private long firstChangeTime = -1;
+  private long lastChangeTime = -1;
+  private long maxLatency;
+  private long quietPeriod;
+
+  // Statistics
+  private long detections;
+  private long changeDetections;
+  private long lastDetectionDuration;
+  private long lastScanDuration;
+  private long maxDetectionDuration;
+  private long maxScanDuration;
+  private long pendingChangeDetections;
+  private long scans;
+  private long totalDetectionDuration;
+  private long totalScanDuration;
+
+  /**
+   * Constructor
+   *
+   * @param quietPeriod see {@link #setQuietPeriod(long)}
+   * @param maxLatency see {@link #setMaxLatency(long)}
+   */
+  ScanScheduler(final long quietPeriod, final long maxLatency) {
+    setQuietPeriod(quietPeriod);
+    setMaxLatency(maxLatency);
+  }
+
+  /**
+   * Records a detection of file system changes.
+   *
+   * @param time when the detection finished
+   * @param duration how many milliseconds the detection took
+   * @param changed whether any changes were detected
+   */
+  synchronized void detected(final long time, final long duration, final boolean changed) {
+    detections++;
+    lastDetectionDuration = duration;
+    maxDetectionDuration = Math.max(maxDetectionDuration, duration);
+    totalDetectionDuration += duration;
+    if (changed) {
+      changeDetections++;
+      pendingChangeDetections++;
+      if (firstChangeTime < 0) {
+        firstChangeTime = time;
+      }
+      lastChangeTime = time;
+    }
+  }
+
+  /**
+   * @return how many milliseconds the last scan took (0 = never ran)
+   */
+  synchronized long getLastScanDuration() {
+    return lastScanDuration;
+  }
+
+  synchronized long getMaxLatency() {
+    return maxLatency;
+  }
+
+  synchronized long getQuietPeriod() {
+    return quietPeriod;
+  }
+
+  /**
+   * Returns how long the background thread should wait before detecting
+   * changes again.
+   *
+   * @return in milliseconds
+   */
+  synchronized long getDetectionInterval() {
+    if (firstChangeTime < 0) {
+      return 1000;
+    }
+    // Changes are pending, so look again before the quiet period ends
+    return Math.max(50, Math.min(1000, quietPeriod / 2));
+  }
+
+  /**
+   * Indicates whether the pending changes should be scanned now.
+   *
+   * @param time the current time
+   * @return <code>false</code> if there are no pending changes
+   */
+  synchronized boolean isScanDue(final long time) {
+    if (firstChangeTime < 0) {
+      return false;
+    }
+    final long effectiveQuietPeriod =
+        Math.min(maxLatency, Math.max(quietPeriod, lastScanDuration));
+    return time - lastChangeTime >= effectiveQuietPeriod || time - firstChangeTime >= maxLatency;
+  }
+
+  /**
+   * Records a scan, which deals with every change detected beforehand.
+   *
+   * @param duration how many milliseconds the scan took
+   */
+  synchronized void scanned(final long duration) {
+    firstChangeTime = -1;
+    lastChangeTime = -1;
+    pendingChangeDetections = 0;
+    scans++;
+    // Ensure it correctly reflects that it has ever run
+    lastScanDuration = Math.max(1, duration);
+    maxScanDuration = Math.max(maxScanDuration, lastScanDuration);
+    totalScanDuration += lastScanDuration;
+  }
+
+  /**
+   * Sets the longest time a scan may be postponed while changes keep being
+   * detected.
+   *
+   * @param maxLatency in milliseconds; must be 0 or more
+   */
+  synchronized void setMaxLatency(final long maxLatency) {
+    Validate.isTrue(maxLatency >= 0, "Maximum latency must be 0 or more");
+    this.maxLatency = maxLatency;
+  }
+
+  /**
+   * Sets how long no further changes must be detected before the pending
+   * changes are scanned.
+   *
+   * @param quietPeriod in milliseconds; must be 0 or more
+   */
+  synchronized void setQuietPeriod(final long quietPeriod) {
+    Validate.isTrue(quietPeriod >= 0, "Quiet period must be 0 or more");
+    this.quietPeriod = quietPeriod;
+  }
+
+  @Override
+  public synchronized String toString() {
+    final ToStringBuilder builder = new ToStringBuilder(this);
+    builder.append("quietPeriod", quietPeriod);
+    builder.append("maxLatency", maxLatency);
+    builder.append("detections", detections);
+    builder.append("changeDetections", changeDetections);
+    builder.append("pendingChangeDetections", pendingChangeDetections);
+    builder.append("lastDetectionDuration", lastDetectionDuration);
+    builder.append("averageDetectionDuration", detections == 0 ? 0 : totalDetectionDuration
+        / detections);
+    builder.append("maxDetectionDuration", maxDetectionDuration);
+    builder.append("scans", scans);
+    builder.append("lastScanDuration", lastScanDuration);
+    builder.append("averageScanDuration", scans == 0 ? 0 : totalScanDuration / scans);
+    builder.append("maxScanDuration", maxScanDuration);
+    return builder.toString().replaceFirst("@[0-9a-f]+", ":");
+  }
+}
@@ -0,0 +1,184 @@
+package org.springframework.roo.process.manager.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.roo.file.monitor.NotifiableFileMonitorService;
+import org.springframework.roo.file.undo.DefaultUndoManager;
+import org.springframework.roo.file.undo.FilenameResolver;
+import org.springframework.roo.file.undo.UndoManager;
+import org.springframework.roo.process.manager.ProcessManager;
+
+/**
+ * Unit test of the deferred writes committed by {@link DefaultFileManager}
+ *
+ * @since 2.0
+ */
+public class DefaultFileManagerTest {
+
+  private static void inject(final Object target, final String fieldName, final Object value)
+      throws Exception {
+    final Field field = target.getClass().getDeclaredField(fieldName);
+    field.setAccessible(true);
+    field.set(target, value);
+  }
+
+  private DefaultFileManager fileManager;
+  private NotifiableFileMonitorService fileMonitorService;
+  private File projectDirectory;
+  private UndoManager undoManager;
+
+  private DefaultFileManager newFileManager() throws Exception {
+    final DefaultFileManager fileManager = new DefaultFileManager();
+    inject(fileManager, "fileMonitorService", fileMonitorService);
+    inject(fileManager, "filenameResolver", mock(FilenameResolver.class));
+    inject(fileManager, "processManager", mock(ProcessManager.class));
+    inject(fileManager, "undoManager", undoManager);
+    return fileManager;
+  }
+
+  private String getPath(final String filename) throws IOException {
+    return new File(projectDirectory, filename).getCanonicalPath();
+  }
+
+  private String read(final String filename) throws IOException {
+    return FileUtils.readFileToString(new File(projectDirectory, filename));
+  }
+
+  private void write(final String filename, final String contents) throws IOException {
+    FileUtils.writeStringToFile(new File(projectDirectory, filename), contents);
+  }
+
+  private void writeOnCommit(final String filename, final String contents) throws IOException {
+    fileManager.createOrUpdateTextFileIfRequired(getPath(filename), contents, false);
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    projectDirectory = File.createTempFile(getClass().getSimpleName(), "").getCanonicalFile();
+    projectDirectory.delete();
+    projectDirectory.mkdir();
+    fileMonitorService = mock(NotifiableFileMonitorService.class);
+    undoManager = new DefaultUndoManager();
+    System.setProperty(DefaultFileManager.PARALLELISM_PROPERTY, "2");
+    fileManager = newFileManager();
+  }
+
+  @After
+  public void tearDown() {
+    fileManager.deactivate(null);
+    System.clearProperty(DefaultFileManager.PARALLELISM_PROPERTY);
+    System.clearProperty(DefaultFileManager.SYNC_PROPERTY);
+    FileUtils.deleteQuietly(projectDirectory);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testUnchangedFileIsNotWritten() throws Exception {
+    // Set up
+    write("Person.java", "class Person {}");
+    final long lastModified = new File(projectDirectory, "Person.java").lastModified();
+    writeOnCommit("Person.java", "class Person {}");
+
+    // Invoke
+    fileManager.commit();
+
+    // Check
+    assertEquals(lastModified, new File(projectDirectory, "Person.java").lastModified());
+    verify(fileMonitorService, never()).notifyChanges(anyList(), anyList(), anyList());
+  }
+
+  @Test
+  public void testCreatedFileIsWrittenAndPublished() throws Exception {
+    // Set up
+    writeOnCommit("Person.java", "class Person {}");
+
+    // Invoke
+    fileManager.commit();
+
+    // Check
+    assertEquals("class Person {}", read("Person.java"));
+    verify(fileMonitorService).notifyChanges(Arrays.asList(getPath("Person.java")),
+        Collections.<String> emptyList(), Collections.<String> emptyList());
+  }
+
+  @Test
+  public void testBatchIsWrittenInParallelAndUndone() throws Exception {
+    // Set up
+    write("Person.java", "class Person {}");
+    writeOnCommit("Person.java", "class Person { String name; }");
+    writeOnCommit("Vet.java", "class Vet {}");
+
+    // Invoke
+    fileManager.commit();
+
+    // Check
+    assertEquals("class Person { String name; }", read("Person.java"));
+    assertEquals("class Vet {}", read("Vet.java"));
+    verify(fileMonitorService).notifyChanges(Arrays.asList(getPath("Vet.java")),
+        Arrays.asList(getPath("Person.java")), Collections.<String> emptyList());
+    assertTrue(undoManager.undo());
+    assertEquals("class Person {}", read("Person.java"));
+    assertFalse(new File(projectDirectory, "Vet.java").exists());
+  }
+
+  @Test
+  public void testFailureInMiddleOfBatchKeepsOtherWritesUndoable() throws Exception {
+    // Set up
+    write("Person.java", "class Person {}");
+    // A directory can't be overwritten with text
+    new File(projectDirectory, "Owner.java").mkdir();
+    writeOnCommit("Person.java", "class Person { String name; }");
+    writeOnCommit("Owner.java", "class Owner {}");
+    writeOnCommit("Vet.java", "class Vet {}");
+
+    // Invoke
+    try {
+      fileManager.commit();
+      fail("Expected an IllegalStateException");
+    } catch (final IllegalStateException expected) {
+      assertTrue(expected.getMessage(), expected.getMessage().contains(getPath("Owner.java")));
+    }
+
+    // Check
+    assertEquals("class Person { String name; }", read("Person.java"));
+    assertEquals("class Vet {}", read("Vet.java"));
+    verify(fileMonitorService).notifyChanges(Arrays.asList(getPath("Vet.java")),
+        Arrays.asList(getPath("Person.java")), Collections.<String> emptyList());
+    assertTrue(undoManager.undo());
+    assertEquals("class Person {}", read("Person.java"));
+    assertFalse(new File(projectDirectory, "Vet.java").exists());
+  }
+
+  @Test
+  public void testSyncedCommit() throws Exception {
+    // Set up
+    System.setProperty(DefaultFileManager.SYNC_PROPERTY, "true");
+    fileManager = newFileManager();
+    writeOnCommit("Person.java", "class Person {}");
+    writeOnCommit("Vet.java", "class Vet {}");
+
+    // Invoke
+    fileManager.commit();
+
+    // Check
+    assertEquals("class Person {}", read("Person.java"));
+    assertEquals("class Vet {}", read("Vet.java"));
+  }
+}
@@ -0,0 +1,263 @@
+package org.springframework.roo.process.manager.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.lang.reflect.Field;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.roo.file.monitor.FileMonitorService;
+import org.springframework.roo.file.undo.UndoManager;
+import org.springframework.roo.metadata.MetadataDependencyRegistry;
+import org.springframework.roo.process.manager.CommandCallback;
+import org.springframework.roo.process.manager.event.ProcessManagerStatus;
+
+/**
+ * Unit test of the batches of commands executed by
+ * {@link DefaultProcessManager}
+ *
+ * @since 2.0
+ */
+public class DefaultProcessManagerTest {
+
+  /**
+   * A process manager that has finished starting up
+   */
+  private static class StartedProcessManager extends DefaultProcessManager {
+
+    StartedProcessManager() {
+      setProcessManagerStatus(ProcessManagerStatus.AVAILABLE);
+    }
+  }
+
+  private static final CommandCallback<String> COMMAND = new CommandCallback<String>() {
+    public String callback() {
+      return "done";
+    }
+  };
+
+  private static final CommandCallback<String> FAILING_COMMAND = new CommandCallback<String>() {
+    public String callback() {
+      throw new IllegalStateException("Command failed");
+    }
+  };
+
+  private static void inject(final Object target, final String fieldName, final Object value)
+      throws Exception {
+    final Field field = DefaultProcessManager.class.getDeclaredField(fieldName);
+    field.setAccessible(true);
+    field.set(target, value);
+  }
+
+  private DefaultProcessManager processManager;
+  private UndoManager undoManager;
+
+  /**
+   * Begins a batch on another thread, leaving it in progress
+   */
+  private void beginBatchOnAnotherThread() throws InterruptedException {
+    final Thread thread = new Thread() {
+      @Override
+      public void run() {
+        processManager.beginBatch(0);
+      }
+    };
+    thread.start();
+    thread.join();
+  }
+
+  /**
+   * Verifies how many times the changes made so far have been committed
+   */
+  private void verifyCommits(final int commits) {
+    verify(undoManager, times(commits)).flush();
+    verify(undoManager, times(commits)).reset();
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    undoManager = mock(UndoManager.class);
+    processManager = new StartedProcessManager();
+    inject(processManager, "fileMonitorService", mock(FileMonitorService.class));
+    inject(processManager, "metadataDependencyRegistry", mock(MetadataDependencyRegistry.class));
+    inject(processManager, "undoManager", undoManager);
+  }
+
+  @Test
+  public void testBatchCommitsAtTheEnd() {
+    // Set up
+    processManager.beginBatch(0);
+
+    // Invoke
+    for (int i = 0; i < 3; i++) {
+      assertEquals("done", processManager.execute(COMMAND));
+    }
+
+    // Check
+    verifyCommits(0);
+    processManager.endBatch();
+    verifyCommits(1);
+  }
+
+  @Test
+  public void testBatchCommitsEveryInterval() {
+    // Set up
+    processManager.beginBatch(2);
+
+    // Invoke
+    for (int i = 1; i <= 5; i++) {
+      processManager.execute(COMMAND);
+      verifyCommits(i / 2);
+    }
+
+    // Check
+    processManager.endBatch();
+    verifyCommits(3);
+  }
+
+  @Test
+  public void testBatchOfAnotherThreadIsRejected() throws Exception {
+    // Set up
+    beginBatchOnAnotherThread();
+
+    // Invoke and check
+    try {
+      processManager.beginBatch(0);
+      fail("Expected an IllegalArgumentException");
+    } catch (final IllegalArgumentException expected) {
+      assertEquals("Unable to begin a batch as another thread has one in progress",
+          expected.getMessage());
+    }
+    try {
+      processManager.endBatch();
+      fail("Expected an IllegalArgumentException");
+    } catch (final IllegalArgumentException expected) {
+      assertEquals("No batch has been begun by this thread", expected.getMessage());
+    }
+    // This thread's commands aren't part of the other thread's batch
+    processManager.execute(COMMAND);
+    verifyCommits(1);
+  }
+
+  @Test
+  public void testCommandsAfterFailureAreStillBatched() {
+    // Set up
+    processManager.beginBatch(0);
+    try {
+      processManager.execute(FAILING_COMMAND);
+      fail("Expected an IllegalStateException");
+    } catch (final IllegalStateException expected) {
+      // Undone
+    }
+
+    // Invoke
+    processManager.execute(COMMAND);
+
+    // Check
+    verifyCommits(0);
+    processManager.endBatch();
+    verifyCommits(1);
+  }
+
+  @Test
+  public void testEmptyBatchDoesNotCommit() {
+    // Set up
+    processManager.beginBatch(0);
+
+    // Invoke
+    processManager.endBatch();
+
+    // Check
+    verifyCommits(0);
+  }
+
+  @Test
+  public void testEndingBatchThatWasNotBegunIsRejected() {
+    try {
+      processManager.endBatch();
+      fail("Expected an IllegalArgumentException");
+    } catch (final IllegalArgumentException expected) {
+      assertEquals("No batch has been begun by this thread", expected.getMessage());
+    }
+  }
+
+  @Test
+  public void testFailingCommandUndoesTheBatch() {
+    // Set up
+    processManager.beginBatch(0);
+    processManager.execute(COMMAND);
+
+    // Invoke
+    try {
+      processManager.execute(FAILING_COMMAND);
+      fail("Expected an IllegalStateException");
+    } catch (final IllegalStateException expected) {
+      assertEquals("Command failed", expected.getMessage());
+    }
+
+    // Check
+    verify(undoManager).undo();
+    processManager.endBatch();
+    verifyCommits(0);
+    assertSame(ProcessManagerStatus.AVAILABLE, processManager.getProcessManagerStatus());
+  }
+
+  @Test
+  public void testNestedBatchCommitsWhenOutermostEnds() {
+    // Set up
+    processManager.beginBatch(0);
+    processManager.beginBatch(1);
+
+    // Invoke
+    processManager.execute(COMMAND);
+    processManager.execute(COMMAND);
+    processManager.endBatch();
+
+    // Check
+    verifyCommits(0);
+    processManager.endBatch();
+    verifyCommits(1);
+  }
+
+  @Test
+  public void testTimerScanDuringBatchDoesNotCommitIt() {
+    // Set up
+    processManager.setMinimumDelayBetweenScan(1);
+    processManager.beginBatch(0);
+    processManager.execute(COMMAND);
+
+    // Invoke
+    processManager.timerBasedScan();
+
+    // Check
+    verifyCommits(0);
+    try {
+      processManager.execute(FAILING_COMMAND);
+      fail("Expected an IllegalStateException");
+    } catch (final IllegalStateException expected) {
+      // Undoes both commands
+    }
+    verify(undoManager).undo();
+    processManager.endBatch();
+    verifyCommits(0);
+    // Scans resume once the batch is over
+    processManager.timerBasedScan();
+    verifyCommits(1);
+  }
+
+  @Test
+  public void testUnbatchedCommandCommitsImmediately() {
+    // Invoke
+    processManager.execute(COMMAND);
+
+    // Check
+    verifyCommits(1);
+    verify(undoManager, never()).undo();
+  }
+}
@@ -0,0 +1,199 @@
+package org.springframework.roo.process.manager.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit test of {@link FileContentCache}
+ *
+ * @since 2.0
+ */
+public class FileContentCacheTest {
+
+  private static final String PATH_A = "/project/A.java";
+  private static final String PATH_B = "/project/B.java";
+  private static final String PATH_C = "/project/C.java";
+
+  /**
+   * The attributes of a file that doesn't have to exist
+   */
+  private static class Attributes implements BasicFileAttributes {
+
+    private final Object fileKey;
+    private final long lastModified;
+    private final long size;
+
+    Attributes(final long size, final long lastModified, final Object fileKey) {
+      this.fileKey = fileKey;
+      this.lastModified = lastModified;
+      this.size = size;
+    }
+
+    public FileTime creationTime() {
+      return FileTime.fromMillis(0);
+    }
+
+    public Object fileKey() {
+      return fileKey;
+    }
+
+    public boolean isDirectory() {
+      return false;
+    }
+
+    public boolean isOther() {
+      return false;
+    }
+
+    public boolean isRegularFile() {
+      return true;
+    }
+
+    public boolean isSymbolicLink() {
+      return false;
+    }
+
+    public FileTime lastAccessTime() {
+      return lastModifiedTime();
+    }
+
+    public FileTime lastModifiedTime() {
+      return FileTime.fromMillis(lastModified);
+    }
+
+    public long size() {
+      return size;
+    }
+  }
+
+  private static Attributes getAttributes(final byte[] contents) {
+    return new Attributes(contents.length, 1000, "inode");
+  }
+
+  private FileContentCache cache;
+
+  @Before
+  public void setUp() {
+    cache = new FileContentCache(10);
+  }
+
+  @Test
+  public void testHit() {
+    // Set up
+    final byte[] contents = "abcd".getBytes();
+    cache.put(PATH_A, getAttributes(contents), contents);
+
+    // Invoke
+    final byte[] cached = cache.get(PATH_A, getAttributes(contents));
+
+    // Check
+    assertSame(contents, cached);
+    assertTrue(cache.toString(), cache.toString().contains("hits=1,misses=0,"));
+    assertTrue(cache.toString(), cache.toString().contains("bytesSaved=4,"));
+  }
+
+  @Test
+  public void testMiss() {
+    // Invoke
+    final byte[] cached = cache.get(PATH_A, new Attributes(4, 1000, "inode"));
+
+    // Check
+    assertNull(cached);
+    assertTrue(cache.toString(), cache.toString().contains("hits=0,misses=1,"));
+  }
+
+  @Test
+  public void testFileChangedBehindCacheIsMissed() {
+    // Set up
+    final byte[] contents = "abcd".getBytes();
+    cache.put(PATH_A, getAttributes(contents), contents);
+
+    // Invoke and check
+    assertNull("Resized", cache.get(PATH_A, new Attributes(5, 1000, "inode")));
+    cache.put(PATH_A, getAttributes(contents), contents);
+    assertNull("Touched", cache.get(PATH_A, new Attributes(4, 2000, "inode")));
+    cache.put(PATH_A, getAttributes(contents), contents);
+    assertNull("Replaced", cache.get(PATH_A, new Attributes(4, 1000, "other inode")));
+    assertTrue(cache.toString(), cache.toString().contains("currentEntries=0,currentSize=0,"));
+  }
+
+  @Test
+  public void testInvalidateKeepsUnchangedFile() {
+    // Set up
+    final byte[] a = "abcd".getBytes();
+    final byte[] b = "efgh".getBytes();
+    cache.put(PATH_A, getAttributes(a), a);
+    cache.put(PATH_B, getAttributes(b), b);
+
+    // Invoke
+    cache.invalidate(PATH_A, getAttributes(a));
+    cache.invalidate(PATH_B, null);
+
+    // Check
+    assertSame(a, cache.get(PATH_A, getAttributes(a)));
+    assertNull(cache.get(PATH_B, getAttributes(b)));
+  }
+
+  @Test
+  public void testLeastRecentlyUsedIsEvictedAtCapacity() {
+    // Set up
+    final byte[] a = "abcd".getBytes();
+    final byte[] b = "efgh".getBytes();
+    final byte[] c = "ijkl".getBytes();
+    cache.put(PATH_A, getAttributes(a), a);
+    cache.put(PATH_B, getAttributes(b), b);
+    cache.get(PATH_A, getAttributes(a));
+
+    // Invoke
+    cache.put(PATH_C, getAttributes(c), c);
+
+    // Check
+    assertSame(a, cache.get(PATH_A, getAttributes(a)));
+    assertNull(cache.get(PATH_B, getAttributes(b)));
+    assertSame(c, cache.get(PATH_C, getAttributes(c)));
+    assertTrue(cache.toString(), cache.toString().contains("evictions=1,"));
+    assertTrue(cache.toString(), cache.toString().contains("currentSize=8,"));
+  }
+
+  @Test
+  public void testContentsLargerThanCapacityAreNotCached() {
+    // Set up
+    final byte[] contents = "abcdefghijk".getBytes();
+
+    // Invoke
+    cache.put(PATH_A, getAttributes(contents), contents);
+
+    // Check
+    assertNull(cache.get(PATH_A, getAttributes(contents)));
+  }
+
+  @Test
+  public void testZeroCapacityDisablesCache() {
+    // Set up
+    final byte[] contents = "abcd".getBytes();
+    cache.put(PATH_A, getAttributes(contents), contents);
+
+    // Invoke
+    cache.setCapacity(0);
+
+    // Check
+    assertEquals(0, cache.getCapacity());
+    assertNull(cache.get(PATH_A, getAttributes(contents)));
+    cache.put(PATH_A, getAttributes(contents), contents);
+    assertNull(cache.get(PATH_A, getAttributes(contents)));
+    assertTrue(cache.toString(), cache.toString().contains("currentEntries=0,currentSize=0,"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNegativeCapacityIsRejected() {
+    cache.setCapacity(-1);
+  }
+}
@@ -0,0 +1,146 @@
+package org.springframework.roo.process.manager.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit test of {@link ScanScheduler}
+ *
+ * @since 2.0
+ */
+public class ScanSchedulerTest {
+
+  private static final long MAX_LATENCY = 5000;
+  private static final long QUIET_PERIOD = 500;
+
+  private ScanScheduler scheduler;
+
+  @Before
+  public void setUp() {
+    scheduler = new ScanScheduler(QUIET_PERIOD, MAX_LATENCY);
+  }
+
+  @Test
+  public void testNoScanWithoutChanges() {
+    // Invoke
+    scheduler.detected(1000, 10, false);
+
+    // Check
+    assertFalse(scheduler.isScanDue(1000 + MAX_LATENCY));
+  }
+
+  @Test
+  public void testScanIsDueAfterQuietPeriod() {
+    // Set up
+    scheduler.detected(1000, 10, true);
+
+    // Invoke and check
+    assertFalse(scheduler.isScanDue(1000 + QUIET_PERIOD - 1));
+    assertTrue(scheduler.isScanDue(1000 + QUIET_PERIOD));
+  }
+
+  @Test
+  public void testFurtherChangeRestartsQuietPeriod() {
+    // Set up
+    scheduler.detected(1000, 10, true);
+
+    // Invoke
+    scheduler.detected(1400, 10, true);
+
+    // Check
+    assertFalse(scheduler.isScanDue(1000 + QUIET_PERIOD));
+    assertTrue(scheduler.isScanDue(1400 + QUIET_PERIOD));
+  }
+
+  @Test
+  public void testQuietPeriodStretchesToLastScanDuration() {
+    // Set up
+    scheduler.detected(1000, 10, true);
+    scheduler.scanned(2000);
+
+    // Invoke
+    scheduler.detected(4000, 10, true);
+
+    // Check
+    assertEquals(2000, scheduler.getLastScanDuration());
+    assertFalse(scheduler.isScanDue(4000 + QUIET_PERIOD));
+    assertFalse(scheduler.isScanDue(4000 + 1999));
+    assertTrue(scheduler.isScanDue(4000 + 2000));
+  }
+
+  @Test
+  public void testStretchedQuietPeriodIsCappedByMaxLatency() {
+    // Set up
+    scheduler.detected(1000, 10, true);
+    scheduler.scanned(MAX_LATENCY * 3);
+
+    // Invoke
+    scheduler.detected(100000, 10, true);
+
+    // Check
+    assertFalse(scheduler.isScanDue(100000 + MAX_LATENCY - 1));
+    assertTrue(scheduler.isScanDue(100000 + MAX_LATENCY));
+  }
+
+  @Test
+  public void testContinuousChangesAreScannedAtMaxLatency() {
+    // Set up
+    long time = 1000;
+    scheduler.detected(time, 10, true);
+
+    // Invoke
+    // A change every 100 ms never lets the quiet period elapse
+    while (time < 1000 + MAX_LATENCY - 100) {
+      time += 100;
+      scheduler.detected(time, 10, true);
+      assertFalse(scheduler.isScanDue(time));
+    }
+
+    // Check
+    assertTrue(scheduler.isScanDue(1000 + MAX_LATENCY));
+  }
+
+  @Test
+  public void testScanClearsPendingChanges() {
+    // Set up
+    scheduler.detected(1000, 10, true);
+
+    // Invoke
+    scheduler.scanned(0);
+
+    // Check
+    assertFalse(scheduler.isScanDue(1000 + MAX_LATENCY));
+    assertEquals("A scan that ran is recorded as taking some time", 1,
+        scheduler.getLastScanDuration());
+    assertTrue(scheduler.toString(), scheduler.toString().contains("pendingChangeDetections=0,"));
+    assertTrue(scheduler.toString(), scheduler.toString().contains("scans=1,"));
+  }
+
+  @Test
+  public void testDetectionInterval() {
+    // Invoke and check
+    assertEquals("Idle", 1000, scheduler.getDetectionInterval());
+    scheduler.detected(1000, 10, true);
+    assertEquals("Half the quiet period", QUIET_PERIOD / 2, scheduler.getDetectionInterval());
+    scheduler.setQuietPeriod(60);
+    assertEquals("At least 50 ms", 50, scheduler.getDetectionInterval());
+    scheduler.setQuietPeriod(10000);
+    assertEquals("At most a second", 1000, scheduler.getDetectionInterval());
+    scheduler.scanned(10);
+    assertEquals("Idle again", 1000, scheduler.getDetectionInterval());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNegativeQuietPeriodIsRejected() {
+    scheduler.setQuietPeriod(-1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNegativeMaxLatencyIsRejected() {
+    scheduler.setMaxLatency(-1);
+  }
+}
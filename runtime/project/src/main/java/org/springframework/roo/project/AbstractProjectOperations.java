@@ -143,13 +143,12 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
     Validate.notNull(pom, "The pom is not available, so plugin addition cannot be performed");
 
 
-    final Document parentDocument =
-        XmlUtils.readXml(fileManager.getInputStream(parentPom.getPath()));
+    final Document parentDocument = pomManagementService.getPomDocument(parentPom.getPath());
     Document document = null;
     if (isSamePom) {
       document = parentDocument;
     } else {
-      document = XmlUtils.readXml(fileManager.getInputStream(pom.getPath()));
+      document = pomManagementService.getPomDocument(pom.getPath());
     }
 
     writePluginInPom(newPlugins, parentPom, pom, parentDocument, document,
@@ -181,13 +180,12 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
     }
     Validate.notNull(pom, "The pom is not available, so dependencies cannot be added");
 
-    final Document parentDocument =
-        XmlUtils.readXml(fileManager.getInputStream(parentPom.getPath()));
+    final Document parentDocument = pomManagementService.getPomDocument(parentPom.getPath());
     Document document = null;
     if (isSamePom) {
       document = parentDocument;
     } else {
-      document = XmlUtils.readXml(fileManager.getInputStream(pom.getPath()));
+      document = pomManagementService.getPomDocument(pom.getPath());
     }
     return writeDependencyInPom(newDependencies, parentPom, pom, parentDocument, document,
         parentDocument.getDocumentElement(), document.getDocumentElement(),
@@ -280,7 +278,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
       return;
     }
 
-    final Document document = XmlUtils.readXml(fileManager.getInputStream(pom.getPath()));
+    final Document document = pomManagementService.getPomDocument(pom.getPath());
     final Element root = document.getDocumentElement();
     final String descriptionOfChange;
     final Element buildElement = XmlUtils.findFirstElement("/project/build", root);
@@ -297,8 +295,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
       descriptionOfChange = highlight(UPDATED + " filter") + " '" + filter.getValue() + "'";
     }
 
-    fileManager.createOrUpdateTextFileIfRequired(pom.getPath(), XmlUtils.nodeToString(document),
-        descriptionOfChange, false);
+    pomManagementService.writePomDocument(pom.getPath(), document, descriptionOfChange, false);
   }
 
   @Override
@@ -368,27 +365,28 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
     Validate.notNull(pom, "The pom is not available, so plugin addition cannot be performed");
 
 
-    final Document parentDocument =
-        XmlUtils.readXml(fileManager.getInputStream(parentPom.getPath()));
+    final Document parentDocument = pomManagementService.getPomDocument(parentPom.getPath());
     Document document = null;
     if (isSamePom) {
       document = parentDocument;
     } else {
-      document = XmlUtils.readXml(fileManager.getInputStream(pom.getPath()));
+      document = pomManagementService.getPomDocument(pom.getPath());
     }
 
     final Element parentRoot = parentDocument.getDocumentElement();
     final Element root = document.getDocumentElement();
 
 
-    // Find plugin
+    // Find plugin; the documents may be the POMs' working copies, so don't
+    // add a plugins element when there's no plugin to change
     Element pluginsElement = null;
     if (addToPluginManagement) {
-      pluginsElement =
-          DomUtils.createChildIfNotExists("build/pluginManagement/plugins", parentRoot,
-              parentDocument);
+      pluginsElement = XmlUtils.findFirstElement("build/pluginManagement/plugins", parentRoot);
     } else {
-      pluginsElement = DomUtils.createChildIfNotExists("/project/build/plugins", root, document);
+      pluginsElement = XmlUtils.findFirstElement("/project/build/plugins", root);
+    }
+    if (pluginsElement == null) {
+      return;
     }
 
     final List<Element> existingPluginElements = XmlUtils.findElements("plugin", pluginsElement);
@@ -439,13 +437,13 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
                 if (!isSamePom && addToPluginManagement) {
                   elementsElement.appendChild(XmlUtils.createTextElement(parentDocument,
                       elementName, element.getValue()));
-                  fileManager.createOrUpdateTextFileIfRequired(parentPom.getPath(),
-                      XmlUtils.nodeToString(parentDocument), descriptionOfChange, false);
+                  pomManagementService.writePomDocument(parentPom.getPath(), parentDocument,
+                      descriptionOfChange, false);
                 } else {
                   elementsElement.appendChild(XmlUtils.createTextElement(document, elementName,
                       element.getValue()));
-                  fileManager.createOrUpdateTextFileIfRequired(pom.getPath(),
-                      XmlUtils.nodeToString(document), descriptionOfChange, false);
+                  pomManagementService.writePomDocument(pom.getPath(), document,
+                      descriptionOfChange, false);
                 }
               } else {
                 if (!isSamePom && addToPluginManagement) {
@@ -457,8 +455,8 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
                   }
                   newParentElement.appendChild(XmlUtils.createTextElement(parentDocument,
                       element.getKey(), element.getValue()));
-                  fileManager.createOrUpdateTextFileIfRequired(parentPom.getPath(),
-                      XmlUtils.nodeToString(parentDocument), descriptionOfChange, false);
+                  pomManagementService.writePomDocument(parentPom.getPath(), parentDocument,
+                      descriptionOfChange, false);
                 } else {
                   if (newParentElement == null) {
                     newParentElement =
@@ -468,8 +466,8 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
                   }
                   newParentElement.appendChild(XmlUtils.createTextElement(document,
                       element.getKey(), element.getValue()));
-                  fileManager.createOrUpdateTextFileIfRequired(pom.getPath(),
-                      XmlUtils.nodeToString(document), descriptionOfChange, false);
+                  pomManagementService.writePomDocument(pom.getPath(), document,
+                      descriptionOfChange, false);
                 }
               }
             }
@@ -550,7 +548,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
       return;
     }
 
-    final Document document = XmlUtils.readXml(fileManager.getInputStream(pom.getPath()));
+    final Document document = pomManagementService.getPomDocument(pom.getPath());
     final Element root = document.getDocumentElement();
     final String descriptionOfChange;
     final Element existing =
@@ -572,8 +570,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
               + property.getValue() + "'";
     }
 
-    fileManager.createOrUpdateTextFileIfRequired(pom.getPath(), XmlUtils.nodeToString(document),
-        descriptionOfChange, false);
+    pomManagementService.writePomDocument(pom.getPath(), document, descriptionOfChange, false);
   }
 
   public void addRepositories(final String moduleName,
@@ -593,10 +590,6 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
     }
     final Pom pom = getPomFromModuleName(moduleName);
     Validate.notNull(pom, "The pom is not available, so repository addition cannot be performed");
-    final Document document = XmlUtils.readXml(fileManager.getInputStream(pom.getPath()));
-    final Element repositoriesElement =
-        DomUtils.createChildIfNotExists(containingPath, document.getDocumentElement(), document);
-
     if ("pluginRepository".equals(path)) {
       if (pom.isAllPluginRepositoriesRegistered(repositories)) {
         return;
@@ -605,6 +598,12 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
       return;
     }
 
+    // The document may be the POM's working copy, so only change it once
+    // it's known to be written
+    final Document document = pomManagementService.getPomDocument(pom.getPath());
+    final Element repositoriesElement =
+        DomUtils.createChildIfNotExists(containingPath, document.getDocumentElement(), document);
+
     final List<Repository> existingRepositories = new ArrayList<Repository>();
     for (Element exisitingRepElement : XmlUtils.findElements(path, repositoriesElement)) {
       existingRepositories.add(new Repository(exisitingRepElement));
@@ -632,8 +631,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
     }
     final String message = getDescriptionOfChange(ADDED, addedRepositories, path, containingPath);
 
-    fileManager.createOrUpdateTextFileIfRequired(pom.getPath(), XmlUtils.nodeToString(document),
-        message, false);
+    pomManagementService.writePomDocument(pom.getPath(), document, message, false);
   }
 
   public void addRepository(final String moduleName, final Repository repository) {
@@ -658,7 +656,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
       return;
     }
 
-    final Document document = XmlUtils.readXml(fileManager.getInputStream(pom.getPath()));
+    final Document document = pomManagementService.getPomDocument(pom.getPath());
     final Element buildElement =
         XmlUtils.findFirstElement("/project/build", document.getDocumentElement());
     final Element resourcesElement =
@@ -667,8 +665,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
     final String descriptionOfChange =
         highlight(ADDED + " resource") + " " + resource.getSimpleDescription();
 
-    fileManager.createOrUpdateTextFileIfRequired(pom.getPath(), XmlUtils.nodeToString(document),
-        descriptionOfChange, false);
+    pomManagementService.writePomDocument(pom.getPath(), document, descriptionOfChange, false);
   }
 
   protected void bindFeature(final Feature feature) {
@@ -880,7 +877,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
       return;
     }
 
-    final Document document = XmlUtils.readXml(fileManager.getInputStream(pom.getPath()));
+    final Document document = pomManagementService.getPomDocument(pom.getPath());
     final Element root = document.getDocumentElement();
     final Element pluginsElement = XmlUtils.findFirstElement("/project/build/plugins", root);
     if (pluginsElement == null) {
@@ -911,8 +908,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
     DomUtils.removeTextNodes(pluginsElement);
     final String message = getDescriptionOfChange(REMOVED, removedPlugins, "plugin", "plugins");
 
-    fileManager.createOrUpdateTextFileIfRequired(pom.getPath(), XmlUtils.nodeToString(document),
-        message, writeImmediately);
+    pomManagementService.writePomDocument(pom.getPath(), document, message, writeImmediately);
   }
 
   public void removeDependencies(final String moduleName,
@@ -929,7 +925,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
       return;
     }
 
-    final Document document = XmlUtils.readXml(fileManager.getInputStream(pom.getPath()));
+    final Document document = pomManagementService.getPomDocument(pom.getPath());
     final Element root = document.getDocumentElement();
     final Element dependenciesElement = XmlUtils.findFirstElement("/project/dependencies", root);
     if (dependenciesElement == null) {
@@ -963,8 +959,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
     final String message =
         getDescriptionOfChange(REMOVED, removedDependencies, "dependency", "dependencies");
 
-    fileManager.createOrUpdateTextFileIfRequired(pom.getPath(), XmlUtils.nodeToString(document),
-        message, false);
+    pomManagementService.writePomDocument(pom.getPath(), document, message, false);
   }
 
   public void removeDependency(final String moduleName, final Dependency dependency) {
@@ -992,7 +987,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
       return;
     }
 
-    final Document document = XmlUtils.readXml(fileManager.getInputStream(pom.getPath()));
+    final Document document = pomManagementService.getPomDocument(pom.getPath());
     final Element root = document.getDocumentElement();
 
     String descriptionOfChange = "";
@@ -1009,8 +1004,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
 
     DomUtils.removeTextNodes(dependenciesElement);
 
-    fileManager.createOrUpdateTextFileIfRequired(pom.getPath(), XmlUtils.nodeToString(document),
-        descriptionOfChange, false);
+    pomManagementService.writePomDocument(pom.getPath(), document, descriptionOfChange, false);
   }
 
   public final void removeDependency(final String moduleName, final String groupId,
@@ -1124,7 +1118,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
       return;
     }
 
-    final Document document = XmlUtils.readXml(fileManager.getInputStream(pom.getPath()));
+    final Document document = pomManagementService.getPomDocument(pom.getPath());
     final Element root = document.getDocumentElement();
 
     final Element filtersElement = XmlUtils.findFirstElement("/project/build/filters", root);
@@ -1149,8 +1143,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
 
     DomUtils.removeTextNodes(root);
 
-    fileManager.createOrUpdateTextFileIfRequired(pom.getPath(), XmlUtils.nodeToString(document),
-        descriptionOfChange, false);
+    pomManagementService.writePomDocument(pom.getPath(), document, descriptionOfChange, false);
   }
 
   public void removePluginRepository(final String moduleName, final Repository repository) {
@@ -1170,7 +1163,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
       return;
     }
 
-    final Document document = XmlUtils.readXml(fileManager.getInputStream(pom.getPath()));
+    final Document document = pomManagementService.getPomDocument(pom.getPath());
     final Element root = document.getDocumentElement();
     final Element propertiesElement = XmlUtils.findFirstElement("/project/properties", root);
     String descriptionOfChange = "";
@@ -1186,8 +1179,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
 
     DomUtils.removeTextNodes(propertiesElement);
 
-    fileManager.createOrUpdateTextFileIfRequired(pom.getPath(), XmlUtils.nodeToString(document),
-        descriptionOfChange, false);
+    pomManagementService.writePomDocument(pom.getPath(), document, descriptionOfChange, false);
   }
 
   public void removeRepository(final String moduleName, final Repository repository) {
@@ -1211,7 +1203,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
       }
     }
 
-    final Document document = XmlUtils.readXml(fileManager.getInputStream(pom.getPath()));
+    final Document document = pomManagementService.getPomDocument(pom.getPath());
     final Element root = document.getDocumentElement();
 
     String descriptionOfChange = "";
@@ -1224,8 +1216,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
       }
     }
 
-    fileManager.createOrUpdateTextFileIfRequired(pom.getPath(), XmlUtils.nodeToString(document),
-        descriptionOfChange, false);
+    pomManagementService.writePomDocument(pom.getPath(), document, descriptionOfChange, false);
   }
 
   public void removeResource(final String moduleName, final Resource resource) {
@@ -1238,7 +1229,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
       return;
     }
 
-    final Document document = XmlUtils.readXml(fileManager.getInputStream(pom.getPath()));
+    final Document document = pomManagementService.getPomDocument(pom.getPath());
     final Element root = document.getDocumentElement();
     final Element resourcesElement = XmlUtils.findFirstElement("/project/build/resources", root);
     if (resourcesElement == null) {
@@ -1263,8 +1254,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
 
     DomUtils.removeTextNodes(root);
 
-    fileManager.createOrUpdateTextFileIfRequired(pom.getPath(), XmlUtils.nodeToString(document),
-        descriptionOfChange, false);
+    pomManagementService.writePomDocument(pom.getPath(), document, descriptionOfChange, false);
   }
 
   public void setModule(final Pom module) {
@@ -1309,7 +1299,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
       return;
     }
 
-    final Document document = XmlUtils.readXml(fileManager.getInputStream(pom.getPath()));
+    final Document document = pomManagementService.getPomDocument(pom.getPath());
     final Element root = document.getDocumentElement();
     final Element dependencyElement =
         XmlUtils.findFirstElement(
@@ -1346,8 +1336,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
     }
 
     if (descriptionOfChange != null) {
-      fileManager.createOrUpdateTextFileIfRequired(pom.getPath(), XmlUtils.nodeToString(document),
-          descriptionOfChange, false);
+      pomManagementService.writePomDocument(pom.getPath(), document, descriptionOfChange, false);
     }
   }
 
@@ -1356,7 +1345,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
     final Pom pom = getPomFromModuleName(moduleName);
     Validate.notNull(pom, "The pom is not available, so the project type cannot be changed");
 
-    final Document document = XmlUtils.readXml(fileManager.getInputStream(pom.getPath()));
+    final Document document = pomManagementService.getPomDocument(pom.getPath());
     final Element packaging =
         DomUtils.createChildIfNotExists("packaging", document.getDocumentElement(), document);
     if (packaging.getTextContent().equals(projectType.getType())) {
@@ -1367,8 +1356,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
     final String descriptionOfChange =
         highlight(UPDATED + " project type") + " to " + projectType.getType();
 
-    fileManager.createOrUpdateTextFileIfRequired(pom.getPath(), XmlUtils.nodeToString(document),
-        descriptionOfChange, false);
+    pomManagementService.writePomDocument(pom.getPath(), document, descriptionOfChange, false);
   }
 
   /**
@@ -1398,6 +1386,10 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
       final boolean checkFullDependency) {
 
     final List<Dependency> finalDependencies = new ArrayList<Dependency>();
+    if (newDependencies.isEmpty()) {
+      // Nothing would be written, so don't touch the documents
+      return finalDependencies;
+    }
     final List<String> addedDependencies = new ArrayList<String>();
     final List<String> removedDependencies = new ArrayList<String>();
     final List<String> skippedDependencies = new ArrayList<String>();
@@ -1527,12 +1519,10 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
       final String message =
           getPomDependenciesUpdateMessage(addedDependencies, removedDependencies,
               skippedDependencies);
-      fileManager.createOrUpdateTextFileIfRequired(pom.getPath(), XmlUtils.nodeToString(document),
-          message, false);
+      pomManagementService.writePomDocument(pom.getPath(), document, message, false);
       // If parent pom is different, is necessary to add dependencies to dependencyManagement
       if (!isSamePom && addToDependencyManagement) {
-        fileManager.createOrUpdateTextFileIfRequired(parentPom.getPath(),
-            XmlUtils.nodeToString(parentDocument), message, false);
+        pomManagementService.writePomDocument(parentPom.getPath(), parentDocument, message, false);
       }
     }
 
@@ -1669,12 +1659,10 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
 
     if (!newPlugins.isEmpty()) {
       final String message = getPomPluginsUpdateMessage(addedPlugins, removedPlugins);
-      fileManager.createOrUpdateTextFileIfRequired(pom.getPath(), XmlUtils.nodeToString(document),
-          message, false);
+      pomManagementService.writePomDocument(pom.getPath(), document, message, false);
       // If parent pom is different, is necessary to add plugins to pluginManagement
       if (!isSamePom && addToPluginManagement) {
-        fileManager.createOrUpdateTextFileIfRequired(parentPom.getPath(),
-            XmlUtils.nodeToString(parentDocument), message, false);
+        pomManagementService.writePomDocument(parentPom.getPath(), parentDocument, message, false);
       }
     }
   }
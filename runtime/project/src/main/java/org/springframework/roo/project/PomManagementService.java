@@ -3,6 +3,7 @@ package org.springframework.roo.project;
 import java.util.Collection;
 
 import org.springframework.roo.project.maven.Pom;
+import org.w3c.dom.Document;
 
 /**
  * Provides {@link Pom}-related methods to the "project" package. Code outside
@@ -42,6 +43,20 @@ interface PomManagementService {
    */
   Collection<String> getModuleNames();
 
+  /**
+   * Returns the DOM of the POM with the given canonical path, as it stands in
+   * the current transaction. Once a POM has been written via
+   * {@link #writePomDocument(String, Document, String, boolean)}, this
+   * returns the DOM that was written until the transaction ends, so that the
+   * POM is parsed once however many times it's changed; otherwise it's parsed
+   * afresh. Either way, changes to the DOM must be written to take effect.
+   * 
+   * @param canonicalPath the canonical path of the POM (required)
+   * @return a non-<code>null</code> document
+   * @since 2.0
+   */
+  Document getPomDocument(String canonicalPath);
+
   /**
    * Returns the {@link ProjectDescriptor} for the module with the given name.
    * 
@@ -79,4 +94,22 @@ interface PomManagementService {
    * @param module the module to focus upon (required)
    */
   void setFocusedModule(Pom module);
+
+  /**
+   * Writes the given DOM to the POM with the given canonical path. Unless
+   * it's written immediately, it's only serialised when the transaction is
+   * committed (or the POM is read in the meantime), after which the
+   * {@link Pom} is built from it rather than from the file.
+   * 
+   * @param canonicalPath the canonical path of the POM (required)
+   * @param document the POM's new contents, as obtained from
+   *            {@link #getPomDocument(String)} (required)
+   * @param descriptionOfChange the additional information about the change
+   *            (can be blank)
+   * @param writeImmediately whether to write the POM to disk now, rather
+   *            than when the transaction is committed
+   * @since 2.0
+   */
+  void writePomDocument(String canonicalPath, Document document, String descriptionOfChange,
+      boolean writeImmediately);
 }
@@ -7,12 +7,14 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 import java.util.logging.Logger;
 
@@ -28,9 +30,11 @@ import org.osgi.service.component.ComponentContext;
 import org.springframework.roo.file.monitor.FileMonitorService;
 import org.springframework.roo.metadata.MetadataDependencyRegistry;
 import org.springframework.roo.metadata.MetadataService;
+import org.springframework.roo.process.manager.DeferredContents;
 import org.springframework.roo.process.manager.FileManager;
 import org.springframework.roo.project.maven.Pom;
 import org.springframework.roo.project.maven.PomFactory;
+import org.springframework.roo.project.maven.PomSection;
 import org.springframework.roo.shell.Shell;
 import org.springframework.roo.support.logging.HandlerUtils;
 import org.springframework.roo.support.osgi.OSGiUtils;
@@ -39,6 +43,18 @@ import org.springframework.roo.support.util.XmlUtils;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
+/**
+ * Default implementation of {@link PomManagementService}.
+ * <p>
+ * The POMs changed within a transaction are kept as working copies, i.e. one
+ * DOM per POM that every change applies to, and are only serialised when the
+ * transaction is committed. The {@link Pom}s are then built from those DOMs
+ * instead of being parsed from the files just written.
+ * <p>
+ * When a module's {@link Pom} is rebuilt, it's compared to the previous one,
+ * and only the sections that changed are notified, along with the module's
+ * {@link ProjectMetadata}; nothing is notified if the two are equivalent.
+ */
 @Component
 @Service
 public class PomManagementServiceImpl implements PomManagementService {
@@ -78,6 +94,61 @@ public class PomManagementServiceImpl implements PomManagementService {
     }
   }
 
+  /**
+   * The DOM of a POM that's been changed in the current transaction, which
+   * the {@link FileManager} renders when it commits the transaction.
+   */
+  private class PomWorkingCopy implements DeferredContents {
+    private String contents;
+    private final Document document;
+    private final String path;
+
+    PomWorkingCopy(final String path, final Document document) {
+      this.document = document;
+      this.path = path;
+    }
+
+    public String getContents() {
+      if (contents == null) {
+        contents = XmlUtils.nodeToString(document);
+      }
+      return contents;
+    }
+
+    void changed() {
+      contents = null;
+    }
+
+    public void release(final boolean committed) {
+      if (workingCopies.get(path) == this) {
+        workingCopies.remove(path);
+      }
+      if (committed) {
+        committedPoms.put(path, new CommittedPom(document.getDocumentElement(), new File(path)));
+      }
+    }
+  }
+
+  /**
+   * The root element of a POM as it was committed, along with what the file
+   * looked like then, to tell whether it's been changed since.
+   */
+  private static class CommittedPom {
+    private final long lastModified;
+    private final long length;
+    private final Element root;
+
+    CommittedPom(final Element root, final File file) {
+      lastModified = file.lastModified();
+      length = file.length();
+      this.root = root;
+    }
+
+    boolean isCurrent(final File file) {
+      return file.lastModified() == lastModified && file.length() == length;
+    }
+  }
+
   private static final String SEPARATOR = File.separator;
   private static final String DEFAULT_POM_NAME = "pom.xml";
   private static final String DEFAULT_RELATIVE_PATH = ".." + SEPARATOR + DEFAULT_POM_NAME;
@@ -90,9 +161,11 @@ public class PomManagementServiceImpl implements PomManagementService {
   Shell shell;
 
   private String focusedModulePath;
+  private final Map<String, CommittedPom> committedPoms = new HashMap<String, CommittedPom>();
   private final Map<String, Pom> pomMap = new LinkedHashMap<String, Pom>();
   private String projectRootDirectory;
   private final Set<String> toBeParsed = new HashSet<String>();
+  private final Map<String, PomWorkingCopy> workingCopies = new HashMap<String, PomWorkingCopy>();
 
   /**
    * For test cases to set up the state of this service
@@ -165,6 +238,15 @@ public class PomManagementServiceImpl implements PomManagementService {
     return moduleNames;
   }
 
+  public Document getPomDocument(final String canonicalPath) {
+    Validate.notBlank(canonicalPath, "POM path required");
+    final PomWorkingCopy workingCopy = workingCopies.get(canonicalPath);
+    if (workingCopy != null) {
+      return workingCopy.document;
+    }
+    return XmlUtils.readXml(getFileManager().getInputStream(canonicalPath));
+  }
+
   public Pom getPomFromModuleName(final String moduleName) {
     for (final Pom pom : getPoms()) {
       if (pom.getModuleName().equals(moduleName)) {
@@ -189,27 +271,46 @@ public class PomManagementServiceImpl implements PomManagementService {
     return pomMap.get(projectRootDirectory + SEPARATOR + DEFAULT_POM_NAME);
   }
 
-  private Set<Pom> parseUnparsedPoms() {
+  /**
+   * Parses the POMs that have changed since they were last parsed
+   * 
+   * @return the POMs parsed, each with the sections that changed since its
+   *         previous version (all of them for a new POM)
+   */
+  private Map<Pom, Set<PomSection>> parseUnparsedPoms() {
     final Map<String, String> pomModuleMap = new HashMap<String, String>();
-    final Set<Pom> newPoms = new HashSet<Pom>();
+    final Map<Pom, Set<PomSection>> newPoms = new LinkedHashMap<Pom, Set<PomSection>>();
     for (final Iterator<String> iter = toBeParsed.iterator(); iter.hasNext();) {
       final String pathToChangedPom = iter.next();
-      if (new File(pathToChangedPom).exists()) {
-        String pomContents = "";
-        try {
-          pomContents =
-              org.apache.commons.io.FileUtils.readFileToString(new File(pathToChangedPom));
-        } catch (IOException ignored) {
+      final File pomFile = new File(pathToChangedPom);
+      if (pomFile.exists()) {
+        Element rootElement = null;
+        final CommittedPom committedPom = committedPoms.remove(pathToChangedPom);
+        if (committedPom != null && committedPom.isCurrent(pomFile)) {
+          // We wrote this POM from this DOM, so there's no need to parse it
+          rootElement = committedPom.root;
+        } else {
+          String pomContents = "";
+          try {
+            pomContents = org.apache.commons.io.FileUtils.readFileToString(pomFile);
+          } catch (IOException ignored) {
+          }
+          if (StringUtils.isNotBlank(pomContents)) {
+            rootElement = XmlUtils.stringToElement(pomContents);
+          }
         }
-        if (StringUtils.isNotBlank(pomContents)) {
-          final Element rootElement = XmlUtils.stringToElement(pomContents);
+        if (rootElement != null) {
           resolvePoms(rootElement, pathToChangedPom, pomModuleMap);
           final String moduleName = getModuleName(FileUtils.getFirstDirectory(pathToChangedPom));
           final Pom pom = getPomFactory().getInstance(rootElement, pathToChangedPom, moduleName);
           Validate.notNull(pom, "POM is null for module '%s' and path '%s'", moduleName,
               pathToChangedPom);
-          pomMap.put(pathToChangedPom, pom);
-          newPoms.add(pom);
+          final Pom previousPom = pomMap.put(pathToChangedPom, pom);
+          if (previousPom == null) {
+            newPoms.put(pom, EnumSet.allOf(PomSection.class));
+          } else {
+            newPoms.put(pom, getPomFactory().getChangedSections(previousPom, pom));
+          }
           iter.remove();
         }
       }
@@ -310,6 +411,31 @@ public class PomManagementServiceImpl implements PomManagementService {
     getShell().setPromptPath(focusedModule.getModuleName());
   }
 
+  public void writePomDocument(final String canonicalPath, final Document document,
+      final String descriptionOfChange, final boolean writeImmediately) {
+    Validate.notBlank(canonicalPath, "POM path required");
+    Validate.notNull(document, "POM document required");
+    PomWorkingCopy workingCopy = workingCopies.get(canonicalPath);
+    if (workingCopy != null && workingCopy.document == document) {
+      workingCopy.changed();
+    } else if (writeImmediately) {
+      workingCopy = null;
+    } else {
+      workingCopy = new PomWorkingCopy(canonicalPath, document);
+      workingCopies.put(canonicalPath, workingCopy);
+    }
+
+    if (writeImmediately) {
+      final String contents =
+          workingCopy == null ? XmlUtils.nodeToString(document) : workingCopy.getContents();
+      getFileManager().createOrUpdateTextFileIfRequired(canonicalPath, contents,
+          descriptionOfChange, true);
+    } else {
+      getFileManager().createOrUpdateTextFileOnCommit(canonicalPath, workingCopy,
+          descriptionOfChange);
+    }
+  }
+
   private void sortPomMap() {
     final List<String> sortedPomPaths = new ArrayList<String>(pomMap.keySet());
     Collections.sort(sortedPomPaths, new PomComparator(pomMap));
@@ -323,18 +449,35 @@ public class PomManagementServiceImpl implements PomManagementService {
 
   private void updatePomCache() {
     findUnparsedPoms();
-    final Collection<Pom> newPoms = parseUnparsedPoms();
+    final Map<Pom, Set<PomSection>> newPoms = parseUnparsedPoms();
     if (!newPoms.isEmpty()) {
       sortPomMap();
     }
     updateProjectMetadataForModules(newPoms);
   }
 
-  private void updateProjectMetadataForModules(final Iterable<Pom> newPoms) {
-    for (final Pom pom : newPoms) {
-      final String projectMetadataId = ProjectMetadata.getProjectIdentifier(pom.getModuleName());
-      getMetadataService().evictAndGet(projectMetadataId);
-      getMetadataDependencyRegistry().notifyDownstream(projectMetadataId);
+  private void updateProjectMetadataForModules(final Map<Pom, Set<PomSection>> newPoms) {
+    if (newPoms.isEmpty()) {
+      return;
+    }
+    getMetadataDependencyRegistry().startBatch();
+    try {
+      for (final Entry<Pom, Set<PomSection>> entry : newPoms.entrySet()) {
+        final String moduleName = entry.getKey().getModuleName();
+        final String projectMetadataId = ProjectMetadata.getProjectIdentifier(moduleName);
+        getMetadataService().evictAndGet(projectMetadataId);
+        if (entry.getValue().isEmpty()) {
+          // Only the formatting changed, if anything
+          continue;
+        }
+        for (final PomSection section : entry.getValue()) {
+          getMetadataDependencyRegistry().notifyDownstream(
+              ProjectMetadata.getProjectIdentifier(moduleName, section));
+        }
+        getMetadataDependencyRegistry().notifyDownstream(projectMetadataId);
+      }
+    } finally {
+      getMetadataDependencyRegistry().endBatch();
     }
   }
 
@@ -5,6 +5,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.logging.Logger;
 
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.Validate;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Service;
@@ -39,6 +40,7 @@ public class ProjectCommands implements CommandMarker {
 
   private static final String DEVELOPMENT_MODE_COMMAND = "addon development mode";
   private static final String PROJECT_SETUP_COMMAND = "project setup";
+  private static final String PROJECT_SCAN_DEBOUNCE_COMMAND = "project scan debounce";
   private static final String PROJECT_SCAN_SPEED_COMMAND = "project scan speed";
   private static final String PROJECT_SCAN_STATUS_COMMAND = "project scan status";
   private static final String PROJECT_SCAN_NOW_COMMAND = "project scan now";
@@ -126,8 +128,8 @@ public class ProjectCommands implements CommandMarker {
     }
   }
 
-  @CliAvailabilityIndicator({PROJECT_SCAN_SPEED_COMMAND, PROJECT_SCAN_STATUS_COMMAND,
-      PROJECT_SCAN_NOW_COMMAND})
+  @CliAvailabilityIndicator({PROJECT_SCAN_DEBOUNCE_COMMAND, PROJECT_SCAN_SPEED_COMMAND,
+      PROJECT_SCAN_STATUS_COMMAND, PROJECT_SCAN_NOW_COMMAND})
   public boolean isProjecScanAvailable() {
     return getProjectOperations().isFocusedProjectAvailable();
   }
@@ -200,13 +202,42 @@ public class ProjectCommands implements CommandMarker {
     if (minimum == 0) {
       sb.append("automatic scanning is disabled");
     } else if (minimum < 0) {
-      sb.append("auto-scaled scanning is enabled");
+      sb.append("auto-scaled scanning is enabled, scanning once no changes have been detected for ")
+          .append(processManager.getScanQuietPeriod()).append(" ms or at most ")
+          .append(processManager.getMaxScanLatency()).append(" ms after the first change");
     } else {
       sb.append("scanning frequency has a minimum interval of ").append(minimum).append(" ms");
     }
+    sb.append(IOUtils.LINE_SEPARATOR).append(processManager.toString());
     return sb.toString();
   }
 
+  @CliCommand(value = PROJECT_SCAN_DEBOUNCE_COMMAND,
+      help = "Changes how bursts of file system changes are coalesced into a single scan when "
+          + "auto-scaled scanning is enabled.")
+  public String scanningDebounce(
+      @CliOption(key = {"quietPeriod"}, mandatory = false,
+          help = "The number of milliseconds without further changes after which to scan") final Long quietPeriod,
+      @CliOption(key = {"maxLatency"}, mandatory = false,
+          help = "The maximum number of milliseconds to postpone a scan while changes keep "
+              + "being detected") final Long maxLatency) {
+    if (processManager == null) {
+      processManager = getProcessManager();
+    }
+
+    Validate.notNull(processManager, "ProcessManager is required");
+    Validate.isTrue(quietPeriod == null || quietPeriod >= 0, "Quiet period must be 0 or more");
+    Validate.isTrue(maxLatency == null || maxLatency >= 0, "Maximum latency must be 0 or more");
+
+    if (quietPeriod != null) {
+      processManager.setScanQuietPeriod(quietPeriod);
+    }
+    if (maxLatency != null) {
+      processManager.setMaxScanLatency(maxLatency);
+    }
+    return scanningInfo();
+  }
+
   @CliCommand(value = PROJECT_SCAN_SPEED_COMMAND,
       help = "Changes the time inteval between file system scans.")
   public String scanningSpeed(@CliOption(key = {"", "ms"}, mandatory = true,
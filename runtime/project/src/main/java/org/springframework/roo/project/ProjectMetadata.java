@@ -8,11 +8,18 @@ import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.springframework.roo.metadata.AbstractMetadataItem;
 import org.springframework.roo.metadata.MetadataIdentificationUtils;
 import org.springframework.roo.project.maven.Pom;
+import org.springframework.roo.project.maven.PomSection;
 
 /**
  * The metadata for a module within the user's project. A simple project will
  * have one instance of this class, whereas a multi-module project will have
  * several.
+ * <p>
+ * When a module's POM changes, whatever depends on its
+ * {@link #getProjectIdentifier(String) project metadata} is notified, along
+ * with whatever depends on the {@link #getProjectIdentifier(String, PomSection)
+ * sections} of the POM that changed. Items that only use part of the POM can
+ * depend on just those sections, so as not to be rebuilt on every change.
  * 
  * @since 1.0
  */
@@ -46,6 +53,28 @@ public class ProjectMetadata extends AbstractMetadataItem {
     return sb.toString();
   }
 
+  /**
+   * Returns the ID to depend upon for changes to the given section of the
+   * given module's POM. Unlike the module's project metadata, nothing is
+   * provided for this ID; it only ever appears as an upstream dependency.
+   * 
+   * @param moduleName the fully-qualified module name, as for
+   *            {@link #getProjectIdentifier(String)}
+   * @param section the section of the POM (required)
+   * @return a non-blank MID
+   * @since 2.0
+   */
+  public static String getProjectIdentifier(final String moduleName, final PomSection section) {
+    Validate.notNull(section, "POM section required");
+    final StringBuilder sb =
+        new StringBuilder(MetadataIdentificationUtils.create(PomSection.class.getName(), section
+            .name().toLowerCase()));
+    if (StringUtils.isNotBlank(moduleName)) {
+      sb.append(MODULE_SEPARATOR).append(moduleName.replace("/", File.separator));
+    }
+    return sb.toString();
+  }
+
   public static boolean isValid(final String metadataIdentificationString) {
     return metadataIdentificationString.startsWith(PROJECT_MID_PREFIX);
   }
@@ -0,0 +1,27 @@
+package org.springframework.roo.project;
+
+import org.apache.felix.scr.annotations.Component;
+import org.apache.felix.scr.annotations.Service;
+import org.springframework.roo.shell.CliCommand;
+import org.springframework.roo.shell.CommandMarker;
+import org.springframework.roo.support.util.XmlUtils;
+
+/**
+ * Commands for diagnosing how {@link XmlUtils} evaluates the XPath
+ * expressions used to read POMs and other XML files.
+ *
+ * @since 2.0
+ */
+@Component
+@Service
+public class XmlCommands implements CommandMarker {
+
+  private static final String XML_CACHE_STATUS_COMMAND = "xml cache status";
+
+  @CliCommand(value = XML_CACHE_STATUS_COMMAND,
+      help = "Shows the hit ratio of the compiled XPath expression cache, and how many "
+          + "expressions were evaluated without the XPath engine.")
+  public String xmlCacheStatus() {
+    return XmlUtils.getXPathStatistics();
+  }
+}
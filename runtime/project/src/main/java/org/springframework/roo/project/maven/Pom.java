@@ -265,6 +265,16 @@ public class Pom {
     return dependencies;
   }
 
+  /**
+   * Returns the dependencies declared in the dependency management section
+   * 
+   * @return a non-<code>null</code> collection
+   * @since 2.0
+   */
+  Set<Dependency> getDependenciesInDependencyManagement() {
+    return dependenciesInDependencyManagement;
+  }
+
   /**
    * Locates any dependencies which match the presented dependency, excluding
    * the version number. This is useful for upgrade use cases, where it is
@@ -381,6 +391,16 @@ public class Pom {
     return new ArrayList<PhysicalPath>(pathLocations.values());
   }
 
+  /**
+   * Returns the plugins declared in the plugin management section
+   * 
+   * @return a non-<code>null</code> collection
+   * @since 2.0
+   */
+  Set<Plugin> getPluginsInPluginManagement() {
+    return pluginsInPluginManagement;
+  }
+
   public Set<Repository> getPluginRepositories() {
     return pluginRepositories;
   }
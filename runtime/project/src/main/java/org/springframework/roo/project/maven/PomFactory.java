@@ -1,5 +1,7 @@
 package org.springframework.roo.project.maven;
 
+import java.util.Set;
+
 import org.w3c.dom.Element;
 
 /**
@@ -10,6 +12,16 @@ import org.w3c.dom.Element;
  */
 public interface PomFactory {
 
+  /**
+   * Compares the given versions of a POM section by section
+   *
+   * @param previousPom the POM as it was (required)
+   * @param pom the POM as it is now (required)
+   * @return the sections that differ; empty if the two are equivalent
+   * @since 2.0
+   */
+  Set<PomSection> getChangedSections(Pom previousPom, Pom pom);
+
   /**
    * Creates a {@link Pom} by reading a <code>pom.xml</code> file
    * 
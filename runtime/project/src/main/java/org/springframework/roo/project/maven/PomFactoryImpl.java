@@ -5,8 +5,14 @@ import static org.springframework.roo.project.maven.Pom.DEFAULT_PACKAGING;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import org.apache.commons.lang3.ObjectUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
 import org.apache.felix.scr.annotations.Component;
@@ -15,6 +21,7 @@ import org.apache.felix.scr.annotations.Service;
 import org.springframework.roo.project.Dependency;
 import org.springframework.roo.project.Filter;
 import org.springframework.roo.project.Path;
+import org.springframework.roo.project.PhysicalPath;
 import org.springframework.roo.project.Plugin;
 import org.springframework.roo.project.Property;
 import org.springframework.roo.project.Repository;
@@ -23,6 +30,7 @@ import org.springframework.roo.project.packaging.PackagingProvider;
 import org.springframework.roo.project.packaging.PackagingProviderRegistry;
 import org.springframework.roo.support.util.FileUtils;
 import org.springframework.roo.support.util.XmlUtils;
+import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
 @Component
@@ -58,6 +66,40 @@ public class PomFactoryImpl implements PomFactory {
   @Reference
   PackagingProviderRegistry packagingProviderRegistry;
 
+  public Set<PomSection> getChangedSections(final Pom previousPom, final Pom pom) {
+    Validate.notNull(previousPom, "Previous POM required");
+    Validate.notNull(pom, "POM required");
+    // Dependencies, plugins and repositories are compared as the XML they'd
+    // be written as, because their equals methods only compare coordinates
+    final Document document = XmlUtils.getDocumentBuilder().newDocument();
+    final Set<PomSection> changedSections = EnumSet.noneOf(PomSection.class);
+    if (!isSameDependencies(previousPom.getDependencies(), pom.getDependencies(), document)
+        || !isSameDependencies(previousPom.getDependenciesInDependencyManagement(),
+            pom.getDependenciesInDependencyManagement(), document)) {
+      changedSections.add(PomSection.DEPENDENCIES);
+    }
+    if (!isSameModules(previousPom.getModules(), pom.getModules())) {
+      changedSections.add(PomSection.MODULES);
+    }
+    if (!isSameDescriptor(previousPom, pom, document)) {
+      changedSections.add(PomSection.OTHER);
+    }
+    if (!isSamePlugins(previousPom.getBuildPlugins(), pom.getBuildPlugins(), document)
+        || !isSamePlugins(previousPom.getPluginsInPluginManagement(),
+            pom.getPluginsInPluginManagement(), document)) {
+      changedSections.add(PomSection.PLUGINS);
+    }
+    if (!isSameElements(previousPom.getPomProperties(), pom.getPomProperties())) {
+      changedSections.add(PomSection.PROPERTIES);
+    }
+    if (!isSameRepositories(previousPom.getRepositories(), pom.getRepositories(), document)
+        || !isSameRepositories(previousPom.getPluginRepositories(), pom.getPluginRepositories(),
+            document)) {
+      changedSections.add(PomSection.REPOSITORIES);
+    }
+    return changedSections;
+  }
+
   /**
    * Returns the groupId defined in the given POM
    * 
@@ -144,6 +186,119 @@ public class PomFactoryImpl implements PomFactory {
     return packagingProvider.getPaths();
   }
 
+  private Map<Path, String> getPathLocations(final Pom pom) {
+    final Map<Path, String> pathLocations = new LinkedHashMap<Path, String>();
+    for (final PhysicalPath physicalPath : pom.getPhysicalPaths()) {
+      pathLocations.put(physicalPath.getPath(), physicalPath.getLocationPath());
+    }
+    return pathLocations;
+  }
+
+  private boolean isSameDependencies(final Collection<Dependency> previousDependencies,
+      final Collection<Dependency> dependencies, final Document document) {
+    if (previousDependencies.size() != dependencies.size()) {
+      return false;
+    }
+    final Iterator<Dependency> previous = previousDependencies.iterator();
+    for (final Dependency dependency : dependencies) {
+      if (!previous.next().getElement(document).isEqualNode(dependency.getElement(document))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean isSameDescriptor(final Pom previousPom, final Pom pom, final Document document) {
+    if (!ObjectUtils.equals(previousPom.getGroupId(), pom.getGroupId())
+        || !ObjectUtils.equals(previousPom.getArtifactId(), pom.getArtifactId())
+        || !ObjectUtils.equals(previousPom.getVersion(), pom.getVersion())
+        || !previousPom.getPackaging().equals(pom.getPackaging())
+        || !previousPom.getDisplayName().equals(pom.getDisplayName())
+        || !previousPom.getModuleName().equals(pom.getModuleName())
+        || !previousPom.getSourceDirectory().equals(pom.getSourceDirectory())
+        || !previousPom.getTestSourceDirectory().equals(pom.getTestSourceDirectory())
+        || !isSameParent(previousPom.getParent(), pom.getParent())
+        || !isSameElements(previousPom.getFilters(), pom.getFilters())
+        || !getPathLocations(previousPom).equals(getPathLocations(pom))) {
+      return false;
+    }
+    if (previousPom.getResources().size() != pom.getResources().size()) {
+      return false;
+    }
+    final Iterator<Resource> previous = previousPom.getResources().iterator();
+    for (final Resource resource : pom.getResources()) {
+      if (!previous.next().getElement(document).isEqualNode(resource.getElement(document))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Indicates whether the given collections have equal elements in the same
+   * order
+   */
+  private boolean isSameElements(final Collection<?> previousElements,
+      final Collection<?> elements) {
+    return new ArrayList<Object>(previousElements).equals(new ArrayList<Object>(elements));
+  }
+
+  private boolean isSameModules(final Collection<Module> previousModules,
+      final Collection<Module> modules) {
+    if (previousModules.size() != modules.size()) {
+      return false;
+    }
+    final Iterator<Module> previous = previousModules.iterator();
+    for (final Module module : modules) {
+      final Module previousModule = previous.next();
+      if (!previousModule.getName().equals(module.getName())
+          || !previousModule.getPomPath().equals(module.getPomPath())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean isSameParent(final Parent previousParent, final Parent parent) {
+    if (previousParent == null || parent == null) {
+      return previousParent == parent;
+    }
+    return ObjectUtils.equals(previousParent.getGroupId(), parent.getGroupId())
+        && ObjectUtils.equals(previousParent.getArtifactId(), parent.getArtifactId())
+        && ObjectUtils.equals(previousParent.getVersion(), parent.getVersion())
+        && ObjectUtils.equals(previousParent.getRelativePath(), parent.getRelativePath())
+        && ObjectUtils.equals(previousParent.getPomPath(), parent.getPomPath());
+  }
+
+  private boolean isSamePlugins(final Collection<Plugin> previousPlugins,
+      final Collection<Plugin> plugins, final Document document) {
+    if (previousPlugins.size() != plugins.size()) {
+      return false;
+    }
+    final Iterator<Plugin> previous = previousPlugins.iterator();
+    for (final Plugin plugin : plugins) {
+      if (!previous.next().getElement(document).isEqualNode(plugin.getElement(document))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean isSameRepositories(final Collection<Repository> previousRepositories,
+      final Collection<Repository> repositories, final Document document) {
+    if (previousRepositories.size() != repositories.size()) {
+      return false;
+    }
+    final Iterator<Repository> previous = previousRepositories.iterator();
+    for (final Repository repository : repositories) {
+      if (!previous.next().getElement(document, "repository")
+          .isEqualNode(repository.getElement(document, "repository"))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   /**
    * Parses any elements matching the given XPath expression into instances of
    * the given type.
@@ -0,0 +1,43 @@
+package org.springframework.roo.project.maven;
+
+/**
+ * The parts of a {@link Pom} that can change independently of each other, so
+ * that what depends on a module's project metadata can be told which of them
+ * have changed.
+ *
+ * @since 2.0
+ * @see PomFactory#getChangedSections(Pom, Pom)
+ */
+public enum PomSection {
+
+  /**
+   * The dependencies, including those in the dependency management section
+   */
+  DEPENDENCIES,
+
+  /**
+   * The modules of a multi-module project
+   */
+  MODULES,
+
+  /**
+   * Anything not covered by another section, e.g. the coordinates,
+   * packaging, parent, source directories, resources and filters
+   */
+  OTHER,
+
+  /**
+   * The build plugins, including those in the plugin management section
+   */
+  PLUGINS,
+
+  /**
+   * The POM properties
+   */
+  PROPERTIES,
+
+  /**
+   * The repositories and plugin repositories
+   */
+  REPOSITORIES;
+}
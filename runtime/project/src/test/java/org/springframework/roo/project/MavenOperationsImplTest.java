@@ -15,11 +15,14 @@ import java.util.Collection;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.roo.metadata.MetadataService;
 import org.springframework.roo.process.manager.FileManager;
 import org.springframework.roo.project.maven.Pom;
+import org.springframework.roo.support.util.XmlUtils;
+import org.w3c.dom.Document;
 
 /**
  * Unit test of {@link MavenOperationsImpl}
@@ -128,8 +131,8 @@ public class MavenOperationsImplTest {
   @Test
   public void testRemoveDependencyTwiceWhenItExistsOnce() {
     // Set up
-    when(mockFileManager.getInputStream(POM_PATH)).thenReturn(
-        new ByteArrayInputStream(POM_BEFORE_DEPENDENCY_REMOVED.getBytes()));
+    when(mockPomManagementService.getPomDocument(POM_PATH)).thenReturn(
+        XmlUtils.readXml(new ByteArrayInputStream(POM_BEFORE_DEPENDENCY_REMOVED.getBytes())));
 
     // -- Dependency to remove
     final Dependency mockDependency = mock(Dependency.class);
@@ -155,7 +158,9 @@ public class MavenOperationsImplTest {
 
     // Check
     final String expectedPom = POM_AFTER_DEPENDENCY_REMOVED.replace("\n", LINE_SEPARATOR);
-    verify(mockFileManager).createOrUpdateTextFileIfRequired(eq(POM_PATH), eq(expectedPom),
+    final ArgumentCaptor<Document> documentCaptor = ArgumentCaptor.forClass(Document.class);
+    verify(mockPomManagementService).writePomDocument(eq(POM_PATH), documentCaptor.capture(),
         (String) any(), eq(false));
+    assertEquals(expectedPom, XmlUtils.nodeToString(documentCaptor.getValue()));
   }
 }
@@ -2,6 +2,8 @@ package org.springframework.roo.project;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
@@ -9,6 +11,7 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
@@ -19,6 +22,7 @@ import junit.framework.AssertionFailedError;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.osgi.framework.BundleContext;
@@ -26,12 +30,15 @@ import org.osgi.service.component.ComponentContext;
 import org.springframework.roo.file.monitor.FileMonitorService;
 import org.springframework.roo.metadata.MetadataDependencyRegistry;
 import org.springframework.roo.metadata.MetadataService;
+import org.springframework.roo.process.manager.DeferredContents;
 import org.springframework.roo.process.manager.FileManager;
 import org.springframework.roo.project.maven.Pom;
 import org.springframework.roo.project.maven.PomFactory;
 import org.springframework.roo.shell.Shell;
 import org.springframework.roo.support.osgi.OSGiUtils;
 import org.springframework.roo.support.util.FileUtils;
+import org.springframework.roo.support.util.XmlUtils;
+import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
 /**
@@ -235,6 +242,32 @@ public class PomManagementServiceImplTest {
     assertEquals(0, poms.size());
   }
 
+  @Test
+  public void testDeferredPomWriteIsReadBackUntilReleased() {
+    // Set up
+    final String pomPath = "/users/jbloggs/clinic/pom.xml";
+    final String pomXml = "<project><artifactId>clinic</artifactId></project>";
+    when(mockFileManager.getInputStream(pomPath)).thenReturn(
+        new ByteArrayInputStream(pomXml.getBytes()),
+        new ByteArrayInputStream(pomXml.getBytes()));
+    final Document pomDocument = service.getPomDocument(pomPath);
+    pomDocument.getDocumentElement().appendChild(pomDocument.createElement("packaging"));
+
+    // Invoke
+    service.writePomDocument(pomPath, pomDocument, "added packaging", false);
+
+    // Check
+    assertSame(pomDocument, service.getPomDocument(pomPath));
+    final ArgumentCaptor<DeferredContents> contentsCaptor =
+        ArgumentCaptor.forClass(DeferredContents.class);
+    verify(mockFileManager).createOrUpdateTextFileOnCommit(eq(pomPath),
+        contentsCaptor.capture(), eq("added packaging"));
+    assertEquals(XmlUtils.nodeToString(pomDocument), contentsCaptor.getValue().getContents());
+
+    contentsCaptor.getValue().release(false);
+    assertNotSame(pomDocument, service.getPomDocument(pomPath));
+  }
+
   private void verifyProjectMetadataNotification(final String... moduleNames) {
     for (final String moduleName : moduleNames) {
       final String projectMetadataId = ProjectMetadata.getProjectIdentifier(moduleName);
@@ -10,6 +10,7 @@ import static org.springframework.roo.project.ProjectMetadata.PROJECT_MID_PREFIX
 
 import org.junit.Test;
 import org.springframework.roo.project.maven.Pom;
+import org.springframework.roo.project.maven.PomSection;
 
 /**
  * Unit test of {@link ProjectMetadata}
@@ -67,6 +68,14 @@ public class ProjectMetadataTest {
     assertEquals(ROOT_MID, ProjectMetadata.getProjectIdentifier(""));
   }
 
+  @Test
+  public void testGetProjectIdentifierForPomSectionOfLevelOneModule() {
+    final String sectionMid =
+        ProjectMetadata.getProjectIdentifier(LEVEL_ONE_MODULE, PomSection.DEPENDENCIES);
+    assertFalse(ProjectMetadata.isValid(sectionMid));
+    assertEquals(LEVEL_ONE_MODULE, ProjectMetadata.getModuleName(sectionMid));
+  }
+
   @Test
   public void testInvalidMIDIsNotValid() {
     assertFalse(ProjectMetadata.isValid("MID:foo#bar?baz"));
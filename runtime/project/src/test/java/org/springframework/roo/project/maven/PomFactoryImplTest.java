@@ -0,0 +1,70 @@
+package org.springframework.roo.project.maven;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.EnumSet;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.roo.project.Dependency;
+import org.springframework.roo.project.DependencyScope;
+import org.springframework.roo.project.DependencyType;
+import org.springframework.roo.project.Property;
+import org.springframework.roo.support.util.FileUtils;
+
+/**
+ * Unit test of {@link PomFactoryImpl}
+ *
+ * @since 2.0
+ */
+public class PomFactoryImplTest {
+
+  private static final String POM_PATH = File.separator
+      + FileUtils.getSystemDependentPath("users", "jbloggs", "projects", "clinic", "pom.xml");
+
+  private PomFactoryImpl pomFactory;
+
+  private Pom getPom(final String version, final DependencyScope dependencyScope,
+      final String propertyValue) {
+    final Dependency dependency =
+        new Dependency("org.apache", "commons-foo", "1.0", DependencyType.JAR, dependencyScope);
+    final Property property = new Property("foo.version", propertyValue);
+    return new Pom("com.example", "my-app", version, "jar", null, Arrays.asList(dependency),
+        null, null, Arrays.asList(property), null, null, null, null, null, null, null, null, null,
+        POM_PATH, "", null);
+  }
+
+  @Before
+  public void setUp() {
+    pomFactory = new PomFactoryImpl();
+  }
+
+  @Test
+  public void testChangingDependencyScopeOnlyChangesDependencies() {
+    assertEquals(EnumSet.of(PomSection.DEPENDENCIES), pomFactory.getChangedSections(
+        getPom("1.0", DependencyScope.COMPILE, "1.0"), getPom("1.0", DependencyScope.TEST, "1.0")));
+  }
+
+  @Test
+  public void testChangingPropertyOnlyChangesProperties() {
+    assertEquals(EnumSet.of(PomSection.PROPERTIES), pomFactory.getChangedSections(
+        getPom("1.0", DependencyScope.COMPILE, "1.0"),
+        getPom("1.0", DependencyScope.COMPILE, "1.1")));
+  }
+
+  @Test
+  public void testChangingVersionOnlyChangesOtherSection() {
+    assertEquals(EnumSet.of(PomSection.OTHER), pomFactory.getChangedSections(
+        getPom("1.0", DependencyScope.COMPILE, "1.0"),
+        getPom("1.1", DependencyScope.COMPILE, "1.0")));
+  }
+
+  @Test
+  public void testEquivalentPomsHaveNoChangedSections() {
+    assertTrue(pomFactory.getChangedSections(getPom("1.0", DependencyScope.COMPILE, "1.0"),
+        getPom("1.0", DependencyScope.COMPILE, "1.0")).isEmpty());
+  }
+}
@@ -160,6 +160,26 @@ public interface PropFilesManagerService {
   void addPropertiesIfNotExists(LogicalPath propertyFilePath, String propertyFilename,
       String prefix, Map<String, String> properties, boolean sorted, boolean force);
 
+  /**
+   * Applies the given changes to the given properties file, reading and
+   * writing it at most once. Unless sorted, this keeps the existing entries
+   * and comments in their places, adding new properties to the end of the
+   * file; sorted, the file is written as by the other methods of this
+   * service. The file is created if necessary.
+   * 
+   * @param propertyFilePath the location of the property file (required)
+   * @param propertyFilename the name of the property file within the
+   *            specified path (required)
+   * @param changes the changes to apply, in order (required)
+   * @param sorted indicates if the resulting properties should be sorted
+   * @param force whether to overwrite the values of existing properties;
+   *            if <code>false</code> and any would be overwritten, nothing is
+   *            written
+   * @since 2.0
+   */
+  void applyChanges(LogicalPath propertyFilePath, String propertyFilename,
+      PropertyChanges changes, boolean sorted, boolean force);
+
   /**
    * Changes the specified property, throwing an exception if the file does
    * not exist.
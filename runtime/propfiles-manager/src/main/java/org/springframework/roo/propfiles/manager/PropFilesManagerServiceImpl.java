@@ -1,6 +1,7 @@
 package org.springframework.roo.propfiles.manager;
 
 import java.io.BufferedInputStream;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -8,13 +9,16 @@ import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
+import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
 import java.util.logging.Level;
@@ -29,6 +33,8 @@ import org.osgi.framework.BundleContext;
 import org.osgi.framework.InvalidSyntaxException;
 import org.osgi.framework.ServiceReference;
 import org.osgi.service.component.ComponentContext;
+import org.springframework.roo.file.monitor.event.FileEvent;
+import org.springframework.roo.file.monitor.event.FileEventListener;
 import org.springframework.roo.process.manager.FileManager;
 import org.springframework.roo.process.manager.MutableFile;
 import org.springframework.roo.project.LogicalPath;
@@ -39,18 +45,44 @@ import org.springframework.roo.support.util.FileUtils;
 /**
  * Provides service that could be used to manage all necessary .properties files
  * located on project.
+ * <p>
+ * Parsed files are cached by path for as long as they keep their size and
+ * last modified time, and are evicted when the file monitor reports a change
+ * to them or this service writes them.
  * 
  * @author Juan Carlos García
  * @since 2.0
  */
 @Component
 @Service
-public class PropFilesManagerServiceImpl implements PropFilesManagerService {
+public class PropFilesManagerServiceImpl implements PropFilesManagerService, FileEventListener {
+
+  /**
+   * The parsed properties of a file, along with the attributes of the file
+   * they were read from.
+   */
+  private static class CachedProperties {
+    private final long lastModified;
+    private final long length;
+    private final Properties properties;
+
+    CachedProperties(final long lastModified, final long length, final Properties properties) {
+      this.lastModified = lastModified;
+      this.length = length;
+      this.properties = properties;
+    }
+
+    boolean isFor(final File file) {
+      return lastModified == file.lastModified() && length == file.length();
+    }
+  }
 
   protected final static Logger LOGGER = HandlerUtils.getLogger(PropFilesManagerServiceImpl.class);
 
   private static final boolean SORTED = true;
 
+  private final Map<String, CachedProperties> cachedProperties =
+      new HashMap<String, CachedProperties>();
   private FileManager fileManager;
   private ProjectOperations projectOperations;
 
@@ -125,6 +157,84 @@ public class PropFilesManagerServiceImpl implements PropFilesManagerService {
         true);
   }
 
+  @Override
+  public void applyChanges(final LogicalPath propertyFilePath, final String propertyFilename,
+      final PropertyChanges changes, final boolean sorted, final boolean force) {
+    Validate.notNull(propertyFilePath, "Property file path required");
+    Validate.notBlank(propertyFilename, "Property filename required");
+    Validate.notNull(changes, "Property changes required");
+    if (changes.isEmpty()) {
+      return;
+    }
+
+    final String filePath =
+        getProjectOperations().getPathResolver().getIdentifier(propertyFilePath, propertyFilename);
+    MutableFile mutableFile = null;
+    PropertiesFile propertiesFile;
+    if (getFileManager().exists(filePath)) {
+      mutableFile = getFileManager().updateFile(filePath);
+      final InputStream inputStream = mutableFile.getInputStream();
+      try {
+        propertiesFile = new PropertiesFile(IOUtils.toString(inputStream, PropertiesFile.ENCODING));
+      } catch (final IOException e) {
+        throw new IllegalStateException("Could not load properties", e);
+      } finally {
+        IOUtils.closeQuietly(inputStream);
+      }
+    } else {
+      propertiesFile = new PropertiesFile("");
+    }
+
+    boolean saveNeeded = false;
+    final Map<String, String> overwriteProperties = new LinkedHashMap<String, String>();
+    for (final PropertyChanges.Change change : changes.getChanges()) {
+      final String key = change.getKey();
+      final String newValue = change.getValue();
+      final String existingValue = propertiesFile.getProperty(key);
+      if (newValue == null) {
+        saveNeeded |= propertiesFile.removeProperty(key);
+      } else if (existingValue == null) {
+        propertiesFile.setProperty(key, newValue);
+        saveNeeded = true;
+      } else if (existingValue.equals(newValue) || change.isIfNotExists()) {
+        // Nothing to change, or leave the existing value as it is
+        continue;
+      } else if (force) {
+        propertiesFile.setProperty(key, newValue);
+        saveNeeded = true;
+      } else {
+        overwriteProperties.put(key, existingValue);
+      }
+    }
+
+    // ROO-3702: Show error when tries to update some properties that
+    // already exists and --force global param is false.
+    if (!overwriteProperties.isEmpty()) {
+      throw new RuntimeException(getNeedForceMessage(overwriteProperties));
+    }
+
+    if (saveNeeded) {
+      if (mutableFile == null) {
+        mutableFile = getFileManager().createFile(filePath);
+      }
+      final OutputStream outputStream = mutableFile.getOutputStream();
+      if (sorted) {
+        final Properties props = newProperties(sorted);
+        props.putAll(propertiesFile.getProperties());
+        storeProps(props, outputStream, "Updated at " + new Date());
+      } else {
+        try {
+          IOUtils.write(propertiesFile.toString(), outputStream, PropertiesFile.ENCODING);
+        } catch (final IOException e) {
+          throw new IllegalStateException("Could not store properties", e);
+        } finally {
+          IOUtils.closeQuietly(outputStream);
+        }
+      }
+      evict(filePath);
+    }
+  }
+
   @Override
   public void changeProperty(final LogicalPath propertyFilePath, final String propertyFilename,
       final String key, final String value, boolean force) {
@@ -181,18 +291,11 @@ public class PropFilesManagerServiceImpl implements PropFilesManagerService {
 
     final String filePath =
         getProjectOperations().getPathResolver().getIdentifier(propertyFilePath, propertyFilename);
-    final Properties props = new Properties();
-
-    try {
-      if (getFileManager().exists(filePath)) {
-        loadProperties(props, new BufferedInputStream(new FileInputStream(filePath)));
-      } else {
-        throw new IllegalStateException(String.format(
-            "ERROR: '%s' properties file doesn't exists.", filePath));
-      }
-    } catch (final IOException ioe) {
-      throw new IllegalStateException(ioe);
+    if (!getFileManager().exists(filePath)) {
+      throw new IllegalStateException(String.format("ERROR: '%s' properties file doesn't exists.",
+          filePath));
     }
+    final Properties props = getCachedProperties(filePath);
 
     final Map<String, String> result = new HashMap<String, String>();
     for (final Object key : props.keySet()) {
@@ -217,13 +320,7 @@ public class PropFilesManagerServiceImpl implements PropFilesManagerService {
 
     final String filePath =
         getProjectOperations().getPathResolver().getIdentifier(propertyFilePath, propertyFilename);
-    MutableFile mutableFile = null;
-    final Properties props = new Properties();
-
-    if (getFileManager().exists(filePath)) {
-      mutableFile = getFileManager().updateFile(filePath);
-      loadProperties(props, mutableFile.getInputStream());
-    } else {
+    if (!getFileManager().exists(filePath)) {
       return null;
     }
 
@@ -232,7 +329,7 @@ public class PropFilesManagerServiceImpl implements PropFilesManagerService {
       key = prefix.concat(".").concat(key);
     }
 
-    return props.getProperty(key);
+    return getCachedProperties(filePath).getProperty(key);
   }
 
   @Override
@@ -250,18 +347,11 @@ public class PropFilesManagerServiceImpl implements PropFilesManagerService {
 
     final String filePath =
         getProjectOperations().getPathResolver().getIdentifier(propertyFilePath, propertyFilename);
-    final Properties props = new Properties();
-
-    try {
-      if (getFileManager().exists(filePath)) {
-        loadProperties(props, new BufferedInputStream(new FileInputStream(filePath)));
-      } else {
-        throw new IllegalStateException(String.format(
-            "ERROR: '%s' properties file doesn't exists.", filePath));
-      }
-    } catch (final IOException ioe) {
-      throw new IllegalStateException(ioe);
+    if (!getFileManager().exists(filePath)) {
+      throw new IllegalStateException(String.format("ERROR: '%s' properties file doesn't exists.",
+          filePath));
     }
+    final Properties props = getCachedProperties(filePath);
 
     final SortedSet<String> result = new TreeSet<String>();
     for (final Object key : props.keySet()) {
@@ -295,6 +385,10 @@ public class PropFilesManagerServiceImpl implements PropFilesManagerService {
     return loadProperties(FileUtils.getInputStream(loadingClass, filename));
   }
 
+  public void onFileEvent(final FileEvent fileEvent) {
+    evict(fileEvent.getFileDetails().getCanonicalPath());
+  }
+
   @Override
   public void removeProperty(final LogicalPath propertyFilePath, final String propertyFilename,
       final String key) {
@@ -316,7 +410,7 @@ public class PropFilesManagerServiceImpl implements PropFilesManagerService {
 
     if (getFileManager().exists(filePath)) {
       mutableFile = getFileManager().updateFile(filePath);
-      loadProperties(props, mutableFile.getInputStream());
+      props.putAll(getCachedProperties(filePath));
     } else {
       throw new IllegalStateException(String.format("ERROR: '%s' properties file doesn't exists.",
           filePath));
@@ -330,6 +424,7 @@ public class PropFilesManagerServiceImpl implements PropFilesManagerService {
     if (props.containsKey(key)) {
       props.remove(key);
       storeProps(props, mutableFile.getOutputStream(), "Updated at " + new Date());
+      evict(filePath);
     }
 
   }
@@ -348,7 +443,7 @@ public class PropFilesManagerServiceImpl implements PropFilesManagerService {
 
     if (getFileManager().exists(filePath)) {
       mutableFile = getFileManager().updateFile(filePath);
-      loadProperties(props, mutableFile.getInputStream());
+      props.putAll(getCachedProperties(filePath));
     } else {
       throw new IllegalStateException(String.format("ERROR: '%s' properties file doesn't exists.",
           filePath));
@@ -362,7 +457,7 @@ public class PropFilesManagerServiceImpl implements PropFilesManagerService {
     }
 
     storeProps(props, mutableFile.getOutputStream(), "Updated at " + new Date());
-
+    evict(filePath);
   }
 
   // Util methods
@@ -373,6 +468,58 @@ public class PropFilesManagerServiceImpl implements PropFilesManagerService {
     return properties;
   }
 
+  private void evict(final String filePath) {
+    synchronized (cachedProperties) {
+      cachedProperties.remove(filePath);
+    }
+  }
+
+  /**
+   * Returns the properties in the given file, parsing it only if it has
+   * changed since it was last parsed
+   * 
+   * @param filePath the canonical path of an existing properties file
+   * @return the cached properties, which the caller must not modify
+   */
+  private Properties getCachedProperties(final String filePath) {
+    final File file = new File(filePath);
+    final long lastModified = file.lastModified();
+    final long length = file.length();
+    synchronized (cachedProperties) {
+      final CachedProperties cached = cachedProperties.get(filePath);
+      if (cached != null && cached.isFor(file)) {
+        return cached.properties;
+      }
+    }
+
+    final Properties props = new Properties();
+    try {
+      loadProperties(props, new BufferedInputStream(new FileInputStream(file)));
+    } catch (final IOException ioe) {
+      throw new IllegalStateException(ioe);
+    }
+    synchronized (cachedProperties) {
+      cachedProperties.put(filePath, new CachedProperties(lastModified, length, props));
+    }
+    return props;
+  }
+
+  private String getNeedForceMessage(final Map<String, String> overwriteProperties) {
+    String propertyCount = overwriteProperties.size() > 1 ? "Properties" : "Property";
+
+    String propertyLists = "";
+    for (Entry<String, String> property : overwriteProperties.entrySet()) {
+      String key = property.getKey();
+      String value = property.getValue();
+      propertyLists =
+          propertyLists.concat("'").concat(key).concat(" = ").concat(value).concat("', ");
+    }
+
+    return String.format("WARNING: %s %s already exists. "
+        + "Use --force parameter to overwrite it.", propertyCount,
+        propertyLists.substring(0, propertyLists.length() - 2));
+  }
+
   private void loadProperties(final Properties props, final InputStream inputStream) {
     try {
       props.load(inputStream);
@@ -402,36 +549,11 @@ public class PropFilesManagerServiceImpl implements PropFilesManagerService {
         getProjectOperations().getPathResolver().getIdentifier(propertyFilePath, propertyFilename);
     MutableFile mutableFile = null;
 
-    Properties props;
-    if (sorted) {
-      props = new Properties() {
-        private static final long serialVersionUID = 1L;
-
-        // Override the keys() method to order the keys alphabetically
-        @SuppressWarnings("all")
-        public synchronized Enumeration keys() {
-          final Object[] keys = keySet().toArray();
-          Arrays.sort(keys);
-          return new Enumeration() {
-            int i = 0;
-
-            public boolean hasMoreElements() {
-              return i < keys.length;
-            }
-
-            public Object nextElement() {
-              return keys[i++];
-            }
-          };
-        }
-      };
-    } else {
-      props = new Properties();
-    }
+    final Properties props = newProperties(sorted);
 
     if (getFileManager().exists(filePath)) {
       mutableFile = getFileManager().updateFile(filePath);
-      loadProperties(props, mutableFile.getInputStream());
+      props.putAll(getCachedProperties(filePath));
     } else {
       // Unable to find the file, so let's create it
       mutableFile = getFileManager().createFile(filePath);
@@ -468,25 +590,12 @@ public class PropFilesManagerServiceImpl implements PropFilesManagerService {
     // ROO-3702: Show error when tries to update some properties that
     // already exists and --force global param is false. 
     if (needForce) {
-      String propertyCount = overwriteProperties.size() > 1 ? "Properties" : "Property";
-
-      String propertyLists = "";
-      for (Entry<String, String> property : overwriteProperties.entrySet()) {
-        String key = property.getKey();
-        String value = property.getValue();
-        propertyLists =
-            propertyLists.concat("'").concat(key).concat(" = ").concat(value).concat("', ");
-      }
-
-      String msg =
-          String.format("WARNING: %s %s already exists. "
-              + "Use --force parameter to overwrite it.", propertyCount,
-              propertyLists.substring(0, propertyLists.length() - 2));
-      throw new RuntimeException(msg);
+      throw new RuntimeException(getNeedForceMessage(overwriteProperties));
     }
 
     if (saveNeeded) {
       storeProps(props, mutableFile.getOutputStream(), "Updated at " + new Date());
+      evict(filePath);
 
       String propertyCount = props.size() > 1 ? "Properties" : "Property";
       String haveCount = props.size() > 1 ? "have" : "has";
@@ -502,6 +611,50 @@ public class PropFilesManagerServiceImpl implements PropFilesManagerService {
     }
   }
 
+  /**
+   * Creates empty properties, which are stored sorted by key if so required
+   */
+  private Properties newProperties(final boolean sorted) {
+    if (!sorted) {
+      return new Properties();
+    }
+    return new Properties() {
+      private static final long serialVersionUID = 1L;
+
+      // Override the keys() method to order the keys alphabetically
+      @SuppressWarnings("all")
+      public synchronized Enumeration keys() {
+        final Object[] keys = keySet().toArray();
+        Arrays.sort(keys);
+        return new Enumeration() {
+          int i = 0;
+
+          public boolean hasMoreElements() {
+            return i < keys.length;
+          }
+
+          public Object nextElement() {
+            return keys[i++];
+          }
+        };
+      }
+
+      // Since Java 9, store() iterates over the entries instead of the keys
+      @Override
+      public Set<Entry<Object, Object>> entrySet() {
+        final Set<Entry<Object, Object>> entries =
+            new TreeSet<Entry<Object, Object>>(new Comparator<Entry<Object, Object>>() {
+              public int compare(final Entry<Object, Object> entry1,
+                  final Entry<Object, Object> entry2) {
+                return entry1.getKey().toString().compareTo(entry2.getKey().toString());
+              }
+            });
+        entries.addAll(super.entrySet());
+        return Collections.synchronizedSet(entries);
+      }
+    };
+  }
+
   private void storeProps(final Properties props, final OutputStream outputStream,
       final String comment) {
     Validate.notNull(outputStream, "OutputStream required");
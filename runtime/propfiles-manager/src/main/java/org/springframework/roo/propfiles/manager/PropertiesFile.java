@@ -0,0 +1,191 @@
+package org.springframework.roo.propfiles.manager;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * The lines of a properties file, which can be edited without changing the
+ * order of its entries or losing its comments. An entry that is changed keeps
+ * its place in the file, and a new one is added to the end.
+ * <p>
+ * Like {@link Properties#load(java.io.InputStream)}, this class treats the
+ * file as ISO 8859-1, and writes characters outside of it as Unicode escapes.
+ *
+ * @since 2.0
+ */
+class PropertiesFile {
+
+  static final String ENCODING = "ISO-8859-1";
+
+  /**
+   * A comment, a blank line, or a property over one or more lines
+   */
+  private static class Entry {
+
+    private final String key;
+    private final String value;
+    private final String text;
+
+    Entry(final String text) {
+      this.text = text;
+      final Properties properties = new Properties();
+      try {
+        properties.load(new StringReader(text));
+      } catch (final IOException e) {
+        throw new IllegalStateException(e);
+      }
+      if (properties.isEmpty()) {
+        key = null;
+        value = null;
+      } else {
+        key = properties.stringPropertyNames().iterator().next();
+        value = properties.getProperty(key);
+      }
+    }
+  }
+
+  private static boolean isContinued(final String line) {
+    final String trimmed = StringUtils.stripStart(line, null);
+    if (trimmed.startsWith("#") || trimmed.startsWith("!")) {
+      return false;
+    }
+    int backslashes = 0;
+    for (int i = line.length() - 1; i >= 0 && line.charAt(i) == '\\'; i--) {
+      backslashes++;
+    }
+    return backslashes % 2 == 1;
+  }
+
+  private final List<Entry> entries = new ArrayList<Entry>();
+
+  /**
+   * Constructor
+   *
+   * @param contents the current contents of the file, as ISO 8859-1 text
+   *            (empty for a new file)
+   */
+  PropertiesFile(final String contents) {
+    final BufferedReader reader = new BufferedReader(new StringReader(contents));
+    try {
+      StringBuilder logicalLine = null;
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (logicalLine == null) {
+          logicalLine = new StringBuilder(line);
+        } else {
+          logicalLine.append(IOUtils.LINE_SEPARATOR).append(line);
+        }
+        if (!isContinued(line)) {
+          entries.add(new Entry(logicalLine.toString()));
+          logicalLine = null;
+        }
+      }
+      if (logicalLine != null) {
+        entries.add(new Entry(logicalLine.toString()));
+      }
+    } catch (final IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Returns the properties in this file; like {@link Properties}, the last
+   * entry for a key wins
+   *
+   * @return a new, non-<code>null</code> instance
+   */
+  Properties getProperties() {
+    final Properties properties = new Properties();
+    for (final Entry entry : entries) {
+      if (entry.key != null) {
+        properties.setProperty(entry.key, entry.value);
+      }
+    }
+    return properties;
+  }
+
+  /**
+   * Returns the value of the given property; like {@link Properties}, the
+   * last entry for a key wins
+   *
+   * @param key the key to look up
+   * @return <code>null</code> if there's no such property
+   */
+  String getProperty(final String key) {
+    for (int i = entries.size() - 1; i >= 0; i--) {
+      if (key.equals(entries.get(i).key)) {
+        return entries.get(i).value;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Removes every entry for the given property
+   *
+   * @param key the key of the property to remove
+   * @return whether there was such a property
+   */
+  boolean removeProperty(final String key) {
+    boolean removed = false;
+    for (int i = entries.size() - 1; i >= 0; i--) {
+      if (key.equals(entries.get(i).key)) {
+        entries.remove(i);
+        removed = true;
+      }
+    }
+    return removed;
+  }
+
+  /**
+   * Sets the given property, replacing its last entry if it already has one
+   *
+   * @param key the key of the property
+   * @param value its new value
+   */
+  void setProperty(final String key, final String value) {
+    final Properties property = new Properties();
+    property.setProperty(key, value);
+    final ByteArrayOutputStream stored = new ByteArrayOutputStream();
+    String text;
+    try {
+      property.store(stored, null);
+      text = stored.toString(ENCODING);
+    } catch (final IOException e) {
+      throw new IllegalStateException(e);
+    }
+    // Drop the date comment and the trailing line separator
+    text = StringUtils.chomp(StringUtils.substringAfter(text, "\n"));
+
+    final Entry entry = new Entry(text);
+    for (int i = entries.size() - 1; i >= 0; i--) {
+      if (key.equals(entries.get(i).key)) {
+        entries.set(i, entry);
+        return;
+      }
+    }
+    entries.add(entry);
+  }
+
+  /**
+   * Returns the contents of this file
+   *
+   * @return ISO 8859-1 text ending with a line separator, unless empty
+   */
+  @Override
+  public String toString() {
+    final StringBuilder contents = new StringBuilder();
+    for (final Entry entry : entries) {
+      contents.append(entry.text).append(IOUtils.LINE_SEPARATOR);
+    }
+    return contents.toString();
+  }
+}
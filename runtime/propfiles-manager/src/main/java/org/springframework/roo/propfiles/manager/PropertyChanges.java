@@ -0,0 +1,194 @@
+package org.springframework.roo.propfiles.manager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+
+/**
+ * Changes to make to one properties file, in the order they were added. Pass
+ * it to
+ * {@link PropFilesManagerService#applyChanges(org.springframework.roo.project.LogicalPath, String, PropertyChanges, boolean, boolean)}
+ * to apply them all with a single read and a single write of the file.
+ *
+ * @since 2.0
+ */
+public class PropertyChanges {
+
+  /**
+   * A single change to a property
+   */
+  static class Change {
+
+    private final boolean ifNotExists;
+    private final String key;
+    private final String value;
+
+    private Change(final String key, final String value, final boolean ifNotExists) {
+      this.ifNotExists = ifNotExists;
+      this.key = key;
+      this.value = value;
+    }
+
+    /**
+     * @return whether an existing value is to be left as it is
+     */
+    boolean isIfNotExists() {
+      return ifNotExists;
+    }
+
+    String getKey() {
+      return key;
+    }
+
+    /**
+     * @return <code>null</code> if the property is to be removed
+     */
+    String getValue() {
+      return value;
+    }
+  }
+
+  private static String getKey(final String prefix, final String key) {
+    Validate.notNull(prefix, "Prefix could be blank but not null");
+    Validate.notBlank(key, "Key required");
+    if (StringUtils.isNotBlank(prefix)) {
+      return prefix.concat(".").concat(key);
+    }
+    return key;
+  }
+
+  private final List<Change> changes = new ArrayList<Change>();
+
+  /**
+   * Adds the given properties unless they already exist with another value
+   *
+   * @param prefix the string to be used as prefix of every property (can be
+   *            blank but not <code>null</code>)
+   * @param properties the properties to add (required)
+   * @return this instance
+   */
+  public PropertyChanges addIfNotExists(final String prefix, final Map<String, String> properties) {
+    Validate.notNull(properties, "Property map required");
+    for (final Entry<String, String> property : properties.entrySet()) {
+      addIfNotExists(prefix, property.getKey(), property.getValue());
+    }
+    return this;
+  }
+
+  /**
+   * Adds the given property unless it already exists with another value
+   *
+   * @param key the property key (required)
+   * @param value the property value (required)
+   * @return this instance
+   */
+  public PropertyChanges addIfNotExists(final String key, final String value) {
+    return addIfNotExists("", key, value);
+  }
+
+  /**
+   * Adds the given property unless it already exists with another value
+   *
+   * @param prefix the string to be used as prefix of the key (can be blank
+   *            but not <code>null</code>)
+   * @param key the property key (required)
+   * @param value the property value (required)
+   * @return this instance
+   */
+  public PropertyChanges addIfNotExists(final String prefix, final String key, final String value) {
+    Validate.notNull(value, "Value required");
+    changes.add(new Change(getKey(prefix, key), value, true));
+    return this;
+  }
+
+  /**
+   * Sets the given properties; changing the value of one that already exists
+   * requires the changes to be applied with <code>force</code>
+   *
+   * @param prefix the string to be used as prefix of every property (can be
+   *            blank but not <code>null</code>)
+   * @param properties the properties to set (required)
+   * @return this instance
+   */
+  public PropertyChanges change(final String prefix, final Map<String, String> properties) {
+    Validate.notNull(properties, "Property map required");
+    for (final Entry<String, String> property : properties.entrySet()) {
+      change(prefix, property.getKey(), property.getValue());
+    }
+    return this;
+  }
+
+  /**
+   * Sets the given property; changing the value of one that already exists
+   * requires the changes to be applied with <code>force</code>
+   *
+   * @param key the property key (required)
+   * @param value the property value (required)
+   * @return this instance
+   */
+  public PropertyChanges change(final String key, final String value) {
+    return change("", key, value);
+  }
+
+  /**
+   * Sets the given property; changing the value of one that already exists
+   * requires the changes to be applied with <code>force</code>
+   *
+   * @param prefix the string to be used as prefix of the key (can be blank
+   *            but not <code>null</code>)
+   * @param key the property key (required)
+   * @param value the property value (required)
+   * @return this instance
+   */
+  public PropertyChanges change(final String prefix, final String key, final String value) {
+    Validate.notNull(value, "Value required");
+    changes.add(new Change(getKey(prefix, key), value, false));
+    return this;
+  }
+
+  /**
+   * Returns the changes added so far
+   *
+   * @return a non-<code>null</code> list in the order they were added
+   */
+  List<Change> getChanges() {
+    return Collections.unmodifiableList(changes);
+  }
+
+  /**
+   * Indicates whether any changes have been added
+   *
+   * @return <code>true</code> if there's nothing to apply
+   */
+  public boolean isEmpty() {
+    return changes.isEmpty();
+  }
+
+  /**
+   * Removes the given property if it exists
+   *
+   * @param key the property key (required)
+   * @return this instance
+   */
+  public PropertyChanges remove(final String key) {
+    return remove("", key);
+  }
+
+  /**
+   * Removes the given property if it exists
+   *
+   * @param prefix the string to be used as prefix of the key (can be blank
+   *            but not <code>null</code>)
+   * @param key the property key (required)
+   * @return this instance
+   */
+  public PropertyChanges remove(final String prefix, final String key) {
+    changes.add(new Change(getKey(prefix, key), null, false));
+    return this;
+  }
+}
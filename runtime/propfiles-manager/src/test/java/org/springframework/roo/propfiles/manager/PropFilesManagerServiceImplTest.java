@@ -0,0 +1,162 @@
+package org.springframework.roo.propfiles.manager;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Field;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.roo.process.manager.FileManager;
+import org.springframework.roo.process.manager.MutableFile;
+import org.springframework.roo.project.LogicalPath;
+import org.springframework.roo.project.Path;
+import org.springframework.roo.project.PathResolver;
+import org.springframework.roo.project.ProjectOperations;
+
+/**
+ * Unit test of applying {@link PropertyChanges} with
+ * {@link PropFilesManagerServiceImpl}
+ *
+ * @since 2.0
+ */
+public class PropFilesManagerServiceImplTest {
+
+  private static final String FILE_NAME = "application.properties";
+  private static final String FILE_PATH = "/project/src/main/resources/" + FILE_NAME;
+  private static final LogicalPath LOGICAL_PATH = LogicalPath.getInstance(Path.SRC_MAIN_RESOURCES,
+      "");
+
+  private static void inject(final Object target, final String fieldName, final Object value)
+      throws Exception {
+    final Field field = PropFilesManagerServiceImpl.class.getDeclaredField(fieldName);
+    field.setAccessible(true);
+    field.set(target, value);
+  }
+
+  private static String lines(final String... lines) {
+    return StringUtils.join(lines, IOUtils.LINE_SEPARATOR) + IOUtils.LINE_SEPARATOR;
+  }
+
+  private MutableFile mutableFile;
+  private PropFilesManagerServiceImpl propFilesManager;
+  private ByteArrayOutputStream written;
+
+  /**
+   * Applies the given changes to a file containing "# Database" and
+   * "url=old"
+   */
+  private void apply(final PropertyChanges changes, final boolean sorted, final boolean force)
+      throws Exception {
+    when(mutableFile.getInputStream()).thenReturn(
+        new ByteArrayInputStream(lines("# Database", "url=old").getBytes(PropertiesFile.ENCODING)));
+    propFilesManager.applyChanges(LOGICAL_PATH, FILE_NAME, changes, sorted, force);
+  }
+
+  private String getWritten() throws Exception {
+    return written.toString(PropertiesFile.ENCODING);
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    final PathResolver pathResolver = mock(PathResolver.class);
+    when(pathResolver.getIdentifier(LOGICAL_PATH, FILE_NAME)).thenReturn(FILE_PATH);
+    final ProjectOperations projectOperations = mock(ProjectOperations.class);
+    when(projectOperations.getPathResolver()).thenReturn(pathResolver);
+
+    written = new ByteArrayOutputStream();
+    mutableFile = mock(MutableFile.class);
+    when(mutableFile.getOutputStream()).thenReturn(written);
+    final FileManager fileManager = mock(FileManager.class);
+    when(fileManager.exists(FILE_PATH)).thenReturn(true);
+    when(fileManager.updateFile(FILE_PATH)).thenReturn(mutableFile);
+
+    propFilesManager = new PropFilesManagerServiceImpl();
+    inject(propFilesManager, "fileManager", fileManager);
+    inject(propFilesManager, "projectOperations", projectOperations);
+  }
+
+  @Test
+  public void testAddIfNotExistsAddsNewProperty() throws Exception {
+    // Invoke
+    apply(new PropertyChanges().addIfNotExists("user", "sa"), false, false);
+
+    // Check
+    assertEquals(lines("# Database", "url=old", "user=sa"), getWritten());
+  }
+
+  @Test
+  public void testAddIfNotExistsKeepsExistingValueEvenIfForced() throws Exception {
+    // Invoke
+    apply(new PropertyChanges().addIfNotExists("url", "new"), false, true);
+
+    // Check
+    verify(mutableFile, never()).getOutputStream();
+  }
+
+  @Test
+  public void testChangeOfExistingValueRequiresForce() throws Exception {
+    // Invoke
+    try {
+      apply(new PropertyChanges().addIfNotExists("user", "sa").change("url", "new"), false, false);
+      fail("Expected a RuntimeException");
+    } catch (final RuntimeException expected) {
+      // Check
+      assertEquals("WARNING: Property 'url = old' already exists. "
+          + "Use --force parameter to overwrite it.", expected.getMessage());
+    }
+    verify(mutableFile, never()).getOutputStream();
+  }
+
+  @Test
+  public void testChangeToSameValueWritesNothing() throws Exception {
+    // Invoke
+    apply(new PropertyChanges().change("url", "old"), false, false);
+
+    // Check
+    verify(mutableFile, never()).getOutputStream();
+  }
+
+  @Test
+  public void testForcedChangeOverwritesInPlace() throws Exception {
+    // Invoke
+    apply(new PropertyChanges().change("url", "new").addIfNotExists("user", "sa"), false, true);
+
+    // Check
+    assertEquals(lines("# Database", "url=new", "user=sa"), getWritten());
+  }
+
+  @Test
+  public void testRemoveThenAddIfNotExistsReplacesValue() throws Exception {
+    // Invoke
+    apply(new PropertyChanges().remove("url").addIfNotExists("url", "new"), false, false);
+
+    // Check
+    assertEquals(lines("# Database", "url=new"), getWritten());
+  }
+
+  @Test
+  public void testSortedChangesAreWrittenSortedByKey() throws Exception {
+    // Invoke
+    apply(new PropertyChanges().addIfNotExists("user", "sa").addIfNotExists("password", ""),
+        true, false);
+
+    // Check
+    final String[] lines = StringUtils.split(getWritten(), IOUtils.LINE_SEPARATOR);
+    // The comment and the date, followed by the properties
+    assertEquals(5, lines.length);
+    assertTrue(lines[0].startsWith("#Updated at "));
+    assertEquals("password=", lines[2]);
+    assertEquals("url=old", lines[3]);
+    assertEquals("user=sa", lines[4]);
+  }
+}
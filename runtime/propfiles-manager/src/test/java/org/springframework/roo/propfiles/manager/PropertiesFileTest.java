@@ -0,0 +1,110 @@
+package org.springframework.roo.propfiles.manager;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Properties;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Test;
+
+/**
+ * Unit test of {@link PropertiesFile}
+ *
+ * @since 2.0
+ */
+public class PropertiesFileTest {
+
+  private static final String[] LINES = {"# Database", "! Set by the JPA setup",
+      "spring.datasource.url=jdbc:h2:mem:test", "", "spring.datasource.driver-class-name = \\",
+      "    org.h2.Driver", "# A comment ending with a backslash \\",
+      "greeting=Gr\\u00FC\\u00DF Gott \\u2603", "path=C:\\\\roo\\\\"};
+
+  private static String lines(final String... lines) {
+    return StringUtils.join(lines, IOUtils.LINE_SEPARATOR) + IOUtils.LINE_SEPARATOR;
+  }
+
+  @Test
+  public void testGetPropertyOfLastEntry() {
+    // Set up
+    final PropertiesFile file = new PropertiesFile(lines("a=1", "b=2", "a=3"));
+
+    // Invoke
+    final String value = file.getProperty("a");
+
+    // Check
+    assertEquals("3", value);
+    assertNull(file.getProperty("c"));
+  }
+
+  @Test
+  public void testGetPropertyUnescapesValues() {
+    // Set up
+    final PropertiesFile file = new PropertiesFile(lines(LINES));
+
+    // Invoke
+    final Properties properties = file.getProperties();
+
+    // Check
+    assertEquals(4, properties.size());
+    assertEquals("org.h2.Driver", file.getProperty("spring.datasource.driver-class-name"));
+    assertEquals("Gr\u00FC\u00DF Gott \u2603", file.getProperty("greeting"));
+    assertEquals("C:\\roo\\", properties.getProperty("path"));
+  }
+
+  @Test
+  public void testRemoveAndAddAgainMovesPropertyToTheEnd() {
+    // Set up
+    final PropertiesFile file = new PropertiesFile(lines("# First", "a=1", "b=2", "a=3"));
+
+    // Invoke
+    assertTrue(file.removeProperty("a"));
+    file.setProperty("a", "4");
+
+    // Check
+    assertEquals(lines("# First", "b=2", "a=4"), file.toString());
+    assertFalse(file.removeProperty("c"));
+  }
+
+  @Test
+  public void testRoundTripKeepsEveryLine() {
+    // Set up
+    final String contents = lines(LINES);
+
+    // Invoke
+    final PropertiesFile file = new PropertiesFile(contents);
+
+    // Check
+    assertEquals(contents, file.toString());
+  }
+
+  @Test
+  public void testSetPropertyEscapesValueInPlace() {
+    // Set up
+    final PropertiesFile file = new PropertiesFile(lines("# Greeting", "greeting=Hello", "a=1"));
+
+    // Invoke
+    file.setProperty("greeting", "Gr\u00FC\u00DF Gott \u2603");
+
+    // Check
+    assertEquals(lines("# Greeting", "greeting=Gr\\u00FC\\u00DF Gott \\u2603", "a=1"),
+        file.toString());
+    assertEquals("Gr\u00FC\u00DF Gott \u2603", file.getProperty("greeting"));
+  }
+
+  @Test
+  public void testSetPropertyOfNewFile() {
+    // Set up
+    final PropertiesFile file = new PropertiesFile("");
+
+    // Invoke
+    file.setProperty("logging.pattern.level", "%5p - QP:%X{querydsl.parameters} -");
+
+    // Check
+    assertEquals(lines("logging.pattern.level=%5p - QP\\:%X{querydsl.parameters} -"),
+        file.toString());
+  }
+}
@@ -0,0 +1,91 @@
+package org.springframework.roo.propfiles.manager;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.springframework.roo.propfiles.manager.PropertyChanges.Change;
+
+/**
+ * Unit test of {@link PropertyChanges}
+ *
+ * @since 2.0
+ */
+public class PropertyChangesTest {
+
+  private static void assertChange(final Change change, final String key, final String value,
+      final boolean ifNotExists) {
+    assertEquals(key, change.getKey());
+    assertEquals(value, change.getValue());
+    assertEquals(ifNotExists, change.isIfNotExists());
+  }
+
+  @Test
+  public void testChangesAreKeptInOrder() {
+    // Set up
+    final Map<String, String> properties = new LinkedHashMap<String, String>();
+    properties.put("url", "jdbc:h2:mem:test");
+    properties.put("username", "sa");
+
+    // Invoke
+    final PropertyChanges changes =
+        new PropertyChanges().change("spring.jpa.show-sql", "true")
+            .addIfNotExists("spring.datasource", properties).remove("spring.datasource", "jndi-name")
+            .addIfNotExists("logging.level.org.hibernate.stat", "DEBUG");
+
+    // Check
+    final List<Change> list = changes.getChanges();
+    assertEquals(5, list.size());
+    assertChange(list.get(0), "spring.jpa.show-sql", "true", false);
+    assertChange(list.get(1), "spring.datasource.url", "jdbc:h2:mem:test", true);
+    assertChange(list.get(2), "spring.datasource.username", "sa", true);
+    assertChange(list.get(3), "spring.datasource.jndi-name", null, false);
+    assertChange(list.get(4), "logging.level.org.hibernate.stat", "DEBUG", true);
+    assertFalse(changes.isEmpty());
+  }
+
+  @Test
+  public void testGetChangesIsUnmodifiable() {
+    // Set up
+    final PropertyChanges changes = new PropertyChanges().remove("a");
+
+    // Invoke
+    try {
+      changes.getChanges().clear();
+      fail("Expected an UnsupportedOperationException");
+    } catch (final UnsupportedOperationException expected) {
+      // Check
+      assertEquals(1, changes.getChanges().size());
+    }
+  }
+
+  @Test
+  public void testNewInstanceIsEmpty() {
+    assertTrue(new PropertyChanges().isEmpty());
+  }
+
+  @Test
+  public void testRemoveWithBlankPrefix() {
+    // Invoke
+    final PropertyChanges changes = new PropertyChanges().remove(" ", "a");
+
+    // Check
+    assertChange(changes.getChanges().get(0), "a", null, false);
+  }
+
+  @Test
+  public void testValueIsRequired() {
+    try {
+      new PropertyChanges().change("a", (String) null);
+      fail("Expected a NullPointerException");
+    } catch (final NullPointerException expected) {
+      assertEquals("Value required", expected.getMessage());
+    }
+  }
+}
@@ -0,0 +1,423 @@
+package org.springframework.roo.shell.jline;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.ErrorManager;
+import java.util.logging.Level;
+
+import jline.ANSIBuffer;
+import jline.ANSIBuffer.ANSICodes;
+import jline.ConsoleReader;
+
+import org.apache.commons.lang3.Validate;
+import org.springframework.roo.shell.ShellPromptAccessor;
+
+/**
+ * Renders log messages and flash messages to a JLine {@link ConsoleReader}
+ * on a dedicated thread, so that threads logging heavily while generating a
+ * project don't wait for the terminal.
+ * <p>
+ * Log messages are queued in a {@link RingBuffer} and printed in batches,
+ * redrawing the user's line once per batch rather than once per message.
+ * They are never dropped: should the buffer fill up, producers wait for the
+ * render thread to catch up, or render the queued messages themselves if
+ * they are already rendering. Flash messages are coalesced per slot, a newer
+ * message superseding any older one not yet rendered, so producers never
+ * wait for them.
+ * <p>
+ * Until {@link #start()} is called, and once {@link #stop()} has been,
+ * everything is rendered synchronously on the calling thread.
+ *
+ * @since 2.0
+ */
+class ConsoleRenderer implements Runnable {
+
+  private static class FlashInfo {
+    Level flashLevel;
+    String flashMessage;
+    long flashMessageUntil;
+    int rowNumber;
+  }
+
+  /**
+   * A flash message that hasn't been rendered yet.
+   */
+  private static class FlashUpdate {
+    private final Level level;
+    private final String message;
+    private final long time;
+
+    FlashUpdate(final Level level, final String message) {
+      this.level = level;
+      this.message = message;
+      time = System.currentTimeMillis();
+    }
+  }
+
+  /**
+   * A log message that hasn't been rendered yet.
+   */
+  private static class LogLine {
+    private final boolean redraw;
+    private final String text;
+
+    LogLine(final String text, final boolean redraw) {
+      this.redraw = redraw;
+      this.text = text;
+    }
+  }
+
+  private static final boolean APPLE_TERMINAL = Boolean.getBoolean("is.apple.terminal");
+  private static final char ESCAPE = 27;
+
+  // How long a cleared flash message remains readable
+  private static final long FLASH_CLEAR_DELAY_MILLIS = 1500;
+  // How often flash messages are redrawn, in case the terminal scrolled
+  private static final long FLASH_REFRESH_MILLIS = 200;
+  // At most 25 frames per second
+  private static final long FRAME_NANOS = TimeUnit.MILLISECONDS.toNanos(40);
+  private static final int LOG_CAPACITY = 1024;
+  private static final long LOG_FULL_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  private final ErrorManager errorManager = new ErrorManager();
+  /** key: slot name, value: flashInfo instance; guarded by renderLock */
+  private final Map<String, FlashInfo> flashInfoMap = new HashMap<String, FlashInfo>();
+  /** key: slot name, value: the latest flash message not rendered yet */
+  private final ConcurrentMap<String, FlashUpdate> flashUpdates =
+      new ConcurrentHashMap<String, FlashUpdate>();
+  private long lastFlashRefresh;
+  private final RingBuffer<LogLine> logLines = new RingBuffer<LogLine>(LOG_CAPACITY);
+  private final ConsoleReader reader;
+  private final Object renderLock = new Object();
+  private volatile Thread renderThread;
+  /** key: row number, value: eraseLineFromPosition; guarded by renderLock */
+  private final Map<Integer, Integer> rowErasureMap = new HashMap<Integer, Integer>();
+  private final ShellPromptAccessor shellPromptAccessor;
+  private volatile boolean stopped;
+
+  /**
+   * Constructor
+   *
+   * @param reader the console to render to (required)
+   * @param shellPromptAccessor provides the prompt to restore after
+   *            printing log messages (required)
+   */
+  ConsoleRenderer(final ConsoleReader reader, final ShellPromptAccessor shellPromptAccessor) {
+    Validate.notNull(reader, "Console reader required");
+    Validate.notNull(shellPromptAccessor, "Shell prompt accessor required");
+    this.reader = reader;
+    this.shellPromptAccessor = shellPromptAccessor;
+  }
+
+  /**
+   * Displays the given flash message in the given slot, or clears the slot
+   * after a short delay if the message is empty. Never blocks.
+   *
+   * @param level the message's level (required)
+   * @param message the message (required; empty to clear the slot)
+   * @param slot the slot's name (required)
+   */
+  void flash(final Level level, final String message, final String slot) {
+    flashUpdates.put(slot, new FlashUpdate(level, message));
+    if (renderThread == null) {
+      synchronized (renderLock) {
+        applyFlashUpdates();
+      }
+    }
+  }
+
+  /**
+   * Renders any queued log messages on the calling thread, e.g. before
+   * showing the prompt, so that they appear above it.
+   */
+  void flush() {
+    synchronized (renderLock) {
+      renderLogLines();
+    }
+  }
+
+  /**
+   * Prints the given log message above the line the user is typing.
+   *
+   * @param text the formatted message (required)
+   * @param redraw whether to redraw the user's line afterwards
+   */
+  void log(final String text, final boolean redraw) {
+    final LogLine logLine = new LogLine(text, redraw);
+    boolean queued = false;
+    while (renderThread != null && !(queued = logLines.offer(logLine))) {
+      if (isRendering()) {
+        // Full, and the render thread can't catch up until this thread
+        // lets it; make room by rendering the queued messages here
+        synchronized (renderLock) {
+          renderLogLines();
+        }
+      } else {
+        // Full; wait for the render thread to catch up rather than losing
+        // messages
+        LockSupport.parkNanos(this, LOG_FULL_WAIT_NANOS);
+      }
+    }
+    if (renderThread == null) {
+      // Not started, or stopped meanwhile
+      synchronized (renderLock) {
+        renderLogLines();
+        if (!queued) {
+          printLogLines(logLine.text, logLine.redraw);
+        }
+      }
+    }
+  }
+
+  public void run() {
+    while (!stopped) {
+      final long frameStart = System.nanoTime();
+      synchronized (renderLock) {
+        try {
+          renderLogLines();
+          applyFlashUpdates();
+          refreshFlashes();
+        } catch (final RuntimeException e) {
+          errorManager.error("Could not render console output", e, ErrorManager.WRITE_FAILURE);
+        }
+      }
+      final long frameEnd = frameStart + FRAME_NANOS;
+      for (long now = System.nanoTime(); !stopped && now < frameEnd; now = System.nanoTime()) {
+        LockSupport.parkNanos(this, frameEnd - now);
+      }
+    }
+  }
+
+  /**
+   * Starts rendering on a dedicated thread.
+   */
+  void start() {
+    synchronized (renderLock) {
+      if (renderThread != null || stopped) {
+        return;
+      }
+      final Thread thread = new Thread(this, "Spring Roo JLine Console Renderer");
+      thread.setDaemon(true);
+      renderThread = thread;
+      thread.start();
+    }
+  }
+
+  /**
+   * Stops the render thread, rendering any queued log messages first. Flash
+   * messages are no longer displayed once stopped (ROO-1599).
+   */
+  void stop() {
+    stopped = true;
+    final Thread thread = renderThread;
+    renderThread = null;
+    if (thread != null) {
+      LockSupport.unpark(thread);
+    }
+    flush();
+  }
+
+  private void applyFlashUpdates() {
+    for (final Iterator<String> slots = flashUpdates.keySet().iterator(); slots.hasNext();) {
+      final String slot = slots.next();
+      final FlashUpdate update = flashUpdates.remove(slot);
+      if (update == null) {
+        continue;
+      }
+      FlashInfo flashInfo = flashInfoMap.get(slot);
+
+      if ("".equals(update.message)) {
+        // Request to clear the message, but give the user some time to
+        // read it first
+        if (flashInfo != null) {
+          flashInfo.flashMessageUntil = update.time + FLASH_CLEAR_DELAY_MILLIS;
+        }
+        // Otherwise we didn't have a record of displaying it in the
+        // first place
+        continue;
+      }
+
+      // Display this message displayed until further notice
+      if (flashInfo == null) {
+        // Find a row for this new slot; we basically take the first
+        // line number we discover
+        flashInfo = new FlashInfo();
+        flashInfo.rowNumber = Integer.MAX_VALUE;
+        outer: for (int i = 1; i < Integer.MAX_VALUE; i++) {
+          for (final FlashInfo existingFlashInfo : flashInfoMap.values()) {
+            if (existingFlashInfo.rowNumber == i) {
+              // Veto, let's try the new candidate row number
+              continue outer;
+            }
+          }
+          // If we got to here, nobody owns this row number, so use it
+          flashInfo.rowNumber = i;
+          break outer;
+        }
+
+        // Store it
+        flashInfoMap.put(slot, flashInfo);
+      }
+      // Populate the instance with the latest data
+      flashInfo.flashMessageUntil = Long.MAX_VALUE;
+      flashInfo.flashLevel = update.level;
+      flashInfo.flashMessage = update.message;
+
+      // Display right now
+      doAnsiFlash(flashInfo.rowNumber, flashInfo.flashLevel, flashInfo.flashMessage);
+    }
+  }
+
+  private void doAnsiFlash(final int row, final Level level, final String message) {
+    final ANSIBuffer buff = JLineLogHandler.getANSIBuffer();
+    if (APPLE_TERMINAL) {
+      buff.append(ESCAPE + "7");
+    } else {
+      buff.append(ANSICodes.save());
+    }
+
+    // Figure out the longest line we're presently displaying (or were) and
+    // erase the line from that position
+    int mostFurtherLeftColNumber = Integer.MAX_VALUE;
+    for (final Integer candidate : rowErasureMap.values()) {
+      if (candidate < mostFurtherLeftColNumber) {
+        mostFurtherLeftColNumber = candidate;
+      }
+    }
+
+    if (mostFurtherLeftColNumber == Integer.MAX_VALUE) {
+      // There is nothing to erase
+    } else {
+      buff.append(ANSICodes.gotoxy(row, mostFurtherLeftColNumber));
+      // Clear what was present on the line
+      buff.append(ANSICodes.clreol());
+    }
+
+    if ("".equals(message)) {
+      // They want the line blank; we've already achieved this if needed
+      // via the erasing above
+      // Just need to record we no longer care about this line the next
+      // time doAnsiFlash is invoked
+      rowErasureMap.remove(row);
+    } else {
+      if (stopped) {
+        return; // ROO-1599
+      }
+      // They want some message displayed
+      int startFrom = reader.getTermwidth() - message.length() + 1;
+      if (startFrom < 1) {
+        startFrom = 1;
+      }
+      buff.append(ANSICodes.gotoxy(row, startFrom));
+      buff.reverse(message);
+      // Record we want to erase from this positioning next time (so we
+      // clean up after ourselves)
+      rowErasureMap.put(row, startFrom);
+    }
+    if (APPLE_TERMINAL) {
+      buff.append(ESCAPE + "8");
+    } else {
+      buff.append(ANSICodes.restore());
+    }
+
+    final String stg = buff.toString();
+    try {
+      reader.printString(stg);
+      reader.flushConsole();
+    } catch (final IOException ignored) {
+    }
+  }
+
+  /**
+   * Indicates whether the calling thread is the render thread or holds the
+   * render lock, i.e. whether waiting for log messages to be rendered would
+   * mean waiting for itself.
+   */
+  private boolean isRendering() {
+    return Thread.holdsLock(renderLock) || Thread.currentThread() == renderThread;
+  }
+
+  private void printLogLines(final String text, final boolean redraw) {
+    try {
+      final StringBuffer buffer = reader.getCursorBuffer().getBuffer();
+      final int cursor = reader.getCursorBuffer().cursor;
+      if (reader.getCursorBuffer().length() > 0) {
+        // The user has semi-typed something, so put a new line in so
+        // the debug message is separated
+        reader.printNewline();
+
+        // We need to cancel whatever they typed (it's reset later on),
+        // so the line appears empty
+        reader.getCursorBuffer().setBuffer(new StringBuffer());
+        reader.getCursorBuffer().cursor = 0;
+      }
+
+      // This ensures nothing is ever displayed when redrawing the line
+      reader.setDefaultPrompt("");
+      reader.redrawLine();
+
+      // Now restore the line formatting settings back to their original
+      reader.setDefaultPrompt(shellPromptAccessor.getShellPrompt());
+
+      reader.getCursorBuffer().setBuffer(buffer);
+      reader.getCursorBuffer().cursor = cursor;
+
+      reader.printString(text);
+
+      if (redraw) {
+        reader.redrawLine();
+      }
+
+      reader.flushConsole();
+    } catch (final Exception e) {
+      errorManager.error("Could not publish log message", e, ErrorManager.WRITE_FAILURE);
+    }
+  }
+
+  private void refreshFlashes() {
+    final long now = System.currentTimeMillis();
+    if (now - lastFlashRefresh < FLASH_REFRESH_MILLIS) {
+      return;
+    }
+    lastFlashRefresh = now;
+    for (final Iterator<Entry<String, FlashInfo>> entries =
+        flashInfoMap.entrySet().iterator(); entries.hasNext();) {
+      final FlashInfo flashInfo = entries.next().getValue();
+
+      if (flashInfo.flashMessageUntil < now) {
+        // Message has expired, so clear it
+        entries.remove();
+        doAnsiFlash(flashInfo.rowNumber, Level.ALL, "");
+      } else {
+        // The expiration time for this message has not been reached, so
+        // preserve it
+        doAnsiFlash(flashInfo.rowNumber, flashInfo.flashLevel, flashInfo.flashMessage);
+      }
+    }
+  }
+
+  /**
+   * Prints the queued log messages as one batch.
+   */
+  private void renderLogLines() {
+    LogLine logLine = logLines.poll();
+    if (logLine == null) {
+      return;
+    }
+    final StringBuilder text = new StringBuilder();
+    boolean redraw = false;
+    do {
+      text.append(logLine.text);
+      redraw |= logLine.redraw;
+      logLine = logLines.poll();
+    } while (logLine != null);
+    printLogLines(text.toString(), redraw);
+  }
+}
@@ -91,15 +91,29 @@ public class JLineLogHandler extends Handler {
   }
 
   private boolean ansiSupported;
-  private ConsoleReader reader;
-  private ShellPromptAccessor shellPromptAccessor;
+  private final ConsoleRenderer renderer;
   private String userInterfaceThreadName;
 
   public JLineLogHandler(final ConsoleReader reader, final ShellPromptAccessor shellPromptAccessor) {
+    this(reader, shellPromptAccessor, new ConsoleRenderer(reader, shellPromptAccessor));
+  }
+
+  /**
+   * Constructor for a handler whose messages are printed by the given
+   * renderer, i.e. on its own thread once it's started.
+   * 
+   * @param reader the console to print to (required)
+   * @param shellPromptAccessor provides the prompt to restore after each
+   *          message (required)
+   * @param renderer prints the messages to the given console (required)
+   * @since 2.0
+   */
+  JLineLogHandler(final ConsoleReader reader, final ShellPromptAccessor shellPromptAccessor,
+      final ConsoleRenderer renderer) {
     Validate.notNull(reader, "Console reader required");
     Validate.notNull(shellPromptAccessor, "Shell prompt accessor required");
-    this.reader = reader;
-    this.shellPromptAccessor = shellPromptAccessor;
+    Validate.notNull(renderer, "Console renderer required");
+    this.renderer = renderer;
     userInterfaceThreadName = Thread.currentThread().getName();
     ansiSupported = reader.getTerminal().isANSISupported() && AnsiEscapeCode.isAnsiEnabled();
 
@@ -142,7 +156,9 @@ public class JLineLogHandler extends Handler {
   public void close() throws SecurityException {}
 
   @Override
-  public void flush() {}
+  public void flush() {
+    renderer.flush();
+  }
 
   @Override
   public void publish(final LogRecord record) {
@@ -155,37 +171,8 @@ public class JLineLogHandler extends Handler {
       }
       lastMessage = toDisplay;
 
-      final StringBuffer buffer = reader.getCursorBuffer().getBuffer();
-      final int cursor = reader.getCursorBuffer().cursor;
-      if (reader.getCursorBuffer().length() > 0) {
-        // The user has semi-typed something, so put a new line in so
-        // the debug message is separated
-        reader.printNewline();
-
-        // We need to cancel whatever they typed (it's reset later on),
-        // so the line appears empty
-        reader.getCursorBuffer().setBuffer(new StringBuffer());
-        reader.getCursorBuffer().cursor = 0;
-      }
-
-      // This ensures nothing is ever displayed when redrawing the line
-      reader.setDefaultPrompt("");
-      reader.redrawLine();
-
-      // Now restore the line formatting settings back to their original
-      reader.setDefaultPrompt(shellPromptAccessor.getShellPrompt());
-
-      reader.getCursorBuffer().setBuffer(buffer);
-      reader.getCursorBuffer().cursor = cursor;
-
-      reader.printString(toDisplay);
-
-      final Boolean prohibitingRedraw = redrawProhibit.get();
-      if (prohibitingRedraw == null) {
-        reader.redrawLine();
-      }
-
-      reader.flushConsole();
+      // The decision to redraw belongs to the publishing thread
+      renderer.log(toDisplay, redrawProhibit.get() == null);
     } catch (final Exception e) {
       reportError("Could not publish log message", e, Level.SEVERE.intValue());
     }
@@ -16,11 +16,7 @@ import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
 import java.util.logging.Handler;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -51,7 +47,6 @@ import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
 import jline.ANSIBuffer;
-import jline.ANSIBuffer.ANSICodes;
 import jline.ConsoleReader;
 import jline.WindowsTerminal;
 
@@ -72,17 +67,9 @@ import jline.WindowsTerminal;
  */
 public abstract class JLineShell extends AbstractShell implements CommandMarker, Shell, Runnable {
 
-  private static class FlashInfo {
-    Level flashLevel;
-    String flashMessage;
-    long flashMessageUntil;
-    int rowNumber;
-  }
-
   protected final static Logger LOGGER = HandlerUtils.getLogger(JLineShell.class);
 
   private static final String ANSI_CONSOLE_CLASSNAME = "org.fusesource.jansi.AnsiConsole";
-  private static final boolean APPLE_TERMINAL = Boolean.getBoolean("is.apple.terminal");
   private static final String BEL = "\007";
   private static final char ESCAPE = 27;
 
@@ -101,13 +88,8 @@ public abstract class JLineShell extends AbstractShell implements CommandMarker,
   private boolean developmentMode = false;
   private final DateFormat df = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
   private FileWriter fileLog;
-  /** key: slot name, value: flashInfo instance */
-  private final Map<String, FlashInfo> flashInfoMap = new HashMap<String, FlashInfo>();
   private ConsoleReader reader;
-  /** key: row number, value: eraseLineFromPosition */
-  private final Map<Integer, Integer> rowErasureMap = new HashMap<Integer, Integer>();
-
-  private boolean shutdownHookFired = false; // ROO-1599
+  private ConsoleRenderer renderer;
 
   protected ShellStatusListener statusListener; // ROO-836
 
@@ -122,6 +104,9 @@ public abstract class JLineShell extends AbstractShell implements CommandMarker,
     if (statusListener != null) {
       removeShellStatusListener(statusListener);
     }
+    if (renderer != null) {
+      renderer.stop();
+    }
   }
 
   private ConsoleReader createAnsiWindowsReader() throws Exception {
@@ -156,68 +141,6 @@ public abstract class JLineShell extends AbstractShell implements CommandMarker,
         ansiTerminal);
   }
 
-  // Externally synchronized via the two calling methods having a mutex on
-  // flashInfoMap
-  private void doAnsiFlash(final int row, final Level level, final String message) {
-    final ANSIBuffer buff = JLineLogHandler.getANSIBuffer();
-    if (APPLE_TERMINAL) {
-      buff.append(ESCAPE + "7");
-    } else {
-      buff.append(ANSICodes.save());
-    }
-
-    // Figure out the longest line we're presently displaying (or were) and
-    // erase the line from that position
-    int mostFurtherLeftColNumber = Integer.MAX_VALUE;
-    for (final Integer candidate : rowErasureMap.values()) {
-      if (candidate < mostFurtherLeftColNumber) {
-        mostFurtherLeftColNumber = candidate;
-      }
-    }
-
-    if (mostFurtherLeftColNumber == Integer.MAX_VALUE) {
-      // There is nothing to erase
-    } else {
-      buff.append(ANSICodes.gotoxy(row, mostFurtherLeftColNumber));
-      // Clear what was present on the line
-      buff.append(ANSICodes.clreol());
-    }
-
-    if ("".equals(message)) {
-      // They want the line blank; we've already achieved this if needed
-      // via the erasing above
-      // Just need to record we no longer care about this line the next
-      // time doAnsiFlash is invoked
-      rowErasureMap.remove(row);
-    } else {
-      if (shutdownHookFired) {
-        return; // ROO-1599
-      }
-      // They want some message displayed
-      int startFrom = reader.getTermwidth() - message.length() + 1;
-      if (startFrom < 1) {
-        startFrom = 1;
-      }
-      buff.append(ANSICodes.gotoxy(row, startFrom));
-      buff.reverse(message);
-      // Record we want to erase from this positioning next time (so we
-      // clean up after ourselves)
-      rowErasureMap.put(row, startFrom);
-    }
-    if (APPLE_TERMINAL) {
-      buff.append(ESCAPE + "8");
-    } else {
-      buff.append(ANSICodes.restore());
-    }
-
-    final String stg = buff.toString();
-    try {
-      reader.printString(stg);
-      reader.flushConsole();
-    } catch (final IOException ignored) {
-    }
-  }
-
   @Override
   public void flash(final Level level, final String message, final String slot) {
     Validate.notNull(level, "Level is required for a flash message");
@@ -247,90 +170,11 @@ public abstract class JLineShell extends AbstractShell implements CommandMarker,
       super.flash(level, message, slot);
       return;
     }
-    synchronized (flashInfoMap) {
-      FlashInfo flashInfo = flashInfoMap.get(slot);
-
-      if ("".equals(message)) {
-        // Request to clear the message, but give the user some time to
-        // read it first
-        if (flashInfo == null) {
-          // We didn't have a record of displaying it in the first
-          // place, so just quit
-          return;
-        }
-        flashInfo.flashMessageUntil = System.currentTimeMillis() + 1500;
-      } else {
-        // Display this message displayed until further notice
-        if (flashInfo == null) {
-          // Find a row for this new slot; we basically take the first
-          // line number we discover
-          flashInfo = new FlashInfo();
-          flashInfo.rowNumber = Integer.MAX_VALUE;
-          outer: for (int i = 1; i < Integer.MAX_VALUE; i++) {
-            for (final FlashInfo existingFlashInfo : flashInfoMap.values()) {
-              if (existingFlashInfo.rowNumber == i) {
-                // Veto, let's try the new candidate row number
-                continue outer;
-              }
-            }
-            // If we got to here, nobody owns this row number, so
-            // use it
-            flashInfo.rowNumber = i;
-            break outer;
-          }
-
-          // Store it
-          flashInfoMap.put(slot, flashInfo);
-        }
-        // Populate the instance with the latest data
-        flashInfo.flashMessageUntil = Long.MAX_VALUE;
-        flashInfo.flashLevel = level;
-        flashInfo.flashMessage = message;
-
-        // Display right now
-        doAnsiFlash(flashInfo.rowNumber, flashInfo.flashLevel, flashInfo.flashMessage);
-      }
-    }
-  }
-
-  private void flashMessageRenderer() {
-    if (!reader.getTerminal().isANSISupported()) {
+    if (renderer == null) {
+      // Not running yet
       return;
     }
-    // Setup a thread to ensure flash messages are displayed and cleared
-    // correctly
-    final Thread t = new Thread(new Runnable() {
-      public void run() {
-        while (!shellStatus.getStatus().equals(Status.SHUTTING_DOWN) && !shutdownHookFired) {
-          synchronized (flashInfoMap) {
-            final long now = System.currentTimeMillis();
-
-            final Set<String> toRemove = new HashSet<String>();
-            for (final String slot : flashInfoMap.keySet()) {
-              final FlashInfo flashInfo = flashInfoMap.get(slot);
-
-              if (flashInfo.flashMessageUntil < now) {
-                // Message has expired, so clear it
-                toRemove.add(slot);
-                doAnsiFlash(flashInfo.rowNumber, Level.ALL, "");
-              } else {
-                // The expiration time for this message has not
-                // been reached, so preserve it
-                doAnsiFlash(flashInfo.rowNumber, flashInfo.flashLevel, flashInfo.flashMessage);
-              }
-            }
-            for (final String slot : toRemove) {
-              flashInfoMap.remove(slot);
-            }
-          }
-          try {
-            Thread.sleep(200);
-          } catch (final InterruptedException ignore) {
-          }
-        }
-      }
-    }, "Spring Roo JLine Flash Message Manager");
-    t.start();
+    renderer.flash(level, message, slot);
   }
 
   /**
@@ -412,7 +256,7 @@ public abstract class JLineShell extends AbstractShell implements CommandMarker,
     setRooPrompt(null);
 
     try {
-      while (exitShellRequest == null && (line = reader.readLine()) != null) {
+      while (exitShellRequest == null && (line = readLine()) != null) {
         JLineLogHandler.resetMessageTracking();
         setShellStatus(Status.USER_INPUT);
 
@@ -429,6 +273,15 @@ public abstract class JLineShell extends AbstractShell implements CommandMarker,
     setShellStatus(Status.SHUTTING_DOWN);
   }
 
+  /**
+   * Reads a line from the console, once any pending log messages have been
+   * rendered above the prompt.
+   */
+  private String readLine() throws IOException {
+    renderer.flush();
+    return reader.readLine();
+  }
+
   private void removeHandlers(final Logger l) {
     final Handler[] handlers = l.getHandlers();
     if (handlers != null && handlers.length > 0) {
@@ -455,7 +308,8 @@ public abstract class JLineShell extends AbstractShell implements CommandMarker,
       throw new IllegalStateException("Cannot start console class", ioe);
     }
 
-    final JLineLogHandler handler = new JLineLogHandler(reader, this);
+    renderer = new ConsoleRenderer(reader, this);
+    final JLineLogHandler handler = new JLineLogHandler(reader, this, renderer);
     JLineLogHandler.prohibitRedraw(); // Affects this thread only
     final Logger mainLogger = Logger.getLogger("");
     removeHandlers(mainLogger);
@@ -486,7 +340,8 @@ public abstract class JLineShell extends AbstractShell implements CommandMarker,
     } catch (final IOException ignored) {
     }
 
-    flashMessageRenderer();
+    // Log and flash messages are rendered on their own thread from now on
+    renderer.start();
 
     logger.info(version(null));
 
@@ -505,7 +360,7 @@ public abstract class JLineShell extends AbstractShell implements CommandMarker,
     // Monitor CTRL+C initiated shutdowns (ROO-1599)
     Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
       public void run() {
-        shutdownHookFired = true;
+        renderer.stop();
         // We don't need to closeShell(), as the shutdown hook in
         // o.s.r.bootstrap.Main calls stop() which calls
         // JLineShellComponent.deactivate() and that calls closeShell()
@@ -686,7 +541,7 @@ public abstract class JLineShell extends AbstractShell implements CommandMarker,
     String answer = "";
 
     try {
-      while (exitShellRequest == null && (line = reader.readLine()) != null) {
+      while (exitShellRequest == null && (line = readLine()) != null) {
         JLineLogHandler.resetMessageTracking();
         setShellStatus(Status.USER_WAITING_CONFIRMATION);
 
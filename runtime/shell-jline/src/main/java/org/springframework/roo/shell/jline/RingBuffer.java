@@ -0,0 +1,97 @@
+package org.springframework.roo.shell.jline;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * A bounded, lock-free queue for many producer threads and one consumer
+ * thread at a time.
+ * <p>
+ * Each slot carries a sequence number telling whether it's free for the
+ * producer of a given position or filled for the consumer of it, so
+ * producers only contend on claiming a position and never wait for each
+ * other, nor for the consumer. When the buffer is full, {@link #offer(Object)}
+ * fails rather than blocking; what to do then is up to the producer.
+ *
+ * @param <E> the type of elements
+ * @since 2.0
+ */
+class RingBuffer<E> {
+
+  private final AtomicReferenceArray<E> elements;
+  private final int mask;
+  private final AtomicLong head = new AtomicLong();
+  private final AtomicLongArray sequences;
+  private final AtomicLong tail = new AtomicLong();
+
+  /**
+   * Constructor
+   *
+   * @param capacity the maximum number of elements; must be a power of two
+   */
+  RingBuffer(final int capacity) {
+    Validate.isTrue(capacity > 0 && Integer.bitCount(capacity) == 1,
+        "Capacity must be a power of two, not %d", capacity);
+    elements = new AtomicReferenceArray<E>(capacity);
+    mask = capacity - 1;
+    sequences = new AtomicLongArray(capacity);
+    for (int i = 0; i < capacity; i++) {
+      sequences.set(i, i);
+    }
+  }
+
+  boolean isEmpty() {
+    return head.get() == tail.get();
+  }
+
+  /**
+   * Adds the given element, unless the buffer is full. May be called by any
+   * number of threads at once.
+   *
+   * @param element the element to add (required)
+   * @return <code>false</code> if the buffer is full
+   */
+  boolean offer(final E element) {
+    Validate.notNull(element, "Element required");
+    while (true) {
+      final long position = tail.get();
+      final int index = (int) position & mask;
+      final long sequence = sequences.get(index);
+      if (sequence == position) {
+        // The slot is free; claim it, unless another producer just did
+        if (tail.compareAndSet(position, position + 1)) {
+          elements.set(index, element);
+          sequences.set(index, position + 1);
+          return true;
+        }
+      } else if (sequence < position) {
+        // The consumer hasn't freed this slot since the last lap
+        return false;
+      }
+      // Otherwise another producer claimed the position first; try the next
+    }
+  }
+
+  /**
+   * Removes the oldest element. Callers must ensure only one thread polls
+   * at a time.
+   *
+   * @return <code>null</code> if the buffer is empty, or the oldest element
+   *         is still being added
+   */
+  E poll() {
+    final long position = head.get();
+    final int index = (int) position & mask;
+    if (sequences.get(index) != position + 1) {
+      return null;
+    }
+    final E element = elements.get(index);
+    elements.set(index, null);
+    sequences.set(index, position + mask + 1);
+    head.set(position + 1);
+    return element;
+  }
+}
@@ -0,0 +1,132 @@
+package org.springframework.roo.shell.jline;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringWriter;
+import java.lang.reflect.Field;
+
+import jline.ConsoleReader;
+import jline.UnsupportedTerminal;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.roo.shell.ShellPromptAccessor;
+
+/**
+ * Unit test of the log messages rendered by {@link ConsoleRenderer}
+ *
+ * @since 2.0
+ */
+public class ConsoleRendererTest {
+
+  // More than fill the renderer's buffer
+  private static final int LINES = 3000;
+  private static final long TIMEOUT_MILLIS = 10000;
+
+  private static Object getField(final Object target, final String fieldName) throws Exception {
+    final Field field = ConsoleRenderer.class.getDeclaredField(fieldName);
+    field.setAccessible(true);
+    return field.get(target);
+  }
+
+  private StringWriter output;
+  private ConsoleRenderer renderer;
+
+  /**
+   * Asserts that the given number of lines were printed, in order
+   */
+  private void assertLinesPrinted(final int lines) {
+    final String printed = output.toString();
+    int from = 0;
+    for (int i = 0; i < lines; i++) {
+      final int index = printed.indexOf("line " + i + "\n", from);
+      assertTrue("Line " + i + " missing or out of order", index >= 0);
+      from = index + 1;
+    }
+  }
+
+  private void logLines(final int count) {
+    for (int i = 0; i < count; i++) {
+      renderer.log("line " + i + "\n", false);
+    }
+  }
+
+  /**
+   * Stops the renderer, waiting for its render thread to finish
+   */
+  private void stopRenderer() throws Exception {
+    final Thread renderThread = (Thread) getField(renderer, "renderThread");
+    renderer.stop();
+    if (renderThread != null) {
+      renderThread.join(TIMEOUT_MILLIS);
+      assertFalse(renderThread.isAlive());
+    }
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    output = new StringWriter();
+    final ConsoleReader reader =
+        new ConsoleReader(new ByteArrayInputStream(new byte[0]), output, null,
+            new UnsupportedTerminal());
+    renderer = new ConsoleRenderer(reader, new ShellPromptAccessor() {
+      public String getShellPrompt() {
+        return "roo> ";
+      }
+    });
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    stopRenderer();
+  }
+
+  @Test
+  public void testLogBeforeStartPrintsImmediately() {
+    // Invoke
+    logLines(2);
+
+    // Check
+    assertLinesPrinted(2);
+  }
+
+  @Test
+  public void testLogToFullBufferLosesNothing() throws Exception {
+    // Set up
+    renderer.start();
+
+    // Invoke
+    logLines(LINES);
+
+    // Check
+    stopRenderer();
+    assertLinesPrinted(LINES);
+  }
+
+  @Test
+  public void testLogToFullBufferWhileHoldingRenderLockDoesNotWaitForItself() throws Exception {
+    // Set up
+    renderer.start();
+    final Object renderLock = getField(renderer, "renderLock");
+    final Thread logger = new Thread() {
+      @Override
+      public void run() {
+        synchronized (renderLock) {
+          logLines(LINES);
+        }
+      }
+    };
+
+    // Invoke
+    logger.start();
+    logger.join(TIMEOUT_MILLIS);
+
+    // Check
+    assertFalse("Logging while holding the render lock never finished", logger.isAlive());
+    stopRenderer();
+    assertLinesPrinted(LINES);
+  }
+}
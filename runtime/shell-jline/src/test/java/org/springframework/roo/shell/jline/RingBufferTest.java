@@ -0,0 +1,128 @@
+package org.springframework.roo.shell.jline;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+/**
+ * Unit test of {@link RingBuffer}
+ *
+ * @since 2.0
+ */
+public class RingBufferTest {
+
+  /**
+   * An element added by one of several producers
+   */
+  private static class Element {
+    private final int producer;
+    private final int sequence;
+
+    Element(final int producer, final int sequence) {
+      this.producer = producer;
+      this.sequence = sequence;
+    }
+  }
+
+  private static final int ELEMENTS_PER_PRODUCER = 100000;
+  private static final int PRODUCERS = 4;
+
+  @Test
+  public void testConstructorRejectsCapacityThatIsNotPowerOfTwo() {
+    try {
+      new RingBuffer<String>(12);
+      fail("Expected an IllegalArgumentException");
+    } catch (final IllegalArgumentException expected) {
+      assertEquals("Capacity must be a power of two, not 12", expected.getMessage());
+    }
+  }
+
+  @Test
+  public void testOfferFailsOnlyWhileFull() {
+    // Set up
+    final RingBuffer<String> buffer = new RingBuffer<String>(2);
+    assertTrue(buffer.offer("a"));
+    assertTrue(buffer.offer("b"));
+
+    // Invoke
+    final boolean offeredWhenFull = buffer.offer("c");
+
+    // Check
+    assertFalse(offeredWhenFull);
+    assertEquals("a", buffer.poll());
+    assertTrue(buffer.offer("c"));
+    assertEquals("b", buffer.poll());
+    assertEquals("c", buffer.poll());
+    assertTrue(buffer.isEmpty());
+  }
+
+  @Test
+  public void testPollOfEmptyBufferReturnsNull() {
+    // Set up
+    final RingBuffer<String> buffer = new RingBuffer<String>(4);
+
+    // Invoke
+    final String element = buffer.poll();
+
+    // Check
+    assertNull(element);
+    assertTrue(buffer.isEmpty());
+  }
+
+  @Test
+  public void testProducersLoseNothingAndKeepTheirOrder() throws Exception {
+    // Set up
+    final RingBuffer<Element> buffer = new RingBuffer<Element>(64);
+    final CountDownLatch start = new CountDownLatch(1);
+    final Thread[] producers = new Thread[PRODUCERS];
+    for (int i = 0; i < PRODUCERS; i++) {
+      final int producer = i;
+      producers[i] = new Thread() {
+        @Override
+        public void run() {
+          try {
+            start.await();
+          } catch (final InterruptedException e) {
+            return;
+          }
+          for (int sequence = 0; sequence < ELEMENTS_PER_PRODUCER; sequence++) {
+            final Element element = new Element(producer, sequence);
+            while (!buffer.offer(element)) {
+              Thread.yield();
+            }
+          }
+        }
+      };
+      producers[i].start();
+    }
+
+    // Invoke
+    start.countDown();
+    final int[] nextSequences = new int[PRODUCERS];
+    for (int polled = 0; polled < PRODUCERS * ELEMENTS_PER_PRODUCER;) {
+      final Element element = buffer.poll();
+      if (element == null) {
+        Thread.yield();
+        continue;
+      }
+      // Check
+      assertEquals(nextSequences[element.producer]++, element.sequence);
+      polled++;
+    }
+
+    // Check
+    for (final Thread producer : producers) {
+      producer.join();
+    }
+    assertTrue(buffer.isEmpty());
+    for (final int nextSequence : nextSequences) {
+      assertEquals(ELEMENTS_PER_PRODUCER, nextSequence);
+    }
+  }
+}
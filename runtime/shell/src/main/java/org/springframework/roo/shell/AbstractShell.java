@@ -533,14 +533,35 @@ public abstract class AbstractShell extends AbstractShellStatusPublisher impleme
               + "Default if option present: `true`; default if option not present: `false`.") final boolean lineNumbers,
       @CliOption(key = "ignoreLines", mandatory = false,
           help = "Comma-list of prefixes to ignore the lines that starts with any of the provided "
-              + "case-sensitive prefixes.") final String ignoreLines) {
+              + "case-sensitive prefixes.") final String ignoreLines,
+      @CliOption(key = "batch", mandatory = false, specifiedDefaultValue = "true",
+          unspecifiedDefaultValue = "false",
+          help = "Execute the script's commands as a batch, writing their file changes and "
+              + "updating the project metadata once at the end of the script (or every "
+              + "`--batchSize` commands) instead of after every command. A failing command undoes "
+              + "every change since the last commit. "
+              + "Default if option present: `true`; default if option not present: `false`.") final boolean batch,
+      @CliOption(key = "batchSize", mandatory = false, unspecifiedDefaultValue = "0",
+          help = "When executing as a batch, how many commands to execute between commits. Use it "
+              + "when commands rely on the metadata of types created earlier in the script. "
+              + "Default: `0`, which commits once at the end of the script.") final int batchSize,
+      @CliOption(key = "timingReport", mandatory = false,
+          help = "The file to write how long each line of the script took to execute, "
+              + "slowest first.") final File timingReport) {
 
     Validate.notNull(script, "Script file to parse is required");
+    Validate.isTrue(batchSize >= 0, "Batch size must be 0 or more");
     final double startedNanoseconds = System.nanoTime();
 
     String[] ignoreLinesPrefixes = StringUtils.split(ignoreLines == null ? "" : ignoreLines, ",");
 
+    final ScriptTimingReport timings =
+        timingReport == null ? null : new ScriptTimingReport(script.getName());
+    final ExecutionStrategy executionStrategy = batch ? getExecutionStrategy() : null;
     final InputStream inputStream = openScript(script);
+    if (executionStrategy != null) {
+      executionStrategy.beginBatch(batchSize);
+    }
     try {
       int i = 0;
       for (final String line : IOUtils.readLines(inputStream)) {
@@ -562,7 +583,11 @@ public abstract class AbstractShell extends AbstractShellStatusPublisher impleme
         }
 
         if (!"".equals(line.trim()) && !ignoreLine) {
+          final long lineStarted = System.nanoTime();
           final boolean success = executeScriptLine(line);
+          if (timings != null) {
+            timings.add(i, line, System.nanoTime() - lineStarted);
+          }
           if (success && (line.trim().startsWith("quit") || line.trim().startsWith("exit"))) {
             break;
           } else if (!success) {
@@ -575,10 +600,24 @@ public abstract class AbstractShell extends AbstractShellStatusPublisher impleme
       throw new IllegalStateException(e);
     } finally {
       IOUtils.closeQuietly(inputStream);
-      final double executionDurationInSeconds =
-          (System.nanoTime() - startedNanoseconds) / 1000000000D;
-      logger
-          .fine("Script required " + round(executionDurationInSeconds, 3) + " seconds to execute");
+      final long commitStarted = System.nanoTime();
+      try {
+        if (executionStrategy != null) {
+          executionStrategy.endBatch();
+        }
+      } finally {
+        if (timings != null) {
+          if (executionStrategy != null) {
+            timings.add(0, "(batch commit)", System.nanoTime() - commitStarted);
+          }
+          timings.write(timingReport);
+          logger.fine("Script timing report written to " + timingReport.getAbsolutePath());
+        }
+        final double executionDurationInSeconds =
+            (System.nanoTime() - startedNanoseconds) / 1000000000D;
+        logger.fine("Script required " + round(executionDurationInSeconds, 3)
+            + " seconds to execute");
+      }
     }
   }
 
@@ -0,0 +1,217 @@
+package org.springframework.roo.shell;
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * An indicator method bound to the object it's invoked on, along with the
+ * annotation that declared it. The method is resolved to a
+ * {@link MethodHandle} when its {@link CommandMarker} is registered, and
+ * adapted there and then to the way it will be invoked, so that invoking it
+ * while parsing or completing a command involves neither annotation lookups,
+ * access checks nor copying its arguments.
+ *
+ * @param <A> the type of annotation declaring the indicator
+ * @since 2.0
+ */
+class BoundMethod<A extends Annotation> {
+
+  private static final Object[] NO_ARGUMENTS = {};
+
+  /**
+   * Wraps an exception thrown by a method in an
+   * {@link InvocationTargetException}, taking its place in the method's
+   * handle
+   */
+  private static final MethodHandle TARGET_THREW;
+
+  static {
+    try {
+      TARGET_THREW =
+          MethodHandles.lookup().findStatic(BoundMethod.class, "targetThrew",
+              MethodType.methodType(Object.class, Exception.class));
+    } catch (final NoSuchMethodException e) {
+      throw new IllegalStateException(e);
+    } catch (final IllegalAccessException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Invokes the given method through its handle, if it has one, or else
+   * reflectively; either way, an exception thrown by the method is wrapped
+   * in an {@link InvocationTargetException}, while an {@link Error} is
+   * thrown as is.
+   *
+   * @param handle the handle returned by {@link #unreflect(Method)} for the
+   *            method (can be <code>null</code>)
+   * @param method the method to invoke (required)
+   * @param target the object on which to invoke the method (required)
+   * @param arguments the arguments to pass (can be <code>null</code> if
+   *            there are none)
+   * @return the method's return value
+   * @throws IllegalAccessException if the method has no handle and can't be
+   *             accessed
+   * @throws InvocationTargetException if the method threw an exception
+   */
+  static Object invoke(final MethodHandle handle, final Method method, final Object target,
+      final Object[] arguments) throws IllegalAccessException, InvocationTargetException {
+    if (handle == null) {
+      return method.invoke(target, arguments);
+    }
+    final Object[] spreadArguments = arguments == null ? NO_ARGUMENTS : arguments;
+    try {
+      return (Object) handle.invokeExact(target, spreadArguments);
+    } catch (final Throwable t) {
+      throw rethrow(t);
+    }
+  }
+
+  /**
+   * Resolves the handle through which to invoke the given method, taking the
+   * object to invoke it on and an array of its arguments. The method is made
+   * accessible first so that the handle is obtained, like
+   * {@link Method#invoke(Object, Object...)}, regardless of the visibility
+   * of its class.
+   *
+   * @param method the method to resolve (required)
+   * @return <code>null</code> if the method can't be accessed, in which case
+   *         it can only be invoked reflectively
+   */
+  static MethodHandle unreflect(final Method method) {
+    MethodHandle handle = unreflectCatching(method);
+    if (handle == null) {
+      return null;
+    }
+    if (Modifier.isStatic(method.getModifiers())) {
+      handle = MethodHandles.dropArguments(handle, 0, Object.class);
+    }
+    final int parameterCount = method.getParameterTypes().length;
+    return handle.asType(MethodType.genericMethodType(parameterCount + 1)).asSpreader(
+        Object[].class, parameterCount);
+  }
+
+  /**
+   * Rethrows the given throwable, caught while invoking a method through a
+   * handle that wraps the method's own exceptions
+   *
+   * @return nothing, but allows the caller to be seen to throw
+   * @throws InvocationTargetException if the method threw an exception
+   */
+  private static IllegalStateException rethrow(final Throwable t)
+      throws InvocationTargetException {
+    if (t instanceof InvocationTargetException) {
+      throw (InvocationTargetException) t;
+    }
+    if (t instanceof RuntimeException) {
+      // Thrown while adapting the arguments, e.g. a ClassCastException
+      throw (RuntimeException) t;
+    }
+    if (t instanceof Error) {
+      throw (Error) t;
+    }
+    throw new IllegalStateException(t);
+  }
+
+  @SuppressWarnings("unused")
+  private static Object targetThrew(final Exception e) throws InvocationTargetException {
+    throw new InvocationTargetException(e);
+  }
+
+  /**
+   * Resolves the handle of the given method, with any exception it throws
+   * wrapped in an {@link InvocationTargetException}
+   *
+   * @return <code>null</code> if the method can't be accessed
+   */
+  private static MethodHandle unreflectCatching(final Method method) {
+    try {
+      method.setAccessible(true);
+    } catch (final SecurityException ignored) {
+      // The lookup will check access instead
+    }
+    final MethodHandle handle;
+    try {
+      handle = MethodHandles.lookup().unreflect(method).asFixedArity();
+    } catch (final IllegalAccessException e) {
+      return null;
+    }
+    final MethodType type = handle.type();
+    final MethodHandle handler =
+        MethodHandles.dropArguments(
+            TARGET_THREW.asType(MethodType.methodType(type.returnType(), Exception.class)), 1,
+            type.parameterList());
+    return MethodHandles.catchException(handle, Exception.class, handler);
+  }
+
+  private final A annotation;
+  /** Bound to the target, and taking the context if the method does */
+  private final MethodHandle handle;
+  private final Method method;
+  private final Object target;
+  private final boolean takesShellContext;
+
+  /**
+   * Constructor
+   *
+   * @param method the method to invoke, which takes either no parameters or
+   *            a {@link ShellContext} (required)
+   * @param target the object on which to invoke the method (required)
+   * @param annotation the annotation declaring the method (required)
+   */
+  BoundMethod(final Method method, final Object target, final A annotation) {
+    Validate.notNull(method, "Method is required");
+    Validate.notNull(target, "Target is required");
+    Validate.notNull(annotation, "Annotation is required");
+    this.annotation = annotation;
+    this.method = method;
+    this.target = target;
+    takesShellContext = method.getParameterTypes().length == 1;
+    final MethodHandle unbound = unreflectCatching(method);
+    if (unbound == null || Modifier.isStatic(method.getModifiers())) {
+      handle = null;
+    } else {
+      handle =
+          unbound.bindTo(target).asType(MethodType.genericMethodType(takesShellContext ? 1 : 0));
+    }
+  }
+
+  A getAnnotation() {
+    return annotation;
+  }
+
+  Method getMethod() {
+    return method;
+  }
+
+  /**
+   * Invokes the method, passing the given context if it takes one.
+   *
+   * @param shellContext the context of the command being parsed or completed
+   * @return the method's return value
+   * @throws IllegalAccessException if the method can't be accessed
+   * @throws InvocationTargetException if the method threw an exception
+   */
+  Object invoke(final ShellContext shellContext) throws IllegalAccessException,
+      InvocationTargetException {
+    if (handle == null) {
+      return method.invoke(target, takesShellContext ? new Object[] {shellContext}
+          : NO_ARGUMENTS);
+    }
+    try {
+      if (takesShellContext) {
+        return (Object) handle.invokeExact((Object) shellContext);
+      }
+      return (Object) handle.invokeExact();
+    } catch (final Throwable t) {
+      throw rethrow(t);
+    }
+  }
+}
@@ -0,0 +1,261 @@
+package org.springframework.roo.shell;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+
+/**
+ * An index of the {@link CliCommand}s offered by a set of
+ * {@link CommandMarker}s, so that {@link SimpleParser} doesn't have to
+ * reflect over every command each time it parses or completes a buffer.
+ * <p>
+ * Each command is reflected upon once, when it's added. Its command strings
+ * are kept in a trie keyed by their words, which narrows a buffer down to
+ * the commands whose words start with the buffer's words. The candidates
+ * are a superset of those {@link SimpleParser#isMatch(String, String, boolean)}
+ * accepts, so callers still apply it to each candidate.
+ * <p>
+ * Not thread-safe; {@link SimpleParser} guards it with its own mutex.
+ *
+ * @since 2.0
+ */
+class CommandIndex {
+
+  /**
+   * One command string of a {@link CliCommand} method, along with what was
+   * resolved about that method when it was indexed.
+   */
+  static class IndexedCommand {
+    private final CliCommand cliCommand;
+    private final Set<CliOption> cliOptions;
+    private final MethodTarget methodTarget;
+    private final String value;
+
+    IndexedCommand(final MethodTarget methodTarget, final CliCommand cliCommand,
+        final Set<CliOption> cliOptions, final String value) {
+      this.cliCommand = cliCommand;
+      this.cliOptions = cliOptions;
+      this.methodTarget = methodTarget;
+      this.value = value;
+    }
+
+    CliCommand getCliCommand() {
+      return cliCommand;
+    }
+
+    /**
+     * @return the {@link CliOption}s of the method's parameters, in
+     *         declaration order
+     */
+    Set<CliOption> getCliOptions() {
+      return cliOptions;
+    }
+
+    /**
+     * @return the method and the command offering it, with no remaining
+     *         buffer nor key
+     */
+    MethodTarget getMethodTarget() {
+      return methodTarget;
+    }
+
+    /**
+     * @return the command string, e.g. "project setup"
+     */
+    String getValue() {
+      return value;
+    }
+  }
+
+  /**
+   * A node of the trie; the path from the root spells out the words of the
+   * commands it holds.
+   */
+  private static class Node {
+    private final TreeMap<String, Node> children = new TreeMap<String, Node>();
+    private final List<IndexedCommand> commands = new ArrayList<IndexedCommand>();
+
+    void addTo(final Collection<IndexedCommand> result) {
+      result.addAll(commands);
+      for (final Node child : children.values()) {
+        child.addTo(result);
+      }
+    }
+  }
+
+  static Set<CliOption> getCliOptions(final Annotation[][] parameterAnnotations) {
+    final Set<CliOption> cliOptions = new LinkedHashSet<CliOption>();
+    for (final Annotation[] annotations : parameterAnnotations) {
+      for (final Annotation annotation : annotations) {
+        if (annotation instanceof CliOption) {
+          final CliOption cliOption = (CliOption) annotation;
+          cliOptions.add(cliOption);
+        }
+      }
+    }
+    return cliOptions;
+  }
+
+  private static String[] getWords(final String command) {
+    return StringUtils.split(command, " ");
+  }
+
+  // Insertion order, so that rebuilding the trie is deterministic
+  private final Map<CommandMarker, List<IndexedCommand>> commandsByMarker =
+      new LinkedHashMap<CommandMarker, List<IndexedCommand>>();
+  private final Map<Method, Set<CliOption>> cliOptionsByMethod =
+      new HashMap<Method, Set<CliOption>>();
+  private Node root;
+
+  /**
+   * Indexes the {@link CliCommand} methods of the given command, replacing
+   * any previous indexing of it.
+   *
+   * @param command the command to index (required)
+   */
+  void add(final CommandMarker command) {
+    Validate.notNull(command, "Command required");
+    final List<IndexedCommand> indexed = new ArrayList<IndexedCommand>();
+    for (final Method method : command.getClass().getMethods()) {
+      final CliCommand cliCommand = method.getAnnotation(CliCommand.class);
+      if (cliCommand == null) {
+        continue;
+      }
+      Set<CliOption> cliOptions = cliOptionsByMethod.get(method);
+      if (cliOptions == null) {
+        cliOptions =
+            Collections.unmodifiableSet(getCliOptions(method.getParameterAnnotations()));
+        cliOptionsByMethod.put(method, cliOptions);
+      }
+      // Resolved once, as the parsed command will be invoked through it
+      final MethodTarget methodTarget =
+          new MethodTarget(method, command, null, null, BoundMethod.unreflect(method));
+      for (final String value : cliCommand.value()) {
+        indexed.add(new IndexedCommand(methodTarget, cliCommand, cliOptions, value));
+      }
+    }
+    commandsByMarker.put(command, indexed);
+    root = null;
+  }
+
+  /**
+   * Removes every command from this index.
+   */
+  void clear() {
+    commandsByMarker.clear();
+    cliOptionsByMethod.clear();
+    root = null;
+  }
+
+  /**
+   * Returns the indexed commands that might match the given buffer, i.e.
+   * those whose words start with the buffer's words, up to the end of
+   * either.
+   *
+   * @param buffer the buffer being parsed or completed (required)
+   * @return a non-<code>null</code> collection
+   */
+  Collection<IndexedCommand> getCandidates(final String buffer) {
+    Validate.notNull(buffer, "Buffer required");
+    final Collection<IndexedCommand> result = new ArrayList<IndexedCommand>();
+    addCandidates(getRoot(), getWords(buffer), 0, result);
+    return result;
+  }
+
+  /**
+   * Returns the {@link CliOption}s of the given indexed method.
+   *
+   * @param method the method
+   * @return <code>null</code> if the method isn't indexed
+   */
+  Set<CliOption> getCliOptions(final Method method) {
+    return cliOptionsByMethod.get(method);
+  }
+
+  /**
+   * @return every indexed command string
+   */
+  Set<String> getCommandValues() {
+    final Set<String> result = new LinkedHashSet<String>();
+    for (final List<IndexedCommand> indexed : commandsByMarker.values()) {
+      for (final IndexedCommand indexedCommand : indexed) {
+        result.add(indexedCommand.getValue());
+      }
+    }
+    return result;
+  }
+
+  boolean isEmpty() {
+    return commandsByMarker.isEmpty();
+  }
+
+  /**
+   * Removes the given command's methods from this index.
+   *
+   * @param command the command to remove
+   */
+  void remove(final CommandMarker command) {
+    final List<IndexedCommand> removed = commandsByMarker.remove(command);
+    if (removed != null) {
+      for (final IndexedCommand indexedCommand : removed) {
+        cliOptionsByMethod.remove(indexedCommand.getMethodTarget().getMethod());
+      }
+      // Other instances of the same class share the removed methods
+      for (final List<IndexedCommand> indexed : commandsByMarker.values()) {
+        for (final IndexedCommand indexedCommand : indexed) {
+          cliOptionsByMethod.put(indexedCommand.getMethodTarget().getMethod(),
+              indexedCommand.getCliOptions());
+        }
+      }
+      root = null;
+    }
+  }
+
+  private void addCandidates(final Node node, final String[] bufferWords, final int depth,
+      final Collection<IndexedCommand> result) {
+    if (depth == bufferWords.length) {
+      // The buffer ends here, so every command below might complete it
+      node.addTo(result);
+      return;
+    }
+    // These commands end here, so the remaining words might be options
+    result.addAll(node.commands);
+    final String word = bufferWords[depth];
+    for (final Node child : node.children.subMap(word, word + Character.MAX_VALUE).values()) {
+      addCandidates(child, bufferWords, depth + 1, result);
+    }
+  }
+
+  private Node getRoot() {
+    if (root == null) {
+      root = new Node();
+      for (final List<IndexedCommand> indexed : commandsByMarker.values()) {
+        for (final IndexedCommand indexedCommand : indexed) {
+          Node node = root;
+          for (final String word : getWords(indexedCommand.getValue())) {
+            Node child = node.children.get(word);
+            if (child == null) {
+              child = new Node();
+              node.children.put(word, child);
+            }
+            node = child;
+          }
+          node.commands.add(indexedCommand);
+        }
+      }
+    }
+    return root;
+  }
+}
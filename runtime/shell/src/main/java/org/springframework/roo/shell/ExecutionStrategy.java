@@ -13,6 +13,26 @@ package org.springframework.roo.shell;
  */
 public interface ExecutionStrategy {
 
+  /**
+   * Starts executing commands as a batch, so that their side effects (e.g.
+   * writing files and updating metadata) are applied together every
+   * <code>commitInterval</code> commands and when the batch ends, rather
+   * than after every command.
+   * 
+   * @param commitInterval how many commands to execute between applying
+   *            their side effects; 0 means only when the batch ends
+   * @since 2.0
+   */
+  void beginBatch(int commitInterval);
+
+  /**
+   * Ends the batch started by the matching {@link #beginBatch(int)},
+   * applying the side effects of its commands that haven't been applied yet.
+   * 
+   * @since 2.0
+   */
+  void endBatch();
+
   /**
    * Executes the method indicated by the {@link ParseResult}.
    * 
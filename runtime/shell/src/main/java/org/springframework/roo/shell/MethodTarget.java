@@ -1,5 +1,6 @@
 package org.springframework.roo.shell;
 
+import java.lang.invoke.MethodHandle;
 import java.lang.reflect.Method;
 
 import org.apache.commons.lang3.ObjectUtils;
@@ -16,6 +17,7 @@ import org.apache.commons.lang3.builder.ToStringBuilder;
  */
 public class MethodTarget {
 
+  private final MethodHandle handle;
   private final String key;
   private final Method method;
   private final String remainingBuffer;
@@ -43,8 +45,25 @@ public class MethodTarget {
    */
   public MethodTarget(final Method method, final Object target, final String remainingBuffer,
       final String key) {
+    this(method, target, remainingBuffer, key, null);
+  }
+
+  /**
+   * Constructor for a method already resolved to a handle
+   * 
+   * @param method the method to invoke (required)
+   * @param target the object on which the method is to be invoked (required)
+   * @param remainingBuffer can be blank
+   * @param key can be blank
+   * @param handle the handle through which to invoke the method (can be
+   *            <code>null</code> to invoke it reflectively)
+   * @since 2.0
+   */
+  MethodTarget(final Method method, final Object target, final String remainingBuffer,
+      final String key, final MethodHandle handle) {
     Validate.notNull(method, "Method is required");
     Validate.notNull(target, "Target is required");
+    this.handle = handle;
     this.key = StringUtils.stripToEmpty(key);
     this.method = method;
     this.remainingBuffer = StringUtils.stripToEmpty(remainingBuffer);
@@ -64,6 +83,14 @@ public class MethodTarget {
         && target.equals(otherMethodTarget.getTarget());
   }
 
+  /**
+   * @return <code>null</code> if the method is to be invoked reflectively
+   * @since 2.0
+   */
+  MethodHandle getHandle() {
+    return handle;
+  }
+
   /**
    * @since 1.2.0
    */
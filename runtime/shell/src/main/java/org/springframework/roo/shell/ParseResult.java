@@ -1,5 +1,7 @@
 package org.springframework.roo.shell;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.Arrays;
 
@@ -21,10 +23,26 @@ import org.apache.commons.lang3.builder.ToStringBuilder;
 public class ParseResult {
 
   private final Object[] arguments; // May be null if no arguments needed
+  private final MethodHandle handle;
   private final Object instance;
   private final Method method;
 
   public ParseResult(final Method method, final Object instance, final Object[] arguments) {
+    this(method, instance, arguments, null);
+  }
+
+  /**
+   * Constructor for a method already resolved to a handle
+   * 
+   * @param method the method to invoke (required)
+   * @param instance the object on which to invoke it (required)
+   * @param arguments the arguments to pass (may be null if none are needed)
+   * @param handle the handle through which to invoke the method (can be
+   *            <code>null</code> to invoke it reflectively)
+   * @since 2.0
+   */
+  ParseResult(final Method method, final Object instance, final Object[] arguments,
+      final MethodHandle handle) {
     Validate.notNull(method, "Method required");
     Validate.notNull(instance, "Instance required");
     final int length = arguments == null ? 0 : arguments.length;
@@ -33,6 +51,7 @@ public class ParseResult {
     this.method = method;
     this.instance = instance;
     this.arguments = arguments;
+    this.handle = handle;
   }
 
   @Override
@@ -79,6 +98,20 @@ public class ParseResult {
     return method;
   }
 
+  /**
+   * Invokes the parsed method on the instance with the parsed arguments,
+   * through the method handle resolved when its command was registered if
+   * there is one.
+   * 
+   * @return the method's return value
+   * @throws IllegalAccessException if the method can't be accessed
+   * @throws InvocationTargetException if the method threw an exception
+   * @since 2.0
+   */
+  public Object invoke() throws IllegalAccessException, InvocationTargetException {
+    return BoundMethod.invoke(handle, method, instance, arguments);
+  }
+
   @Override
   public int hashCode() {
     final int prime = 31;
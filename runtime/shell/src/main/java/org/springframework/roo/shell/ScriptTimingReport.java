@@ -0,0 +1,108 @@
+package org.springframework.roo.shell;
+
+import static org.apache.commons.io.IOUtils.LINE_SEPARATOR;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.Validate;
+
+/**
+ * Records how long each line of a script took to execute, so that the
+ * commands dominating a long script can be identified.
+ *
+ * @since 2.0
+ */
+class ScriptTimingReport {
+
+  private static class Timing {
+    private final long duration;
+    private final String line;
+    private final int lineNumber;
+
+    Timing(final int lineNumber, final String line, final long duration) {
+      this.duration = duration;
+      this.line = line;
+      this.lineNumber = lineNumber;
+    }
+  }
+
+  private static final Comparator<Timing> SLOWEST_FIRST = new Comparator<Timing>() {
+    public int compare(final Timing timing1, final Timing timing2) {
+      if (timing1.duration == timing2.duration) {
+        return timing1.lineNumber - timing2.lineNumber;
+      }
+      return timing1.duration > timing2.duration ? -1 : 1;
+    }
+  };
+
+  private final String script;
+  private final List<Timing> timings = new ArrayList<Timing>();
+  private long totalDuration;
+
+  /**
+   * Constructor
+   *
+   * @param script the name of the script being timed (required)
+   */
+  ScriptTimingReport(final String script) {
+    Validate.notBlank(script, "Script name required");
+    this.script = script;
+  }
+
+  /**
+   * Records the time taken by one line of the script.
+   *
+   * @param lineNumber the line's number within the script, or 0 for work
+   *            not attributable to a single line (e.g. committing a batch)
+   * @param line the line or a description of the work (required)
+   * @param duration in nanoseconds
+   */
+  void add(final int lineNumber, final String line, final long duration) {
+    timings.add(new Timing(lineNumber, line, duration));
+    totalDuration += duration;
+  }
+
+  /**
+   * Returns this report's text, listing the slowest lines first.
+   *
+   * @return a non-blank string
+   */
+  String getText() {
+    final List<Timing> sorted = new ArrayList<Timing>(timings);
+    Collections.sort(sorted, SLOWEST_FIRST);
+    final StringBuilder text = new StringBuilder();
+    text.append("// Script: ").append(script).append(LINE_SEPARATOR);
+    text.append(
+        String.format(Locale.ENGLISH, "// Total: %.3f s over %d timings", totalDuration / 1e9,
+            timings.size())).append(LINE_SEPARATOR);
+    text.append("// millis  line  command").append(LINE_SEPARATOR);
+    for (final Timing timing : sorted) {
+      text.append(
+          String.format(Locale.ENGLISH, "%9.1f %5d  %s", timing.duration / 1e6, timing.lineNumber,
+              timing.line)).append(LINE_SEPARATOR);
+    }
+    return text.toString();
+  }
+
+  /**
+   * Writes this report to the given file, replacing any existing contents.
+   *
+   * @param file the file to write (required)
+   */
+  void write(final File file) {
+    Validate.notNull(file, "File required");
+    try {
+      FileUtils.writeStringToFile(file, getText());
+    } catch (final IOException e) {
+      throw new IllegalStateException("Unable to write the script timing report to '" + file
+          + "'", e);
+    }
+  }
+}
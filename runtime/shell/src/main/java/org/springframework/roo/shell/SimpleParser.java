@@ -32,6 +32,7 @@ import java.util.jar.Manifest;
 import java.util.logging.Logger;
 import java.util.zip.ZipEntry;
 
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
 import org.apache.commons.lang3.exception.ExceptionUtils;
@@ -61,10 +62,26 @@ public class SimpleParser implements Parser {
 
   private Long lastTimeUpdateComponents;
 
+  private String rooProjectVersion;
+  private long rooProjectVersionPomLastModified;
+  private long rooProjectVersionPomLength;
+
   private static final Comparator<Object> COMPARATOR = new NaturalOrderComparator<Object>();
   private static final Logger LOGGER = HandlerUtils.getLogger(SimpleParser.class);
 
-  static String isMatch(final String buffer, final String command, final boolean strictMatching) {
+  /**
+   * Indicates whether the given buffer starts with the given command, each
+   * word of the buffer being allowed to abbreviate the command's word.
+   *
+   * @param buffer the text typed by the user (required)
+   * @param command a command string, e.g. "project setup" (required)
+   * @param strictMatching whether every word of the command must be present
+   * @return what remains of the buffer after the command, or
+   *         <code>null</code> if it doesn't match
+   * @since 2.0
+   */
+  public static String isMatch(final String buffer, final String command,
+      final boolean strictMatching) {
     if ("".equals(buffer.trim())) {
       return "";
     }
@@ -145,16 +162,20 @@ public class SimpleParser implements Parser {
     return null; // Not a match
   }
 
-  private final Map<String, MethodTarget> availabilityIndicators =
-      new HashMap<String, MethodTarget>();
-  private final Map<String, MethodTarget> dynamicMandatoryIndicators =
-      new HashMap<String, MethodTarget>();
-  private final Map<String, MethodTarget> optionVisibilityIndicators =
-      new HashMap<String, MethodTarget>();
-  private final Map<String, MethodTarget> optionAutocompleteIndicators =
-      new HashMap<String, MethodTarget>();
+  private final Map<String, BoundMethod<CliAvailabilityIndicator>> availabilityIndicators =
+      new HashMap<String, BoundMethod<CliAvailabilityIndicator>>();
+  private final Map<String, BoundMethod<CliOptionMandatoryIndicator>> dynamicMandatoryIndicators =
+      new HashMap<String, BoundMethod<CliOptionMandatoryIndicator>>();
+  private final Map<String, BoundMethod<CliOptionVisibilityIndicator>> optionVisibilityIndicators =
+      new HashMap<String, BoundMethod<CliOptionVisibilityIndicator>>();
+  private final Map<String, BoundMethod<CliOptionAutocompleteIndicator>> optionAutocompleteIndicators =
+      new HashMap<String, BoundMethod<CliOptionAutocompleteIndicator>>();
   private final Set<CommandMarker> commands = new HashSet<CommandMarker>();
+  private final CommandIndex commandIndex = new CommandIndex();
   private final Set<Converter<?>> converters = new HashSet<Converter<?>>();
+  // The converter to use for each parameter type and option context
+  private final Map<Class<?>, Map<String, Converter<?>>> convertersByType =
+      new HashMap<Class<?>, Map<String, Converter<?>>>();
 
   // ROO-3697: Include global parameters in all Spring Roo commands.
   private final List<String> globalParameters = new ArrayList<String>();
@@ -164,6 +185,7 @@ public class SimpleParser implements Parser {
   public final void add(final CommandMarker command) {
     synchronized (mutex) {
       commands.add(command);
+      commandIndex.add(command);
       for (final Method method : command.getClass().getMethods()) {
 
         // Getting method availability indicators
@@ -179,7 +201,8 @@ public class SimpleParser implements Parser {
           for (final String cmd : availability.value()) {
             Validate.isTrue(!availabilityIndicators.containsKey(cmd),
                 "Cannot specify an availability indicator for '%s' more than once", cmd);
-            availabilityIndicators.put(cmd, new MethodTarget(method, command));
+            availabilityIndicators.put(cmd, new BoundMethod<CliAvailabilityIndicator>(method,
+                command, availability));
           }
         }
 
@@ -201,8 +224,9 @@ public class SimpleParser implements Parser {
 
           for (String param : dynamicMandatoryIndicator.params()) {
             dynamicMandatoryIndicators.put(
-                dynamicMandatoryIndicator.command().concat("|").concat(param), new MethodTarget(
-                    method, command));
+                dynamicMandatoryIndicator.command().concat("|").concat(param),
+                new BoundMethod<CliOptionMandatoryIndicator>(method, command,
+                    dynamicMandatoryIndicator));
           }
 
         }
@@ -223,8 +247,9 @@ public class SimpleParser implements Parser {
 
           for (String param : optionVisibilityIndicator.params()) {
             optionVisibilityIndicators.put(
-                optionVisibilityIndicator.command().concat("|").concat(param), new MethodTarget(
-                    method, command));
+                optionVisibilityIndicator.command().concat("|").concat(param),
+                new BoundMethod<CliOptionVisibilityIndicator>(method, command,
+                    optionVisibilityIndicator));
           }
         }
 
@@ -255,7 +280,9 @@ public class SimpleParser implements Parser {
 
           // Add method to option autocomplete indicators
           optionAutocompleteIndicators.put(optionAutocompleteIndicator.command().concat("|")
-              .concat(optionAutocompleteIndicator.param()), new MethodTarget(method, command));
+              .concat(optionAutocompleteIndicator.param()),
+              new BoundMethod<CliOptionAutocompleteIndicator>(method, command,
+                  optionAutocompleteIndicator));
 
         }
 
@@ -269,6 +296,7 @@ public class SimpleParser implements Parser {
   public final void add(final Converter<?> converter) {
     synchronized (mutex) {
       converters.add(converter);
+      convertersByType.clear();
     }
   }
 
@@ -511,37 +539,29 @@ public class SimpleParser implements Parser {
               if (!isMandatoryParam(methodTarget.getKey(), include, shellContext)
                   && "*".equals(include.unspecifiedDefaultValue()) && !"".equals(value)) {
                 try {
-                  for (final Converter<?> candidate : converters) {
-                    // Find the target parameter
-                    Class<?> paramType = null;
-                    int index = -1;
-                    for (final Annotation[] a : methodTarget.getMethod().getParameterAnnotations()) {
-                      index++;
-                      for (final Annotation an : a) {
-                        if (an instanceof CliOption) {
-                          if (an.equals(include)) {
-                            // Found the parameter,
-                            // so
-                            // store it
-                            paramType = methodTarget.getMethod().getParameterTypes()[index];
-                            break;
-                          }
+                  // Find the target parameter
+                  Class<?> paramType = null;
+                  int index = -1;
+                  for (final Annotation[] a : methodTarget.getMethod().getParameterAnnotations()) {
+                    index++;
+                    for (final Annotation an : a) {
+                      if (an instanceof CliOption) {
+                        if (an.equals(include)) {
+                          // Found the parameter, so store it
+                          paramType = methodTarget.getMethod().getParameterTypes()[index];
+                          break;
                         }
                       }
                     }
-                    if (paramType != null && candidate.supports(paramType, include.optionContext())) {
-                      // Try to invoke this usable
-                      // converter
-                      candidate.convertFromText("*", paramType, include.optionContext());
-                      // If we got this far, the converter
-                      // is
-                      // happy with "*" so we need not
-                      // bother
-                      // the user with entering the data
-                      // in
-                      // themselves
-                      break;
-                    }
+                  }
+                  final Converter<?> converter =
+                      paramType == null ? null : getConverter(paramType, include.optionContext());
+                  if (converter != null) {
+                    // Try to invoke this usable converter
+                    converter.convertFromText("*", paramType, include.optionContext());
+                    // If we got this far, the converter is happy with
+                    // "*" so we need not bother the user with entering
+                    // the data in themselves
                   }
                 } catch (final RuntimeException notYetReady) {
                   if (translated.endsWith(" ")) {
@@ -725,16 +745,14 @@ public class SimpleParser implements Parser {
               } else {
 
                 // Use a Converter if one is available
-                for (final Converter<?> candidate : converters) {
-                  if (candidate.supports(parameterType, option.optionContext())) {
-                    // Found a usable converter
-                    final boolean addSpace =
-                        candidate.getAllPossibleValues(allValues, parameterType, lastOptionValue,
-                            option.optionContext(), methodTarget);
-                    if (!addSpace) {
-                      suffix = "";
-                    }
-                    break;
+                final Converter<?> converter =
+                    getConverter(parameterType, option.optionContext());
+                if (converter != null) {
+                  final boolean addSpace =
+                      converter.getAllPossibleValues(allValues, parameterType, lastOptionValue,
+                          option.optionContext(), methodTarget);
+                  if (!addSpace) {
+                    suffix = "";
                   }
                 }
               }
@@ -1003,21 +1021,54 @@ public class SimpleParser implements Parser {
     }
   }
 
-  private MethodTarget getAvailabilityIndicator(final String command) {
+  private BoundMethod<CliAvailabilityIndicator> getAvailabilityIndicator(final String command) {
     return availabilityIndicators.get(command);
   }
 
-  private Set<CliOption> getCliOptions(final Annotation[][] parameterAnnotations) {
-    final Set<CliOption> cliOptions = new LinkedHashSet<CliOption>();
-    for (final Annotation[] annotations : parameterAnnotations) {
-      for (final Annotation annotation : annotations) {
-        if (annotation instanceof CliOption) {
-          final CliOption cliOption = (CliOption) annotation;
-          cliOptions.add(cliOption);
-        }
+  /**
+   * Returns the converter to use for the given type of parameter, looking it
+   * up among the registered converters the first time it's needed
+   * 
+   * @param requiredType the parameter's type
+   * @param optionContext the option's {@link CliOption#optionContext()}
+   * @return <code>null</code> if no converter supports them
+   */
+  private Converter<?> getConverter(final Class<?> requiredType, final String optionContext) {
+    Map<String, Converter<?>> convertersByContext = convertersByType.get(requiredType);
+    if (convertersByContext == null) {
+      convertersByContext = new HashMap<String, Converter<?>>();
+      convertersByType.put(requiredType, convertersByContext);
+    }
+    if (convertersByContext.containsKey(optionContext)) {
+      return convertersByContext.get(optionContext);
+    }
+    Converter<?> converter = null;
+    for (final Converter<?> candidate : converters) {
+      if (candidate.supports(requiredType, optionContext)) {
+        converter = candidate;
+        break;
       }
     }
-    return cliOptions;
+    convertersByContext.put(optionContext, converter);
+    return converter;
+  }
+
+  private Set<CliOption> getCliOptions(final MethodTarget methodTarget) {
+    final Set<CliOption> cliOptions = commandIndex.getCliOptions(methodTarget.getMethod());
+    if (cliOptions != null) {
+      return cliOptions;
+    }
+    return CommandIndex.getCliOptions(methodTarget.getMethod().getParameterAnnotations());
+  }
+
+  /**
+   * Forgets the loaded commands, along with their availability indicators
+   * and index
+   */
+  private void clearCommands() {
+    commands.clear();
+    availabilityIndicators.clear();
+    commandIndex.clear();
   }
 
   /**
@@ -1030,8 +1081,7 @@ public class SimpleParser implements Parser {
 
       if (commands.isEmpty() || hasToReloadComponents()) {
         // Cleaning commands and indicators
-        commands.clear();
-        availabilityIndicators.clear();
+        clearCommands();
         // Get all Services implement CommandMarker interface
         try {
           ServiceReference<?>[] references =
@@ -1052,6 +1102,7 @@ public class SimpleParser implements Parser {
       if (converters.isEmpty() || hasToReloadComponents()) {
         // Cleaning converters
         converters.clear();
+        convertersByType.clear();
         // Get all Services implement Converter interface
         try {
           ServiceReference<?>[] references =
@@ -1084,15 +1135,7 @@ public class SimpleParser implements Parser {
 
       // Return commands list
       final SortedSet<String> result = new TreeSet<String>(COMPARATOR);
-      for (final Object o : commands) {
-        final Method[] methods = o.getClass().getMethods();
-        for (final Method m : methods) {
-          final CliCommand cmd = m.getAnnotation(CliCommand.class);
-          if (cmd != null) {
-            result.addAll(Arrays.asList(cmd.value()));
-          }
-        }
-      }
+      result.addAll(commandIndex.getCommandValues());
       return result;
     }
   }
@@ -1125,8 +1168,7 @@ public class SimpleParser implements Parser {
 
     if (commands.isEmpty() || hasToReloadComponents()) {
       // Cleaning commands
-      commands.clear();
-      availabilityIndicators.clear();
+      clearCommands();
       // Get all Services implement CommandMarker interface
       try {
         ServiceReference<?>[] references =
@@ -1147,53 +1189,60 @@ public class SimpleParser implements Parser {
     Validate.notNull(buffer, "Buffer required");
     final Collection<MethodTarget> result = new HashSet<MethodTarget>();
 
-    // The reflection could certainly be optimised, but it's good enough for
-    // now (and cached reflection
-    // is unlikely to be noticeable to a human being using the CLI)
-    for (final CommandMarker command : commands) {
-      for (final Method method : command.getClass().getMethods()) {
-        final CliCommand cmd = method.getAnnotation(CliCommand.class);
-        if (cmd != null) {
-          // We have a @CliCommand.
-          if (checkAvailabilityIndicators) {
-            // Decide if this @CliCommand is available at this
-            // moment
-            Boolean available = null;
-            for (final String value : cmd.value()) {
-              final MethodTarget mt = getAvailabilityIndicator(value);
-              if (mt != null) {
-                Validate.isTrue(
-                    available == null,
-                    "More than one availability indicator is defined for '"
-                        + method.toGenericString() + "'");
-                try {
-                  available = (Boolean) mt.getMethod().invoke(mt.getTarget());
-                  // We should "break" here, but we loop over
-                  // all to ensure no conflicting availability
-                  // indicators are defined
-                } catch (final Exception e) {
-                  available = false;
-                }
-              }
-            }
-            // Skip this @CliCommand if it's not available
-            if (available != null && !available) {
-              continue;
-            }
-          }
-
-          for (final String value : cmd.value()) {
-            final String remainingBuffer = isMatch(buffer, value, strictMatching);
-            if (remainingBuffer != null) {
-              result.add(new MethodTarget(method, command, remainingBuffer, value));
-            }
-          }
+    // Only the commands whose words start with the buffer's words can
+    // match, and only those which match need their availability checked
+    final Map<MethodTarget, Boolean> availability = new HashMap<MethodTarget, Boolean>();
+    for (final CommandIndex.IndexedCommand candidate : commandIndex.getCandidates(buffer)) {
+      final String remainingBuffer = isMatch(buffer, candidate.getValue(), strictMatching);
+      if (remainingBuffer == null) {
+        continue;
+      }
+      final MethodTarget methodTarget = candidate.getMethodTarget();
+      if (checkAvailabilityIndicators) {
+        // Decide if this @CliCommand is available at this moment
+        Boolean available = availability.get(methodTarget);
+        if (available == null) {
+          available = isAvailable(methodTarget.getMethod(), candidate.getCliCommand());
+          availability.put(methodTarget, available);
+        }
+        // Skip this @CliCommand if it's not available
+        if (!available) {
+          continue;
         }
       }
+      result.add(new MethodTarget(methodTarget.getMethod(), methodTarget.getTarget(),
+          remainingBuffer, candidate.getValue(), methodTarget.getHandle()));
     }
     return result;
   }
 
+  /**
+   * Indicates whether the given command is available at this moment,
+   * according to its availability indicator if it has one
+   * 
+   * @param method the @CliCommand method
+   * @param cmd its @CliCommand annotation
+   * @return <code>true</code> if it has no availability indicator
+   */
+  private boolean isAvailable(final Method method, final CliCommand cmd) {
+    Boolean available = null;
+    for (final String value : cmd.value()) {
+      final BoundMethod<CliAvailabilityIndicator> indicator = getAvailabilityIndicator(value);
+      if (indicator != null) {
+        Validate.isTrue(available == null, "More than one availability indicator is defined for '"
+            + method.toGenericString() + "'");
+        try {
+          available = (Boolean) indicator.invoke(null);
+          // We should "break" here, but we loop over all to ensure no
+          // conflicting availability indicators are defined
+        } catch (final Exception e) {
+          available = false;
+        }
+      }
+    }
+    return available == null || available;
+  }
+
   /**
    * Normalises the given raw user input string ready for parsing
    * 
@@ -1244,7 +1293,8 @@ public class SimpleParser implements Parser {
           methodTarget.getMethod().getParameterAnnotations();
       if (parameterAnnotations.length == 0) {
         // No args
-        return new ParseResult(methodTarget.getMethod(), methodTarget.getTarget(), null);
+        return new ParseResult(methodTarget.getMethod(), methodTarget.getTarget(), null,
+            methodTarget.getHandle());
       }
 
       // Oh well, we need to convert some arguments
@@ -1272,7 +1322,7 @@ public class SimpleParser implements Parser {
         shellContext.setParameter(parameter, value);
       }
 
-      final Set<CliOption> cliOptions = getCliOptions(parameterAnnotations);
+      final Set<CliOption> cliOptions = getCliOptions(methodTarget);
       for (final CliOption cliOption : cliOptions) {
         final Class<?> requiredType =
             methodTarget.getMethod().getParameterTypes()[arguments.size()];
@@ -1366,14 +1416,7 @@ public class SimpleParser implements Parser {
           CliOptionContext.setOptionContext(cliOption.optionContext());
           CliSimpleParserContext.setSimpleParserContext(this);
           Object result;
-          Converter<?> c = null;
-          for (final Converter<?> candidate : converters) {
-            if (candidate.supports(requiredType, cliOption.optionContext())) {
-              // Found a usable converter
-              c = candidate;
-              break;
-            }
-          }
+          final Converter<?> c = getConverter(requiredType, cliOption.optionContext());
           if (c == null) {
             throw new IllegalStateException("TODO: Add basic type conversion");
             // TODO Fall back to a normal SimpleTypeConverter and
@@ -1439,7 +1482,7 @@ public class SimpleParser implements Parser {
       }
 
       return new ParseResult(methodTarget.getMethod(), methodTarget.getTarget(),
-          arguments.toArray());
+          arguments.toArray(), methodTarget.getHandle());
     }
   }
 
@@ -1457,20 +1500,15 @@ public class SimpleParser implements Parser {
 
     // Ensure the user didn't specified a not visible value
     if (!this.isVisibleParam(methodTarget.getKey(), cliOption, shellContext)) {
-      MethodTarget optionVisibilityIndicator =
+      BoundMethod<CliOptionVisibilityIndicator> optionVisibilityIndicator =
           optionVisibilityIndicators.get(methodTarget.getKey().concat("|")
               .concat(cliOption.key()[0]));
 
       // The user specified incompatible options
-      if (optionVisibilityIndicator != null && optionVisibilityIndicator.getMethod() != null) {
-        CliOptionVisibilityIndicator visibilityIndicator =
-            optionVisibilityIndicator.getMethod().getAnnotation(CliOptionVisibilityIndicator.class);
-
+      if (optionVisibilityIndicator != null) {
         // Get visibility indicator help message
-        if (visibilityIndicator != null) {
-          LOGGER.warning(visibilityIndicator.help());
-          throw new RuntimeException();
-        }
+        LOGGER.warning(optionVisibilityIndicator.getAnnotation().help());
+        throw new RuntimeException();
       }
     }
 
@@ -1482,20 +1520,14 @@ public class SimpleParser implements Parser {
       if (possibleValues != null && !possibleValues.contains(value)) {
 
         // The user specified an incorrect value
-        MethodTarget optionAutocompleteIndicator =
+        BoundMethod<CliOptionAutocompleteIndicator> optionAutocompleteIndicator =
             optionAutocompleteIndicators.get(methodTarget.getKey().concat("|")
                 .concat(cliOption.key()[0]));
 
-        if (optionAutocompleteIndicator != null && optionAutocompleteIndicator.getMethod() != null) {
-          CliOptionAutocompleteIndicator autocompleteIndicator =
-              optionAutocompleteIndicator.getMethod().getAnnotation(
-                  CliOptionAutocompleteIndicator.class);
-
+        if (optionAutocompleteIndicator != null) {
           // Get autocomplete indicator help message
-          if (autocompleteIndicator != null) {
-            LOGGER.warning(autocompleteIndicator.help());
-            throw new RuntimeException();
-          }
+          LOGGER.warning(optionAutocompleteIndicator.getAnnotation().help());
+          throw new RuntimeException();
         }
       }
     }
@@ -1540,17 +1572,12 @@ public class SimpleParser implements Parser {
     if (cliOption.mandatory()) {
       String[] option = cliOption.key();
       try {
-        MethodTarget dynamicMandatoryIndicator =
+        BoundMethod<CliOptionMandatoryIndicator> dynamicMandatoryIndicator =
             dynamicMandatoryIndicators.get(command.concat("|").concat(option[0]));
         if (dynamicMandatoryIndicator == null) {
           return cliOption.mandatory();
         } else {
-          if (dynamicMandatoryIndicator.getMethod().getParameterTypes().length == 1) {
-            return (Boolean) dynamicMandatoryIndicator.getMethod().invoke(
-                dynamicMandatoryIndicator.getTarget(), shellContext);
-          }
-          return (Boolean) dynamicMandatoryIndicator.getMethod().invoke(
-              dynamicMandatoryIndicator.getTarget());
+          return (Boolean) dynamicMandatoryIndicator.invoke(shellContext);
         }
       } catch (Exception e) {
         throw new RuntimeException(
@@ -1576,13 +1603,12 @@ public class SimpleParser implements Parser {
   private boolean isVisibleParam(String command, CliOption cliOption, ShellContextImpl shellContext) {
     String[] option = cliOption.key();
     try {
-      MethodTarget optionVisibilityIndicator =
+      BoundMethod<CliOptionVisibilityIndicator> optionVisibilityIndicator =
           optionVisibilityIndicators.get(command.concat("|").concat(option[0]));
       if (optionVisibilityIndicator == null) {
         return true;
       } else {
-        return (Boolean) optionVisibilityIndicator.getMethod().invoke(
-            optionVisibilityIndicator.getTarget(), shellContext);
+        return (Boolean) optionVisibilityIndicator.invoke(shellContext);
       }
     } catch (Exception e) {
       throw new RuntimeException(
@@ -1608,18 +1634,12 @@ public class SimpleParser implements Parser {
       ShellContextImpl shellContext) {
     String[] option = cliOption.key();
     try {
-      MethodTarget optionAutocompleteIndicator =
+      BoundMethod<CliOptionAutocompleteIndicator> optionAutocompleteIndicator =
           optionAutocompleteIndicators.get(command.concat("|").concat(option[0]));
       if (optionAutocompleteIndicator == null) {
         return null;
       } else {
-        if (optionAutocompleteIndicator.getMethod().getParameterTypes().length == 0) {
-          return (List<String>) optionAutocompleteIndicator.getMethod().invoke(
-              optionAutocompleteIndicator.getTarget());
-        } else {
-          return (List<String>) optionAutocompleteIndicator.getMethod().invoke(
-              optionAutocompleteIndicator.getTarget(), shellContext);
-        }
+        return (List<String>) optionAutocompleteIndicator.invoke(shellContext);
       }
     } catch (Exception e) {
       throw new RuntimeException(
@@ -1633,12 +1653,11 @@ public class SimpleParser implements Parser {
   private boolean hasToIncludeSpaceOnFinish(String command, CliOption cliOption) {
     String[] option = cliOption.key();
     try {
-      MethodTarget optionAutocompleteIndicator =
+      BoundMethod<CliOptionAutocompleteIndicator> optionAutocompleteIndicator =
           optionAutocompleteIndicators.get(command.concat("|").concat(option[0]));
       if (optionAutocompleteIndicator != null) {
         CliOptionAutocompleteIndicator autocompleteIndicator =
-            optionAutocompleteIndicator.getMethod().getAnnotation(
-                CliOptionAutocompleteIndicator.class);
+            optionAutocompleteIndicator.getAnnotation();
 
         return autocompleteIndicator.includeSpaceOnFinish();
 
@@ -1665,12 +1684,11 @@ public class SimpleParser implements Parser {
   private boolean autocompleteNeedsValidation(String command, CliOption cliOption) {
     String[] option = cliOption.key();
     try {
-      MethodTarget optionAutocompleteIndicator =
+      BoundMethod<CliOptionAutocompleteIndicator> optionAutocompleteIndicator =
           optionAutocompleteIndicators.get(command.concat("|").concat(option[0]));
       if (optionAutocompleteIndicator != null) {
         CliOptionAutocompleteIndicator autocompleteIndicator =
-            optionAutocompleteIndicator.getMethod().getAnnotation(
-                CliOptionAutocompleteIndicator.class);
+            optionAutocompleteIndicator.getAnnotation();
 
         return autocompleteIndicator.validate();
 
@@ -1705,6 +1723,7 @@ public class SimpleParser implements Parser {
   public final void remove(final CommandMarker command) {
     synchronized (mutex) {
       commands.remove(command);
+      commandIndex.remove(command);
       for (final Method m : command.getClass().getMethods()) {
         final CliAvailabilityIndicator availability =
             m.getAnnotation(CliAvailabilityIndicator.class);
@@ -1720,6 +1739,7 @@ public class SimpleParser implements Parser {
   public final void remove(final Converter<?> converter) {
     synchronized (mutex) {
       converters.remove(converter);
+      convertersByType.clear();
     }
   }
 
@@ -1793,12 +1813,32 @@ public class SimpleParser implements Parser {
     String homePath = new File(".").getPath();
     String pomPath = homePath + "/pom.xml";
     File pom = new File(pomPath);
+
+    // This is checked on every completion, so only read the pom again once
+    // it has changed
+    final long pomLastModified = pom.lastModified();
+    final long pomLength = pom.length();
+    if (rooProjectVersion == null || pomLastModified != rooProjectVersionPomLastModified
+        || pomLength != rooProjectVersionPomLength) {
+      rooProjectVersion = readRooProjectVersion(pom);
+      rooProjectVersionPomLastModified = pomLastModified;
+      rooProjectVersionPomLength = pomLength;
+    }
+    return rooProjectVersion;
+  }
+
+  private String readRooProjectVersion(final File pom) {
+    InputStream is = null;
     try {
       if (pom.exists()) {
-        InputStream is = new FileInputStream(pom);
+        is = new FileInputStream(pom);
         Document docXml = XmlUtils.readXml(is);
         Element document = docXml.getDocumentElement();
         Element rooVersionElement = XmlUtils.findFirstElement("properties/roo.version", document);
+        if (rooVersionElement == null) {
+          // Not a Roo project, e.g. the shell was started from Roo's own sources
+          return "UNKNOWN";
+        }
         String rooVersion = rooVersionElement.getTextContent();
 
         return rooVersion;
@@ -1808,11 +1848,14 @@ public class SimpleParser implements Parser {
 
     } catch (FileNotFoundException e) {
       e.printStackTrace();
+    } finally {
+      IOUtils.closeQuietly(is);
     }
 
     return "";
   }
 
+
   public static String versionInfoWithoutGit() {
     // Try to determine the bundle version
     String bundleVersion = null;
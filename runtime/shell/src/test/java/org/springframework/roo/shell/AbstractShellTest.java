@@ -1,20 +1,115 @@
 package org.springframework.roo.shell;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
 import org.junit.Test;
 
 /**
  * Unit test of {@link AbstractShell} (not a superclass for writing tests for
  * {@link AbstractShell} subclasses)
- * 
+ *
  * @author Andrew Swan
  * @since 1.2.0
  */
 public class AbstractShellTest {
 
+  /**
+   * A shell that records the script lines it executes, and the batches they
+   * are executed in, failing any line that starts with "fail"
+   */
+  private class ScriptShell extends AbstractShell {
+
+    @Override
+    protected boolean executeScriptLine(final String line) {
+      events.add(line);
+      return !line.startsWith("fail");
+    }
+
+    @Override
+    protected Collection<URL> findResources(final String path) {
+      return null;
+    }
+
+    @Override
+    protected ExecutionStrategy getExecutionStrategy() {
+      return executionStrategy;
+    }
+
+    @Override
+    protected String getHomeAsString() {
+      return script.getParent();
+    }
+
+    @Override
+    protected Parser getParser() {
+      return null;
+    }
+
+    public boolean isDevelopmentMode() {
+      return false;
+    }
+
+    public void promptLoop() {}
+
+    public void setDevelopmentMode(final boolean developmentMode) {}
+  }
+
+  private final List<String> events = new ArrayList<String>();
+  private final ExecutionStrategy executionStrategy = new ExecutionStrategy() {
+
+    public void beginBatch(final int commitInterval) {
+      events.add("begin " + commitInterval);
+    }
+
+    public void endBatch() {
+      events.add("end");
+    }
+
+    public Object execute(final ParseResult parseResult) {
+      return null;
+    }
+
+    public boolean isReadyForCommands() {
+      return true;
+    }
+
+    public void terminate() {}
+  };
+  private File script;
+  private ScriptShell shell;
+
+  private void runScript(final boolean batch, final int batchSize, final String... lines)
+      throws IOException {
+    FileUtils.writeLines(script, Arrays.asList(lines));
+    shell.script(script, false, null, batch, batchSize, null);
+  }
+
+  @Before
+  public void setUp() throws IOException {
+    script = File.createTempFile(getClass().getSimpleName(), ".roo");
+    shell = new ScriptShell();
+  }
+
+  @After
+  public void tearDown() {
+    FileUtils.deleteQuietly(script);
+  }
+
   @Test
   public void testProps() {
     // Set up
@@ -27,4 +122,53 @@ public class AbstractShellTest {
     // Check
     assertNotNull(props);
   }
+
+  @Test
+  public void testScriptAsBatch() throws IOException {
+    // Invoke
+    runScript(true, 2, "entity jpa --class ~.Owner", "", "field string --fieldName name");
+
+    // Check
+    assertEquals(
+        Arrays.asList("begin 2", "entity jpa --class ~.Owner", "field string --fieldName name",
+            "end"), events);
+  }
+
+  @Test
+  public void testScriptAsBatchEndsBatchWhenLineFails() throws IOException {
+    // Invoke
+    try {
+      runScript(true, 0, "entity jpa --class ~.Owner", "fail", "field string --fieldName name");
+      fail("Expected an IllegalStateException");
+    } catch (final IllegalStateException expected) {
+      assertEquals("Script execution aborted", expected.getMessage());
+    }
+
+    // Check
+    assertEquals(Arrays.asList("begin 0", "entity jpa --class ~.Owner", "fail", "end"), events);
+  }
+
+  @Test
+  public void testScriptAsBatchRejectsNegativeBatchSize() throws IOException {
+    // Invoke
+    try {
+      runScript(true, -1, "entity jpa --class ~.Owner");
+      fail("Expected an IllegalArgumentException");
+    } catch (final IllegalArgumentException expected) {
+      assertEquals("Batch size must be 0 or more", expected.getMessage());
+    }
+
+    // Check
+    assertEquals(0, events.size());
+  }
+
+  @Test
+  public void testScriptWithoutBatch() throws IOException {
+    // Invoke
+    runScript(false, 0, "entity jpa --class ~.Owner", "field string --fieldName name");
+
+    // Check
+    assertEquals(Arrays.asList("entity jpa --class ~.Owner", "field string --fieldName name"),
+        events);
+  }
 }
@@ -0,0 +1,209 @@
+package org.springframework.roo.shell;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+import org.junit.Test;
+
+/**
+ * Unit test of {@link BoundMethod}, and of invoking a {@link ParseResult}
+ * through the handle it resolves
+ *
+ * @since 2.0
+ */
+public class BoundMethodTest {
+
+  /**
+   * Not public, so its methods can only be invoked once made accessible
+   */
+  static class Indicators implements CommandMarker {
+
+    private ShellContext lastShellContext;
+
+    @CliCommand("greet")
+    public String greet(@CliOption(key = "name") final String name,
+        @CliOption(key = "times") final int times) {
+      final StringBuilder greeting = new StringBuilder();
+      for (int i = 0; i < times; i++) {
+        greeting.append("Hello ").append(name).append("!");
+      }
+      return greeting.toString();
+    }
+
+    @CliAvailabilityIndicator("greet")
+    public boolean isGreetAvailable() {
+      return true;
+    }
+
+    @CliOptionVisibilityIndicator(command = "greet", params = "times", help = "")
+    public boolean isTimesVisible(final ShellContext shellContext) {
+      lastShellContext = shellContext;
+      return false;
+    }
+
+    @CliAvailabilityIndicator("error")
+    public boolean isErrorAvailable() {
+      throw new AssertionError("Indicator error");
+    }
+
+    @CliAvailabilityIndicator("fail")
+    public boolean isFailAvailable() {
+      throw new IllegalStateException("Indicator failed");
+    }
+
+    @CliCommand("save")
+    public void save() throws IOException {
+      throw new IOException("Disk full");
+    }
+  }
+
+  private final Indicators indicators = new Indicators();
+
+  private <A extends Annotation> BoundMethod<A> bind(final String methodName,
+      final Class<A> annotationType, final Class<?>... parameterTypes) throws Exception {
+    final Method method = Indicators.class.getMethod(methodName, parameterTypes);
+    return new BoundMethod<A>(method, indicators, method.getAnnotation(annotationType));
+  }
+
+  @Test
+  public void testInvokeIndicatorTakingNoArguments() throws Exception {
+    // Set up
+    final BoundMethod<CliAvailabilityIndicator> indicator =
+        bind("isGreetAvailable", CliAvailabilityIndicator.class);
+
+    // Invoke
+    final Object available = indicator.invoke(null);
+
+    // Check
+    assertEquals(Boolean.TRUE, available);
+    assertEquals("greet", indicator.getAnnotation().value()[0]);
+  }
+
+  @Test
+  public void testInvokeIndicatorTakingShellContext() throws Exception {
+    // Set up
+    final BoundMethod<CliOptionVisibilityIndicator> indicator =
+        bind("isTimesVisible", CliOptionVisibilityIndicator.class, ShellContext.class);
+    final ShellContext shellContext = new ShellContextImpl();
+
+    // Invoke
+    final Object visible = indicator.invoke(shellContext);
+
+    // Check
+    assertEquals(Boolean.FALSE, visible);
+    assertSame(shellContext, indicators.lastShellContext);
+  }
+
+  @Test
+  public void testInvokeRethrowsErrorThrownByIndicator() throws Exception {
+    // Set up
+    final BoundMethod<CliAvailabilityIndicator> indicator =
+        bind("isErrorAvailable", CliAvailabilityIndicator.class);
+
+    // Invoke
+    try {
+      indicator.invoke(null);
+      fail("Expected an AssertionError");
+    } catch (final AssertionError expected) {
+      // Check
+      assertEquals("Indicator error", expected.getMessage());
+    }
+  }
+
+  @Test
+  public void testInvokeWrapsExceptionThrownByIndicator() throws Exception {
+    // Set up
+    final BoundMethod<CliAvailabilityIndicator> indicator =
+        bind("isFailAvailable", CliAvailabilityIndicator.class);
+
+    // Invoke
+    try {
+      indicator.invoke(null);
+      fail("Expected an InvocationTargetException");
+    } catch (final InvocationTargetException expected) {
+      // Check
+      assertEquals("Indicator failed", expected.getCause().getMessage());
+    }
+  }
+
+  @Test
+  public void testParseResultInvokesCommandThroughHandle() throws Exception {
+    // Set up
+    final Method method = Indicators.class.getMethod("greet", String.class, int.class);
+    final ParseResult parseResult =
+        new ParseResult(method, indicators, new Object[] {"Roo", 2}, BoundMethod.unreflect(method));
+
+    // Invoke
+    final Object greeting = parseResult.invoke();
+
+    // Check
+    assertEquals("Hello Roo!Hello Roo!", greeting);
+  }
+
+  @Test
+  public void testParseResultInvokesCommandReflectivelyWithoutHandle() throws Exception {
+    // Set up
+    final Method method = Indicators.class.getMethod("greet", String.class, int.class);
+    method.setAccessible(true);
+    final ParseResult parseResult = new ParseResult(method, indicators, new Object[] {"Roo", 1});
+
+    // Invoke
+    final Object greeting = parseResult.invoke();
+
+    // Check
+    assertEquals("Hello Roo!", greeting);
+  }
+
+  @Test
+  public void testParseResultRejectsArgumentOfWrongType() throws Exception {
+    // Set up
+    final Method method = Indicators.class.getMethod("greet", String.class, int.class);
+    final ParseResult parseResult =
+        new ParseResult(method, indicators, new Object[] {"Roo", "twice"},
+            BoundMethod.unreflect(method));
+
+    // Invoke
+    try {
+      parseResult.invoke();
+      fail("Expected a ClassCastException");
+    } catch (final ClassCastException expected) {
+      // Check: not mistaken for an exception thrown by the command
+    }
+  }
+
+  @Test
+  public void testParseResultWrapsCheckedExceptionThrownByCommand() throws Exception {
+    // Set up
+    final Method method = Indicators.class.getMethod("save");
+    final ParseResult parseResult =
+        new ParseResult(method, indicators, null, BoundMethod.unreflect(method));
+
+    // Invoke
+    try {
+      parseResult.invoke();
+      fail("Expected an InvocationTargetException");
+    } catch (final InvocationTargetException expected) {
+      // Check
+      assertTrue(expected.getCause() instanceof IOException);
+      assertEquals("Disk full", expected.getCause().getMessage());
+    }
+  }
+
+  @Test
+  public void testUnreflectResolvesMethodOfNonPublicClass() throws Exception {
+    // Invoke
+    final Object handle =
+        BoundMethod.unreflect(Indicators.class.getMethod("greet", String.class, int.class));
+
+    // Check
+    assertNotNull(handle);
+  }
+}
@@ -0,0 +1,115 @@
+package org.springframework.roo.shell;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit test of {@link CommandIndex}
+ *
+ * @since 2.0
+ */
+public class CommandIndexTest {
+
+  public static class ProjectCommands implements CommandMarker {
+
+    @CliCommand(value = {"project setup", "project create"})
+    public void setup(@CliOption(key = "topLevelPackage") final String topLevelPackage) {}
+
+    @CliCommand("project scan")
+    public void scan() {}
+
+    @CliCommand("project scan speed")
+    public void scanSpeed(@CliOption(key = "ms") final long ms) {}
+  }
+
+  public static class WebCommands implements CommandMarker {
+
+    @CliCommand("web mvc setup")
+    public void setup() {}
+  }
+
+  private static final String[] BUFFERS = {"", "p", "pro", "project", "project ", "project s",
+      "proj sc", "project scan", "project scan ", "project scan sp",
+      "project scan speed --ms 100", "project setup --topLevelPackage com.foo", "w m s", "web",
+      "mvc", "scan", "project web", "x"};
+
+  // Fixture
+  private CommandIndex commandIndex;
+  private ProjectCommands projectCommands;
+
+  private Set<String> getCandidateValues(final String buffer) {
+    final Set<String> values = new HashSet<String>();
+    for (final CommandIndex.IndexedCommand candidate : commandIndex.getCandidates(buffer)) {
+      values.add(candidate.getValue());
+    }
+    return values;
+  }
+
+  @Before
+  public void setUp() {
+    commandIndex = new CommandIndex();
+    projectCommands = new ProjectCommands();
+    commandIndex.add(projectCommands);
+    commandIndex.add(new WebCommands());
+  }
+
+  @Test
+  public void testCandidatesIncludeEveryMatch() {
+    for (final String buffer : BUFFERS) {
+      final Set<String> candidates = getCandidateValues(buffer);
+      for (final String command : commandIndex.getCommandValues()) {
+        if (SimpleParser.isMatch(buffer, command, false) != null) {
+          assertTrue("'" + command + "' should be a candidate for '" + buffer + "'",
+              candidates.contains(command));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testCandidatesAreNarrowedByEachWord() {
+    assertEquals(5, getCandidateValues("").size());
+    assertEquals(4, getCandidateValues("pro").size());
+    assertEquals(2, getCandidateValues("proj sc").size());
+    assertEquals(1, getCandidateValues("project scan --quiet").size());
+    assertEquals(0, getCandidateValues("scan").size());
+  }
+
+  @Test
+  public void testCliOptionsAreResolvedOnce() {
+    final Collection<CommandIndex.IndexedCommand> candidates =
+        commandIndex.getCandidates("project setup");
+    assertEquals(1, candidates.size());
+    final CommandIndex.IndexedCommand candidate = candidates.iterator().next();
+    assertEquals(1, candidate.getCliOptions().size());
+    assertEquals("topLevelPackage", candidate.getCliOptions().iterator().next().key()[0]);
+    assertEquals(candidate.getCliOptions(),
+        commandIndex.getCliOptions(candidate.getMethodTarget().getMethod()));
+  }
+
+  @Test
+  public void testRemovedCommandsAreNoLongerCandidates() throws Exception {
+    // Set up
+    assertEquals(4, getCandidateValues("project").size());
+
+    // Invoke
+    commandIndex.remove(projectCommands);
+
+    // Check
+    assertEquals(0, getCandidateValues("project").size());
+    assertEquals(1, commandIndex.getCommandValues().size());
+    for (final CommandIndex.IndexedCommand candidate : commandIndex.getCandidates("")) {
+      assertEquals("web mvc setup", candidate.getValue());
+    }
+    assertNull(commandIndex.getCliOptions(ProjectCommands.class.getMethod("setup",
+        String.class)));
+  }
+}
@@ -0,0 +1,237 @@
+package org.springframework.roo.support.util;
+
+import java.util.BitSet;
+
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+
+/**
+ * An {@link XMLStreamWriter} that starts each element, comment and
+ * processing instruction on a new line, indented by its depth. An element
+ * that has child elements has its end tag on a line of its own, unless it
+ * also contains text, in which case its content is written as given so as not
+ * to change that text.
+ *
+ * @since 2.0
+ * @see XmlUtils#createIndentingXmlStreamWriter(java.io.OutputStream)
+ */
+class IndentingXmlStreamWriter implements XMLStreamWriter {
+
+  private int depth;
+  private final XMLStreamWriter delegate;
+  // Whether the open element at each depth has child nodes, or text
+  private final BitSet hasChildren = new BitSet();
+  private final BitSet hasText = new BitSet();
+  private final String indent;
+  private boolean started;
+
+  /**
+   * Constructor
+   *
+   * @param delegate the writer to write to (required)
+   * @param indent the indentation per level of depth (required)
+   */
+  IndentingXmlStreamWriter(final XMLStreamWriter delegate, final String indent) {
+    Validate.notNull(delegate, "Delegate writer required");
+    Validate.notNull(indent, "Indent required");
+    this.delegate = delegate;
+    this.indent = indent;
+  }
+
+  private void beforeNode() throws XMLStreamException {
+    if (depth > 0) {
+      hasChildren.set(depth - 1);
+      if (hasText.get(depth - 1)) {
+        return;
+      }
+    }
+    if (started) {
+      delegate.writeCharacters(IOUtils.LINE_SEPARATOR + StringUtils.repeat(indent, depth));
+    }
+    started = true;
+  }
+
+  private void beforeText() {
+    if (depth > 0) {
+      hasText.set(depth - 1);
+    }
+    started = true;
+  }
+
+  private void startElement() {
+    hasChildren.clear(depth);
+    hasText.clear(depth);
+    depth++;
+  }
+
+  public void close() throws XMLStreamException {
+    delegate.close();
+  }
+
+  public void flush() throws XMLStreamException {
+    delegate.flush();
+  }
+
+  public NamespaceContext getNamespaceContext() {
+    return delegate.getNamespaceContext();
+  }
+
+  public String getPrefix(final String uri) throws XMLStreamException {
+    return delegate.getPrefix(uri);
+  }
+
+  public Object getProperty(final String name) {
+    return delegate.getProperty(name);
+  }
+
+  public void setDefaultNamespace(final String uri) throws XMLStreamException {
+    delegate.setDefaultNamespace(uri);
+  }
+
+  public void setNamespaceContext(final NamespaceContext context) throws XMLStreamException {
+    delegate.setNamespaceContext(context);
+  }
+
+  public void setPrefix(final String prefix, final String uri) throws XMLStreamException {
+    delegate.setPrefix(prefix, uri);
+  }
+
+  public void writeAttribute(final String localName, final String value)
+      throws XMLStreamException {
+    delegate.writeAttribute(localName, value);
+  }
+
+  public void writeAttribute(final String namespaceURI, final String localName,
+      final String value) throws XMLStreamException {
+    delegate.writeAttribute(namespaceURI, localName, value);
+  }
+
+  public void writeAttribute(final String prefix, final String namespaceURI,
+      final String localName, final String value) throws XMLStreamException {
+    delegate.writeAttribute(prefix, namespaceURI, localName, value);
+  }
+
+  public void writeCData(final String data) throws XMLStreamException {
+    beforeText();
+    delegate.writeCData(data);
+  }
+
+  public void writeCharacters(final char[] text, final int start, final int len)
+      throws XMLStreamException {
+    beforeText();
+    delegate.writeCharacters(text, start, len);
+  }
+
+  public void writeCharacters(final String text) throws XMLStreamException {
+    beforeText();
+    delegate.writeCharacters(text);
+  }
+
+  public void writeComment(final String data) throws XMLStreamException {
+    beforeNode();
+    delegate.writeComment(data);
+  }
+
+  public void writeDefaultNamespace(final String namespaceURI) throws XMLStreamException {
+    delegate.writeDefaultNamespace(namespaceURI);
+  }
+
+  public void writeDTD(final String dtd) throws XMLStreamException {
+    beforeNode();
+    delegate.writeDTD(dtd);
+  }
+
+  public void writeEmptyElement(final String localName) throws XMLStreamException {
+    beforeNode();
+    delegate.writeEmptyElement(localName);
+  }
+
+  public void writeEmptyElement(final String namespaceURI, final String localName)
+      throws XMLStreamException {
+    beforeNode();
+    delegate.writeEmptyElement(namespaceURI, localName);
+  }
+
+  public void writeEmptyElement(final String prefix, final String localName,
+      final String namespaceURI) throws XMLStreamException {
+    beforeNode();
+    delegate.writeEmptyElement(prefix, localName, namespaceURI);
+  }
+
+  public void writeEndDocument() throws XMLStreamException {
+    while (depth > 0) {
+      writeEndElement();
+    }
+    delegate.writeEndDocument();
+  }
+
+  public void writeEndElement() throws XMLStreamException {
+    depth--;
+    if (hasChildren.get(depth) && !hasText.get(depth)) {
+      delegate.writeCharacters(IOUtils.LINE_SEPARATOR + StringUtils.repeat(indent, depth));
+    }
+    delegate.writeEndElement();
+  }
+
+  public void writeEntityRef(final String name) throws XMLStreamException {
+    beforeText();
+    delegate.writeEntityRef(name);
+  }
+
+  public void writeNamespace(final String prefix, final String namespaceURI)
+      throws XMLStreamException {
+    delegate.writeNamespace(prefix, namespaceURI);
+  }
+
+  public void writeProcessingInstruction(final String target) throws XMLStreamException {
+    beforeNode();
+    delegate.writeProcessingInstruction(target);
+  }
+
+  public void writeProcessingInstruction(final String target, final String data)
+      throws XMLStreamException {
+    beforeNode();
+    delegate.writeProcessingInstruction(target, data);
+  }
+
+  public void writeStartDocument() throws XMLStreamException {
+    delegate.writeStartDocument();
+    started = true;
+  }
+
+  public void writeStartDocument(final String version) throws XMLStreamException {
+    delegate.writeStartDocument(version);
+    started = true;
+  }
+
+  public void writeStartDocument(final String encoding, final String version)
+      throws XMLStreamException {
+    delegate.writeStartDocument(encoding, version);
+    started = true;
+  }
+
+  public void writeStartElement(final String localName) throws XMLStreamException {
+    beforeNode();
+    delegate.writeStartElement(localName);
+    startElement();
+  }
+
+  public void writeStartElement(final String namespaceURI, final String localName)
+      throws XMLStreamException {
+    beforeNode();
+    delegate.writeStartElement(namespaceURI, localName);
+    startElement();
+  }
+
+  public void writeStartElement(final String prefix, final String localName,
+      final String namespaceURI) throws XMLStreamException {
+    beforeNode();
+    delegate.writeStartElement(prefix, localName, namespaceURI);
+    startElement();
+  }
+}
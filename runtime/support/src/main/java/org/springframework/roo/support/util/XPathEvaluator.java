@@ -0,0 +1,277 @@
+package org.springframework.roo.support.util;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * Evaluates the XPath expressions given to {@link XmlUtils}. Neither
+ * {@link XPath} nor {@link XPathExpression} is thread-safe, so each thread has
+ * its own instance of this class, holding its own {@link XPath} and its most
+ * recently used compiled expressions.
+ * <p>
+ * Expressions that are nothing but a path of element names, such as
+ * <code>/project/dependencies/dependency</code> or
+ * <code>build/plugins</code>, are evaluated by walking the child elements of
+ * the context node instead of by the XPath engine. As with the engine, element
+ * prefixes are ignored and elements in a namespace never match.
+ *
+ * @since 2.0
+ */
+final class XPathEvaluator {
+
+  private static final XPathFactory FACTORY = XPathFactory.newInstance();
+  private static final AtomicLong HITS = new AtomicLong();
+  private static final int MAX_CACHED_EXPRESSIONS = 256;
+  private static final AtomicLong MISSES = new AtomicLong();
+  private static final AtomicLong SIMPLE_PATHS = new AtomicLong();
+  private static final ThreadLocal<XPathEvaluator> INSTANCE = new ThreadLocal<XPathEvaluator>() {
+    @Override
+    protected XPathEvaluator initialValue() {
+      return new XPathEvaluator();
+    }
+  };
+
+  /**
+   * Returns the calling thread's evaluator
+   *
+   * @return a non-<code>null</code> instance
+   */
+  static XPathEvaluator getInstance() {
+    return INSTANCE.get();
+  }
+
+  /**
+   * Returns the cache statistics of all threads' evaluators
+   *
+   * @return a non-blank description
+   */
+  static String getStatistics() {
+    final long hits = HITS.get();
+    final long requests = hits + MISSES.get();
+    final ToStringBuilder builder =
+        new ToStringBuilder(XPathEvaluator.class, ToStringStyle.NO_CLASS_NAME_STYLE);
+    builder.append("hits", hits);
+    builder.append("misses", requests - hits);
+    builder.append("hitRatio", requests == 0 ? "0%" : Math.round(hits * 100.0 / requests) + "%");
+    builder.append("simplePathEvaluations", SIMPLE_PATHS.get());
+    return XPathEvaluator.class.getSimpleName() + ":" + builder.toString();
+  }
+
+  /**
+   * Parses the given expression as a path of element names
+   *
+   * @param expression the expression to parse
+   * @return the names, preceded by an empty string if the path is absolute;
+   *         <code>null</code> if the expression is anything but a path of
+   *         element names
+   */
+  static String[] getSimplePath(final String expression) {
+    final String[] steps = StringUtils.splitPreserveAllTokens(expression, '/');
+    if (steps == null || steps.length == 0) {
+      return null;
+    }
+    for (int i = 0; i < steps.length; i++) {
+      if (!isElementName(steps[i]) && !(i == 0 && steps[i].length() == 0 && steps.length > 1)) {
+        return null;
+      }
+    }
+    return steps;
+  }
+
+  private static boolean isElementName(final String step) {
+    if (step.length() == 0) {
+      return false;
+    }
+    final char first = step.charAt(0);
+    if (!Character.isLetter(first) && first != '_') {
+      return false;
+    }
+    for (int i = 1; i < step.length(); i++) {
+      final char c = step.charAt(i);
+      if (!Character.isLetterOrDigit(c) && c != '_' && c != '-' && c != '.') {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isNamed(final Node node, final String name) {
+    if (node.getNodeType() != Node.ELEMENT_NODE || StringUtils.isNotEmpty(node.getNamespaceURI())) {
+      return false;
+    }
+    String localName = node.getLocalName();
+    if (localName == null) {
+      localName = StringUtils.substringAfterLast(node.getNodeName(), ":");
+      if (localName.length() == 0) {
+        localName = node.getNodeName();
+      }
+    }
+    return name.equals(localName);
+  }
+
+  private final Map<String, Object> compiledExpressions = new LinkedHashMap<String, Object>(16,
+      0.75f, true) {
+
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected boolean removeEldestEntry(final Map.Entry<String, Object> eldest) {
+      return size() > MAX_CACHED_EXPRESSIONS;
+    }
+  };
+
+  private final XPath xPath;
+
+  private XPathEvaluator() {
+    synchronized (FACTORY) {
+      xPath = FACTORY.newXPath();
+    }
+  }
+
+  private void addMatches(final Node parent, final String[] steps, final int step,
+      final List<Element> matches) {
+    final NodeList children = parent.getChildNodes();
+    for (int i = 0, n = children.getLength(); i < n; i++) {
+      final Node child = children.item(i);
+      if (isNamed(child, steps[step])) {
+        if (step == steps.length - 1) {
+          matches.add((Element) child);
+        } else {
+          addMatches(child, steps, step + 1, matches);
+        }
+      }
+    }
+  }
+
+  /**
+   * Evaluates the given expression as a node set
+   *
+   * @param expression the expression to evaluate (required)
+   * @param context the node against which to evaluate it (required)
+   * @return the matching elements in document order (never <code>null</code>)
+   * @throws XPathExpressionException if the expression is invalid
+   */
+  List<Element> findElements(final String expression, final Node context)
+      throws XPathExpressionException {
+    final Object compiled = getCompiled(expression);
+    final List<Element> elements = new ArrayList<Element>();
+    if (compiled instanceof String[]) {
+      final Node start = getStart((String[]) compiled, context);
+      if (start != null) {
+        SIMPLE_PATHS.incrementAndGet();
+        addMatches(start, (String[]) compiled, getFirstStep((String[]) compiled), elements);
+        return elements;
+      }
+    }
+    final NodeList nodes =
+        (NodeList) getExpression(expression, compiled).evaluate(context, XPathConstants.NODESET);
+    for (int i = 0, n = nodes.getLength(); i < n; i++) {
+      elements.add((Element) nodes.item(i));
+    }
+    return elements;
+  }
+
+  private Element findFirst(final Node parent, final String[] steps, final int step) {
+    final NodeList children = parent.getChildNodes();
+    for (int i = 0, n = children.getLength(); i < n; i++) {
+      final Node child = children.item(i);
+      if (isNamed(child, steps[step])) {
+        if (step == steps.length - 1) {
+          return (Element) child;
+        }
+        final Element match = findFirst(child, steps, step + 1);
+        if (match != null) {
+          return match;
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Evaluates the given expression as a single node
+   *
+   * @param expression the expression to evaluate (required)
+   * @param context the node against which to evaluate it (required)
+   * @return the first matching node in document order, if any
+   * @throws XPathExpressionException if the expression is invalid
+   */
+  Node findNode(final String expression, final Node context) throws XPathExpressionException {
+    final Object compiled = getCompiled(expression);
+    if (compiled instanceof String[]) {
+      final Node start = getStart((String[]) compiled, context);
+      if (start != null) {
+        SIMPLE_PATHS.incrementAndGet();
+        return findFirst(start, (String[]) compiled, getFirstStep((String[]) compiled));
+      }
+    }
+    return (Node) getExpression(expression, compiled).evaluate(context, XPathConstants.NODE);
+  }
+
+  /**
+   * Returns the given expression from the cache, parsing or compiling it
+   * first if necessary
+   *
+   * @return either a simple path or an {@link XPathExpression}
+   */
+  private Object getCompiled(final String expression) throws XPathExpressionException {
+    Object compiled = compiledExpressions.get(expression);
+    if (compiled != null) {
+      HITS.incrementAndGet();
+      return compiled;
+    }
+    MISSES.incrementAndGet();
+    compiled = getSimplePath(expression);
+    if (compiled == null) {
+      compiled = xPath.compile(expression);
+    }
+    compiledExpressions.put(expression, compiled);
+    return compiled;
+  }
+
+  private XPathExpression getExpression(final String expression, final Object compiled)
+      throws XPathExpressionException {
+    if (compiled instanceof XPathExpression) {
+      return (XPathExpression) compiled;
+    }
+    // A simple path against a node outside any document; leave it to the
+    // engine, which is not worth caching for such a rare case
+    return xPath.compile(expression);
+  }
+
+  private int getFirstStep(final String[] steps) {
+    return steps[0].length() == 0 ? 1 : 0;
+  }
+
+  /**
+   * Returns the node whose children the first step of the given path selects
+   * from, or <code>null</code> if the path is absolute but the given node is
+   * not part of a document
+   */
+  private Node getStart(final String[] steps, final Node context) {
+    if (steps[0].length() > 0) {
+      return context;
+    }
+    Node root = context;
+    while (root.getParentNode() != null) {
+      root = root.getParentNode();
+    }
+    return root.getNodeType() == Node.DOCUMENT_NODE ? root : null;
+  }
+}
@@ -8,7 +8,6 @@ import java.util.SortedMap;
 import java.util.TreeMap;
 
 import org.apache.commons.codec.binary.Base64;
-import org.apache.commons.lang3.Validate;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.NamedNodeMap;
@@ -23,15 +22,17 @@ import org.w3c.dom.NodeList;
  */
 public final class XmlRoundTripUtils {
 
-  private static MessageDigest digest;
-
-  static {
-    try {
-      digest = MessageDigest.getInstance("sha-1");
-    } catch (final NoSuchAlgorithmException e) {
-      throw new IllegalStateException("Could not create hash key for identifier");
+  // MessageDigests aren't thread-safe, so each thread gets its own
+  private static final ThreadLocal<MessageDigest> DIGEST = new ThreadLocal<MessageDigest>() {
+    @Override
+    protected MessageDigest initialValue() {
+      try {
+        return MessageDigest.getInstance("sha-1");
+      } catch (final NoSuchAlgorithmException e) {
+        throw new IllegalStateException("Could not create hash key for identifier");
+      }
     }
-  }
+  };
 
   private static boolean addOrUpdateElements(final Element original, final Element proposed,
       boolean originalDocumentChanged) {
@@ -294,8 +295,7 @@ public final class XmlRoundTripUtils {
    * @return byte[] hash of the input data
    */
   private static byte[] sha1(final byte[] data) {
-    Validate.notNull(digest, "Could not create hash key for identifier");
-    return digest.digest(data);
+    return DIGEST.get().digest(data);
   }
 
   /**
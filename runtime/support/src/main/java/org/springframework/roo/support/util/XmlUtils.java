@@ -10,25 +10,23 @@ import java.io.OutputStreamWriter;
 import java.io.StringWriter;
 import java.io.UnsupportedEncodingException;
 import java.io.Writer;
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -38,7 +36,6 @@ import org.w3c.dom.DOMImplementation;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 import org.w3c.dom.bootstrap.DOMImplementationRegistry;
 import org.w3c.dom.ls.DOMImplementationLS;
 import org.w3c.dom.ls.LSException;
@@ -48,6 +45,18 @@ import org.xml.sax.SAXException;
 
 /**
  * Utilities related to XML usage.
+ * <p>
+ * The {@link DocumentBuilder} and indenting {@link Transformer} behind
+ * {@link #readXml(InputStream)}, {@link #stringToElement(String)},
+ * {@link #nodeToString(Node)} and {@link #writeXml(OutputStream, Document)}
+ * are pooled, one per thread, rather than created on every call. Code that
+ * only needs to scan a document or to write one from start to finish can use
+ * {@link #createXmlStreamReader(InputStream)} and
+ * {@link #createIndentingXmlStreamWriter(OutputStream)} instead of a DOM.
+ * <p>
+ * The <code>find*</code> methods are safe to call from any thread; each
+ * thread keeps its own compiled XPath expressions, and plain paths of element
+ * names are resolved without the XPath engine.
  * 
  * @author Stefan Schmidt
  * @author Ben Alex
@@ -57,11 +66,48 @@ import org.xml.sax.SAXException;
  */
 public final class XmlUtils {
 
-  private static final Map<String, XPathExpression> COMPILED_EXPRESSION_CACHE =
-      new HashMap<String, XPathExpression>();
   private static final DocumentBuilderFactory FACTORY = DocumentBuilderFactory.newInstance();
+  private static final String INDENT = "    ";
+  private static final XMLInputFactory INPUT_FACTORY = XMLInputFactory.newInstance();
+  private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+  private static final ThreadLocal<DocumentBuilder> POOLED_DOCUMENT_BUILDER =
+      new ThreadLocal<DocumentBuilder>();
+  private static final ThreadLocal<Transformer> POOLED_TRANSFORMER = new ThreadLocal<Transformer>();
   private static final TransformerFactory TRANSFORMER_FACTORY = TransformerFactory.newInstance();
-  private static final XPath XPATH = XPathFactory.newInstance().newXPath();
+
+  static {
+    // Streamed documents are local project files, so never resolve DTDs or
+    // external entities for them
+    INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+    INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+    INPUT_FACTORY.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+  }
+
+  /**
+   * Takes this thread's pooled document builder, or creates one if it's
+   * already in use further up the stack.
+   */
+  private static DocumentBuilder acquireDocumentBuilder() {
+    final DocumentBuilder builder = POOLED_DOCUMENT_BUILDER.get();
+    if (builder == null) {
+      return getDocumentBuilder();
+    }
+    POOLED_DOCUMENT_BUILDER.remove();
+    return builder;
+  }
+
+  /**
+   * Takes this thread's pooled indenting transformer, or creates one if it's
+   * already in use further up the stack.
+   */
+  private static Transformer acquireTransformer() {
+    final Transformer transformer = POOLED_TRANSFORMER.get();
+    if (transformer == null) {
+      return createIndentingTransformer();
+    }
+    POOLED_TRANSFORMER.remove();
+    return transformer;
+  }
 
   /**
    * Checks the presented element for illegal characters that could cause
@@ -132,16 +178,61 @@ public final class XmlUtils {
   public static Transformer createIndentingTransformer() {
     Transformer transformer;
     try {
-      TRANSFORMER_FACTORY.setAttribute("indent-number", 4);
-      transformer = TRANSFORMER_FACTORY.newTransformer();
+      // The factory isn't thread-safe
+      synchronized (TRANSFORMER_FACTORY) {
+        TRANSFORMER_FACTORY.setAttribute("indent-number", 4);
+        transformer = TRANSFORMER_FACTORY.newTransformer();
+      }
     } catch (final Exception e) {
       throw new IllegalStateException(e);
     }
-    transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-    transformer.setOutputProperty("{https://xml.apache.org/xslt}indent-amount", "4");
+    setIndenting(transformer);
     return transformer;
   }
 
+  /**
+   * Creates a writer that streams XML to the given output stream in UTF-8,
+   * indenting elements by four spaces as {@link #createIndentingTransformer()}
+   * does. Elements containing text are written on one line, along with any
+   * child elements.
+   * 
+   * @param outputStream the stream to write to; the caller remains
+   *            responsible for closing it (required)
+   * @return a non-<code>null</code> writer
+   * @since 2.0
+   */
+  public static XMLStreamWriter createIndentingXmlStreamWriter(final OutputStream outputStream) {
+    Validate.notNull(outputStream, "OutputStream required");
+    try {
+      synchronized (OUTPUT_FACTORY) {
+        return new IndentingXmlStreamWriter(OUTPUT_FACTORY.createXMLStreamWriter(outputStream,
+            "UTF-8"), INDENT);
+      }
+    } catch (final XMLStreamException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Creates a writer that streams XML to the given character stream,
+   * indented as by {@link #createIndentingXmlStreamWriter(OutputStream)}.
+   * 
+   * @param writer the writer to write to; the caller remains responsible for
+   *            closing it (required)
+   * @return a non-<code>null</code> writer
+   * @since 2.0
+   */
+  public static XMLStreamWriter createIndentingXmlStreamWriter(final Writer writer) {
+    Validate.notNull(writer, "Writer required");
+    try {
+      synchronized (OUTPUT_FACTORY) {
+        return new IndentingXmlStreamWriter(OUTPUT_FACTORY.createXMLStreamWriter(writer), INDENT);
+      }
+    } catch (final XMLStreamException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
   /**
    * Creates an {@link Element} containing the given text
    * 
@@ -207,6 +298,30 @@ public final class XmlUtils {
     return new StreamResult(writer);
   }
 
+  /**
+   * Creates a reader that streams the XML document in the given input stream,
+   * for callers that only need to scan it rather than navigate or change it.
+   * Adjacent text is reported as one event, and DTDs are not processed.
+   * 
+   * @param inputStream the stream to read; the caller remains responsible for
+   *            closing it, along with the returned reader (required)
+   * @return a non-<code>null</code> reader
+   * @since 2.0
+   */
+  public static XMLStreamReader createXmlStreamReader(InputStream inputStream) {
+    Validate.notNull(inputStream, "InputStream required");
+    if (!(inputStream instanceof BufferedInputStream)) {
+      inputStream = new BufferedInputStream(inputStream);
+    }
+    try {
+      synchronized (INPUT_FACTORY) {
+        return INPUT_FACTORY.createXMLStreamReader(inputStream);
+      }
+    } catch (final XMLStreamException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
   /**
    * Checks in under a given root element whether it can find a child elements
    * which match the XPath expression supplied. Returns a {@link List} of
@@ -220,24 +335,11 @@ public final class XmlUtils {
    *         an empty list (never null)
    */
   public static List<Element> findElements(final String xPathExpression, final Element root) {
-    final List<Element> elements = new ArrayList<Element>();
-    NodeList nodes = null;
-
     try {
-      XPathExpression expr = COMPILED_EXPRESSION_CACHE.get(xPathExpression);
-      if (expr == null) {
-        expr = XPATH.compile(xPathExpression);
-        COMPILED_EXPRESSION_CACHE.put(xPathExpression, expr);
-      }
-      nodes = (NodeList) expr.evaluate(root, XPathConstants.NODESET);
+      return XPathEvaluator.getInstance().findElements(xPathExpression, root);
     } catch (final XPathExpressionException e) {
       throw new IllegalArgumentException("Unable evaluate xpath expression", e);
     }
-
-    for (int i = 0, n = nodes.getLength(); i < n; i++) {
-      elements.add((Element) nodes.item(i));
-    }
-    return elements;
   }
 
   /**
@@ -249,18 +351,11 @@ public final class XmlUtils {
    * @return the Node if discovered (null if not found)
    */
   public static Node findFirstAttribute(final String xPathExpression, final Element element) {
-    Node attr = null;
     try {
-      XPathExpression expr = COMPILED_EXPRESSION_CACHE.get(xPathExpression);
-      if (expr == null) {
-        expr = XPATH.compile(xPathExpression);
-        COMPILED_EXPRESSION_CACHE.put(xPathExpression, expr);
-      }
-      attr = (Node) expr.evaluate(element, XPathConstants.NODE);
+      return XPathEvaluator.getInstance().findNode(xPathExpression, element);
     } catch (final XPathExpressionException e) {
       throw new IllegalArgumentException("Unable evaluate xpath expression", e);
     }
-    return attr;
   }
 
   /**
@@ -311,19 +406,12 @@ public final class XmlUtils {
   public static Node findNode(final String xPathExpression, final Node root) {
     Validate.notBlank(xPathExpression, "XPath expression required");
     Validate.notNull(root, "Root element required");
-    Node node = null;
     try {
-      XPathExpression expr = COMPILED_EXPRESSION_CACHE.get(xPathExpression);
-      if (expr == null) {
-        expr = XPATH.compile(xPathExpression);
-        COMPILED_EXPRESSION_CACHE.put(xPathExpression, expr);
-      }
-      node = (Node) expr.evaluate(root, XPathConstants.NODE);
+      return XPathEvaluator.getInstance().findNode(xPathExpression, root);
     } catch (final XPathExpressionException e) {
       throw new IllegalArgumentException("Unable evaluate XPath expression '" + xPathExpression
           + "'", e);
     }
-    return node;
   }
 
   /**
@@ -364,7 +452,10 @@ public final class XmlUtils {
   public static DocumentBuilder getDocumentBuilder() {
     // factory.setNamespaceAware(true);
     try {
-      return FACTORY.newDocumentBuilder();
+      // The factory isn't thread-safe
+      synchronized (FACTORY) {
+        return FACTORY.newDocumentBuilder();
+      }
     } catch (final ParserConfigurationException e) {
       throw new IllegalStateException(e);
     }
@@ -398,6 +489,18 @@ public final class XmlUtils {
     return valueIfNull;
   }
 
+  /**
+   * Returns how often the XPath expressions given to the <code>find*</code>
+   * methods were already compiled, and how many were evaluated without the
+   * XPath engine, across all threads
+   *
+   * @return a non-blank description
+   * @since 2.0
+   */
+  public static String getXPathStatistics() {
+    return XPathEvaluator.getStatistics();
+  }
+
   /**
    * Converts a {@link Node node} to an XML string
    * 
@@ -405,9 +508,11 @@ public final class XmlUtils {
    * @return the XML String representation of the node, never null
    */
   public static String nodeToString(final Node node) {
+    final Transformer transformer = acquireTransformer();
     try {
       final StringWriter writer = new StringWriter();
-      createIndentingTransformer().transform(new DOMSource(node), new StreamResult(writer));
+      transformer.transform(new DOMSource(node), new StreamResult(writer));
+      releaseTransformer(transformer);
       return writer.toString();
     } catch (final TransformerException e) {
       throw new IllegalStateException(e);
@@ -429,7 +534,10 @@ public final class XmlUtils {
       if (!(inputStream instanceof BufferedInputStream)) {
         inputStream = new BufferedInputStream(inputStream);
       }
-      return getDocumentBuilder().parse(inputStream);
+      final DocumentBuilder builder = acquireDocumentBuilder();
+      final Document document = builder.parse(inputStream);
+      releaseDocumentBuilder(builder);
+      return document;
     } catch (final Exception e) {
       throw new IllegalStateException(e);
     } finally {
@@ -437,6 +545,28 @@ public final class XmlUtils {
     }
   }
 
+  /**
+   * Returns the given document builder to this thread's pool, once it's been
+   * used successfully; a builder that's failed is simply discarded.
+   */
+  private static void releaseDocumentBuilder(final DocumentBuilder builder) {
+    builder.reset();
+    POOLED_DOCUMENT_BUILDER.set(builder);
+  }
+
+  /**
+   * Returns the given indenting transformer to this thread's pool, once it's
+   * been used successfully; a transformer that's failed is simply discarded.
+   * Any output properties set while using it, such as the method set by
+   * {@link #writeXml(Transformer, OutputStream, Document)}, are discarded
+   * too, so they don't affect its next use.
+   */
+  private static void releaseTransformer(final Transformer transformer) {
+    transformer.reset();
+    setIndenting(transformer);
+    POOLED_TRANSFORMER.set(transformer);
+  }
+
   /**
    * Removes empty text nodes from the specified node
    * 
@@ -448,6 +578,14 @@ public final class XmlUtils {
     DomUtils.removeTextNodes(node);
   }
 
+  /**
+   * Makes the given transformer indent elements by four spaces
+   */
+  private static void setIndenting(final Transformer transformer) {
+    transformer.setOutputProperty(OutputKeys.INDENT, "yes");
+    transformer.setOutputProperty("{https://xml.apache.org/xslt}indent-amount", "4");
+  }
+
   /**
    * Returns the given XML as the root {@link Element} of a new
    * {@link Document}
@@ -461,12 +599,13 @@ public final class XmlUtils {
       return null;
     }
     try {
-      return FACTORY.newDocumentBuilder().parse(new ByteArrayInputStream(xml.getBytes()))
-          .getDocumentElement();
+      final DocumentBuilder builder = acquireDocumentBuilder();
+      final Element element =
+          builder.parse(new ByteArrayInputStream(xml.getBytes())).getDocumentElement();
+      releaseDocumentBuilder(builder);
+      return element;
     } catch (final IOException e) {
       throw new IllegalStateException(e);
-    } catch (final ParserConfigurationException e) {
-      throw new IllegalStateException(e);
     } catch (final SAXException e) {
       throw new IllegalStateException(e);
     }
@@ -549,7 +688,9 @@ public final class XmlUtils {
    * @param document the document to write.
    */
   public static void writeXml(final OutputStream outputStream, final Document document) {
-    writeXml(createIndentingTransformer(), outputStream, document);
+    final Transformer transformer = acquireTransformer();
+    writeXml(transformer, outputStream, document);
+    releaseTransformer(transformer);
   }
 
   /**
@@ -0,0 +1,79 @@
+package org.springframework.roo.support.util;
+
+import static org.apache.commons.io.IOUtils.LINE_SEPARATOR;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringWriter;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.junit.Test;
+
+/**
+ * Unit test of {@link IndentingXmlStreamWriter}
+ *
+ * @since 2.0
+ */
+public class IndentingXmlStreamWriterTest {
+
+  @Test
+  public void testMixedContentIsNotIndented() throws Exception {
+    // Set up
+    final StringWriter output = new StringWriter();
+    final XMLStreamWriter writer = XmlUtils.createIndentingXmlStreamWriter(output);
+
+    // Invoke
+    writer.writeStartElement("para");
+    writer.writeCharacters("See ");
+    writer.writeStartElement("link");
+    writer.writeCharacters("here");
+    writer.writeEndElement();
+    writer.writeEndElement();
+    writer.close();
+
+    // Check
+    assertEquals("<para>See <link>here</link></para>", output.toString());
+  }
+
+  @Test
+  public void testWrittenDocumentIsIndentedAndReadsBack() throws Exception {
+    // Set up
+    final StringWriter output = new StringWriter();
+    final XMLStreamWriter writer = XmlUtils.createIndentingXmlStreamWriter(output);
+
+    // Invoke
+    writer.writeStartDocument("UTF-8", "1.0");
+    writer.writeComment("generated");
+    writer.writeStartElement("database");
+    writer.writeAttribute("name", "clinic");
+    writer.writeStartElement("table");
+    writer.writeEmptyElement("column");
+    writer.writeAttribute("name", "id");
+    writer.writeEndElement();
+    writer.writeStartElement("description");
+    writer.writeCharacters("Owners & pets");
+    writer.writeEndElement();
+    writer.writeEndDocument();
+    writer.close();
+
+    // Check
+    assertEquals("<?xml version=\"1.0\" encoding=\"UTF-8\"?>" + LINE_SEPARATOR
+        + "<!--generated-->" + LINE_SEPARATOR + "<database name=\"clinic\">" + LINE_SEPARATOR
+        + "    <table>" + LINE_SEPARATOR + "        <column name=\"id\"/>" + LINE_SEPARATOR
+        + "    </table>" + LINE_SEPARATOR + "    <description>Owners &amp; pets</description>"
+        + LINE_SEPARATOR + "</database>", output.toString());
+
+    final XMLStreamReader reader =
+        XmlUtils.createXmlStreamReader(new ByteArrayInputStream(output.toString()
+            .getBytes("UTF-8")));
+    while (!(reader.next() == XMLStreamConstants.START_ELEMENT && "description".equals(reader
+        .getLocalName()))) {
+      // Skip to the description
+    }
+    assertEquals("Owners & pets", reader.getElementText());
+    reader.close();
+  }
+}
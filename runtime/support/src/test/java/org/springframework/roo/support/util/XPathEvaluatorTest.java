@@ -0,0 +1,100 @@
+package org.springframework.roo.support.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathFactory;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * Unit test of {@link XPathEvaluator}
+ *
+ * @since 2.0
+ */
+public class XPathEvaluatorTest {
+
+  private static final String POM = "<project xmlns=\"http://maven.apache.org/POM/4.0.0\">"
+      + "<dependencies><dependency><artifactId>a</artifactId></dependency>"
+      + "<!-- b --><dependency><artifactId>b</artifactId></dependency></dependencies>"
+      + "<build><plugins><plugin><artifactId>c</artifactId></plugin></plugins></build>"
+      + "<dependencies><dependency><artifactId>d</artifactId></dependency></dependencies>"
+      + "</project>";
+
+  private Document document;
+  private XPathEvaluator evaluator;
+
+  private void assertSameAsEngine(final String expression, final Node context) throws Exception {
+    final NodeList expected =
+        (NodeList) XPathFactory.newInstance().newXPath()
+            .evaluate(expression, context, XPathConstants.NODESET);
+    final List<Element> actual = evaluator.findElements(expression, context);
+    assertEquals(expected.getLength(), actual.size());
+    for (int i = 0; i < actual.size(); i++) {
+      assertSame(expected.item(i), actual.get(i));
+    }
+    assertSame(expected.getLength() == 0 ? null : expected.item(0),
+        evaluator.findNode(expression, context));
+  }
+
+  @Before
+  public void setUp() {
+    document = XmlUtils.readXml(new ByteArrayInputStream(POM.getBytes()));
+    evaluator = XPathEvaluator.getInstance();
+  }
+
+  @Test
+  public void testAbsolutePathFromNestedContextMatchesEngine() throws Exception {
+    final Element plugins = evaluator.findElements("/project/build/plugins", document).get(0);
+    assertSameAsEngine("/project/dependencies/dependency", plugins);
+  }
+
+  @Test
+  public void testExpressionsThatAreNotSimplePaths() {
+    assertNull(XPathEvaluator.getSimplePath("/project/dependencies/dependency[artifactId='a']"));
+    assertNull(XPathEvaluator.getSimplePath("//dependency"));
+    assertNull(XPathEvaluator.getSimplePath("/project/properties/*"));
+    assertNull(XPathEvaluator.getSimplePath("@id"));
+    assertNull(XPathEvaluator.getSimplePath("../build"));
+    assertNull(XPathEvaluator.getSimplePath("/"));
+    assertNull(XPathEvaluator.getSimplePath("build/"));
+    assertNull(XPathEvaluator.getSimplePath("text()"));
+  }
+
+  @Test
+  public void testMissingPathMatchesEngine() throws Exception {
+    assertSameAsEngine("/project/repositories/repository", document);
+    assertSameAsEngine("/beans/bean", document.getDocumentElement());
+  }
+
+  @Test
+  public void testRelativePathMatchesEngine() throws Exception {
+    assertSameAsEngine("dependencies/dependency/artifactId", document.getDocumentElement());
+    assertSameAsEngine("build/plugins/plugin", document.getDocumentElement());
+  }
+
+  @Test
+  public void testSimpleAbsolutePathMatchesEngine() throws Exception {
+    assertSameAsEngine("/project/dependencies/dependency", document);
+    assertSameAsEngine("/project/dependencies/dependency", document.getDocumentElement());
+  }
+
+  @Test
+  public void testSimplePathIsParsedIntoSteps() {
+    assertArrayEquals(new String[] {"", "project", "dependencies", "dependency"},
+        XPathEvaluator.getSimplePath("/project/dependencies/dependency"));
+    assertArrayEquals(new String[] {"build", "pluginManagement"},
+        XPathEvaluator.getSimplePath("build/pluginManagement"));
+  }
+}
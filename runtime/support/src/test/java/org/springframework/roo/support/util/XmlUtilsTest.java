@@ -0,0 +1,47 @@
+package org.springframework.roo.support.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+
+import org.junit.Test;
+import org.w3c.dom.Element;
+
+/**
+ * Unit test of the transformer {@link XmlUtils} pools for each thread
+ *
+ * @since 2.0
+ */
+public class XmlUtilsTest {
+
+  // Output as HTML unless the transformer is told otherwise
+  private static final String HTML = "<html><body><p>Roo<br/></p></body></html>";
+
+  @Test
+  public void testNodeToStringIsUnaffectedByEarlierWriteXml() {
+    // Set up
+    final Element html = XmlUtils.stringToElement(HTML);
+    final String expected = XmlUtils.nodeToString(html);
+    XmlUtils.writeXml(new ByteArrayOutputStream(), html.getOwnerDocument());
+
+    // Invoke
+    final String actual = XmlUtils.nodeToString(html);
+
+    // Check
+    assertEquals(expected, actual);
+  }
+
+  @Test
+  public void testPooledTransformerStillIndents() {
+    // Set up
+    final Element element = XmlUtils.stringToElement("<top><middle/></top>");
+    XmlUtils.writeXml(new ByteArrayOutputStream(), element.getOwnerDocument());
+
+    // Invoke
+    final String xml = XmlUtils.nodeToString(element);
+
+    // Check
+    assertEquals("<top>\n    <middle/>\n</top>", xml.substring(xml.indexOf("<top>")).trim()
+        .replace("\r\n", "\n"));
+  }
+}